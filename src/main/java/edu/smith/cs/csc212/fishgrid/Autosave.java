@@ -0,0 +1,469 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An Autosave writes a FishGame to a file every so often, without making the game wait for the disk.
+ *
+ * Walking every object in a huge world takes a while, so we don't do it when saving. Instead we keep every 16x16
+ * tile of the world squashed into {@link ObjectRecord}s, and after each step only the tiles that changed get
+ * squashed again. A save is just "these tile arrays, as of this step": a background thread writes them out
+ * while the game keeps going.
+ *
+ * Tile arrays are never changed once made (a changed tile gets a new array). If a tile changes while a save is
+ * being written, the array the save wanted is kept aside until the writer is done (copy-on-write).
+ */
+public class Autosave {
+	/**
+	 * The first thing in a save file, so we don't read some other file by mistake.
+	 */
+	private static final int SAVE_MAGIC = 0x46495356;
+	/**
+	 * Kept aside for a tile that didn't exist when the save started (so the writer skips it).
+	 */
+	private static final int[] NOT_THERE = new int[0];
+
+	/**
+	 * The game we save.
+	 */
+	private final FishGame game;
+	/**
+	 * The world we save.
+	 */
+	private final World world;
+	/**
+	 * Where saves go.
+	 */
+	private final Path file;
+	/**
+	 * Save every this many steps.
+	 */
+	private final int everySteps;
+	/**
+	 * Every tile of the world, as records, by {@link World#chunkKey} of the tile.
+	 */
+	private final Map<Long, int[]> tiles;
+	/**
+	 * The arrays the save being written needs, for tiles that changed since it started.
+	 */
+	private final Map<Long, int[]> preserved;
+	/**
+	 * Tiles that changed this step (kept so we don't make a new list every step).
+	 */
+	private final List<Long> changed;
+	/**
+	 * The thread that does the writing.
+	 */
+	private final ExecutorService writer;
+	/**
+	 * Is the writer busy with a save right now?
+	 */
+	private volatile boolean saving;
+	/**
+	 * What went wrong with the last save (or null).
+	 */
+	private volatile IOException failure;
+	/**
+	 * How many saves have been written?
+	 */
+	private volatile int saves;
+	/**
+	 * Which step is the save being written (or the last one started) for? (-1 before the first.)
+	 */
+	private volatile int savingStep = -1;
+	/**
+	 * Which step is the last save that made it to disk for? (-1 before the first.)
+	 */
+	private volatile int savedStep = -1;
+	/**
+	 * How many saves were skipped because the last one was still being written?
+	 */
+	private int skipped;
+
+	/**
+	 * Start saving a game. This squashes the whole world once (the only time we walk all of it).
+	 * @param game - the game to save.
+	 * @param file - where to save it (replaced each time).
+	 * @param everySteps - how often to save.
+	 */
+	public Autosave(FishGame game, Path file, int everySteps) {
+		this(game, file, everySteps, Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "autosave");
+			t.setDaemon(true);
+			return t;
+		}));
+	}
+
+	/**
+	 * Start saving a game, writing on a thread of our choosing (tests use this to hold a save up).
+	 * @param game - the game to save.
+	 * @param file - where to save it (replaced each time).
+	 * @param everySteps - how often to save.
+	 * @param writer - runs the writing, one save at a time.
+	 */
+	Autosave(FishGame game, Path file, int everySteps, ExecutorService writer) {
+		this.game = game;
+		this.world = game.indexedWorld();
+		this.file = file;
+		this.everySteps = everySteps;
+		this.tiles = new ConcurrentHashMap<>();
+		this.preserved = new ConcurrentHashMap<>();
+		this.changed = new ArrayList<>();
+		this.writer = writer;
+		world.trackChanges();
+		refresh();
+	}
+
+	/**
+	 * Called by the game at the end of every step: squash the tiles that changed, and maybe start a save.
+	 * @param step - how many steps the game has taken.
+	 */
+	void tick(int step) {
+		refresh();
+		if (step % everySteps != 0) {
+			return;
+		}
+		if (saving) {
+			skipped++;
+			return;
+		}
+		// Everything small gets copied now; the tiles are already safe.
+		Header header = new Header(game);
+		saving = true;
+		savingStep = step;
+		writer.execute(() -> {
+			try {
+				write(header);
+				savedStep = header.steps;
+				saves++;
+				failure = null;
+			} catch (IOException e) {
+				failure = e;
+				System.err.println("Autosave to " + file + " failed: " + e);
+			} finally {
+				saving = false;
+			}
+		});
+	}
+
+	/**
+	 * Squash every tile that changed since last time.
+	 */
+	private void refresh() {
+		boolean keepOld = saving;
+		if (!keepOld) {
+			// Nobody is writing, so nobody needs the old arrays.
+			preserved.clear();
+		}
+		changed.clear();
+		world.drainChangedTiles(changed);
+		for (Long key : changed) {
+			int[] records = squash(key);
+			if (keepOld) {
+				// Keep the old one aside *before* replacing it, so the writer always finds one or the other.
+				int[] old = tiles.get(key);
+				preserved.putIfAbsent(key, old == null ? NOT_THERE : old);
+			}
+			tiles.put(key, records);
+		}
+	}
+
+	/**
+	 * Turn the objects in one tile into records.
+	 * @param key - the tile.
+	 * @return kind, x, y, extra for every object we can save (see {@link ObjectRecord}).
+	 */
+	private int[] squash(long key) {
+		int size = World.CHANGE_TILE_SIZE;
+		int x0 = (int) key * size;
+		int y0 = (int) (key >>> 32) * size;
+		List<WorldObject> here = world.findInRect(x0, y0, x0 + size - 1, y0 + size - 1, WorldObject.class);
+		int[] records = new int[here.size() * ObjectRecord.SIZE];
+		int n = 0;
+		for (WorldObject item : here) {
+			int kind = ObjectRecord.kindOf(item);
+			if (kind < 0) {
+				continue;
+			}
+			records[n++] = kind;
+			records[n++] = item.getX();
+			records[n++] = item.getY();
+			records[n++] = ObjectRecord.extraOf(item);
+		}
+		return n == records.length ? records : Arrays.copyOf(records, n);
+	}
+
+	/**
+	 * Write one save (on the writer thread). We write a new file and then swap it in, so a crash never leaves
+	 * half a save.
+	 * @param header - the game, as of the step the save is for.
+	 * @throws IOException if it can't be written.
+	 */
+	private void write(Header header) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream f = Files.newOutputStream(tmp);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(f, 1 << 16))) {
+			out.writeInt(SAVE_MAGIC);
+			header.write(out);
+			for (Long key : tiles.keySet()) {
+				// Look at the tile first and the kept-aside one second: if the tile changed after we looked,
+				// its old array was kept aside before that.
+				int[] records = tiles.get(key);
+				int[] old = preserved.get(key);
+				if (old != null) {
+					records = old;
+				}
+				if (records == NOT_THERE || records.length == 0) {
+					continue;
+				}
+				writeInts(out, records);
+			}
+			out.writeInt(-1);
+			out.writeInt(header.chunks.size());
+			for (Map.Entry<Long, int[]> chunk : header.chunks.entrySet()) {
+				out.writeLong(chunk.getKey());
+				writeInts(out, chunk.getValue());
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Write an array with its length first.
+	 * @param out - where to write.
+	 * @param values - what to write.
+	 * @throws IOException if it can't be written.
+	 */
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int v : values) {
+			out.writeInt(v);
+		}
+	}
+
+	/**
+	 * Read an array written by {@link #writeInts}.
+	 * @param in - where to read.
+	 * @param length - how long it is (already read).
+	 * @return the array.
+	 * @throws IOException if it can't be read.
+	 */
+	private static int[] readInts(DataInputStream in, int length) throws IOException {
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Wait for the save being written (if any) to finish, and stop the writer thread.
+	 * @throws InterruptedException if we're interrupted while waiting.
+	 */
+	public void close() throws InterruptedException {
+		writer.shutdown();
+		writer.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Is a save being written right now?
+	 * @return true if the writer is busy.
+	 */
+	public boolean isSaving() {
+		return saving;
+	}
+
+	/**
+	 * How many saves have been written so far?
+	 * @return the count.
+	 */
+	public int getSaves() {
+		return saves;
+	}
+
+	/**
+	 * How many saves were skipped because the one before was still being written?
+	 * @return the count.
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Which step is the save being written right now (or the last one started) for?
+	 * @return the step, or -1 if no save has started.
+	 */
+	public int getSavingStep() {
+		return savingStep;
+	}
+
+	/**
+	 * Which step is the newest save on disk for? (The journal doesn't need anything before it.)
+	 * @return the step, or -1 if no save has been written yet.
+	 */
+	public int getSavedStep() {
+		return savedStep;
+	}
+
+	/**
+	 * What went wrong with the last save?
+	 * @return the problem, or null if it worked.
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Read the small parts of a save (which step it's from, the score and the counters).
+	 * @param file - a file written by an Autosave.
+	 * @return the header (without chunks).
+	 * @throws IOException if it can't be read (or isn't a save).
+	 */
+	static Header headerOf(Path file) throws IOException {
+		try (InputStream f = Files.newInputStream(file); DataInputStream in = new DataInputStream(f)) {
+			if (in.readInt() != SAVE_MAGIC) {
+				throw new IOException(file + " isn't a save file.");
+			}
+			return Header.read(in);
+		}
+	}
+
+	/**
+	 * Build a world from a save: rocks, snails, hearts and missing fish (not players, home, or put-away chunks).
+	 * @param file - a file written by an Autosave.
+	 * @return a new World, the same size as the saved one.
+	 * @throws IOException if it can't be read (or isn't a save).
+	 */
+	public static World loadWorld(Path file) throws IOException {
+		try (InputStream f = Files.newInputStream(file);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(f, 1 << 16))) {
+			if (in.readInt() != SAVE_MAGIC) {
+				throw new IOException(file + " isn't a save file.");
+			}
+			Header header = Header.read(in);
+			World world = new World(header.width, header.height);
+			world.setVerbose(false);
+			for (int length = in.readInt(); length >= 0; length = in.readInt()) {
+				int[] records = readInts(in, length);
+				for (int i = 0; i < records.length; i += ObjectRecord.SIZE) {
+					WorldObject item = ObjectRecord.make(world, records[i], records[i + 3]);
+					item.setPosition(records[i + 1], records[i + 2]);
+					world.register(item);
+				}
+			}
+			return world;
+		}
+	}
+
+	/**
+	 * The small parts of a game, copied at the step a save is for.
+	 */
+	static class Header {
+		int width;
+		int height;
+		int steps;
+		int score;
+		int fishLost;
+		int safeCount;
+		int homeX;
+		int homeY;
+		/**
+		 * For every player: x, y, score, how many found fish, and {@link ObjectRecord#extraOf} for each of them.
+		 */
+		int[] players;
+		/**
+		 * Put-away chunks (shared arrays, see {@link ChunkManager#storedChunks}).
+		 */
+		Map<Long, int[]> chunks;
+
+		private Header() {
+			// For read().
+		}
+
+		/**
+		 * Copy the small parts of a game.
+		 * @param game - the game (between steps).
+		 */
+		Header(FishGame game) {
+			width = game.world.getWidth();
+			height = game.world.getHeight();
+			steps = game.stepsTaken;
+			score = game.score;
+			fishLost = game.fishLost;
+			safeCount = game.safeCount;
+			homeX = game.home.getX();
+			homeY = game.home.getY();
+			int size = 0;
+			for (Player p : game.players) {
+				size += 4 + p.found.size();
+			}
+			players = new int[size];
+			int n = 0;
+			for (Player p : game.players) {
+				players[n++] = p.fish.getX();
+				players[n++] = p.fish.getY();
+				players[n++] = p.score;
+				players[n++] = p.found.size();
+				for (Fish f : p.found) {
+					players[n++] = ObjectRecord.extraOf(f);
+				}
+			}
+			chunks = game.chunks == null ? Collections.<Long, int[]>emptyMap() : game.chunks.storedChunks();
+		}
+
+		/**
+		 * Write everything but the chunks (they go at the end of the file).
+		 * @param out - where to write.
+		 * @throws IOException if it can't be written.
+		 */
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(steps);
+			out.writeInt(score);
+			out.writeInt(fishLost);
+			out.writeInt(safeCount);
+			out.writeInt(homeX);
+			out.writeInt(homeY);
+			writeInts(out, players);
+		}
+
+		/**
+		 * Read what {@link #write} wrote.
+		 * @param in - where to read.
+		 * @return the header (without chunks).
+		 * @throws IOException if it can't be read.
+		 */
+		static Header read(DataInputStream in) throws IOException {
+			Header h = new Header();
+			h.width = in.readInt();
+			h.height = in.readInt();
+			h.steps = in.readInt();
+			h.score = in.readInt();
+			h.fishLost = in.readInt();
+			h.safeCount = in.readInt();
+			h.homeX = in.readInt();
+			h.homeY = in.readInt();
+			h.players = readInts(in, in.readInt());
+			return h;
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * BatchRunner plays lots and lots of FishGames with a {@link BotPolicy}, on every core, and tells us how they went.
+ * This is how we check whether the points, NUM_ROCKS, and the boredom and scaring numbers make a fun game.
+ *
+ * Game number i always uses the same seed (made from the batch seed and i), so a batch can be repeated exactly.
+ * Games are split up on a ForkJoinPool; each piece keeps its own {@link Histogram}s, and they're merged on the way
+ * back up, so threads never share anything while they play. Every {@link #CHECKPOINT_EVERY} games we save what we
+ * have so far, and a later run with the same seed picks up where that one stopped.
+ *
+ * Run it with: {@code java edu.smith.cs.csc212.fishgrid.BatchRunner [games] [threads] [seed] [checkpoint-file]}
+ */
+public class BatchRunner {
+	/**
+	 * Give up on a game after this many steps (it counts as a loss).
+	 */
+	public static final int MAX_STEPS = 2000;
+	/**
+	 * A piece of work this small is played on one thread instead of being split again.
+	 */
+	public static final int LEAF_GAMES = 64;
+	/**
+	 * Save a checkpoint after this many games.
+	 */
+	public static final int CHECKPOINT_EVERY = 1 << 16;
+	/**
+	 * The first thing in a checkpoint file, so we don't read some other file by mistake.
+	 */
+	private static final int CHECKPOINT_MAGIC = 0x46495348;
+
+	/**
+	 * Everything we learned from some games. Results from different games can be merged.
+	 */
+	public static class Result {
+		/**
+		 * How many games were played?
+		 */
+		long games;
+		/**
+		 * How many were won (before MAX_STEPS)?
+		 */
+		long wins;
+		/**
+		 * The final score of every game.
+		 */
+		final Histogram score;
+		/**
+		 * How many steps each won game took.
+		 */
+		final Histogram stepsToWin;
+		/**
+		 * How many times found fish wandered off, in every game.
+		 */
+		final Histogram fishLost;
+
+		/**
+		 * Make an empty Result.
+		 */
+		public Result() {
+			this(new Histogram(10, 100), new Histogram(10, MAX_STEPS / 10), new Histogram(1, 100));
+		}
+
+		private Result(Histogram score, Histogram stepsToWin, Histogram fishLost) {
+			this.score = score;
+			this.stepsToWin = stepsToWin;
+			this.fishLost = fishLost;
+		}
+
+		/**
+		 * Count one finished game.
+		 * @param game - the game.
+		 */
+		void add(FishGame game) {
+			games++;
+			score.add(game.score);
+			fishLost.add(game.fishLost);
+			if (game.gameOver()) {
+				wins++;
+				stepsToWin.add(game.stepsTaken);
+			}
+		}
+
+		/**
+		 * Add another Result's games to this one.
+		 * @param other - the other Result.
+		 */
+		public void merge(Result other) {
+			games += other.games;
+			wins += other.wins;
+			score.merge(other.score);
+			stepsToWin.merge(other.stepsToWin);
+			fishLost.merge(other.fishLost);
+		}
+
+		/**
+		 * How many games were played?
+		 * @return the count.
+		 */
+		public long getGames() {
+			return games;
+		}
+
+		@Override
+		public String toString() {
+			return "games=" + games + " wins=" + wins + "\n"
+					+ "  score:        " + score + "\n"
+					+ "  steps to win: " + stepsToWin + "\n"
+					+ "  fish lost:    " + fishLost;
+		}
+	}
+
+	/**
+	 * Every game's seed comes from this.
+	 */
+	private final long seed;
+	/**
+	 * Who plays.
+	 */
+	private final BotPolicy bot;
+	/**
+	 * Where the games run.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * Where to save partial results (null to not bother).
+	 */
+	private final Path checkpoint;
+	/**
+	 * How many games has this runner actually played (not counting ones from a checkpoint)?
+	 */
+	private long played;
+
+	/**
+	 * Get ready to play games.
+	 * @param seed - the batch seed.
+	 * @param bot - who plays.
+	 * @param threads - how many threads to use.
+	 * @param checkpoint - where to save (and resume) partial results, or null.
+	 */
+	public BatchRunner(long seed, BotPolicy bot, int threads, Path checkpoint) {
+		this.seed = seed;
+		this.bot = bot;
+		this.pool = new ForkJoinPool(threads);
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Play games until {@code games} have been played in total (counting any from a checkpoint).
+	 * @param games - how many games.
+	 * @return what happened.
+	 * @throws IOException if the checkpoint can't be read or written.
+	 */
+	public Result run(long games) throws IOException {
+		Result total = loadCheckpoint();
+		while (total.games < games) {
+			long from = total.games;
+			long to = Math.min(games, from + CHECKPOINT_EVERY);
+			total.merge(pool.invoke(new Games(from, to)));
+			played += to - from;
+			saveCheckpoint(total);
+		}
+		return total;
+	}
+
+	/**
+	 * How many games has this runner played (not counting ones from a checkpoint)?
+	 * @return the count.
+	 */
+	public long getPlayed() {
+		return played;
+	}
+
+	/**
+	 * Stop the threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * A range of games, split in half until it's small enough to just play.
+	 */
+	private class Games extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The first game number (included).
+		 */
+		final long from;
+		/**
+		 * The last game number (not included).
+		 */
+		final long to;
+
+		Games(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (to - from <= LEAF_GAMES) {
+				Result result = new Result();
+				for (long i = from; i < to; i++) {
+					result.add(play(i));
+				}
+				return result;
+			}
+			long mid = (from + to) >>> 1;
+			Games left = new Games(from, mid);
+			left.fork();
+			Result result = new Games(mid, to).compute();
+			result.merge(left.join());
+			return result;
+		}
+	}
+
+	/**
+	 * Play one whole game (quietly) with the bot.
+	 * @param index - which game (this picks its seed).
+	 * @return the finished (or given up on) game.
+	 */
+	FishGame play(long index) {
+		World world = new World(Main.LOGICAL_GRID_SIZE, Main.LOGICAL_GRID_SIZE, new Random(gameSeed(index)));
+		world.setVerbose(false);
+		FishGame game = new FishGame(world);
+		while (!game.gameOver() && game.stepsTaken < MAX_STEPS) {
+			bot.move(game);
+			game.step();
+		}
+		return game;
+	}
+
+	/**
+	 * Mix the batch seed with a game number, so neighboring games don't get similar seeds.
+	 * @param index - the game number.
+	 * @return a seed for that game.
+	 */
+	long gameSeed(long index) {
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Read the checkpoint, if there is one for this seed.
+	 * @return what it had, or an empty Result.
+	 * @throws IOException if it can't be read.
+	 */
+	private Result loadCheckpoint() throws IOException {
+		if (checkpoint == null || !Files.exists(checkpoint)) {
+			return new Result();
+		}
+		try (InputStream file = Files.newInputStream(checkpoint);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+			if (in.readInt() != CHECKPOINT_MAGIC || in.readLong() != seed) {
+				System.err.println("Ignoring " + checkpoint + ": it's not a checkpoint for seed " + seed);
+				return new Result();
+			}
+			long games = in.readLong();
+			long wins = in.readLong();
+			Result result = new Result(Histogram.read(in), Histogram.read(in), Histogram.read(in));
+			result.games = games;
+			result.wins = wins;
+			System.err.println("Resuming from " + checkpoint + " after " + games + " games.");
+			return result;
+		}
+	}
+
+	/**
+	 * Save what we have so far. We write a new file and then swap it in, so a crash never leaves half a checkpoint.
+	 * @param result - everything so far.
+	 * @throws IOException if it can't be written.
+	 */
+	private void saveCheckpoint(Result result) throws IOException {
+		if (checkpoint == null) {
+			return;
+		}
+		Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		try (OutputStream file = Files.newOutputStream(tmp);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeLong(seed);
+			out.writeLong(result.games);
+			out.writeLong(result.wins);
+			result.score.write(out);
+			result.stepsToWin.write(out);
+			result.fishLost.write(out);
+		}
+		Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Play a batch from the command line.
+	 * @param args - [games] [threads] [seed] [checkpoint-file], all optional.
+	 * @throws IOException if the checkpoint can't be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		Path checkpoint = args.length > 3 ? Paths.get(args[3]) : null;
+
+		BatchRunner runner = new BatchRunner(seed, new GreedyBot(3), threads, checkpoint);
+		long start = System.nanoTime();
+		Result result = runner.run(games);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		runner.shutdown();
+		System.out.println(result);
+		System.out.printf("%.1f seconds on %d threads (%.0f games/second)%n", seconds, threads, runner.getPlayed() / seconds);
+	}
+}
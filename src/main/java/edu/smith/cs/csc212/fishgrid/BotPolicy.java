@@ -0,0 +1,12 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * A BotPolicy plays FishGame instead of a person: it gets one move before every step (see {@link BatchRunner}).
+ */
+public interface BotPolicy {
+	/**
+	 * Move the player (or don't). The game steps right after this.
+	 * @param game - the game to play.
+	 */
+	void move(FishGame game);
+}
@@ -7,26 +7,77 @@ import java.awt.geom.Ellipse2D;
 
 /**
  * This class is provided so that you don't have to make any drawing code yourself!
+ * 
+ * Bubbles are little particles (see {@link BubbleSystem}): they float up from a tile and pop after a while.
+ * They come from a {@link Pool}, so everything about one life gets reset in {@link #reset()}.
+ * 
  * @author jfoley
  *
  */
 public class Bubble extends WorldObject {
+	/**
+	 * Every bubble is the same shape, so we only make it once.
+	 */
+	private static final Shape CIRCLE = new Ellipse2D.Double(-0.6, -0.6, 1.2, 1.2);
+	/**
+	 * ... and the same color.
+	 */
+	private static final Color COLOR = new Color(1f,1f,1f,0.5f);
+	
+	/**
+	 * How far from the middle of its tile is it (in tiles)?
+	 */
+	double offsetX;
+	/**
+	 * How far from the middle of its tile is it (in tiles, up is negative)?
+	 */
+	double offsetY;
+	/**
+	 * How fast does it float up (tiles per second)?
+	 */
+	double speed;
+	/**
+	 * How big is it (1.0 fills a tile)?
+	 */
+	double size;
+	/**
+	 * How long has it been floating (seconds)?
+	 */
+	double age;
+	/**
+	 * When does it pop (seconds)?
+	 */
+	double lifetime;
 
-	public Bubble(World world) {
+	public Bubble(WorldBackend world) {
 		super(world);
+		this.size = 1.0;
+	}
+	
+	@Override
+	protected void reset() {
+		super.reset();
+		offsetX = 0;
+		offsetY = 0;
+		speed = 0;
+		size = 1.0;
+		age = 0;
+		lifetime = 0;
 	}
 
 	@Override
 	public void draw(Graphics2D g) {
 		// Draw a "bubble!"
-		Shape circle = new Ellipse2D.Double(-0.6, -0.6, 1.2, 1.2);
-		g.setColor(new Color(1f,1f,1f,0.5f));
-		g.fill(circle);
+		Graphics2D scaled = (Graphics2D) g.create();
+		scaled.scale(size, size);
+		scaled.setColor(COLOR);
+		scaled.fill(CIRCLE);
+		scaled.dispose();
 	}
 
 	@Override
 	public void step() {
-
+		
 	}
 
 }
@@ -0,0 +1,116 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A BubbleSystem is a bunch of {@link Bubble} particles that float up and pop.
+ *
+ * Bubbles aren't registered in the World (nobody bumps into a bubble), so there's no list to search or grid to update.
+ * Live bubbles sit in one array; a popped bubble swaps places with the last one and goes back in the World's
+ * {@link Pool}. Once the pool has warmed up, emitting and popping bubbles doesn't make any garbage at all.
+ */
+public class BubbleSystem {
+	/**
+	 * Where bubbles come from (and go back to).
+	 */
+	private final Pool<Bubble> pool;
+	/**
+	 * The live bubbles (only the first {@link #size} are real). It grows (up to {@link #capacity}) as needed.
+	 */
+	private Bubble[] live;
+	/**
+	 * The most bubbles that can float at once.
+	 */
+	private final int capacity;
+	/**
+	 * How many bubbles are floating right now?
+	 */
+	private int size;
+	/**
+	 * Random numbers for wobbles (ThreadLocalRandom doesn't make garbage).
+	 */
+	private final Random rand = ThreadLocalRandom.current();
+
+	/**
+	 * Make a BubbleSystem that draws from a world's Bubble pool.
+	 * @param world - the world (it knows the pool).
+	 * @param capacity - the most bubbles that can float at once (extra ones just don't appear).
+	 */
+	public BubbleSystem(WorldBackend world, int capacity) {
+		this.pool = WorldHooks.of(world).poolFor(Bubble.class);
+		this.capacity = capacity;
+		this.live = new Bubble[Math.min(capacity, 64)];
+	}
+
+	/**
+	 * Let a bubble go from the middle of a tile.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the bubble, or null if there are too many already.
+	 */
+	public Bubble emit(int x, int y) {
+		if (size == live.length) {
+			if (size == capacity) {
+				return null;
+			}
+			live = Arrays.copyOf(live, Math.min(capacity, size * 2));
+		}
+		Bubble b = pool.take();
+		b.setPosition(x, y);
+		b.offsetX = (rand.nextDouble() - 0.5) * 0.5;
+		b.offsetY = 0;
+		b.speed = 0.5 + rand.nextDouble();
+		b.size = 0.15 + 0.2 * rand.nextDouble();
+		b.lifetime = 0.5 + rand.nextDouble();
+		live[size++] = b;
+		return b;
+	}
+
+	/**
+	 * Float every bubble up, and pop the ones that are done.
+	 * @param seconds - how much time passed.
+	 */
+	public void update(double seconds) {
+		for (int i = 0; i < size;) {
+			Bubble b = live[i];
+			b.age += seconds;
+			if (b.age >= b.lifetime) {
+				// Pop: the last bubble takes this spot, so don't move on to i+1 yet.
+				live[i] = live[--size];
+				live[size] = null;
+				pool.give(b);
+				continue;
+			}
+			b.offsetY -= b.speed * seconds;
+			i++;
+		}
+	}
+
+	/**
+	 * How many bubbles are floating?
+	 * @return the count.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Draw every bubble.
+	 * @param g - graphics already moved so (0,0) is the top-left of the grid.
+	 * @param tw - how wide a tile is (pixels).
+	 * @param th - how tall a tile is (pixels).
+	 */
+	public void draw(Graphics2D g, int tw, int th) {
+		for (int i = 0; i < size; i++) {
+			Bubble b = live[i];
+			Graphics2D forB = (Graphics2D) g.create();
+			forB.translate((b.getX() + 0.5 + b.offsetX) * tw, (b.getY() + 0.5 + b.offsetY) * th);
+			forB.scale(tw, th);
+			b.draw(forB);
+			forB.dispose();
+		}
+	}
+}
@@ -0,0 +1,572 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A CellIndex remembers which WorldObjects are in each cell of the grid, so "what's at (x,y)?" doesn't
+ * need to look at every object in the World.
+ *
+ * Objects following a leader (see {@link FollowChain}) are not stored here one by one, because they all move
+ * whenever the leader does. Instead each cell remembers whose lines pass through it, and how many followers of each
+ * are there. A leader's step only changes two cells (the one it left and the end of its line), and "who is at
+ * (x,y)?" only has to walk the lines of the leaders listed there.
+ *
+ * We also keep one bit per cell saying "something is here", packed 64 cells to a long, so a search over a big
+ * rectangle can skip empty stretches of a row 64 cells at a time.
+ *
+ * The same way, every page keeps a few {@link Layer}s of bits ("bitboards"): where the Rocks and Snails are, where
+ * the Fish are, and so on. With those, {@link World#canSwim} is a couple of bit tests, and
+ * {@link World#legalMoves} can check 64 cells with a few shifts and ANDs.
+ *
+ * Cells are stored in 64x64 pages (the same ones {@link IntGrid} uses) that only exist once something has been
+ * there, so a huge, mostly-empty world doesn't cost memory for every cell. Unless the world is gigantic, the pages
+ * sit in a flat table, so finding one is just arithmetic (no boxed keys or hashing on every add, find or move).
+ */
+public class CellIndex {
+	/**
+	 * The kinds of bitboard we keep: one bit per cell, set if that kind of thing is there.
+	 */
+	public enum Layer {
+		/**
+		 * Rocks and Snails: nobody can swim here.
+		 */
+		BLOCKER,
+		/**
+		 * Fish (players, missing fish and followers): only the player can swim here.
+		 */
+		FISH,
+		/**
+		 * The FishHome.
+		 */
+		HOME,
+		/**
+		 * Hearts.
+		 */
+		HEART
+	}
+
+	/**
+	 * The lines passing through one cell: each leader once, with how many of its followers are in the cell.
+	 */
+	private static class Passing {
+		/**
+		 * The leaders (each only once).
+		 */
+		final List<WorldObject> leaders = new ArrayList<>(2);
+		/**
+		 * How many followers of leaders.get(i) are here.
+		 */
+		int[] counts = new int[2];
+		/**
+		 * How many followers are here, all together.
+		 */
+		int total;
+
+		/**
+		 * Count a follower of this leader coming (+1) or going (-1).
+		 * @param leader - who the follower follows.
+		 * @param delta - +1 or -1.
+		 */
+		void count(WorldObject leader, int delta) {
+			int i = leaders.indexOf(leader);
+			if (i < 0) {
+				if (delta < 0) {
+					return;
+				}
+				i = leaders.size();
+				leaders.add(leader);
+				if (i == counts.length) {
+					counts = Arrays.copyOf(counts, 2 * i);
+				}
+				counts[i] = 0;
+			}
+			counts[i] += delta;
+			total += delta;
+			if (counts[i] == 0) {
+				// Keep the counts lined up with the leaders: the last one takes the empty spot.
+				int last = leaders.size() - 1;
+				leaders.set(i, leaders.get(last));
+				counts[i] = counts[last];
+				leaders.remove(last);
+			}
+		}
+	}
+
+	/**
+	 * Everything we know about one 64x64 page of cells.
+	 */
+	private static class Page {
+		/**
+		 * The objects in every cell of the page (null until something shows up there).
+		 */
+		final List<List<WorldObject>> cells;
+		/**
+		 * For every cell of the page, the leader of each follower in it (null until a follower shows up there).
+		 */
+		final List<Passing> followers;
+		/**
+		 * One long per row of the page: is anything (or any follower) in that cell?
+		 */
+		final long[] occupied;
+		/**
+		 * One long per row of the page for each {@link Layer} (indexed by ordinal, then row).
+		 */
+		final long[][] layers;
+
+		Page() {
+			int area = IntGrid.PAGE_SIZE * IntGrid.PAGE_SIZE;
+			cells = new ArrayList<>(Collections.<List<WorldObject>>nCopies(area, null));
+			followers = new ArrayList<>(Collections.<Passing>nCopies(area, null));
+			occupied = new long[IntGrid.PAGE_SIZE];
+			layers = new long[Layer.values().length][IntGrid.PAGE_SIZE];
+		}
+	}
+
+	/**
+	 * The size of the grid (x-tiles).
+	 */
+	private final int width;
+	/**
+	 * The size of the grid (y-tiles).
+	 */
+	private final int height;
+	/**
+	 * The most pages we'll make a flat {@link #table} for (4 bytes or so each); bigger worlds use {@link #pages}.
+	 */
+	private static final int MAX_TABLE = 1 << 20;
+	/**
+	 * How many pages across the world is.
+	 */
+	private final int pagesAcross;
+	/**
+	 * The pages we have so far, at (y / 64) * pagesAcross + (x / 64), or null if the world is too big for a table.
+	 * (Atomic, since players moving at the same time may each need a new page; see {@link World#movePlayer}.)
+	 */
+	private final AtomicReferenceArray<Page> table;
+	/**
+	 * The pages we have so far, by {@link IntGrid#pageKey}, for worlds too big for {@link #table} (null otherwise).
+	 */
+	private final Map<Long, Page> pages;
+	/**
+	 * Changes are remembered for 16x16 tiles (pages are too big: in a busy world every page changes every step).
+	 */
+	static final int TILE_BITS = 4;
+	/**
+	 * Tiles that changed since the last {@link #drainChanged}, by {@link World#chunkKey} of the tile
+	 * (null until {@link #trackChanges}).
+	 */
+	private Set<Long> changed;
+	/**
+	 * Objects that wandered off the grid (setPosition ignores the rules, so it can happen).
+	 */
+	private final List<WorldObject> outside;
+
+	/**
+	 * Make an empty index.
+	 * @param width - the width of the world.
+	 * @param height - the height of the world.
+	 */
+	public CellIndex(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.pagesAcross = (int) (((long) width + IntGrid.PAGE_SIZE - 1) >> IntGrid.PAGE_BITS);
+		long pagesDown = ((long) height + IntGrid.PAGE_SIZE - 1) >> IntGrid.PAGE_BITS;
+		if ((long) pagesAcross * pagesDown <= MAX_TABLE) {
+			this.table = new AtomicReferenceArray<>((int) (pagesAcross * pagesDown));
+			this.pages = null;
+		} else {
+			this.table = null;
+			this.pages = new ConcurrentHashMap<>();
+		}
+		this.outside = new ArrayList<>();
+	}
+
+	/**
+	 * Is this point on the grid?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if it's inside the world.
+	 */
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * Find the page for a cell.
+	 * @param x - the tile-x (on the grid).
+	 * @param y - the tile-y (on the grid).
+	 * @param create - make the page if it doesn't exist yet?
+	 * @return the page (or null).
+	 */
+	private Page page(int x, int y, boolean create) {
+		if (table != null) {
+			int i = (y >> IntGrid.PAGE_BITS) * pagesAcross + (x >> IntGrid.PAGE_BITS);
+			Page p = table.get(i);
+			if (p == null && create) {
+				// If another thread beat us to it, use theirs.
+				table.compareAndSet(i, null, new Page());
+				p = table.get(i);
+			}
+			return p;
+		}
+		Long key = IntGrid.pageKey(x, y);
+		Page p = pages.get(key);
+		if (p == null && create) {
+			p = pages.computeIfAbsent(key, k -> new Page());
+		}
+		return p;
+	}
+
+	/**
+	 * The {@link IntGrid#pageKey} of every page we have so far.
+	 * @return the keys.
+	 */
+	private List<Long> pageKeys() {
+		if (table == null) {
+			return new ArrayList<>(pages.keySet());
+		}
+		List<Long> keys = new ArrayList<>();
+		for (int i = 0; i < table.length(); i++) {
+			if (table.get(i) != null) {
+				int px = i % pagesAcross;
+				int py = i / pagesAcross;
+				keys.add(IntGrid.pageKey(px << IntGrid.PAGE_BITS, py << IntGrid.PAGE_BITS));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Find the list for a cell.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param create - make the list if it doesn't exist yet?
+	 * @return the list (or null if there isn't one and create is false).
+	 */
+	private List<WorldObject> bucket(int x, int y, boolean create) {
+		if (!inBounds(x, y)) {
+			return outside;
+		}
+		Page p = page(x, y, create);
+		if (p == null) {
+			return null;
+		}
+		int cell = IntGrid.offset(x, y);
+		List<WorldObject> here = p.cells.get(cell);
+		if (here == null && create) {
+			here = new ArrayList<>(2);
+			p.cells.set(cell, here);
+		}
+		return here;
+	}
+
+	/**
+	 * Find the lines passing through a cell.
+	 * @param x - the tile-x (on the grid).
+	 * @param y - the tile-y (on the grid).
+	 * @param create - make them if they don't exist yet?
+	 * @return the lines (or null if there aren't any and create is false).
+	 */
+	private Passing passing(int x, int y, boolean create) {
+		Page p = page(x, y, create);
+		if (p == null) {
+			return null;
+		}
+		int cell = IntGrid.offset(x, y);
+		Passing here = p.followers.get(cell);
+		if (here == null && create) {
+			here = new Passing();
+			p.followers.set(cell, here);
+		}
+		return here;
+	}
+
+	/**
+	 * Make the lists for every cell now, so nothing moving around has to make one later. Only do this for small
+	 * worlds: it costs a few objects per cell.
+	 */
+	public void prepareAll() {
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				bucket(x, y, true);
+				passing(x, y, true);
+			}
+		}
+	}
+
+	/**
+	 * Put an object into a cell.
+	 * @param item - the object.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	public void add(WorldObject item, int x, int y) {
+		bucket(x, y, true).add(item);
+		updateOccupied(x, y);
+		touch(x, y);
+	}
+
+	/**
+	 * Take an object out of a cell.
+	 * @param item - the object.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	public void remove(WorldObject item, int x, int y) {
+		List<WorldObject> here = bucket(x, y, false);
+		if (here != null) {
+			here.remove(item);
+			updateOccupied(x, y);
+			touch(x, y);
+		}
+	}
+	
+	/**
+	 * Start remembering which tiles change (every tile of every page we have so far counts as changed).
+	 */
+	public void trackChanges() {
+		if (changed == null) {
+			changed = ConcurrentHashMap.newKeySet();
+			int tilesPerPage = IntGrid.PAGE_SIZE >> TILE_BITS;
+			for (long key : pageKeys()) {
+				int tx = (int) key * tilesPerPage;
+				int ty = (int) (key >>> 32) * tilesPerPage;
+				for (int y = ty; y < ty + tilesPerPage; y++) {
+					for (int x = tx; x < tx + tilesPerPage; x++) {
+						changed.add(World.chunkKey(x, y));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Something in this cell changed (if we're keeping track).
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	public void touch(int x, int y) {
+		if (changed != null && inBounds(x, y)) {
+			changed.add(World.chunkKey(x >> TILE_BITS, y >> TILE_BITS));
+		}
+	}
+	
+	/**
+	 * Which tiles changed since last time we asked? (Forgets them, so each change is only reported once.)
+	 * @param output - where to put the tile keys (see {@link World#chunkKey}).
+	 */
+	public void drainChanged(Collection<Long> output) {
+		if (changed == null) {
+			return;
+		}
+		for (Iterator<Long> it = changed.iterator(); it.hasNext();) {
+			output.add(it.next());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Move an object from one cell to another.
+	 * @param item - the object.
+	 * @param oldX - where it was (x).
+	 * @param oldY - where it was (y).
+	 * @param x - where it is now (x).
+	 * @param y - where it is now (y).
+	 */
+	public void move(WorldObject item, int oldX, int oldY, int x, int y) {
+		remove(item, oldX, oldY);
+		add(item, x, y);
+	}
+
+	/**
+	 * Which (non-following) objects are in this cell? Objects off the grid are all lumped together,
+	 * so check their positions if you ask about a point off the grid.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return a list you shouldn't modify (maybe empty).
+	 */
+	public List<WorldObject> at(int x, int y) {
+		List<WorldObject> here = bucket(x, y, false);
+		if (here == null) {
+			return Collections.emptyList();
+		}
+		return here;
+	}
+
+	/**
+	 * A follower showed up in (or left) a cell.
+	 * @param leader - who the follower is following.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param delta - +1 for arriving, -1 for leaving.
+	 */
+	public void countFollower(WorldObject leader, int x, int y, int delta) {
+		if (!inBounds(x, y)) {
+			return;
+		}
+		Passing here = passing(x, y, delta > 0);
+		if (here != null) {
+			here.count(leader, delta);
+		}
+		updateOccupied(x, y);
+	}
+	
+	/**
+	 * Set or clear the "something is here" bit (and the {@link Layer} bits) for a cell.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	private void updateOccupied(int x, int y) {
+		if (!inBounds(x, y)) {
+			return;
+		}
+		Page p = page(x, y, false);
+		if (p == null) {
+			return;
+		}
+		int cell = IntGrid.offset(x, y);
+		List<WorldObject> here = p.cells.get(cell);
+		Passing lines = p.followers.get(cell);
+		boolean following = lines != null && lines.total > 0;
+		boolean full = following || (here != null && !here.isEmpty());
+		int row = y & (IntGrid.PAGE_SIZE - 1);
+		long bit = 1L << (x & 63);
+		if (full) {
+			p.occupied[row] |= bit;
+		} else {
+			p.occupied[row] &= ~bit;
+		}
+
+		// Work the layers out again from scratch; there's hardly ever more than one thing in a cell.
+		boolean blocker = false, fish = following, home = false, heart = false;
+		if (here != null) {
+			for (int i = 0; i < here.size(); i++) {
+				WorldObject it = here.get(i);
+				blocker |= it instanceof Rock || it instanceof Snail;
+				fish |= it instanceof Fish;
+				home |= it instanceof FishHome;
+				heart |= it instanceof Heart;
+			}
+		}
+		setBit(p.layers[Layer.BLOCKER.ordinal()], row, bit, blocker);
+		setBit(p.layers[Layer.FISH.ordinal()], row, bit, fish);
+		setBit(p.layers[Layer.HOME.ordinal()], row, bit, home);
+		setBit(p.layers[Layer.HEART.ordinal()], row, bit, heart);
+	}
+
+	/**
+	 * Set or clear one bit of a row.
+	 * @param rows - the rows of a page.
+	 * @param row - which row.
+	 * @param bit - the bit (already shifted into place).
+	 * @param on - set it (true) or clear it (false)?
+	 */
+	private static void setBit(long[] rows, int row, long bit, boolean on) {
+		if (on) {
+			rows[row] |= bit;
+		} else {
+			rows[row] &= ~bit;
+		}
+	}
+
+	/**
+	 * Get 64 cells of a layer at once: bit i is the cell (64 * word + i, y).
+	 * @param layer - which bitboard.
+	 * @param y - the row.
+	 * @param word - which 64 cells of the row (x / 64).
+	 * @return the bits (0 off the grid, or where nothing has ever been).
+	 */
+	public long layerWord(Layer layer, int y, int word) {
+		if (y < 0 || y >= height || word < 0 || word > (width - 1) >>> 6) {
+			return 0;
+		}
+		// Pages are exactly 64 wide, so every word of a row lives in its own page.
+		Page p = page(word << 6, y, false);
+		return p == null ? 0 : p.layers[layer.ordinal()][y & (IntGrid.PAGE_SIZE - 1)];
+	}
+
+	/**
+	 * Is this kind of thing in this cell?
+	 * @param layer - which bitboard.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if its bit is set (always false off the grid).
+	 */
+	public boolean has(Layer layer, int x, int y) {
+		return x >= 0 && (layerWord(layer, y, x >>> 6) & (1L << (x & 63))) != 0;
+	}
+
+	/**
+	 * Find the next cell in a row that has something in it.
+	 * @param y - the row.
+	 * @param fromX - the first x to look at.
+	 * @param toX - the last x to look at.
+	 * @return the x of the next occupied cell, or -1 if there isn't one.
+	 */
+	public int nextOccupied(int y, int fromX, int toX) {
+		if (y < 0 || y >= height) {
+			return -1;
+		}
+		fromX = Math.max(fromX, 0);
+		toX = Math.min(toX, width - 1);
+		if (fromX > toX) {
+			return -1;
+		}
+		int row = y & (IntGrid.PAGE_SIZE - 1);
+		int w = fromX >>> 6;
+		int lastWord = toX >>> 6;
+		// Ignore the bits before fromX in the first word.
+		long mask = -1L << (fromX & 63);
+		for (; w <= lastWord; w++) {
+			// Pages are exactly 64 wide, so every word of a row lives in its own page (missing pages are empty).
+			Page p = page(w << 6, y, false);
+			long bits = p == null ? 0 : p.occupied[row] & mask;
+			if (bits != 0) {
+				int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+				return x <= toX ? x : -1;
+			}
+			mask = -1L;
+		}
+		return -1;
+	}
+
+	/**
+	 * How many followers are in this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the count (always 0 off the grid).
+	 */
+	public int followersAt(int x, int y) {
+		if (!inBounds(x, y)) {
+			return 0;
+		}
+		Passing here = passing(x, y, false);
+		return here == null ? 0 : here.total;
+	}
+
+	/**
+	 * Whose lines pass through this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the leaders with followers here (each only once); don't modify it.
+	 */
+	public List<WorldObject> leadersAt(int x, int y) {
+		if (!inBounds(x, y)) {
+			return Collections.emptyList();
+		}
+		Passing here = passing(x, y, false);
+		if (here == null) {
+			return Collections.emptyList();
+		}
+		return here.leaders;
+	}
+}
@@ -0,0 +1,310 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A ChunkManager lets a FishGame have a world that is (nearly) as big as you like.
+ *
+ * The world is split into square chunks (see {@link World#enableChunks}). A chunk is only made when a player
+ * swims near it, and what goes in it (rocks, falling rocks, fish, hearts) comes from a Random seeded by the game's
+ * seed and the chunk's position, so the same seed always makes the same ocean.
+ *
+ * Chunks far from every player are put away: their objects leave the World and get squashed into a few ints each.
+ * When a player comes back, the chunk is rebuilt from those ints (not generated again), so nothing is lost.
+ */
+public class ChunkManager {
+	/**
+	 * How many tiles on a side is a chunk?
+	 */
+	public static final int CHUNK_SIZE = 16;
+	/**
+	 * Chunks this close to a player (in chunks, up/down/left/right or diagonal) get loaded.
+	 */
+	public static final int LOAD_RADIUS = 2;
+	/**
+	 * Chunks further than this from every player get put away (bigger than LOAD_RADIUS so we don't flicker).
+	 */
+	public static final int EVICT_RADIUS = 4;
+	/**
+	 * Chance of a rock in any cell of a new chunk (about NUM_ROCKS per 16x16 chunk).
+	 */
+	public static final double ROCK_CHANCE = 10.0 / 256.0;
+	/**
+	 * Chance of a missing fish in any cell of a new chunk.
+	 */
+	public static final double FISH_CHANCE = 10.0 / 256.0;
+	/**
+	 * Chance of a heart in any cell of a new chunk.
+	 */
+	public static final double HEART_CHANCE = 1.0 / 256.0;
+
+	/**
+	 * The game we fill in.
+	 */
+	private final FishGame game;
+	/**
+	 * The world we fill in.
+	 */
+	private final World world;
+	/**
+	 * Where every chunk's Random comes from.
+	 */
+	private final long seed;
+	/**
+	 * Chunks that were loaded and then put away, by {@link World#chunkKey}.
+	 */
+	private final Map<Long, int[]> stored;
+	/**
+	 * Chunks that never get put away (like the one with FishHome in it).
+	 */
+	private final Set<Long> pinned;
+	/**
+	 * Every chunk that is loaded now, as {cx, cy}.
+	 */
+	private final List<int[]> loaded;
+	/**
+	 * How many missing fish are in stored chunks?
+	 */
+	private int storedFish;
+
+	/**
+	 * Get ready to fill in a game's world. (The world needs to have chunks enabled already.)
+	 * @param game - the game to add missing fish to.
+	 * @param seed - the same seed always makes the same chunks.
+	 */
+	public ChunkManager(FishGame game, long seed) {
+		this.game = game;
+		this.world = game.indexedWorld();
+		this.seed = seed;
+		this.stored = new HashMap<>();
+		this.pinned = new HashSet<>();
+		this.loaded = new ArrayList<>();
+	}
+
+	/**
+	 * Keep the chunk under this point loaded forever (FishHome lives here, so the path home always starts somewhere).
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	public void pin(int x, int y) {
+		int cx = Math.floorDiv(x, CHUNK_SIZE);
+		int cy = Math.floorDiv(y, CHUNK_SIZE);
+		pinned.add(World.chunkKey(cx, cy));
+		load(cx, cy);
+	}
+
+	/**
+	 * How many missing fish are waiting in chunks that were put away?
+	 * @return the count.
+	 */
+	public int storedFish() {
+		return storedFish;
+	}
+
+	/**
+	 * A copy of the put-away chunks (the int[]s inside never change once stored, so they're shared, not copied).
+	 * @return chunk key to records.
+	 */
+	Map<Long, int[]> storedChunks() {
+		return new HashMap<>(stored);
+	}
+
+	/**
+	 * How many chunks are loaded right now?
+	 * @return the count.
+	 */
+	public int loadedChunks() {
+		return loaded.size();
+	}
+
+	/**
+	 * Load the chunks near every player and put away the ones far from all of them.
+	 * @param players - who the world should be built around.
+	 */
+	public void update(Collection<? extends WorldObject> players) {
+		for (WorldObject p : players) {
+			int pcx = Math.floorDiv(p.getX(), CHUNK_SIZE);
+			int pcy = Math.floorDiv(p.getY(), CHUNK_SIZE);
+			for (int cy = pcy - LOAD_RADIUS; cy <= pcy + LOAD_RADIUS; cy++) {
+				for (int cx = pcx - LOAD_RADIUS; cx <= pcx + LOAD_RADIUS; cx++) {
+					load(cx, cy);
+				}
+			}
+		}
+
+		List<int[]> far = new ArrayList<>();
+		for (int[] chunk : loaded) {
+			if (pinned.contains(World.chunkKey(chunk[0], chunk[1]))) {
+				continue;
+			}
+			boolean near = false;
+			for (WorldObject p : players) {
+				int dx = Math.abs(Math.floorDiv(p.getX(), CHUNK_SIZE) - chunk[0]);
+				int dy = Math.abs(Math.floorDiv(p.getY(), CHUNK_SIZE) - chunk[1]);
+				if (Math.max(dx, dy) <= EVICT_RADIUS) {
+					near = true;
+					break;
+				}
+			}
+			if (!near) {
+				far.add(chunk);
+			}
+		}
+		for (int[] chunk : far) {
+			evict(chunk[0], chunk[1]);
+		}
+	}
+
+	/**
+	 * Make sure a chunk is loaded: rebuild it if it was put away, or generate it if it's brand new.
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 */
+	private void load(int cx, int cy) {
+		// Chunks past the edge of the world don't exist.
+		if (cx < 0 || cy < 0 || (long) cx * CHUNK_SIZE >= world.getWidth() || (long) cy * CHUNK_SIZE >= world.getHeight()) {
+			return;
+		}
+		if (world.isChunkLoaded(cx, cy)) {
+			return;
+		}
+		world.loadChunk(cx, cy);
+		loaded.add(new int[] { cx, cy });
+
+		int[] saved = stored.remove(World.chunkKey(cx, cy));
+		if (saved != null) {
+			restore(saved);
+		} else {
+			generate(cx, cy);
+		}
+	}
+
+	/**
+	 * Mix the game's seed with a chunk's position, so every chunk gets its own (repeatable) random numbers.
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 * @return a seed for this chunk.
+	 */
+	private long chunkSeed(int cx, int cy) {
+		long z = seed + World.chunkKey(cx, cy) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Fill a brand-new chunk with rocks, fish and hearts.
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 */
+	private void generate(int cx, int cy) {
+		Random rand = new Random(chunkSeed(cx, cy));
+		int x0 = cx * CHUNK_SIZE;
+		int y0 = cy * CHUNK_SIZE;
+		for (int y = y0; y < Math.min(y0 + CHUNK_SIZE, world.getHeight()); y++) {
+			for (int x = x0; x < Math.min(x0 + CHUNK_SIZE, world.getWidth()); x++) {
+				// Roll the dice for every cell, even busy ones, so the rest of the chunk doesn't change.
+				double roll = rand.nextDouble();
+				int extra = rand.nextInt(1 << 16);
+				if (!world.isEmpty(x, y)) {
+					continue;
+				}
+				if (roll < ROCK_CHANCE) {
+					// 50% chance of falling
+					place((extra & 1) == 0 ? ObjectRecord.FALLING_ROCK : ObjectRecord.ROCK, x, y, (extra >> 1) % Rock.ROCK_COLORS.length);
+				} else if (roll < ROCK_CHANCE + FISH_CHANCE) {
+					// Any color but the player's; 20% probability of being fastScared, like always.
+					int color = 1 + (extra & 0xff) % (Fish.COLORS.length - 1);
+					boolean fastScared = (extra >> 8) % 5 == 0;
+					place(ObjectRecord.FISH, x, y, color | (fastScared ? 1 << 8 : 0));
+				} else if (roll < ROCK_CHANCE + FISH_CHANCE + HEART_CHANCE) {
+					place(ObjectRecord.HEART, x, y, extra);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put a chunk back the way it was when we put it away.
+	 * @param saved - the records from {@link #evict}.
+	 */
+	private void restore(int[] saved) {
+		for (int i = 0; i < saved.length; i += ObjectRecord.SIZE) {
+			if (saved[i] == ObjectRecord.FISH) {
+				storedFish--;
+			}
+			place(saved[i], saved[i + 1], saved[i + 2], saved[i + 3]);
+		}
+	}
+
+	/**
+	 * Make one object from a record and put it in the world.
+	 * @param kind - see {@link ObjectRecord}.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param extra - see {@link ObjectRecord#extraOf}.
+	 */
+	private void place(int kind, int x, int y, int extra) {
+		WorldObject item = ObjectRecord.make(world, kind, extra);
+		item.setPosition(x, y);
+		world.register(item);
+		if (item instanceof Fish) {
+			((Fish) item).status = Fish.Status.MISSING;
+			game.missing.add((Fish) item);
+		}
+	}
+
+	/**
+	 * Put a chunk away: its objects leave the world, and we keep a few ints for each.
+	 * Players, FishHomes and fish following a player stay put.
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 */
+	private void evict(int cx, int cy) {
+		int x0 = cx * CHUNK_SIZE;
+		int y0 = cy * CHUNK_SIZE;
+		List<WorldObject> leaving = new ArrayList<>();
+		int[] saved = new int[ObjectRecord.SIZE * 8];
+		int n = 0;
+		for (WorldObject item : world.findInRect(x0, y0, x0 + CHUNK_SIZE - 1, y0 + CHUNK_SIZE - 1, WorldObject.class)) {
+			int kind = ObjectRecord.kindOf(item);
+			if (kind < 0 || (kind == ObjectRecord.FISH && ((Fish) item).status != Fish.Status.MISSING)) {
+				continue;
+			}
+			if (kind == ObjectRecord.FISH) {
+				game.missing.remove((Fish) item);
+				storedFish++;
+			}
+			if (n + ObjectRecord.SIZE > saved.length) {
+				saved = Arrays.copyOf(saved, saved.length * 2);
+			}
+			saved[n++] = kind;
+			saved[n++] = item.getX();
+			saved[n++] = item.getY();
+			saved[n++] = ObjectRecord.extraOf(item);
+			if (item instanceof Heart) {
+				// Hearts go back in the pool.
+				world.despawn(item);
+			} else {
+				leaving.add(item);
+			}
+		}
+		world.removeAll(leaving);
+		world.unloadChunk(cx, cy);
+		stored.put(World.chunkKey(cx, cy), Arrays.copyOf(saved, n));
+		for (int i = 0; i < loaded.size(); i++) {
+			if (loaded.get(i)[0] == cx && loaded.get(i)[1] == cy) {
+				loaded.remove(i);
+				break;
+			}
+		}
+	}
+}
@@ -7,11 +7,20 @@ public class FallingRock extends Rock{
 	 * and all WorldObjects know this.
 	 * @param world The world itself.
 	 */
-	public FallingRock(World world) {
+	public FallingRock(WorldBackend world) {
 		// calls rock constructor
 		super(world);
 	}
 	
+	/**
+	 * A FallingRock of a color we already picked (this doesn't use the world's random numbers).
+	 * @param world The world itself.
+	 * @param color An index into {@link Rock#ROCK_COLORS}.
+	 */
+	public FallingRock(WorldBackend world, int color) {
+		super(world, color);
+	}
+	
 	/**
 	 * Provide step behavior for falling rocks!
 	 */
@@ -41,14 +41,37 @@ public class Fish extends WorldObject {
 	 */
 	int points;
 	/**
-	 * How bored the fish is (when following player)
+	 * Which step was this fish last found on?
 	 */
-	int boredom;
+	int foundAt;
+	/**
+	 * Which player found this fish last? (It only means something while the fish is FOUND.)
+	 */
+	Player foundBy;
 	/**
 	 * Whether or not this is the player;
 	 */
 	boolean player = false;
 	
+	/**
+	 * Which group a fish belongs to in the game.
+	 */
+	public enum Status {
+		NONE, MISSING, FOUND, SAFE
+	}
+	/**
+	 * Which group is this fish in right now? (FishGame keeps this up to date.)
+	 */
+	Status status = Status.NONE;
+	/**
+	 * Which FishList is this fish in? (null if none; FishList keeps this up to date.)
+	 */
+	FishList list;
+	/**
+	 * Where in its FishList is this fish? (FishList keeps this up to date.)
+	 */
+	int listIndex = -1;
+	
 	/**
 	 * Called only on the Fish that is the player!
 	 */
@@ -62,10 +85,27 @@ public class Fish extends WorldObject {
 	 * @param color Color by number.
 	 * @param world The world itself.
 	 */
-	public Fish(int color, World world) {
+	public Fish(int color, WorldBackend world) {
+		this(color, false, world);
+		
+		// 20% probability of being fastScared (harder to catch)
+		if (rand.nextDouble() < 0.2) {
+			this.fastScared = true;
+		} else {
+			this.fastScared = false;
+		}
+		
+	}
+	
+	/**
+	 * A Fish whose speed we already picked (this doesn't use the world's random numbers).
+	 * @param color Color by number.
+	 * @param fastScared Does it run away fast (harder to catch)?
+	 * @param world The world itself.
+	 */
+	public Fish(int color, boolean fastScared, WorldBackend world) {
 		super(world);
 		this.color = color;
-		this.boredom = 0;
 		// assign points based on color
 		if (color < 4) {
 			// warm colors worth 15
@@ -77,14 +117,7 @@ public class Fish extends WorldObject {
 			// grays worth 7
 			this.points = 7;
 		}
-		
-		// 20% probability of being fastScared (harder to catch)
-		if (rand.nextDouble() < 0.2) {
-			this.fastScared = true;
-		} else {
-			this.fastScared = false;
-		}
-		
+		this.fastScared = fastScared;
 	}
 	
 	/**
@@ -101,15 +134,21 @@ public class Fish extends WorldObject {
 	private int dt = 0;
 	
 	/**
-	 * Go ahead and ignore this method if you're not into graphics.
 	 * We use "dt" as a trick to make the fish change directions every second or so; this makes them feel a little more alive.
 	 */
 	@Override
-	public void draw(Graphics2D g) {
+	public void animate() {
 		dt += 1;
 		if (dt > 100) {
 			dt = 0;
 		}
+	}
+	
+	/**
+	 * Go ahead and ignore this method if you're not into graphics.
+	 */
+	@Override
+	public void draw(Graphics2D g) {
 		Shape circle = new Ellipse2D.Double(-0.6, -0.6, 1.2, 1.2);
 		Shape body = new Ellipse2D.Double(-.40, -.2, .8, .4);
 		Shape tail = new Ellipse2D.Double(+.2, -.3, .2, .6);
@@ -0,0 +1,430 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * FishEnvs runs many FishGames side by side for training bots ("environments", like in a gym).
+ * Every step gets one action per game, steps them all, and writes what each player can see into one big
+ * FloatBuffer that was made ahead of time, so nothing new is made for the observations.
+ *
+ * An observation is {@link #CHANNELS} squares of (2 * radius + 1) x (2 * radius + 1) cells around the player,
+ * one per {@link CellIndex.Layer} (1 if that kind of thing is there; off the grid counts as a rock), then the score,
+ * how many fish are missing and how many are following the player. Game i's observation starts at
+ * {@code i * observationSize()}.
+ *
+ * Actions are {@link #SKIP}, {@link #UP}, {@link #DOWN}, {@link #LEFT}, {@link #RIGHT}, or {@link #CLICK} plus the
+ * index of a cell in the square (row * side + column), which clears the rocks there like a mouse click.
+ *
+ * Games are split between threads, and a game that ends starts over right away (its observation is the new game's).
+ * Once a game has warmed up, stepping it makes no garbage at all: the game keeps scratch lists and pools, and
+ * every new game gets enough Hearts up front for a whole game (FishEnvsTest checks this).
+ *
+ * Run it with: {@code java edu.smith.cs.csc212.fishgrid.FishEnvs [games] [steps] [threads] [size]} to see how fast it goes.
+ */
+public class FishEnvs {
+	/**
+	 * Actions.
+	 */
+	public static final int SKIP = 0, UP = 1, DOWN = 2, LEFT = 3, RIGHT = 4, CLICK = 5;
+	/**
+	 * The layers we look at, in order. (values() makes a new array every time it's called.)
+	 */
+	private static final CellIndex.Layer[] LAYERS = CellIndex.Layer.values();
+	/**
+	 * How many squares there are in an observation (one per layer).
+	 */
+	public static final int CHANNELS = LAYERS.length;
+	/**
+	 * How many numbers come after the squares (score, missing, following).
+	 */
+	public static final int SCALARS = 3;
+
+	/**
+	 * The games.
+	 */
+	private final FishGame[] games;
+	/**
+	 * Where each game's next seed comes from.
+	 */
+	private final Random[] seeds;
+	/**
+	 * The score of each game before this step (for rewards).
+	 */
+	private final int[] lastScore;
+	/**
+	 * How big the worlds are.
+	 */
+	private final int size;
+	/**
+	 * How far around the player we look.
+	 */
+	private final int radius;
+	/**
+	 * How wide the square around the player is (2 * radius + 1).
+	 */
+	private final int side;
+	/**
+	 * A game is over after this many steps, even if it isn't won.
+	 */
+	private final int maxSteps;
+	/**
+	 * Every observation, one after the other.
+	 */
+	private final FloatBuffer observations;
+	/**
+	 * How much each game's score went up this step.
+	 */
+	private final float[] rewards;
+	/**
+	 * Did each game end this step (and start over)?
+	 */
+	private final boolean[] dones;
+	/**
+	 * The threads that step games.
+	 */
+	private final ExecutorService workers;
+	/**
+	 * One job per thread, each stepping a slice of the games (made once, used every step).
+	 */
+	private final List<Callable<Void>> slices;
+	/**
+	 * One scratch list per game, for what's under a click.
+	 */
+	private final List<ArrayList<WorldObject>> clicked;
+	/**
+	 * The actions for the step that's going on.
+	 */
+	private int[] actions;
+
+	/**
+	 * Make a lot of games, with observations in a new direct ByteBuffer.
+	 * @param count - how many games.
+	 * @param size - how big (on a side) each world is.
+	 * @param radius - how far around the player to look (at most 31).
+	 * @param seed - which games to play.
+	 * @param threads - how many threads to step them with.
+	 */
+	public FishEnvs(int count, int size, int radius, long seed, int threads) {
+		this(count, size, radius, seed, threads, ByteBuffer.allocateDirect(4 * count * observationSize(radius))
+				.order(ByteOrder.nativeOrder()).asFloatBuffer());
+	}
+
+	/**
+	 * Make a lot of games, with observations wherever you like: {@code FloatBuffer.wrap(floats)} for a float[],
+	 * or a direct ByteBuffer's asFloatBuffer() to share them with native code.
+	 * @param count - how many games.
+	 * @param size - how big (on a side) each world is.
+	 * @param radius - how far around the player to look (at most 31).
+	 * @param seed - which games to play.
+	 * @param threads - how many threads to step them with.
+	 * @param observations - room for count * observationSize(radius) floats.
+	 */
+	public FishEnvs(int count, int size, int radius, long seed, int threads, FloatBuffer observations) {
+		if (radius < 0 || radius > 31) {
+			throw new IllegalArgumentException("The radius has to fit in a long (0 to 31): " + radius);
+		}
+		if (observations.capacity() < count * observationSize(radius)) {
+			throw new IllegalArgumentException("Need room for " + count * observationSize(radius) + " floats, not "
+					+ observations.capacity());
+		}
+		this.games = new FishGame[count];
+		this.seeds = new Random[count];
+		this.lastScore = new int[count];
+		this.size = size;
+		this.radius = radius;
+		this.side = 2 * radius + 1;
+		this.maxSteps = BatchRunner.MAX_STEPS;
+		this.observations = observations;
+		this.rewards = new float[count];
+		this.dones = new boolean[count];
+		this.clicked = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			clicked.add(new ArrayList<>());
+		}
+
+		int slices = Math.max(1, Math.min(threads, count));
+		this.workers = Executors.newFixedThreadPool(slices);
+		this.slices = new ArrayList<>();
+		for (int s = 0; s < slices; s++) {
+			int from = count * s / slices;
+			int to = count * (s + 1) / slices;
+			this.slices.add(() -> {
+				for (int i = from; i < to; i++) {
+					stepGame(i, actions[i]);
+				}
+				return null;
+			});
+		}
+
+		for (int i = 0; i < count; i++) {
+			seeds[i] = new Random(seed + i);
+			startGame(i);
+		}
+	}
+
+	/**
+	 * How many floats is one observation?
+	 * @param radius - how far around the player we look.
+	 * @return CHANNELS squares of (2 * radius + 1)^2, plus SCALARS.
+	 */
+	public static int observationSize(int radius) {
+		int side = 2 * radius + 1;
+		return CHANNELS * side * side + SCALARS;
+	}
+
+	/**
+	 * @return how many floats one observation is.
+	 */
+	public int observationSize() {
+		return observationSize(radius);
+	}
+
+	/**
+	 * @return how many different actions there are (the moves, then one click per cell of the square).
+	 */
+	public int actionCount() {
+		return CLICK + side * side;
+	}
+
+	/**
+	 * @return how many games there are.
+	 */
+	public int size() {
+		return games.length;
+	}
+
+	/**
+	 * @return every observation (game i starts at i * observationSize()).
+	 */
+	public FloatBuffer getObservations() {
+		return observations;
+	}
+
+	/**
+	 * @return how much each game's score went up last step.
+	 */
+	public float[] getRewards() {
+		return rewards;
+	}
+
+	/**
+	 * @return which games ended last step (they've already started over).
+	 */
+	public boolean[] getDones() {
+		return dones;
+	}
+
+	/**
+	 * Look at one game (don't change it in the middle of a step!).
+	 * @param i - which game.
+	 * @return the game.
+	 */
+	public FishGame getGame(int i) {
+		return games[i];
+	}
+
+	/**
+	 * Step every game once.
+	 * @param actions - one action per game.
+	 * @throws InterruptedException if we're interrupted while the threads work.
+	 */
+	public void step(int[] actions) throws InterruptedException {
+		if (actions.length < games.length) {
+			throw new IllegalArgumentException("Need " + games.length + " actions, not " + actions.length);
+		}
+		this.actions = actions;
+		for (Future<Void> done : workers.invokeAll(slices)) {
+			try {
+				done.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("A game crashed", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Stop the threads.
+	 */
+	public void close() {
+		workers.shutdown();
+	}
+
+	/**
+	 * Start (or start over) one game.
+	 * @param i - which game.
+	 */
+	private void startGame(int i) {
+		World world = new World(size, size, new Random(seeds[i].nextLong()));
+		world.setVerbose(false);
+		world.prepareCells();
+		games[i] = new FishGame(world);
+		// Hearts pile up until they're collected; make them now rather than in the middle of a step.
+		int hearts = (int) (2 * FishGame.HEART_CHANCE * maxSteps) + 16;
+		world.poolFor(Heart.class).reserve(hearts);
+		games[i].reserve(world.viewItems().size() + hearts);
+		clicked.get(i).ensureCapacity(world.viewItems().size() + hearts);
+		lastScore[i] = 0;
+		observe(i);
+	}
+
+	/**
+	 * Do one game's action, step it, and write down what happened.
+	 * @param i - which game.
+	 * @param action - what its player does.
+	 */
+	void stepGame(int i, int action) {
+		FishGame game = games[i];
+		act(game, action, clicked.get(i));
+		game.step();
+		rewards[i] = game.score - lastScore[i];
+		lastScore[i] = game.score;
+		dones[i] = game.gameOver() || game.stepsTaken >= maxSteps;
+		if (dones[i]) {
+			startGame(i);
+		} else {
+			observe(i);
+		}
+	}
+
+	/**
+	 * Do an action in one game.
+	 * @param game - the game.
+	 * @param action - SKIP, UP, ..., or CLICK plus a cell of the square.
+	 * @param under - a scratch list for what's under a click.
+	 */
+	private void act(FishGame game, int action, List<WorldObject> under) {
+		Fish player = game.player;
+		switch (action) {
+		case SKIP:
+			break;
+		case UP:
+			player.moveUp();
+			break;
+		case DOWN:
+			player.moveDown();
+			break;
+		case LEFT:
+			player.moveLeft();
+			break;
+		case RIGHT:
+			player.moveRight();
+			break;
+		default:
+			int cell = action - CLICK;
+			if (cell < 0 || cell >= side * side) {
+				throw new IllegalArgumentException("There's no action " + action);
+			}
+			// Like FishGame.click, without the printing.
+			int x = player.getX() - radius + cell % side;
+			int y = player.getY() - radius + cell / side;
+			under.clear();
+			game.world.find(x, y, under);
+			for (int k = 0; k < under.size(); k++) {
+				if (under.get(k) instanceof Rock) {
+					under.get(k).remove();
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Write what one game's player can see into the observations.
+	 * @param i - which game.
+	 */
+	private void observe(int i) {
+		FishGame game = games[i];
+		World world = game.indexedWorld();
+		int x0 = game.player.getX() - radius;
+		int y0 = game.player.getY() - radius;
+		int at = i * observationSize();
+		// Which cells of a row of the square are on the grid?
+		long onGrid = 0;
+		for (int dx = 0; dx < side; dx++) {
+			int x = x0 + dx;
+			if (x >= 0 && x < world.getWidth()) {
+				onGrid |= 1L << dx;
+			}
+		}
+		for (CellIndex.Layer layer : LAYERS) {
+			for (int dy = 0; dy < side; dy++) {
+				int y = y0 + dy;
+				boolean rowOnGrid = y >= 0 && y < world.getHeight();
+				long bits = rowOnGrid ? window(world, layer, y, x0) : 0;
+				if (layer == CellIndex.Layer.BLOCKER) {
+					// Off the grid, nobody can swim: it's as good as a rock.
+					bits |= rowOnGrid ? ~onGrid : -1L;
+				}
+				for (int dx = 0; dx < side; dx++) {
+					observations.put(at++, (float) ((bits >>> dx) & 1));
+				}
+			}
+		}
+		observations.put(at++, game.score);
+		observations.put(at++, game.missing.size());
+		observations.put(at, game.found.size());
+	}
+
+	/**
+	 * Get 64 cells of a layer starting anywhere (not just at a multiple of 64).
+	 * @param world - the world.
+	 * @param layer - which bitboard.
+	 * @param y - the row.
+	 * @param x0 - the first cell (bit 0 of the answer); may be off the grid.
+	 * @return the bits.
+	 */
+	private static long window(World world, CellIndex.Layer layer, int y, int x0) {
+		// >> rounds down, even for cells left of the grid.
+		int word = x0 >> 6;
+		int shift = x0 & 63;
+		long bits = world.layerWord(layer, y, word) >>> shift;
+		if (shift != 0) {
+			bits |= world.layerWord(layer, y, word + 1) << (64 - shift);
+		}
+		return bits;
+	}
+
+	/**
+	 * Play random actions in lots of games and say how many steps per second that is.
+	 * @param args - [games] [steps] [threads] [size], all optional.
+	 * @throws InterruptedException if we're interrupted.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int size = args.length > 3 ? Integer.parseInt(args[3]) : Main.LOGICAL_GRID_SIZE;
+
+		FishEnvs envs = new FishEnvs(count, size, 5, 1, threads);
+		Random rand = new Random(2);
+		int[] actions = new int[count];
+		long episodes = 0;
+		long start = System.nanoTime();
+		for (int s = 0; s < steps; s++) {
+			for (int i = 0; i < count; i++) {
+				// Mostly swim; click now and then.
+				actions[i] = rand.nextInt(20) == 0 ? CLICK + rand.nextInt(envs.actionCount() - CLICK) : rand.nextInt(CLICK);
+			}
+			envs.step(actions);
+			for (boolean done : envs.getDones()) {
+				if (done) {
+					episodes++;
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		envs.close();
+		System.out.printf("%d games x %d steps on %d threads: %.0f steps/second (%d games finished)%n", count, steps, threads,
+				(double) count * steps / seconds, episodes);
+	}
+}
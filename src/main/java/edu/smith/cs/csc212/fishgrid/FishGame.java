@@ -1,9 +1,11 @@
 package edu.smith.cs.csc212.fishgrid;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class manages our model of gameplay: missing and found fish, etc.
@@ -13,14 +15,31 @@ import java.util.concurrent.ThreadLocalRandom;
 public class FishGame {
 	/**
 	 * This is the world in which the fish are missing. (It's mostly a List!).
+	 * Usually a {@link World}; {@link LockstepVerifier} also plays on a {@link ReferenceWorld}.
 	 */
-	World world;
+	WorldHooks world;
 	
 	/**
-	 * The player (a Fish.COLORS[0]-colored fish) goes seeking their friends.
+	 * The (first) player (a Fish.COLORS[0]-colored fish) goes seeking their friends.
 	 */
 	Fish player;
 	
+	/**
+	 * Everybody playing (the first one is {@link #player}).
+	 */
+	List<Player> players = new ArrayList<>();
+	
+	/**
+	 * The fish of everybody playing, in the same order as {@link #players}.
+	 */
+	private List<Fish> playerFish = new ArrayList<>();
+	
+	/**
+	 * Players can {@link #move} at the same time as each other (they share the read lock),
+	 * but never while the game is stepping (that takes the write lock).
+	 */
+	private final ReentrantReadWriteLock tickLock = new ReentrantReadWriteLock();
+	
 	/**
 	 * The home location.
 	 */
@@ -32,19 +51,54 @@ public class FishGame {
 	public static final int NUM_ROCKS = 10;
 	
 	/**
-	 * These are the missing fish!
+	 * Chance of a heart appearing on any step.
+	 */
+	public static final double HEART_CHANCE = 0.03;
+	
+	/**
+	 * Hearts disappear after this many steps (0 means they stay until collected).
+	 */
+	public static int HEART_LIFETIME = 0;
+	
+	/**
+	 * Found fish (not the first one) start getting bored after following for this many steps.
+	 */
+	public static final int ATTENTION = 20;
+	
+	/**
+	 * Chance a bored fish wanders off on any step.
+	 */
+	public static final double WANDER_CHANCE = 0.05;
+	
+	/**
+	 * fastScared fish swim away from a player that gets this close (in tiles).
+	 */
+	public static final int FLEE_RADIUS = 3;
+	
+	/**
+	 * The most bubbles that can float at once.
+	 */
+	public static final int MAX_BUBBLES = 1 << 16;
+	
+	/**
+	 * These are the missing fish! (Each fish knows its spot, so finding one is O(1).)
+	 */
+	FishList missing;
+	
+	/**
+	 * These are fish the (first) player found! (In order, since they line up behind the player.)
 	 */
-	List<Fish> missing;
+	FollowChain<Fish> found;
 	
 	/**
-	 * These are fish we've found!
+	 * How many times has a found fish gotten bored and wandered off?
 	 */
-	List<Fish> found;
+	int fishLost;
 	
 	/**
-	 * These are fish that have made it home/safe!
+	 * How many fish have made it home/safe! (We don't need to keep them around.)
 	 */
-	List<Fish> safe;
+	int safeCount;
 	
 	/**
 	 * Number of steps!
@@ -52,23 +106,103 @@ public class FishGame {
 	int stepsTaken;
 	
 	/**
-	 * Score!
+	 * Score! (Everybody's added together.)
 	 */
 	int score;
 	
+	/**
+	 * Scratch list for objects that moved into a new cell (so we don't make a new one every step).
+	 */
+	private ArrayList<WorldObject> arrived = new ArrayList<>();
+	
+	/**
+	 * Things that will happen on later steps (bored fish wandering off, hearts appearing or disappearing).
+	 */
+	private TimingWheel timers = new TimingWheel(0);
+	
+	/**
+	 * Found fish whose wander-off timer went off this step.
+	 */
+	private ArrayList<Fish> bored = new ArrayList<>();
+	
+	/**
+	 * Scratch list for what's in the same cell as somebody.
+	 */
+	private ArrayList<WorldObject> overlap = new ArrayList<>();
+	
+	/**
+	 * Scratch list for the fish near a scared fish.
+	 */
+	private ArrayList<Fish> nearby = new ArrayList<>();
+	
+	/**
+	 * Scratch list for missing fish that made it home this step.
+	 */
+	private ArrayList<Fish> saved = new ArrayList<>();
+	
+	/**
+	 * Wander-off timers that went off, waiting to be used again (so finding a fish doesn't make garbage).
+	 */
+	private ArrayList<WanderTimer> wanderTimers = new ArrayList<>();
+	
+	/**
+	 * The timer for the next heart (there's only ever one, so it's used again and again).
+	 */
+	private final Runnable heartTimer = new Runnable() {
+		@Override
+		public void run() {
+			heartsDue++;
+			scheduleNextHeart();
+		}
+	};
+	
+	/**
+	 * How many hearts should appear this step?
+	 */
+	private int heartsDue;
+	
+	/**
+	 * Builds the world around the player as they swim (null unless this game is procedural).
+	 */
+	ChunkManager chunks;
+	
+	/**
+	 * Bubbles the player blows (just for looks). Only whatever draws the game blows and floats them (see
+	 * {@link #blowBubbles}), so games that nobody watches don't fill up with bubbles.
+	 */
+	BubbleSystem bubbles;
+	
+	/**
+	 * Saves the game every so often (null unless {@link #enableAutosave} was called).
+	 */
+	Autosave autosave;
+	
+	/**
+	 * Writes down every change, for crash recovery (null unless {@link #enableJournal} was called).
+	 */
+	TickJournal journal;
+	
 	/**
 	 * Create a FishGame of a particular size.
 	 * @param w how wide is the grid?
 	 * @param h how tall is the grid?
 	 */
 	public FishGame(int w, int h) {
-		Random rand = ThreadLocalRandom.current();
-
-		world = new World(w, h);
+		this(new World(w, h));
+	}
+	
+	/**
+	 * Create a FishGame in an empty World you made yourself (say, one with a seeded Random, or one that's quiet).
+	 * All the game's random choices come from {@link WorldBackend#getRandom()}.
+	 * @param world an empty world to fill in.
+	 */
+	public FishGame(WorldBackend world) {
+		this.world = WorldHooks.of(world);
+		Random rand = world.getRandom();
 		
-		missing = new ArrayList<Fish>();
-		found = new ArrayList<Fish>();
-		safe = new ArrayList<Fish>();
+		bubbles = new BubbleSystem(world, MAX_BUBBLES);
+		
+		missing = new FishList();
 		
 		// Add a home!
 		home = world.insertFishHome();
@@ -85,18 +219,140 @@ public class FishGame {
 		// Make the snail!
 		world.insertSnailRandomly();
 		
-		// Make the player out of the 0th fish color.
-		player = new Fish(0, world);
-		// Start the player at "home".
-		player.setPosition(home.getX(), home.getY());
-		player.markAsPlayer();
-		world.register(player);
+		// Make the player (found fish line up behind them).
+		Player first = addPlayer();
+		player = first.fish;
+		found = first.found;
 		
 		// Generate fish of all the colors but the first into the "missing" List.
 		for (int ft = 1; ft < Fish.COLORS.length; ft++) {
 			Fish friend = world.insertFishRandomly(ft);
+			friend.status = Fish.Status.MISSING;
 			missing.add(friend);
 		}		
+		
+		// When will the first heart show up?
+		scheduleNextHeart();
+	}
+	
+	/**
+	 * Create a FishGame in a World that's already filled in (say, by {@link MapLoader}).
+	 * Every Fish in it is missing, and the player starts at home.
+	 * @param world a world with rocks, snails, fish and (usually) a home in it.
+	 * @param home the FishHome in that world, or null to put one down at random.
+	 */
+	public FishGame(WorldBackend world, FishHome home) {
+		this.world = WorldHooks.of(world);
+		bubbles = new BubbleSystem(world, MAX_BUBBLES);
+		
+		missing = new FishList();
+		this.home = home != null ? home : world.insertFishHome();
+		
+		// Everybody who swims is missing (before the player shows up, so they aren't counted).
+		for (WorldObject item : world.viewItems()) {
+			if (item instanceof Fish) {
+				Fish friend = (Fish) item;
+				friend.status = Fish.Status.MISSING;
+				missing.add(friend);
+			}
+		}
+		
+		// Make the player (found fish line up behind them).
+		Player first = addPlayer();
+		player = first.fish;
+		found = first.found;
+		
+		// When will the first heart show up?
+		scheduleNextHeart();
+	}
+	
+	/**
+	 * Create a procedural FishGame: the world can be enormous, because only the part near the player exists.
+	 * Rocks, fish and hearts show up chunk by chunk (see {@link ChunkManager}), always the same for the same seed.
+	 * @param w how wide is the grid?
+	 * @param h how tall is the grid?
+	 * @param seed which ocean to make.
+	 */
+	public FishGame(int w, int h, long seed) {
+		World chunked = new World(w, h);
+		chunked.enableChunks(ChunkManager.CHUNK_SIZE);
+		world = chunked;
+		bubbles = new BubbleSystem(world, MAX_BUBBLES);
+		
+		missing = new FishList();
+		chunks = new ChunkManager(this, seed);
+		
+		// Home is in the middle, and its chunk always stays loaded.
+		home = new FishHome(world);
+		home.setPosition(w / 2, h / 2);
+		world.register(home);
+		chunks.pin(home.getX(), home.getY());
+		
+		// Make the player (found fish line up behind them).
+		Player first = addPlayer();
+		player = first.fish;
+		found = first.found;
+		
+		// Build the ocean around the player.
+		chunks.update(playerFish);
+		
+		// Make the snail!
+		world.insertSnailRandomly();
+		
+		// When will the first heart show up?
+		scheduleNextHeart();
+	}
+	
+	/**
+	 * Add another player, starting at home.
+	 * @return the new Player.
+	 */
+	public Player addPlayer() {
+		tickLock.writeLock().lock();
+		try {
+			// Make the player out of the 0th fish color.
+			Fish fish = new Fish(0, world);
+			// Start the player at "home".
+			fish.setPosition(home.getX(), home.getY());
+			fish.markAsPlayer();
+			world.register(fish);
+			Player added = new Player(fish);
+			players.add(added);
+			playerFish.add(fish);
+			return added;
+		} finally {
+			tickLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Move a player one tile; this is safe to call from many threads at once (one thread per player).
+	 * Only the cells the player touches are locked, so players in different places don't wait for each other.
+	 * @param who - the player to move.
+	 * @param dx - -1, 0 or 1.
+	 * @param dy - -1, 0 or 1.
+	 * @return true if they moved (rocks and snails are in the way; fish and other players aren't).
+	 */
+	public boolean move(Player who, int dx, int dy) {
+		tickLock.readLock().lock();
+		try {
+			return world.movePlayer(who.fish, dx, dy);
+		} finally {
+			tickLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Roll how many tries it takes to get a success, if each try works with probability p.
+	 * Waiting for this many steps is the same as rolling a p-chance once every step.
+	 * @param rand - random numbers.
+	 * @param p - the chance of success on each try.
+	 * @return a number of tries, at least 1.
+	 */
+	static long geometric(Random rand, double p) {
+		// 1 - nextDouble() is never 0, so the log is never -infinity.
+		double u = 1.0 - rand.nextDouble();
+		return 1 + (long) Math.floor(Math.log(u) / Math.log(1.0 - p));
 	}
 	
 	
@@ -105,7 +361,11 @@ public class FishGame {
 	 * @return the size of the missing list.
 	 */
 	public int missingFishLeft() {
-		return missing.size() + found.size();
+		int following = 0;
+		for (Player p : players) {
+			following += p.found.size();
+		}
+		return missing.size() + following + storedFish();
 	}
 	
 	/**
@@ -113,76 +373,221 @@ public class FishGame {
 	 * @return true if the player has won (or maybe lost?).
 	 */
 	public boolean gameOver() {
-		return missing.isEmpty() && found.isEmpty();
+		for (int i = 0; i < players.size(); i++) {
+			if (!players.get(i).found.isEmpty()) {
+				return false;
+			}
+		}
+		return missing.isEmpty() && storedFish() == 0;
+	}
+	
+	/**
+	 * How many missing fish are in parts of a procedural world that were put away?
+	 * @return the count (always 0 for a normal game).
+	 */
+	private int storedFish() {
+		return chunks == null ? 0 : chunks.storedFish();
 	}
 
 	/**
 	 * Update positions of everything (the user has just pressed a button).
 	 */
 	public void step() {
+		// Nobody moves while we step.
+		tickLock.writeLock().lock();
+		try {
+			stepLocked();
+		} finally {
+			tickLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * The actual step (the caller holds the write lock).
+	 */
+	private void stepLocked() {
+		// Time each part of the step (this is nearly free when metrics are off).
+		Metrics metrics = world.getMetrics();
+		metrics.beginTick();
+		
 		// Keep track of how long the game has run.
 		this.stepsTaken += 1;
 				
+		// A procedural world grows (and shrinks) around the player.
+		long start = metrics.start();
+		if (chunks != null) {
+			chunks.update(playerFish);
+		}
+		metrics.stop(Metrics.Phase.CHUNKS, start);
+		
 		// All the player's various interactions with the world
-		playerInteracts();
+		start = metrics.start();
+		for (int i = 0; i < players.size(); i++) {
+			playerInteracts(players.get(i));
+		}
+		metrics.stop(Metrics.Phase.PLAYER_INTERACTS, start);
 		
 		// Found fish have a chance of wandering off eventually
+		start = metrics.start();
 		wanderFollowFish();
+		metrics.stop(Metrics.Phase.WANDER_FOLLOW, start);
 		
 		// Make sure missing fish *do* something.
+		start = metrics.start();
 		wanderMissingFish();
+		metrics.stop(Metrics.Phase.WANDER_MISSING, start);
 		
 		// "found" fish follow the player around.
-		World.objectsFollow(player, found);	
+		start = metrics.start();
+		for (int i = 0; i < players.size(); i++) {
+			Player p = players.get(i);
+			World.objectsFollow(p.fish, p.found);
+		}
+		metrics.stop(Metrics.Phase.FOLLOW, start);
 		
 		// Random chance of a heart appearing on the board
+		start = metrics.start();
 		hearts();
+		metrics.stop(Metrics.Phase.HEARTS, start);
 		
 		// Step any world-objects that run themselves.
+		start = metrics.start();
 		world.stepAll();
+		metrics.stop(Metrics.Phase.STEP_ALL, start);
+		
+		// Remember what changed (and maybe start writing a save in the background).
+		start = metrics.start();
+		if (autosave != null) {
+			autosave.tick(stepsTaken);
+		}
+		metrics.stop(Metrics.Phase.AUTOSAVE, start);
+		
+		// Finish this step's part of the journal (and commit it, every so often).
+		start = metrics.start();
+		if (journal != null) {
+			journal.endTick(this);
+		}
+		metrics.stop(Metrics.Phase.JOURNAL, start);
+		
+		metrics.endTick();
+	}
+	
+	/**
+	 * Every player blows a bubble. Call this after a step if you draw the game, and float the bubbles with
+	 * {@code bubbles.update} (nobody else pops them).
+	 */
+	public void blowBubbles() {
+		for (Fish p : playerFish) {
+			bubbles.emit(p.getX(), p.getY());
+		}
+	}
+	
+	/**
+	 * Save this game to a file every so often. Saving happens on its own thread, so steps don't wait for the disk.
+	 * @param file - where to save (replaced each time).
+	 * @param everySteps - how many steps between saves.
+	 * @return the Autosave (to check on it, or close it when you're done).
+	 */
+	public Autosave enableAutosave(Path file, int everySteps) {
+		tickLock.writeLock().lock();
+		try {
+			autosave = new Autosave(this, file, everySteps);
+			return autosave;
+		} finally {
+			tickLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Write down every change to a journal from now on, so {@link TickJournal#recover} can rebuild the game
+	 * (on top of an {@link Autosave}) after a crash.
+	 * @param file - where to write (an old journal there is thrown away).
+	 * @param commitEvery - how many steps between commits to disk.
+	 * @return the TickJournal (close it when you're done).
+	 * @throws IOException if the file can't be made.
+	 */
+	public TickJournal enableJournal(Path file, int commitEvery) throws IOException {
+		tickLock.writeLock().lock();
+		try {
+			journal = new TickJournal(file, stepsTaken + 1, commitEvery);
+			indexedWorld().setJournal(journal);
+			return journal;
+		} finally {
+			tickLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Autosaves, journals, chunks, views and the like need the indexes only a {@link World} keeps.
+	 * @return this game's world, as a World.
+	 * @throws IllegalStateException if the game is on some other backend (like a {@link ReferenceWorld}).
+	 */
+	World indexedWorld() {
+		if (!(world instanceof World)) {
+			throw new IllegalStateException("This needs a World, not a " + world.getClass().getSimpleName() + ".");
+		}
+		return (World) world;
+	}
+	
+	/**
+	 * Where does this game keep its timers and counters?
+	 * @return the Metrics (shared with the World).
+	 */
+	public Metrics getMetrics() {
+		return world.getMetrics();
 	}
 	
 	/**
 	 * Player interacts with rest of the world
+	 * @param who - the player.
 	 */
-	private void playerInteracts() {
+	private void playerInteracts(Player who) {
+		FollowChain<Fish> found = who.found;
 		// These are all the objects in the world in the same cell as the player.
-		List<WorldObject> overlap = this.player.findSameCell();
-		// The player is there, too, let's skip them.
-		overlap.remove(this.player);
+		overlap.clear();
+		world.find(who.fish.getX(), who.fish.getY(), overlap);
 		
 		// If we find a fish, remove it from missing.
 		// If we return home, found fish are safe.
 		// And if we find a heart, collect it.
-		for (WorldObject wo : overlap) {
-			// It is missing if it's in our missing list.
-			if (missing.contains(wo)) {
-				if (!(wo instanceof Fish)) {
-					throw new AssertionError("wo must be a Fish since it was in missing!");
-				}
+		for (int i = 0; i < overlap.size(); i++) {
+			WorldObject wo = overlap.get(i);
+			// The player is there, too, let's skip them.
+			if (wo == who.fish) {
+				continue;
+			}
+			// It is missing if its status says so (no need to search the missing list).
+			if (wo instanceof Fish && ((Fish) wo).status == Fish.Status.MISSING) {
 				// Convince Java it's a Fish (we know it is!)
 				Fish justFound = (Fish) wo;
 				
 				// Add to found; take from missing
-				found.add(justFound);
 				missing.remove(justFound);
+				found.add(justFound);
+				justFound.status = Fish.Status.FOUND;
+				justFound.foundAt = stepsTaken;
+				justFound.foundBy = who;
+				scheduleWander(justFound);
 				
 			} else if (wo instanceof FishHome) {
 				// Found fish are safe/home
-				safe.addAll(found); // https://www.geeksforgeeks.org/java-util-arraylist-addall-method-java/
-				
 				// Count saved fish towards score!
 				// Also, remove fish from world and from found list
-				for (Fish friend : found) {
+				for (int f = 0; f < found.size(); f++) {
+					Fish friend = found.get(f);
+					who.score += friend.points;
 					score += friend.points;
-					friend.remove();					
+					friend.status = Fish.Status.SAFE;
+					friend.remove();
 				}
-				found.removeAll(found); // https://www.geeksforgeeks.org/arraylist-removeall-method-in-java-with-examples/
+				safeCount += found.size();
+				found.clear();
 				
 			} else if (wo instanceof Heart) {
-				// Remove heart from world
-				wo.remove();
+				// Remove heart from world (it goes back in the pool for next time)
+				world.despawn(wo);
 				// Increase score for collecting heart!
+				who.score += Heart.points;
 				score += Heart.points;
 			}
 		}
@@ -192,9 +597,21 @@ public class FishGame {
 	 * Call moveRandomly() on all of the missing fish to make them seem alive.
 	 */
 	private void wanderMissingFish() {
-		Random rand = ThreadLocalRandom.current();
-		List<Fish> saved = new ArrayList<>();
-		for (Fish lost : missing) {
+		Random rand = world.getRandom();
+		saved.clear();
+		
+		// Fish that got lost again (or were just added) may already be sitting on something.
+		world.drainArrivals(arrived);
+		for (int i = 0; i < arrived.size(); i++) {
+			WorldObject wo = arrived.get(i);
+			if (wo instanceof Fish && ((Fish) wo).status == Fish.Status.MISSING) {
+				checkMissingOverlap((Fish) wo, saved);
+			}
+		}
+		arrived.clear();
+		
+		for (int i = 0; i < missing.size(); i++) {
+			Fish lost = missing.get(i);
 			// Move
 			double moveProb;
 			if (lost.fastScared) {
@@ -204,58 +621,190 @@ public class FishGame {
 				// not fastScared fish move randomly 30% of the time
 				moveProb = 0.3;
 			}
-			if (rand.nextDouble() < moveProb) {
-				lost.moveRandomly(); 
-			}
-			
-			// Check for home or heart at new location
-			List<WorldObject> overlap = lost.findSameCell();
-			overlap.remove(lost);
-			for (WorldObject wo: overlap) {
-				if (wo instanceof FishHome) {
-					// note that fish is home
-					// after loop through missing, THEN transfer from missing to safe
-					saved.add(lost);
-		
-					// remove from world
-					lost.remove();
-				} else if (wo instanceof Heart) {
-					// Remove heart from world
-					wo.remove();
+			if (lost.status == Fish.Status.MISSING && rand.nextDouble() < moveProb) {
+				int oldX = lost.getX();
+				int oldY = lost.getY();
+				Fish scary = lost.fastScared ? nearestPlayer(lost) : null;
+				if (scary != null) {
+					// Too close! Swim away.
+					lost.moveAwayFrom(scary.getX(), scary.getY());
+				} else {
+					lost.moveRandomly();
+				}
+				
+				// Only a fish that moved can have bumped into something new.
+				if (lost.getX() != oldX || lost.getY() != oldY) {
+					checkMissingOverlap(lost, saved);
 				}
 			}
-		}		
+		}
+		// We just checked everybody who moved.
+		world.drainArrivals(arrived);
+		arrived.clear();
+		
 		// move saved fish from missing to safe
-		safe.addAll(saved);
-		missing.removeAll(saved);
+		safeCount += saved.size();
+		for (int i = 0; i < saved.size(); i++) {
+			missing.remove(saved.get(i));
+		}
+		saved.clear();
 	}
 	
 	/**
-	 * Found fish have a chance of wandering off
+	 * Is a player close enough to scare this fish?
+	 * @param lost - the missing fish.
+	 * @return the closest player within FLEE_RADIUS, or null.
 	 */
-	private void wanderFollowFish() {
-		Random rand = ThreadLocalRandom.current();
-		List<Fish> bored = new ArrayList<>();
-		double wanderChance = 0.05;
-		int attention = 20;
-		
-		for (int i = 0; i < found.size(); i++){
-			// update boredom
-			found.get(i).boredom++;
-
-			if (i == 0) {
-				// first fish doesn't wander
+	private Fish nearestPlayer(Fish lost) {
+		Fish closest = null;
+		long best = Long.MAX_VALUE;
+		nearby.clear();
+		world.findInRadius(lost.getX(), lost.getY(), FLEE_RADIUS, Fish.class, nearby);
+		for (int i = 0; i < nearby.size(); i++) {
+			Fish other = nearby.get(i);
+			if (!other.isPlayer()) {
 				continue;
-			} else if (found.get(i).boredom >= attention && rand.nextDouble() < wanderChance) {
-				// Chance of getting bored and wandering after <attention> steps
-				bored.add(found.get(i));
-				found.get(i).boredom = 0; // reset boredom
+			}
+			long dx = other.getX() - lost.getX();
+			long dy = other.getY() - lost.getY();
+			if (dx * dx + dy * dy < best) {
+				best = dx * dx + dy * dy;
+				closest = other;
 			}
 		}
+		return closest;
+	}
+	
+	/**
+	 * Check for home or heart at a missing fish's location.
+	 * @param lost - the missing fish.
+	 * @param saved - where to put it if it made it home.
+	 */
+	private void checkMissingOverlap(Fish lost, List<Fish> saved) {
+		overlap.clear();
+		world.find(lost.getX(), lost.getY(), overlap);
+		for (int i = 0; i < overlap.size(); i++) {
+			WorldObject wo = overlap.get(i);
+			if (wo == lost) {
+				continue;
+			}
+			if (wo instanceof FishHome && lost.status == Fish.Status.MISSING) {
+				// note that fish is home
+				// after loop through missing, THEN transfer from missing to safe
+				saved.add(lost);
+				lost.status = Fish.Status.SAFE;
+	
+				// remove from world
+				lost.remove();
+			} else if (wo instanceof Heart) {
+				// Remove heart from world
+				world.despawn(wo);
+			}
+		}
+	}
+	
+	/**
+	 * Found fish have a chance of wandering off.
+	 * 
+	 * Instead of rolling dice for every found fish every step, each fish gets a timer when it is found;
+	 * only fish whose timers go off this step are looked at.
+	 */
+	private void wanderFollowFish() {
+		// Run all the timers for this step (this may also ask for hearts).
+		timers.advanceTo(stepsTaken);
 
 		// move bored fish from found to missing
-		missing.addAll(bored);
-		found.removeAll(bored);
+		for (int i = 0; i < players.size(); i++) {
+			players.get(i).found.removeAll(bored);
+		}
+		fishLost += bored.size();
+		for (int i = 0; i < bored.size(); i++) {
+			Fish lost = bored.get(i);
+			lost.status = Fish.Status.MISSING;
+			missing.add(lost);
+		}
+		bored.clear();
+	}
+	
+	/**
+	 * Set the timer for when a found fish wanders off.
+	 * 
+	 * A fish starts rolling a WANDER_CHANCE every step once it has followed for ATTENTION steps,
+	 * so we skip straight to the step where the first roll succeeds.
+	 * 
+	 * @param fish - a fish that was just found (or whose timer went off while it was first in line).
+	 */
+	private void scheduleWander(Fish fish) {
+		Random rand = world.getRandom();
+		// How bored a fish is is just how long it has followed, so the timer keeps track of it for us.
+		long eligible = Math.max(timers.getCurrentTick() + 1, fish.foundAt + ATTENTION - 1);
+		WanderTimer timer = wanderTimers.isEmpty() ? new WanderTimer() : wanderTimers.remove(wanderTimers.size() - 1);
+		timer.fish = fish;
+		timer.foundAt = fish.foundAt;
+		timers.schedule(eligible + geometric(rand, WANDER_CHANCE) - 1, timer);
+	}
+	
+	/**
+	 * A found fish's wander-off timer. Once it goes off it waits in {@link #wanderTimers} to be used again.
+	 */
+	private class WanderTimer implements Runnable {
+		/**
+		 * Whose timer this is.
+		 */
+		Fish fish;
+		/**
+		 * Which step the fish was found on when the timer was set.
+		 */
+		int foundAt;
+		
+		@Override
+		public void run() {
+			Fish fish = this.fish;
+			int foundAt = this.foundAt;
+			this.fish = null;
+			wanderTimers.add(this);
+			
+			// Ignore the timer if the fish went home (or got lost and found again) in the meantime.
+			if (fish.status != Fish.Status.FOUND || fish.foundAt != foundAt) {
+				return;
+			}
+			if (fish.foundBy.found.get(0) == fish) {
+				// first fish doesn't wander; keep rolling.
+				scheduleWander(fish);
+			} else {
+				bored.add(fish);
+			}
+		}
+	}
+	
+	/**
+	 * Make room for this many objects in every scratch list, line and timer now, so no step has to grow one.
+	 * (For games that are stepped over and over; {@link FishEnvs} does this.)
+	 * @param count - how many objects there could be (everything in the world, say).
+	 */
+	public void reserve(int count) {
+		arrived.ensureCapacity(count);
+		bored.ensureCapacity(count);
+		overlap.ensureCapacity(count);
+		nearby.ensureCapacity(count);
+		saved.ensureCapacity(count);
+		wanderTimers.ensureCapacity(count);
+		while (wanderTimers.size() < count) {
+			wanderTimers.add(new WanderTimer());
+		}
+		for (Player p : players) {
+			p.found.ensureCapacity(count);
+		}
+		world.reserve(count);
+		// A wander timer for every fish, plus the next heart.
+		timers.reserve(count + 1);
+	}
+	
+	/**
+	 * Set the timer for the next heart to appear.
+	 */
+	private void scheduleNextHeart() {
+		timers.scheduleIn(geometric(world.getRandom(), HEART_CHANCE), heartTimer);
 	}
 
 	/**
@@ -276,14 +825,36 @@ public class FishGame {
 		}
 	}
 	
+	/**
+	 * A bigger click: clear every rock in a square around (x, y), like an eraser brush.
+	 * @param x - the x-tile of the center.
+	 * @param y - the y-tile of the center.
+	 * @param brushRadius - how many tiles the square reaches out from the center (0 is just one tile).
+	 * @return how many rocks were cleared.
+	 */
+	public int clickArea(int x, int y, int brushRadius) {
+		return world.removeInRect(x - brushRadius, y - brushRadius, x + brushRadius, y + brushRadius, Rock.class);
+	}
+	
 	/**
 	 * This has a random chance every step of adding a heart to the game.
+	 * (The chance is rolled ahead of time; see scheduleNextHeart.)
 	 */
 	public void hearts() {
-		Random rand = ThreadLocalRandom.current();
-		double heartChance = 0.03;
-		if (rand.nextDouble() < heartChance) {
-			world.insertHeartRandomly();
+		for (; heartsDue > 0; heartsDue--) {
+			final Heart heart = world.spawnRandomly(Heart.class);
+			if (HEART_LIFETIME > 0) {
+				final int life = heart.spawnCount;
+				timers.scheduleIn(HEART_LIFETIME, new Runnable() {
+					@Override
+					public void run() {
+						// It may have been collected already (and even come back as a new heart).
+						if (heart.registered && heart.spawnCount == life) {
+							world.despawn(heart);
+						}
+					}
+				});
+			}
 		}
 	}
 	
@@ -20,7 +20,7 @@ public class FishHome extends WorldObject {
 	 */
 	final Polygon house;
 	
-	public FishHome(World world) {
+	public FishHome(WorldBackend world) {
 		super(world);
 		
 		// I drew this out on graph paper.
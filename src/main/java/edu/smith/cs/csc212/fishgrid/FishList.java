@@ -0,0 +1,121 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A FishList is a List of Fish where every Fish knows which FishList it is in, and where.
+ *
+ * That makes contains and remove O(1) instead of a scan: no searching, the fish just tells us its index.
+ * Removing swaps the last fish into the hole, so the order changes, but always the same way for the same moves.
+ * A fish can only be in one FishList at a time.
+ */
+public class FishList extends AbstractList<Fish> {
+	/**
+	 * The fish themselves; only the first {@link #size} slots are used.
+	 */
+	private Fish[] items;
+	/**
+	 * How many fish are in the list.
+	 */
+	private int size;
+
+	/**
+	 * Make an empty FishList.
+	 */
+	public FishList() {
+		this.items = new Fish[16];
+		this.size = 0;
+	}
+
+	@Override
+	public Fish get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " of " + size);
+		}
+		return items[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Fish can only be added to the end.
+	 */
+	@Override
+	public void add(int index, Fish fish) {
+		if (index != size) {
+			throw new UnsupportedOperationException("FishList only adds to the end.");
+		}
+		if (fish.list != null) {
+			throw new IllegalStateException(fish + " is already in a FishList!");
+		}
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size * 2);
+		}
+		items[size] = fish;
+		fish.list = this;
+		fish.listIndex = size;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Fish remove(int index) {
+		Fish gone = get(index);
+		// Fill the hole with the last fish.
+		int last = size - 1;
+		if (index != last) {
+			items[index] = items[last];
+			items[index].listIndex = index;
+		}
+		items[last] = null;
+		size--;
+		gone.list = null;
+		gone.listIndex = -1;
+		modCount++;
+		return gone;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) {
+			return false;
+		}
+		remove(((Fish) o).listIndex);
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> fish) {
+		boolean changed = false;
+		for (Object o : fish) {
+			changed |= remove(o);
+		}
+		return changed;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Fish && ((Fish) o).list == this;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return contains(o) ? ((Fish) o).listIndex : -1;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			items[i].list = null;
+			items[i].listIndex = -1;
+			items[i] = null;
+		}
+		size = 0;
+		modCount++;
+	}
+}
@@ -0,0 +1,193 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A FollowChain is a List of objects that follow a leader in a line (like found fish behind the player).
+ *
+ * The i-th member always sits i+1 steps back along the leader's {@link Trail}.
+ * We only do work when somebody joins or leaves the line; when the leader moves, everyone "moves" for free
+ * because their positions are looked up in the trail when asked for.
+ *
+ * @param <T> the kind of WorldObject following (usually Fish).
+ */
+public class FollowChain<T extends WorldObject> extends AbstractList<T> {
+	/**
+	 * {@link #removeAll} looks through at most this many objects one by one; more than that go in a set.
+	 */
+	private static final int SMALL = 8;
+	/**
+	 * Who is at the front of the line?
+	 */
+	private final WorldObject leader;
+	/**
+	 * Everyone in line, in order.
+	 */
+	private final ArrayList<T> members;
+
+	/**
+	 * Start an empty line behind a leader.
+	 * @param leader - the object to follow (e.g., the player).
+	 */
+	public FollowChain(WorldObject leader) {
+		this.leader = leader;
+		this.members = new ArrayList<>();
+		leader.chain = this;
+	}
+
+	/**
+	 * Make room for this many in line now, so adding them later doesn't have to grow anything.
+	 * @param count - how many.
+	 */
+	public void ensureCapacity(int count) {
+		members.ensureCapacity(count);
+		leader.recentPositions.ensureCapacity(count + 2);
+	}
+
+	/**
+	 * Who is everyone following?
+	 * @return the leader.
+	 */
+	public WorldObject getLeader() {
+		return leader;
+	}
+
+	@Override
+	public T get(int index) {
+		return members.get(index);
+	}
+
+	@Override
+	public int size() {
+		return members.size();
+	}
+
+	@Override
+	public void add(int index, T item) {
+		members.add(index, item);
+		// The leader needs to remember enough steps for the whole line (and one more, for the step it takes next).
+		Trail trail = leader.recentPositions;
+		trail.ensureCapacity(members.size() + 2);
+		// A newcomer past the end of the trail gets a spot right where it is.
+		while (trail.size() <= members.size()) {
+			trail.appendOldest(item.getX(), item.getY());
+		}
+		reattach(index);
+		resized(members.size() - 1);
+	}
+
+	@Override
+	public T set(int index, T item) {
+		T old = members.set(index, item);
+		old.unfollow();
+		item.follow(leader, index + 1);
+		return old;
+	}
+
+	@Override
+	public T remove(int index) {
+		T old = members.remove(index);
+		old.unfollow();
+		reattach(index);
+		resized(members.size() + 1);
+		return old;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		int oldSize = members.size();
+		for (int i = fromIndex; i < toIndex; i++) {
+			members.get(i).unfollow();
+		}
+		// Slide the rest of the line up, then cut off the end (no sublist to make).
+		int kept = fromIndex;
+		for (int i = toIndex; i < oldSize; i++) {
+			members.set(kept++, members.get(i));
+		}
+		truncate(kept);
+		reattach(fromIndex);
+		resized(oldSize);
+	}
+
+	/**
+	 * Remove a bunch of objects in one pass, instead of shuffling the line once per object.
+	 * Nothing new is made unless there are a lot of them, so this is cheap to call every step.
+	 */
+	@Override
+	public boolean removeAll(Collection<?> items) {
+		if (items.isEmpty()) {
+			return false;
+		}
+		if (items == this) {
+			// People like to call found.removeAll(found).
+			boolean any = !members.isEmpty();
+			clear();
+			return any;
+		}
+		// Looking through a few objects is quicker than making a set of them.
+		Collection<?> drop = items;
+		if (items.size() > SMALL) {
+			Set<Object> set = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+			set.addAll(items);
+			drop = set;
+		}
+
+		int oldSize = members.size();
+		int firstChange = -1;
+		int kept = 0;
+		for (int i = 0; i < oldSize; i++) {
+			T item = members.get(i);
+			if (drop.contains(item)) {
+				item.unfollow();
+				if (firstChange < 0) {
+					firstChange = i;
+				}
+			} else {
+				members.set(kept++, item);
+			}
+		}
+		if (firstChange < 0) {
+			return false;
+		}
+		truncate(kept);
+		reattach(firstChange);
+		resized(oldSize);
+		return true;
+	}
+
+	/**
+	 * Forget everyone past the first few members (from the end, so nothing has to shift).
+	 * @param size - how many to keep.
+	 */
+	private void truncate(int size) {
+		for (int i = members.size() - 1; i >= size; i--) {
+			members.remove(i);
+		}
+	}
+
+	/**
+	 * Let the World know the line got longer or shorter, so it knows which cells have followers.
+	 * @param oldSize - how long the line was.
+	 */
+	private void resized(int oldSize) {
+		if (leader.world != null) {
+			leader.world.chainResized(leader, oldSize, members.size());
+		}
+	}
+
+	/**
+	 * Everyone at or after this index has a new place in line; tell them.
+	 * @param fromIndex - the first member whose place changed.
+	 */
+	private void reattach(int fromIndex) {
+		for (int i = fromIndex; i < members.size(); i++) {
+			members.get(i).follow(leader, i + 1);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A FrameExporter draws a FishGame into pictures (PNG files), one per step, without opening a window.
+ *
+ * Each frame is drawn in horizontal bands at the same time (one per thread), using the same draw methods as
+ * {@link Main}. Finished frames go to a second set of threads that turn them into PNGs and write them, while
+ * the game moves on to the next step. Only a few frames are ever in memory: when they're all waiting to be
+ * written, the game waits too.
+ *
+ * Run it with: {@code java -Djava.awt.headless=true edu.smith.cs.csc212.fishgrid.FrameExporter [frames] [seed] [size] [tile-pixels] [out-dir] [threads]}
+ */
+public class FrameExporter {
+	/**
+	 * The game we draw.
+	 */
+	private final FishGame game;
+	/**
+	 * How many pixels on a side is a tile?
+	 */
+	private final int tile;
+	/**
+	 * Where the PNGs go.
+	 */
+	private final Path outDir;
+	/**
+	 * How many bands each frame is split into.
+	 */
+	private final int bands;
+	/**
+	 * The threads that draw bands.
+	 */
+	private final ExecutorService drawers;
+	/**
+	 * The threads that write PNGs.
+	 */
+	private final ExecutorService writers;
+	/**
+	 * Pictures nobody is using right now (there are only a few, so they get reused).
+	 */
+	private final BlockingQueue<BufferedImage> free;
+	/**
+	 * How many frames have been handed out?
+	 */
+	private int frames;
+	/**
+	 * What went wrong writing a frame (or null).
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Get ready to export a game.
+	 * @param game - the game to draw.
+	 * @param tile - how many pixels on a side each tile is.
+	 * @param outDir - where the PNGs go (made if it doesn't exist).
+	 * @param threads - how many threads to draw and write with.
+	 * @throws IOException if the folder can't be made.
+	 */
+	public FrameExporter(FishGame game, int tile, Path outDir, int threads) throws IOException {
+		this.game = game;
+		this.tile = tile;
+		this.outDir = outDir;
+		this.bands = Math.max(1, Math.min(threads, game.world.getHeight()));
+		this.drawers = Executors.newFixedThreadPool(bands);
+		this.writers = Executors.newFixedThreadPool(threads);
+		// Enough pictures for every writer to be busy and one more being drawn.
+		int inFlight = threads + 1;
+		this.free = new ArrayBlockingQueue<>(inFlight);
+		for (int i = 0; i < inFlight; i++) {
+			free.add(new BufferedImage(game.world.getWidth() * tile, game.world.getHeight() * tile, BufferedImage.TYPE_INT_RGB));
+		}
+		Files.createDirectories(outDir);
+	}
+
+	/**
+	 * Draw the game as it is right now and (soon) write it out as the next PNG.
+	 * @throws IOException if an earlier frame couldn't be written.
+	 * @throws InterruptedException if we're interrupted while waiting for a free picture.
+	 */
+	public void capture() throws IOException, InterruptedException {
+		if (failure != null) {
+			throw failure;
+		}
+		BufferedImage image = free.take();
+		render(image);
+		Path file = outDir.resolve(String.format("frame-%06d.png", frames++));
+		writers.execute(() -> {
+			try {
+				ImageIO.write(image, "png", file.toFile());
+			} catch (IOException e) {
+				failure = e;
+			} finally {
+				free.add(image);
+			}
+		});
+	}
+
+	/**
+	 * Draw the game into a picture, one band per thread. This waits until every band is done, because the
+	 * game can't move while we're looking at it.
+	 * @param image - the picture (world width x world height tiles).
+	 * @throws InterruptedException if we're interrupted while waiting.
+	 */
+	public void render(BufferedImage image) throws InterruptedException {
+		WorldBackend world = game.world;
+		// Animations move once per frame, before anybody draws.
+		for (WorldObject wo : world.viewItems()) {
+			wo.animate();
+		}
+
+		List<Callable<Void>> work = new ArrayList<>();
+		for (int b = 0; b < bands; b++) {
+			int y0 = world.getHeight() * b / bands;
+			int y1 = world.getHeight() * (b + 1) / bands;
+			work.add(() -> {
+				drawBand(image, y0, y1);
+				return null;
+			});
+		}
+		for (Future<Void> done : drawers.invokeAll(work)) {
+			try {
+				done.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Couldn't draw a frame", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Draw some rows of tiles: the ocean, the grid, everything near them, and bubbles on top (like {@link Main#draw}).
+	 * @param image - the picture.
+	 * @param y0 - the first row of tiles (included).
+	 * @param y1 - the last row of tiles (not included).
+	 */
+	private void drawBand(BufferedImage image, int y0, int y1) {
+		WorldBackend world = game.world;
+		Graphics2D g = image.createGraphics();
+		// Everything outside the band is somebody else's job.
+		g.clipRect(0, y0 * tile, world.getWidth() * tile, (y1 - y0) * tile);
+
+		// Draw the ocean.
+		g.setColor(Main.OCEAN_COLOR);
+		g.fillRect(0, y0 * tile, world.getWidth() * tile, (y1 - y0) * tile);
+		// Draw a grid to better picture how the game works.
+		g.setColor(Main.GRID_COLOR);
+		for (int y = Math.max(0, y0 - 1); y < y1; y++) {
+			for (int x = 0; x < world.getWidth(); x++) {
+				g.drawRect(x * tile, y * tile, tile, tile);
+			}
+		}
+
+		// Objects spill a little into the next tile, so draw the ones a row above and below too.
+		for (WorldObject wo : world.viewItems()) {
+			if (wo.getY() < y0 - 1 || wo.getY() > y1) {
+				continue;
+			}
+			Graphics2D forWo = (Graphics2D) g.create();
+			forWo.translate((int) ((wo.getX() + 0.5) * tile) + 1, (int) ((wo.getY() + 0.5) * tile) + 1);
+			forWo.scale(tile, tile);
+			wo.draw(forWo);
+			forWo.dispose();
+		}
+
+		// Bubbles float on top of everything.
+		game.bubbles.draw(g, tile, tile);
+		g.dispose();
+	}
+
+	/**
+	 * How many frames have been captured?
+	 * @return the count.
+	 */
+	public int getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Wait for every frame to be written, and stop the threads.
+	 * @throws IOException if a frame couldn't be written.
+	 * @throws InterruptedException if we're interrupted while waiting.
+	 */
+	public void close() throws IOException, InterruptedException {
+		drawers.shutdown();
+		writers.shutdown();
+		writers.awaitTermination(1, TimeUnit.HOURS);
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Play a seeded game with a bot and export every step.
+	 * @param args - [frames] [seed] [size] [tile-pixels] [out-dir] [threads], all optional.
+	 * @throws IOException if the frames can't be written.
+	 * @throws InterruptedException if we're interrupted.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : Main.LOGICAL_GRID_SIZE;
+		int tile = args.length > 3 ? Integer.parseInt(args[3]) : Main.VISUAL_GRID_SIZE / size;
+		Path outDir = Paths.get(args.length > 4 ? args[4] : "frames");
+		int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+		World world = new World(size, size, new Random(seed));
+		world.setVerbose(false);
+		FishGame game = new FishGame(world);
+		BotPolicy bot = new GreedyBot(3);
+		FrameExporter exporter = new FrameExporter(game, tile, outDir, threads);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			exporter.capture();
+			if (game.gameOver()) {
+				break;
+			}
+			bot.move(game);
+			game.step();
+			game.blowBubbles();
+			// Bubbles float for as long as a step takes on screen.
+			game.bubbles.update(1.0 / Main.TICKS_PER_SECOND);
+		}
+		exporter.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d frames in %.1f seconds on %d threads (%.0f frames/second) -> %s%n", exporter.getFrames(), seconds,
+				threads, exporter.getFrames() / seconds, outDir);
+	}
+}
@@ -0,0 +1,89 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * GameTemplates keeps a few {@link WorldTemplate}s ready, so starting a new game doesn't have to wait for one to be
+ * set up. A background thread makes them, and every time one is used it makes another.
+ *
+ * Each template is used once, so every game has a different layout, and each game gets a new Random.
+ */
+public class GameTemplates {
+	/**
+	 * The size of the worlds (x-tiles).
+	 */
+	private final int width;
+	/**
+	 * The size of the worlds (y-tiles).
+	 */
+	private final int height;
+	/**
+	 * Templates that are ready to go.
+	 */
+	private final BlockingQueue<WorldTemplate> ready;
+	/**
+	 * Seeds for new games' Randoms.
+	 */
+	private final Random seeds;
+	/**
+	 * The thread that makes templates.
+	 */
+	private final Thread builder;
+
+	/**
+	 * Start making templates.
+	 * @param width - the size of the worlds (x-tiles).
+	 * @param height - the size of the worlds (y-tiles).
+	 * @param keepReady - how many templates to keep ready.
+	 * @param seed - which games to make.
+	 */
+	public GameTemplates(int width, int height, int keepReady, long seed) {
+		this.width = width;
+		this.height = height;
+		this.ready = new ArrayBlockingQueue<>(keepReady);
+		this.seeds = new Random(seed);
+		// The builder gets its own seeds, so it never has to share a Random with newGame.
+		Random layouts = new Random(seeds.nextLong());
+		this.builder = new Thread(() -> {
+			try {
+				while (true) {
+					ready.put(WorldTemplate.build(width, height, layouts.nextLong()));
+				}
+			} catch (InterruptedException e) {
+				// close() was called.
+			}
+		}, "GameTemplates");
+		// Don't keep the program running just to make templates.
+		builder.setDaemon(true);
+		builder.start();
+	}
+
+	/**
+	 * Start a new game. If no template is ready yet (say, right at the start) we make one here, which is slower.
+	 * @return a new game.
+	 */
+	public synchronized FishGame newGame() {
+		WorldTemplate template = ready.poll();
+		if (template == null) {
+			template = WorldTemplate.build(width, height, seeds.nextLong());
+		}
+		return template.newGame(new Random(seeds.nextLong()));
+	}
+
+	/**
+	 * How many templates are ready right now?
+	 * @return the count.
+	 */
+	public int readyCount() {
+		return ready.size();
+	}
+
+	/**
+	 * Stop making templates.
+	 */
+	public void close() {
+		builder.interrupt();
+	}
+}
@@ -0,0 +1,75 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * GreedyBot swims at the closest missing fish, and heads home once it has a few (or there's nobody left to find).
+ *
+ * It's not smart, but it plays the way a hurried person does, which is what we want to balance the game for.
+ */
+public class GreedyBot implements BotPolicy {
+	/**
+	 * Go home once this many fish are following.
+	 */
+	private final int goHomeWith;
+
+	/**
+	 * Make a GreedyBot.
+	 * @param goHomeWith - go home once this many fish are following.
+	 */
+	public GreedyBot(int goHomeWith) {
+		this.goHomeWith = goHomeWith;
+	}
+
+	@Override
+	public void move(FishGame game) {
+		Fish player = game.player;
+		if (game.found.size() >= goHomeWith || (game.missing.isEmpty() && !game.found.isEmpty())) {
+			if (!player.moveTowardHome()) {
+				player.moveRandomly();
+			}
+			return;
+		}
+
+		// Find the closest missing fish (by steps, ignoring rocks).
+		Fish target = null;
+		int best = Integer.MAX_VALUE;
+		for (Fish f : game.missing) {
+			int d = Math.abs(f.getX() - player.getX()) + Math.abs(f.getY() - player.getY());
+			if (d < best) {
+				best = d;
+				target = f;
+			}
+		}
+		if (target == null) {
+			return;
+		}
+
+		int dx = Integer.signum(target.getX() - player.getX());
+		int dy = Integer.signum(target.getY() - player.getY());
+		// Try the longer direction first, then the other one, then anything.
+		boolean xFirst = Math.abs(target.getX() - player.getX()) >= Math.abs(target.getY() - player.getY());
+		if (xFirst ? (moveX(player, dx) || moveY(player, dy)) : (moveY(player, dy) || moveX(player, dx))) {
+			return;
+		}
+		player.moveRandomly();
+	}
+
+	/**
+	 * Move left or right.
+	 * @param player - who moves.
+	 * @param dx - -1 for left, +1 for right, 0 to not try.
+	 * @return true if it moved.
+	 */
+	private static boolean moveX(Fish player, int dx) {
+		return dx < 0 ? player.moveLeft() : dx > 0 && player.moveRight();
+	}
+
+	/**
+	 * Move up or down.
+	 * @param player - who moves.
+	 * @param dy - -1 for up, +1 for down, 0 to not try.
+	 * @return true if it moved.
+	 */
+	private static boolean moveY(Fish player, int dy) {
+		return dy < 0 ? player.moveUp() : dy > 0 && player.moveDown();
+	}
+}
@@ -0,0 +1,307 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.awt.Polygon;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A HeapCensus counts what's in a World, by kind of WorldObject: how many there are, about how many bytes they
+ * keep alive, and how full their {@link Trail}s (recentPositions) are. It also says how many bytes each step
+ * allocated, from the {@link Metrics}.
+ *
+ * Taking one walks the item list once and doesn't look at the heap itself, so it's cheap enough to take every
+ * few hundred steps of a real game (see {@link Metrics#censusPeriodically}).
+ *
+ * The byte counts are estimates, for a 64-bit JVM with compressed pointers (the usual one): a 12-byte header,
+ * 4 bytes per reference, and everything rounded up to 8 bytes. They count the object, its Trail and the Trail's
+ * arrays, and anything else only that object uses (see {@link #ownedBytes}: a FishHome's two Polygons and their
+ * point arrays). They don't count things that are shared (like a Snail's Colors), the World's own tables, or
+ * things like pictures.
+ */
+public class HeapCensus {
+	/**
+	 * Bytes in every object's header.
+	 */
+	private static final int HEADER_BYTES = 12;
+	/**
+	 * Bytes in every array's header (the object header and the length).
+	 */
+	private static final int ARRAY_HEADER_BYTES = 16;
+	/**
+	 * Bytes in one reference.
+	 */
+	private static final int REFERENCE_BYTES = 4;
+
+	/**
+	 * How big one object of each class is, worked out the first time we see it.
+	 */
+	private static final ClassValue<Long> SHALLOW = new ClassValue<Long>() {
+		@Override
+		protected Long computeValue(Class<?> type) {
+			return shallowBytesOf(type);
+		}
+	};
+
+	/**
+	 * What we know about one kind of WorldObject.
+	 */
+	public static class Row {
+		/**
+		 * The simple name of the class (e.g. "Fish").
+		 */
+		public final String type;
+		/**
+		 * How many are in the world.
+		 */
+		public int count;
+		/**
+		 * About how many bytes they keep alive (themselves and their Trails).
+		 */
+		public long retainedBytes;
+		/**
+		 * How many Trail positions are in use, over all of them.
+		 */
+		public long trailUsed;
+		/**
+		 * How many Trail positions there's room for, over all of them.
+		 */
+		public long trailCapacity;
+
+		Row(String type) {
+			this.type = type;
+		}
+
+		/**
+		 * How full are their Trails, on average?
+		 * @return a number from 0 to 1.
+		 */
+		public double getTrailOccupancy() {
+			return trailCapacity == 0 ? 0 : (double) trailUsed / trailCapacity;
+		}
+	}
+
+	/**
+	 * How many steps Metrics had measured when we were taken.
+	 */
+	private final long ticks;
+	/**
+	 * Bytes allocated per step (since the last census, or since Metrics started).
+	 */
+	private final long allocatedBytesPerTick;
+	/**
+	 * One row per kind of object, biggest first.
+	 */
+	private final List<Row> rows;
+
+	/**
+	 * Use {@link #take}.
+	 * @param ticks - steps measured.
+	 * @param allocatedBytesPerTick - bytes per step.
+	 * @param rows - the rows (we keep this list).
+	 */
+	private HeapCensus(long ticks, long allocatedBytesPerTick, List<Row> rows) {
+		this.ticks = ticks;
+		this.allocatedBytesPerTick = allocatedBytesPerTick;
+		this.rows = rows;
+	}
+
+	/**
+	 * Count everything in a world right now.
+	 * @param world - the world to count.
+	 * @param since - the Metrics as of the last census (or null), so allocation is per step since then.
+	 * @return the census.
+	 */
+	public static HeapCensus take(World world, MetricsSnapshot since) {
+		MetricsSnapshot now = world.getMetrics().snapshot();
+		long ticks = now.getTicks() - (since == null ? 0 : since.getTicks());
+		long bytes = now.getAllocatedBytes() - (since == null ? 0 : since.getAllocatedBytes());
+
+		// There are only a handful of kinds, so a list is quicker than a map.
+		List<Row> rows = new ArrayList<>();
+		List<Class<?>> types = new ArrayList<>();
+		for (WorldObject wo : world.viewItems()) {
+			Class<?> type = wo.getClass();
+			int i = types.indexOf(type);
+			if (i < 0) {
+				i = types.size();
+				types.add(type);
+				rows.add(new Row(type.getSimpleName()));
+			}
+			Row row = rows.get(i);
+			row.count++;
+			row.retainedBytes += SHALLOW.get(type) + ownedBytes(wo);
+			Trail trail = wo.recentPositions;
+			if (trail != null) {
+				row.retainedBytes += SHALLOW.get(Trail.class) + 2 * intArrayBytes(trail.capacity());
+				row.trailUsed += trail.size();
+				row.trailCapacity += trail.capacity();
+			}
+		}
+		Collections.sort(rows, (a, b) -> Long.compare(b.retainedBytes, a.retainedBytes));
+		return new HeapCensus(now.getTicks(), ticks == 0 ? 0 : bytes / ticks, rows);
+	}
+
+	/**
+	 * @return how many steps Metrics had measured.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return bytes allocated per step (0 if Metrics is off or the JVM won't say).
+	 */
+	public long getAllocatedBytesPerTick() {
+		return allocatedBytesPerTick;
+	}
+
+	/**
+	 * @return one row per kind of object, biggest first.
+	 */
+	public List<Row> getRows() {
+		return Collections.unmodifiableList(rows);
+	}
+
+	/**
+	 * @return about how many bytes every WorldObject keeps alive, all together.
+	 */
+	public long getRetainedBytes() {
+		long total = 0;
+		for (Row row : rows) {
+			total += row.retainedBytes;
+		}
+		return total;
+	}
+
+	/**
+	 * The column names that go with {@link #toCSV()}.
+	 * @return a CSV header line.
+	 */
+	public static String csvHeader() {
+		return "ticks,type,count,retained_bytes,trail_used,trail_capacity,allocated_bytes_per_tick";
+	}
+
+	/**
+	 * @return this census as CSV rows, one per kind of object (no newline at the end).
+	 */
+	public String toCSV() {
+		StringBuilder sb = new StringBuilder();
+		for (Row row : rows) {
+			if (sb.length() > 0) {
+				sb.append('\n');
+			}
+			sb.append(ticks).append(',').append(row.type).append(',').append(row.count).append(',').append(row.retainedBytes)
+					.append(',').append(row.trailUsed).append(',').append(row.trailCapacity).append(',').append(allocatedBytesPerTick);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return this census as one line of JSON.
+	 */
+	public String toJSON() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"ticks\":").append(ticks);
+		sb.append(",\"allocated_bytes_per_tick\":").append(allocatedBytesPerTick);
+		sb.append(",\"retained_bytes\":").append(getRetainedBytes());
+		sb.append(",\"types\":{");
+		for (int i = 0; i < rows.size(); i++) {
+			Row row = rows.get(i);
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(row.type).append("\":{\"count\":").append(row.count);
+			sb.append(",\"retained_bytes\":").append(row.retainedBytes);
+			sb.append(",\"trail_used\":").append(row.trailUsed);
+			sb.append(",\"trail_capacity\":").append(row.trailCapacity).append('}');
+		}
+		sb.append("}}");
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toJSON();
+	}
+
+	/**
+	 * How many bytes does an object keep alive that only it uses, besides itself and its Trail?
+	 * Only FishHome has anything like that: the roof and house Polygons it draws.
+	 * @param wo - the object.
+	 * @return bytes (0 for most kinds).
+	 */
+	private static long ownedBytes(WorldObject wo) {
+		if (wo instanceof FishHome) {
+			FishHome home = (FishHome) wo;
+			return polygonBytes(home.roof) + polygonBytes(home.house);
+		}
+		return 0;
+	}
+
+	/**
+	 * How big is a Polygon, with its xpoints and ypoints arrays? (Its bounds are only made if somebody asks for
+	 * them, and nobody does, so they aren't counted.)
+	 * @param p - the polygon.
+	 * @return bytes.
+	 */
+	private static long polygonBytes(Polygon p) {
+		return SHALLOW.get(Polygon.class) + intArrayBytes(p.xpoints.length) + intArrayBytes(p.ypoints.length);
+	}
+
+	/**
+	 * How big is an int[] this long?
+	 * @param length - how many ints.
+	 * @return bytes, rounded up to 8.
+	 */
+	private static long intArrayBytes(int length) {
+		return align(ARRAY_HEADER_BYTES + 4L * length);
+	}
+
+	/**
+	 * Add up the fields of a class (and its superclasses) to guess how big one object is.
+	 * @param type - the class.
+	 * @return bytes, rounded up to 8.
+	 */
+	private static long shallowBytesOf(Class<?> type) {
+		long bytes = HEADER_BYTES;
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				if (Modifier.isStatic(f.getModifiers())) {
+					continue;
+				}
+				bytes += fieldBytes(f.getType());
+			}
+		}
+		return align(bytes);
+	}
+
+	/**
+	 * How many bytes does a field of this type take?
+	 * @param type - the field's type.
+	 * @return bytes.
+	 */
+	private static int fieldBytes(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		} else if (type == int.class || type == float.class) {
+			return 4;
+		} else if (type == short.class || type == char.class) {
+			return 2;
+		} else if (type == byte.class || type == boolean.class) {
+			return 1;
+		}
+		return REFERENCE_BYTES;
+	}
+
+	/**
+	 * Round up to the next multiple of 8 (the JVM lines objects up that way).
+	 * @param bytes - a size.
+	 * @return the size, rounded up.
+	 */
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+}
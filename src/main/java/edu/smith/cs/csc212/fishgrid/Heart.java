@@ -15,7 +15,7 @@ public class Heart extends WorldObject {
 	// player receives 20 points for collecting heart
 	static int points = 20;
 
-	public Heart(World world) {
+	public Heart(WorldBackend world) {
 		super(world);
 	}
 
@@ -0,0 +1,181 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Histogram counts how often each value shows up, in fixed-width bins, without remembering the values themselves.
+ *
+ * Two Histograms with the same bins can be merged by adding their counts, so every thread can keep its own and
+ * we add them up at the end (or save them halfway through). Values past the last bin all go in one overflow bin.
+ */
+public class Histogram {
+	/**
+	 * How wide is each bin?
+	 */
+	private final long binWidth;
+	/**
+	 * counts[i] is how many values were in [i*binWidth, (i+1)*binWidth); the last one is everything bigger.
+	 */
+	private final long[] counts;
+	/**
+	 * How many values have we seen?
+	 */
+	private long count;
+	/**
+	 * What do they add up to (for the mean)?
+	 */
+	private long sum;
+	/**
+	 * The smallest value we've seen.
+	 */
+	private long min = Long.MAX_VALUE;
+	/**
+	 * The biggest value we've seen.
+	 */
+	private long max = Long.MIN_VALUE;
+
+	/**
+	 * Make an empty Histogram.
+	 * @param binWidth - how wide each bin is.
+	 * @param numBins - how many bins before the overflow bin.
+	 */
+	public Histogram(long binWidth, int numBins) {
+		this.binWidth = binWidth;
+		this.counts = new long[numBins + 1];
+	}
+
+	/**
+	 * Make an empty Histogram with the same bins as another one.
+	 * @param like - the Histogram to copy the shape of.
+	 * @return a new, empty Histogram.
+	 */
+	public static Histogram emptyLike(Histogram like) {
+		return new Histogram(like.binWidth, like.counts.length - 1);
+	}
+
+	/**
+	 * Count a value. (Negative values go in the first bin.)
+	 * @param value - what we saw.
+	 */
+	public void add(long value) {
+		int bin = (int) Math.min(counts.length - 1, Math.max(0, value / binWidth));
+		counts[bin]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Add all of another Histogram's counts to this one.
+	 * @param other - a Histogram with the same bins.
+	 */
+	public void merge(Histogram other) {
+		if (other.binWidth != binWidth || other.counts.length != counts.length) {
+			throw new IllegalArgumentException("Can't merge histograms with different bins.");
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * How many values have we seen?
+	 * @return the count.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * What's the average value?
+	 * @return the mean (0 if we haven't seen anything).
+	 */
+	public double mean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * The smallest value we've seen.
+	 * @return the min (0 if we haven't seen anything).
+	 */
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * The biggest value we've seen.
+	 * @return the max (0 if we haven't seen anything).
+	 */
+	public long getMax() {
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * About what value is bigger than a fraction q of what we've seen? (Exact to within one bin.)
+	 * @param q - between 0 and 1 (0.5 is the median).
+	 * @return the start of the bin where that value is.
+	 */
+	public long quantile(double q) {
+		if (count == 0) {
+			return 0;
+		}
+		long want = (long) Math.ceil(q * count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= Math.max(1, want)) {
+				return Math.max(getMin(), Math.min(getMax(), i * binWidth));
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Save this Histogram (see {@link #read}).
+	 * @param out - where to write it.
+	 * @throws IOException if writing fails.
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(binWidth);
+		out.writeInt(counts.length);
+		for (long c : counts) {
+			out.writeLong(c);
+		}
+		out.writeLong(count);
+		out.writeLong(sum);
+		out.writeLong(min);
+		out.writeLong(max);
+	}
+
+	/**
+	 * Load a Histogram saved with {@link #write}.
+	 * @param in - where to read it from.
+	 * @return the Histogram.
+	 * @throws IOException if reading fails.
+	 */
+	public static Histogram read(DataInput in) throws IOException {
+		long binWidth = in.readLong();
+		Histogram h = new Histogram(binWidth, in.readInt() - 1);
+		for (int i = 0; i < h.counts.length; i++) {
+			h.counts[i] = in.readLong();
+		}
+		h.count = in.readLong();
+		h.sum = in.readLong();
+		h.min = in.readLong();
+		h.max = in.readLong();
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.2f min=%d p50=%d p90=%d p99=%d max=%d", count, mean(), getMin(),
+				quantile(0.5), quantile(0.9), quantile(0.99), getMax());
+	}
+}
@@ -0,0 +1,445 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.Arrays;
+
+/**
+ * A HomeDistanceField knows, for every cell in a World, how many steps it takes to swim to the nearest FishHome.
+ *
+ * It is a breadth-first-search (BFS) distance map, but we never redo the whole search.
+ * When a Rock falls, gets clicked away, or a Snail crawls by, only the cells near the change get fixed up.
+ * That means any number of fish can ask "which way is home?" for free every step.
+ *
+ * Rocks and Snails block the field. Fish don't (they move too much), so {@link World#canSwim} still has the final say.
+ * Parts of the world that aren't loaded yet (see {@link World#isLoaded}) block it too, until they show up.
+ */
+public class HomeDistanceField {
+	/**
+	 * The distance we use for cells that can't reach home at all.
+	 */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	/**
+	 * Offsets for the four neighbors of a cell (right, left, down, up).
+	 */
+	private static final int[] DX = { 1, -1, 0, 0 };
+	/**
+	 * Offsets for the four neighbors of a cell (right, left, down, up).
+	 */
+	private static final int[] DY = { 0, 0, 1, -1 };
+
+	/**
+	 * The world we measure (for its size, and which parts are loaded).
+	 */
+	private final World world;
+	/**
+	 * Steps-to-home for every cell.
+	 */
+	private final IntGrid dist;
+	/**
+	 * How many Rocks/Snails are in every cell? (Usually 0 or 1, but setPosition ignores the rules.)
+	 */
+	private final IntGrid blockers;
+	/**
+	 * How many FishHomes are in every cell?
+	 */
+	private final IntGrid homes;
+	/**
+	 * Scratch space: which cells are being repaired right now? (1 if so.)
+	 */
+	private final IntGrid affected;
+	/**
+	 * Scratch space: a queue of cells for the BFS (each packed into a long by {@link #key}).
+	 */
+	private long[] queue;
+	/**
+	 * Scratch space for {@link #repairIncrease}: the cells being repaired.
+	 */
+	private long[] cells;
+	/**
+	 * Scratch space for {@link #repairIncrease}: the cells that can be reached from outside, by distance.
+	 */
+	private long[] seeds;
+
+	/**
+	 * Create an empty field (no homes yet, so everything is unreachable).
+	 * @param world - the world to measure.
+	 */
+	public HomeDistanceField(World world) {
+		this.world = world;
+		this.dist = new IntGrid(UNREACHABLE);
+		this.blockers = new IntGrid(0);
+		this.homes = new IntGrid(0);
+		this.affected = new IntGrid(0);
+		this.queue = new long[64];
+		this.cells = new long[64];
+		this.seeds = new long[64];
+	}
+
+	/**
+	 * Make a field that starts out as a copy of another one (see {@link #copy}).
+	 * @param world - the world to measure.
+	 * @param from - the field to copy.
+	 */
+	private HomeDistanceField(World world, HomeDistanceField from) {
+		this.world = world;
+		this.dist = from.dist.share();
+		this.blockers = from.blockers.share();
+		this.homes = from.homes.share();
+		this.affected = new IntGrid(0);
+		this.queue = new long[64];
+		this.cells = new long[64];
+		this.seeds = new long[64];
+	}
+
+	/**
+	 * Copy this field for another world with the same size and the same Rocks, Snails and homes
+	 * (much faster than working it out again; see {@link WorldTemplate}). The copy shares our pages until it
+	 * changes them, so this field must never change again.
+	 * @param world - the other world.
+	 * @return a field for that world.
+	 */
+	HomeDistanceField copy(World world) {
+		return new HomeDistanceField(world, this);
+	}
+
+	/**
+	 * Pack a cell into one long.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the key.
+	 */
+	private static long key(int x, int y) {
+		return ((long) y << 32) | (x & 0xffffffffL);
+	}
+
+	/**
+	 * Unpack the x from a {@link #key}.
+	 * @param key - the packed cell.
+	 * @return the tile-x.
+	 */
+	private static int keyX(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Unpack the y from a {@link #key}.
+	 * @param key - the packed cell.
+	 * @return the tile-y.
+	 */
+	private static int keyY(long key) {
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * Make the scratch space big enough for a repair this many cells big now, so a repair never has to grow it.
+	 * @param count - how many cells (the whole world, for a small one).
+	 */
+	void reserve(int count) {
+		if (queue.length < count) {
+			queue = Arrays.copyOf(queue, count);
+		}
+		if (cells.length < count) {
+			cells = new long[count];
+			seeds = new long[count];
+		}
+	}
+
+	/**
+	 * Put a cell on the end of the queue, growing it if needed.
+	 * @param tail - where the end of the queue is.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the new end of the queue.
+	 */
+	private int enqueue(int tail, int x, int y) {
+		if (tail == queue.length) {
+			queue = Arrays.copyOf(queue, queue.length * 2);
+		}
+		queue[tail] = key(x, y);
+		return tail + 1;
+	}
+
+	/**
+	 * How many steps from (x,y) to the nearest home?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the distance, or {@link #UNREACHABLE}.
+	 */
+	public int distance(int x, int y) {
+		if (!inBounds(x, y)) {
+			return UNREACHABLE;
+		}
+		return dist.get(x, y);
+	}
+
+	/**
+	 * Does this object change the shape of the field?
+	 * @param item - the WorldObject.
+	 * @return true for blockers (Rock, Snail) and homes.
+	 */
+	private static boolean matters(WorldObject item) {
+		return item instanceof Rock || item instanceof Snail || item instanceof FishHome;
+	}
+
+	/**
+	 * An object showed up in the world.
+	 * @param item - the new WorldObject.
+	 */
+	void added(WorldObject item) {
+		if (matters(item)) {
+			adjust(item, item.getX(), item.getY(), +1);
+		}
+	}
+
+	/**
+	 * An object left the world.
+	 * @param item - the removed WorldObject.
+	 */
+	void removed(WorldObject item) {
+		if (matters(item)) {
+			adjust(item, item.getX(), item.getY(), -1);
+		}
+	}
+
+	/**
+	 * An object moved from (oldX, oldY) to where it is now.
+	 * @param item - the WorldObject that moved.
+	 * @param oldX - where it was (x).
+	 * @param oldY - where it was (y).
+	 */
+	void moved(WorldObject item, int oldX, int oldY) {
+		if (!matters(item) || (oldX == item.getX() && oldY == item.getY())) {
+			return;
+		}
+		adjust(item, oldX, oldY, -1);
+		adjust(item, item.getX(), item.getY(), +1);
+	}
+
+	/**
+	 * A rectangle of the world was loaded or unloaded; fix up every cell in it.
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 */
+	void regionChanged(int x0, int y0, int x1, int y1) {
+		for (int y = y0; y <= y1; y++) {
+			for (int x = x0; x <= x1; x++) {
+				if (inBounds(x, y)) {
+					cellChanged(x, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count an object in (or out of) a cell, and repair the field around it.
+	 * @param item - the WorldObject.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param delta - +1 for arriving, -1 for leaving.
+	 */
+	private void adjust(WorldObject item, int x, int y, int delta) {
+		if (!inBounds(x, y)) {
+			return;
+		}
+		if (item instanceof FishHome) {
+			homes.add(x, y, delta);
+		} else {
+			blockers.add(x, y, delta);
+		}
+		cellChanged(x, y);
+	}
+
+	/**
+	 * Is this point on the grid?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if it's inside the world.
+	 */
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && x < world.getWidth() && y >= 0 && y < world.getHeight();
+	}
+
+	/**
+	 * Can the field flow through this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if it's on the grid, loaded, and has no Rock or Snail.
+	 */
+	private boolean open(int x, int y) {
+		return inBounds(x, y) && blockers.get(x, y) == 0 && world.isLoaded(x, y);
+	}
+
+	/**
+	 * What should a cell's distance be, if all of its neighbors are right?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the best distance we can support.
+	 */
+	private int supportedDistance(int x, int y) {
+		if (!open(x, y)) {
+			return UNREACHABLE;
+		}
+		if (homes.get(x, y) > 0) {
+			return 0;
+		}
+		int best = UNREACHABLE;
+		for (int d = 0; d < 4; d++) {
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (inBounds(nx, ny)) {
+				int nd = dist.get(nx, ny);
+				if (nd != UNREACHABLE && nd + 1 < best) {
+					best = nd + 1;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Something in this cell changed; fix up the distances that depend on it.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	private void cellChanged(int x, int y) {
+		int before = dist.get(x, y);
+		int after = supportedDistance(x, y);
+		if (after < before) {
+			dist.set(x, y, after);
+			spreadDecrease(x, y);
+		} else if (after > before) {
+			repairIncrease(x, y);
+		}
+	}
+
+	/**
+	 * A cell got closer to home: keep searching outward while neighbors get closer too.
+	 * @param x - the tile-x of the cell that just got a smaller distance.
+	 * @param y - the tile-y of the cell that just got a smaller distance.
+	 */
+	private void spreadDecrease(int x, int y) {
+		int head = 0;
+		int tail = enqueue(0, x, y);
+		while (head < tail) {
+			long cell = queue[head++];
+			tail = relaxNeighbors(keyX(cell), keyY(cell), tail);
+		}
+	}
+
+	/**
+	 * Give every open neighbor of this cell a chance to get closer to home through it.
+	 * @param x - the tile-x (with a finite distance).
+	 * @param y - the tile-y (with a finite distance).
+	 * @param tail - the end of the BFS queue.
+	 * @return the new end of the BFS queue.
+	 */
+	private int relaxNeighbors(int x, int y, int tail) {
+		int next = dist.get(x, y) + 1;
+		for (int d = 0; d < 4; d++) {
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (open(nx, ny) && dist.get(nx, ny) > next) {
+				dist.set(nx, ny, next);
+				tail = enqueue(tail, nx, ny);
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * A cell got further from home (a rock landed, a home left, or it was unloaded).
+	 *
+	 * First we find every cell whose shortest path went through it (and has no other way home as short),
+	 * then we forget their distances and re-grow them from the cells around them that are still fine.
+	 *
+	 * @param startX - the tile-x of the cell that can no longer support its old distance.
+	 * @param startY - the tile-y of the cell that can no longer support its old distance.
+	 */
+	private void repairIncrease(int startX, int startY) {
+		// Step 1: find the cells that depended on start. The queue visits distances in increasing order,
+		// so when we look at a cell, all of its closer-to-home neighbors have already been decided.
+		int head = 0;
+		int tail = enqueue(0, startX, startY);
+		affected.set(startX, startY, 1);
+		while (head < tail) {
+			long cell = queue[head++];
+			int x = keyX(cell);
+			int y = keyY(cell);
+			int next = dist.get(x, y) + 1;
+			for (int d = 0; d < 4; d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if (!inBounds(nx, ny)) {
+					continue;
+				}
+				if (affected.get(nx, ny) == 0 && dist.get(nx, ny) == next && homes.get(nx, ny) == 0
+						&& !hasOtherSupport(nx, ny)) {
+					affected.set(nx, ny, 1);
+					tail = enqueue(tail, nx, ny);
+				}
+			}
+		}
+
+		// Step 2: forget the old distances, and figure out where the good part of the field can reach back in.
+		int count = tail;
+		if (cells.length < count) {
+			cells = new long[Math.max(count, cells.length * 2)];
+			seeds = new long[cells.length];
+		}
+		System.arraycopy(queue, 0, cells, 0, count);
+		for (int i = 0; i < count; i++) {
+			dist.set(keyX(cells[i]), keyY(cells[i]), UNREACHABLE);
+		}
+		// A seed is its distance (high half) and its index in cells (low half), so sorting them sorts by distance.
+		int seedCount = 0;
+		for (int i = 0; i < count; i++) {
+			int x = keyX(cells[i]);
+			int y = keyY(cells[i]);
+			affected.set(x, y, 0);
+			int d = supportedDistance(x, y);
+			if (d != UNREACHABLE) {
+				seeds[seedCount++] = ((long) d << 32) | i;
+			}
+		}
+		Arrays.sort(seeds, 0, seedCount);
+
+		// Step 3: a BFS where the seeds join the queue in order of distance.
+		head = 0;
+		tail = 0;
+		int s = 0;
+		while (s < seedCount || head < tail) {
+			if (head == tail || (s < seedCount && (seeds[s] >>> 32) <= dist.get(keyX(queue[head]), keyY(queue[head])))) {
+				int d = (int) (seeds[s] >>> 32);
+				long cell = cells[(int) seeds[s++]];
+				int x = keyX(cell);
+				int y = keyY(cell);
+				if (d < dist.get(x, y)) {
+					dist.set(x, y, d);
+					tail = enqueue(tail, x, y);
+				}
+				continue;
+			}
+			long cell = queue[head++];
+			tail = relaxNeighbors(keyX(cell), keyY(cell), tail);
+		}
+	}
+
+	/**
+	 * Does this cell have a neighbor one step closer to home that isn't being repaired?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if its distance is still fine.
+	 */
+	private boolean hasOtherSupport(int x, int y) {
+		int want = dist.get(x, y) - 1;
+		for (int d = 0; d < 4; d++) {
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (open(nx, ny) && affected.get(nx, ny) == 0 && dist.get(nx, ny) == want) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,199 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An IntGrid is an int for every cell of a (possibly enormous) grid.
+ *
+ * Memory is only used for 64x64 pages that have been written to, so a huge world that is mostly untouched
+ * costs almost nothing. Cells we never wrote to read as the default value.
+ *
+ * A grid can also start out sharing another grid's pages (see {@link #share}); it only copies a page the first time
+ * it writes to it.
+ */
+public class IntGrid {
+	/**
+	 * Pages are 2^PAGE_BITS cells on a side.
+	 */
+	static final int PAGE_BITS = 6;
+	/**
+	 * Pages are this many cells on a side.
+	 */
+	static final int PAGE_SIZE = 1 << PAGE_BITS;
+	/**
+	 * What do cells that were never written hold?
+	 */
+	private final int defaultValue;
+	/**
+	 * The pages we have so far, by {@link #pageKey}.
+	 */
+	private final Map<Long, int[]> pages;
+	/**
+	 * The key of the last page we looked at (most lookups are next to the previous one).
+	 */
+	private long lastKey = Long.MIN_VALUE;
+	/**
+	 * The last page we looked at (null if it doesn't exist).
+	 */
+	private int[] lastPage;
+	/**
+	 * Does the last page we looked at belong to {@link #base} (so we have to copy it before writing)?
+	 */
+	private boolean lastBorrowed;
+	/**
+	 * The grid we were shared from (null if we weren't); pages we don't have yet are read from it.
+	 */
+	private IntGrid base;
+
+	/**
+	 * Make an IntGrid where every cell starts out as defaultValue.
+	 * @param defaultValue - what unwritten cells hold.
+	 */
+	public IntGrid(int defaultValue) {
+		this.defaultValue = defaultValue;
+		this.pages = new HashMap<>();
+	}
+
+	/**
+	 * Which page is this cell on?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return a key naming the page.
+	 */
+	static long pageKey(int x, int y) {
+		return ((long) (y >> PAGE_BITS) << 32) | ((x >> PAGE_BITS) & 0xffffffffL);
+	}
+
+	/**
+	 * Where in its page is this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return an index into the page.
+	 */
+	static int offset(int x, int y) {
+		return ((y & (PAGE_SIZE - 1)) << PAGE_BITS) | (x & (PAGE_SIZE - 1));
+	}
+
+	/**
+	 * Find the page for a cell.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param create - make it if it doesn't exist?
+	 * @return the page, or null.
+	 */
+	private int[] page(int x, int y, boolean create) {
+		long key = pageKey(x, y);
+		if (key != lastKey || (lastPage == null && create)) {
+			int[] p = pages.get(key);
+			lastBorrowed = false;
+			if (p == null && base != null) {
+				p = base.find(key);
+				lastBorrowed = p != null;
+			}
+			if (p == null && create) {
+				p = new int[PAGE_SIZE * PAGE_SIZE];
+				if (defaultValue != 0) {
+					Arrays.fill(p, defaultValue);
+				}
+				pages.put(key, p);
+			}
+			lastKey = key;
+			lastPage = p;
+		}
+		return lastPage;
+	}
+
+	/**
+	 * What's in this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the value (or the default, if never written).
+	 */
+	public int get(int x, int y) {
+		int[] p = page(x, y, false);
+		if (p == null) {
+			return defaultValue;
+		}
+		return p[offset(x, y)];
+	}
+
+	/**
+	 * Look up a page here or in our base, without touching the last-page cache (other grids share us).
+	 * @param key - the {@link #pageKey}.
+	 * @return the page, or null.
+	 */
+	private int[] find(long key) {
+		int[] p = pages.get(key);
+		if (p == null && base != null) {
+			p = base.find(key);
+		}
+		return p;
+	}
+
+	/**
+	 * Find the page for a cell, to write to it (if it's still our base's, this is when we copy it).
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param create - make the page if it doesn't exist yet?
+	 * @return the page (or null).
+	 */
+	private int[] writablePage(int x, int y, boolean create) {
+		int[] p = page(x, y, create);
+		if (lastBorrowed) {
+			p = p.clone();
+			pages.put(lastKey, p);
+			lastPage = p;
+			lastBorrowed = false;
+		}
+		return p;
+	}
+
+	/**
+	 * Put a value in this cell.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param value - the new value.
+	 */
+	public void set(int x, int y, int value) {
+		int[] p = writablePage(x, y, value != defaultValue);
+		if (p != null) {
+			p[offset(x, y)] = value;
+		}
+	}
+
+	/**
+	 * Add to the value in this cell.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param delta - how much to add.
+	 * @return the new value.
+	 */
+	public int add(int x, int y, int delta) {
+		int[] p = writablePage(x, y, true);
+		int i = offset(x, y);
+		p[i] += delta;
+		return p[i];
+	}
+
+	/**
+	 * How many pages have we made? (Handy for checking memory use.)
+	 * @return the number of pages.
+	 */
+	public int pageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Make a grid that starts out the same as this one. It reads our pages until it writes to them (then it copies
+	 * just that page), so this takes the same time however big the grid is.
+	 * This grid must never change again (but any number of threads may share it at once).
+	 * @return the new grid.
+	 */
+	public IntGrid share() {
+		IntGrid copy = new IntGrid(defaultValue);
+		copy.base = this;
+		return copy;
+	}
+}
@@ -0,0 +1,120 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * An ItemSpliterator walks part of an array of WorldObjects, handing out only the ones of one type.
+ * It's what {@link World#stream(Class)} (and the rectangle version) is made of.
+ *
+ * The array is a snapshot that nobody changes, so it's safe to walk from many threads while the game goes on.
+ * Splitting cuts the range in half, so every thread of a parallel stream gets about the same number of objects.
+ *
+ * @param <T> - the type of object we hand out.
+ */
+class ItemSpliterator<T extends WorldObject> implements Spliterator<T> {
+	/**
+	 * Don't split pieces smaller than this; it costs more to hand them to another thread than to just do them.
+	 */
+	private static final int MIN_SPLIT = 256;
+
+	/**
+	 * The snapshot of the world's items.
+	 */
+	private final WorldObject[] items;
+	/**
+	 * Which objects to hand out.
+	 */
+	private final Class<T> type;
+	/**
+	 * The next index to look at.
+	 */
+	private int index;
+	/**
+	 * One past the last index to look at.
+	 */
+	private final int end;
+	/**
+	 * Is everything in the array one we hand out? (Then we know exactly how many there are.)
+	 */
+	private final boolean allOfType;
+
+	/**
+	 * Walk part of a snapshot.
+	 * @param items - the snapshot (we don't change it, and nobody else may either).
+	 * @param type - which objects to hand out (WorldObject.class for all of them).
+	 * @param start - the first index.
+	 * @param end - one past the last index.
+	 */
+	ItemSpliterator(WorldObject[] items, Class<T> type, int start, int end) {
+		this(items, type, start, end, type == WorldObject.class);
+	}
+
+	/**
+	 * Walk part of an array.
+	 * @param items - the array (we don't change it, and nobody else may either).
+	 * @param type - which objects to hand out.
+	 * @param start - the first index.
+	 * @param end - one past the last index.
+	 * @param allOfType - true if every object in the array is already a {@code type}.
+	 */
+	ItemSpliterator(WorldObject[] items, Class<T> type, int start, int end, boolean allOfType) {
+		this.items = items;
+		this.type = type;
+		this.index = start;
+		this.end = end;
+		this.allOfType = allOfType;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (index < end) {
+			WorldObject it = items[index++];
+			if (type.isInstance(it)) {
+				action.accept(type.cast(it));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		// Copy the fields into locals, so the loop doesn't have to keep reading them.
+		WorldObject[] items = this.items;
+		int end = this.end;
+		for (int i = index; i < end; i++) {
+			WorldObject it = items[i];
+			if (type.isInstance(it)) {
+				action.accept(type.cast(it));
+			}
+		}
+		index = end;
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		int middle = (index + end) >>> 1;
+		if (middle - index < MIN_SPLIT) {
+			return null;
+		}
+		Spliterator<T> front = new ItemSpliterator<>(items, type, index, middle, allOfType);
+		index = middle;
+		return front;
+	}
+
+	@Override
+	public long estimateSize() {
+		// If we're handing out everything this is exact; otherwise it's the most there could be.
+		return end - index;
+	}
+
+	@Override
+	public int characteristics() {
+		int c = ORDERED | NONNULL | IMMUTABLE;
+		if (allOfType) {
+			c |= SIZED | SUBSIZED;
+		}
+		return c;
+	}
+}
@@ -0,0 +1,235 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A LockstepVerifier plays the same game twice, once on a fast {@link World} and once on a {@link ReferenceWorld},
+ * and checks after every step that they agree. The first time they don't, it stops and says where.
+ *
+ * Both games start from the same seed and a bot plays both, so as long as every answer matches, every step matches.
+ * Besides comparing the games, it asks both worlds about a few random cells each step (find, isEmpty, canSwim)
+ * and about whole rows of legalMoves, which catches wrong answers before they change the game.
+ *
+ * Run it with: {@code java edu.smith.cs.csc212.fishgrid.LockstepVerifier [steps] [seed] [size]}
+ */
+public class LockstepVerifier {
+	/**
+	 * How many random cells to ask both worlds about every step.
+	 */
+	public static final int CHECKS_PER_STEP = 32;
+
+	/**
+	 * The game on the fast world.
+	 */
+	private final FishGame fast;
+	/**
+	 * The game on the reference world.
+	 */
+	private final FishGame reference;
+	/**
+	 * Who plays both games.
+	 */
+	private final BotPolicy bot;
+	/**
+	 * Which cells to check (separate from the games' random numbers, so checking doesn't change the games).
+	 */
+	private final Random cells;
+
+	/**
+	 * Set up two copies of the same game.
+	 * @param seed - both games start from this.
+	 * @param width - the width of the world.
+	 * @param height - the height of the world.
+	 * @param bot - who plays (it must only use the game it's given, and its random numbers).
+	 */
+	public LockstepVerifier(long seed, int width, int height, BotPolicy bot) {
+		World fastWorld = new World(width, height, new Random(seed));
+		fastWorld.setVerbose(false);
+		WorldBackend referenceWorld = new ReferenceWorld(width, height, new Random(seed));
+		this.fast = new FishGame(fastWorld);
+		this.reference = new FishGame(referenceWorld);
+		this.bot = bot;
+		this.cells = new Random(~seed);
+		compare();
+	}
+
+	/**
+	 * Play one step of both games and compare them.
+	 * @throws IllegalStateException the first time they disagree.
+	 */
+	public void step() {
+		bot.move(fast);
+		bot.move(reference);
+		fast.step();
+		reference.step();
+		compare();
+	}
+
+	/**
+	 * Play some steps (stopping early if the game is won).
+	 * @param steps - the most steps to play.
+	 * @return how many steps were played.
+	 * @throws IllegalStateException the first time the games disagree.
+	 */
+	public int run(int steps) {
+		int played = 0;
+		while (played < steps && !fast.gameOver()) {
+			step();
+			played++;
+		}
+		return played;
+	}
+
+	/**
+	 * Stop with a message saying where the games disagree.
+	 * @param what - what was different.
+	 * @param fastValue - what the fast world said.
+	 * @param referenceValue - what the reference world said.
+	 */
+	private void diverged(String what, Object fastValue, Object referenceValue) {
+		throw new IllegalStateException("Step " + reference.stepsTaken + ": " + what + " differs: fast=" + fastValue
+				+ " reference=" + referenceValue);
+	}
+
+	/**
+	 * Check one number.
+	 * @param what - what it is.
+	 * @param fastValue - from the fast game.
+	 * @param referenceValue - from the reference game.
+	 */
+	private void same(String what, int fastValue, int referenceValue) {
+		if (fastValue != referenceValue) {
+			diverged(what, fastValue, referenceValue);
+		}
+	}
+
+	/**
+	 * Compare everything we can about the two games.
+	 */
+	private void compare() {
+		same("steps", fast.stepsTaken, reference.stepsTaken);
+		same("score", fast.score, reference.score);
+		same("fish lost", fast.fishLost, reference.fishLost);
+		same("safe fish", fast.safeCount, reference.safeCount);
+		same("missing fish", fast.missing.size(), reference.missing.size());
+		same("found fish", fast.found.size(), reference.found.size());
+
+		// Objects are registered in the same order, so the n-th object should match in every way we can see.
+		List<WorldObject> fastItems = fast.world.viewItems();
+		List<WorldObject> referenceItems = reference.world.viewItems();
+		same("object count", fastItems.size(), referenceItems.size());
+		Map<WorldObject, Integer> fastIndex = new IdentityHashMap<>();
+		Map<WorldObject, Integer> referenceIndex = new IdentityHashMap<>();
+		for (int i = 0; i < fastItems.size(); i++) {
+			WorldObject f = fastItems.get(i);
+			WorldObject r = referenceItems.get(i);
+			if (f.getClass() != r.getClass() || f.getX() != r.getX() || f.getY() != r.getY()) {
+				diverged("object " + i, describe(f), describe(r));
+			}
+			if (f instanceof Fish && ((Fish) f).status != ((Fish) r).status) {
+				diverged("status of object " + i, ((Fish) f).status, ((Fish) r).status);
+			}
+			fastIndex.put(f, i);
+			referenceIndex.put(r, i);
+		}
+
+		// Ask both worlds about some cells: random ones, and the ones around the player.
+		WorldBackend fw = fast.world;
+		WorldBackend rw = reference.world;
+		for (int i = 0; i < CHECKS_PER_STEP + 5; i++) {
+			int x, y;
+			if (i < CHECKS_PER_STEP) {
+				x = cells.nextInt(fw.getWidth());
+				y = cells.nextInt(fw.getHeight());
+			} else {
+				int[] dx = { 0, 1, -1, 0, 0 };
+				int[] dy = { 0, 0, 0, 1, -1 };
+				x = fast.player.getX() + dx[i - CHECKS_PER_STEP];
+				y = fast.player.getY() + dy[i - CHECKS_PER_STEP];
+			}
+			String where = " at (" + x + "," + y + ")";
+			int[] fastFound = indexes(fw.find(x, y), fastIndex);
+			int[] referenceFound = indexes(rw.find(x, y), referenceIndex);
+			if (!Arrays.equals(fastFound, referenceFound)) {
+				diverged("find" + where, Arrays.toString(fastFound), Arrays.toString(referenceFound));
+			}
+			if (fw.isEmpty(x, y) != rw.isEmpty(x, y)) {
+				diverged("isEmpty" + where, fw.isEmpty(x, y), rw.isEmpty(x, y));
+			}
+			if (fw.canSwim(fast.player, x, y) != rw.canSwim(reference.player, x, y)) {
+				diverged("canSwim(player)" + where, fw.canSwim(fast.player, x, y), rw.canSwim(reference.player, x, y));
+			}
+			if (!fast.missing.isEmpty()) {
+				Fish f = fast.missing.get(0);
+				Fish r = reference.missing.get(0);
+				if (fw.canSwim(f, x, y) != rw.canSwim(r, x, y)) {
+					diverged("canSwim(fish)" + where, fw.canSwim(f, x, y), rw.canSwim(r, x, y));
+				}
+			}
+		}
+
+		// And about whole rows of moves, around the player.
+		long[] fastMoves = new long[fw.rowWords()];
+		long[] referenceMoves = new long[rw.rowWords()];
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (boolean isPlayer : new boolean[] { true, false }) {
+					int y = fast.player.getY() + dy;
+					fw.legalMoves(y, dx, dy, isPlayer, fastMoves);
+					rw.legalMoves(y, dx, dy, isPlayer, referenceMoves);
+					if (!Arrays.equals(fastMoves, referenceMoves)) {
+						diverged("legalMoves(" + dx + "," + dy + "," + isPlayer + ") in row " + y, Arrays.toString(fastMoves),
+								Arrays.toString(referenceMoves));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Turn a list of objects into their places in their world's list (sorted, since find's order isn't promised).
+	 * @param found - what find said.
+	 * @param index - where each object is in its world's list.
+	 * @return the sorted places.
+	 */
+	private static int[] indexes(List<WorldObject> found, Map<WorldObject, Integer> index) {
+		int[] out = new int[found.size()];
+		for (int i = 0; i < out.length; i++) {
+			out[i] = index.get(found.get(i));
+		}
+		Arrays.sort(out);
+		return out;
+	}
+
+	/**
+	 * Say what an object is and where.
+	 * @param item - the object.
+	 * @return something like "Rock(3,4)".
+	 */
+	private static String describe(WorldObject item) {
+		return item.getClass().getSimpleName() + "(" + item.getX() + "," + item.getY() + ")";
+	}
+
+	/**
+	 * Check the fast world against the reference from the command line.
+	 * @param args - [steps] [seed] [size], all optional.
+	 */
+	public static void main(String[] args) {
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		LockstepVerifier verifier = new LockstepVerifier(seed, size, size, new GreedyBot(3));
+		try {
+			int played = verifier.run(steps);
+			System.out.println("OK: the worlds agreed for all " + played + " steps.");
+		} catch (IllegalStateException e) {
+			System.out.println("DIVERGED: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
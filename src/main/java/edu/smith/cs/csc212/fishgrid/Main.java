@@ -34,10 +34,30 @@ public class Main extends GFX {
 	 * There's a border to make it look pretty (the board is inset by this much).
 	 */
 	public static int BORDER = 5;
+	/**
+	 * How many times per second the game steps on its own (snails, falling rocks, wandering fish).
+	 */
+	public static double TICKS_PER_SECOND = 2.0;
+	/**
+	 * Never run more than this many steps between two frames, even if we fell behind.
+	 */
+	public static int MAX_TICKS_PER_UPDATE = 5;
+	/**
+	 * How far can the player see? (0 means they see everything, like always.)
+	 */
+	public static int FOG_RADIUS = 0;
 	/**
 	 * This is where the game logic lives.
 	 */
 	FishGame game;
+	/**
+	 * New games, set up ahead of time so starting over is instant.
+	 */
+	private final GameTemplates templates = new GameTemplates(LOGICAL_GRID_SIZE, LOGICAL_GRID_SIZE, 2, System.nanoTime());
+	/**
+	 * What the player can see (null unless FOG_RADIUS is turned on).
+	 */
+	VisibilityField fog;
 	/**
 	 * This TextBox wraps up making fonts and centering text.
 	 */
@@ -46,19 +66,31 @@ public class Main extends GFX {
 	 * This is a rectangle representing the TOP_PART of the screen.
 	 */
 	Rectangle2D topRect;
+	/**
+	 * This decides when the game steps by itself.
+	 */
+	SimulationClock clock = new SimulationClock(TICKS_PER_SECOND, MAX_TICKS_PER_UPDATE, SimulationClock.Policy.SKIP);
 
 	/**
 	 * Construct a new fish game.
 	 */
 	public Main() {
 		super(VISUAL_GRID_SIZE + BORDER * 2, VISUAL_GRID_SIZE + BORDER * 2 + TOP_PART);
-		game = new FishGame(LOGICAL_GRID_SIZE, LOGICAL_GRID_SIZE);
+		startGame();
 		gameState.color = Color.WHITE;
 		gameState.setFont(TextBox.BOLD_FONT);
 		gameState.setFontSize(TOP_PART / 3.0);
 		topRect = new Rectangle2D.Double(0, 0, getWidth(), TOP_PART);
 	}
 
+	/**
+	 * Start a new game (and the fog, if it's on).
+	 */
+	private void startGame() {
+		game = templates.newGame();
+		fog = FOG_RADIUS > 0 ? game.indexedWorld().watch(game.player, FOG_RADIUS) : null;
+	}
+
 	/**
 	 * How big is a tile?
 	 * @return this returns the tile width.
@@ -83,6 +115,10 @@ public class Main extends GFX {
 	 * Making a darker blue for the grid.
 	 */
 	public static Color GRID_COLOR = new Color(0, 100, 225);
+	/**
+	 * Cells the player can't see are this color.
+	 */
+	public static Color FOG_COLOR = new Color(0, 30, 80);
 
 	/**
 	 * Draw the game state.
@@ -94,7 +130,7 @@ public class Main extends GFX {
 		g.fillRect(0, 0, getWidth(), getHeight());
 		
 		// Get a a reference to the game world to draw.
-		World world = game.world;
+		WorldBackend world = game.world;
 
 		// Draw TOP_PART TextBox.
 		this.gameState.centerInside(this.topRect);
@@ -119,18 +155,38 @@ public class Main extends GFX {
 			}
 		}
 
+		// Cover up what the player can't see.
+		if (fog != null) {
+			g.setColor(FOG_COLOR);
+			for (int x = 0; x < world.getWidth(); x++) {
+				for (int y = 0; y < world.getHeight(); y++) {
+					if (!fog.isVisible(x, y)) {
+						g.fillRect(x * tw, y * th, tw, th);
+					}
+				}
+			}
+		}
+
 		// For everything in our world:
 		for (WorldObject wo : world.viewItems()) {
+			// Only draw what the player can see.
+			if (fog != null && !fog.isVisible(wo.getX(), wo.getY())) {
+				continue;
+			}
 			// Draw it with a 1x1 graphical world, with the center right in the middle of the tile.
 			// I fiddled with this translate to get pixel-perfect. Maybe there's a nicer way, but it works for now.
 
 			Graphics2D forWo = (Graphics2D) g.create();
 			forWo.translate((int) ((wo.getX() + 0.5) * tw) + 1, (int) ((wo.getY() + 0.5) * th) + 1);
 			forWo.scale(tw, th);
+			wo.animate();
 			wo.draw(forWo);
 			forWo.dispose();
 		}
 		
+		// Bubbles float on top of everything.
+		game.bubbles.draw(g, tw, th);
+		
 		IntPoint hover = mouseToGame(this.getMouseLocation());
 		if (hover != null) {
 			g.setColor(new Color(0,1,0,0.5f));
@@ -158,7 +214,7 @@ public class Main extends GFX {
 
 	/**
 	 * We separate our "Main" game logic update here.
-	 * @param secondsSinceLastUpdate - my GFX code can tell us how long it is between each update, but we don't actually care here.
+	 * @param secondsSinceLastUpdate - my GFX code tells us how long it is between each update; the clock turns it into steps.
 	 */
 	@Override
 	public void update(double secondsSinceLastUpdate) {
@@ -166,11 +222,15 @@ public class Main extends GFX {
 		if (game.gameOver()) {
 			this.gameState.setString("You win! Click anywhere start again!");
 			if (this.processClick() != null) {
-				this.game = new FishGame(LOGICAL_GRID_SIZE, LOGICAL_GRID_SIZE);
+				startGame();
+				this.clock.restartTick();
 			}
 			return;
 		}
 		
+		// Bubbles float in real time, even between steps.
+		this.game.bubbles.update(secondsSinceLastUpdate);
+		
 		// Update the text in the TextBox.
 		this.gameState.setString(
 				"Step #: " + game.stepsTaken + 
@@ -198,14 +258,23 @@ public class Main extends GFX {
 		
 		IntPoint click = mouseToGame(this.processClick());
 		
-		// Only advance the game if the player presses something!
+		// Advance the game right away if the player presses something!
 		if (skip || moved || click != null) {
 			if (click != null) {
 				this.game.click(click.x, click.y);
 			}
 			// Update game logic!
 			this.game.step();
-			// Update message at the top!
+			this.game.blowBubbles();
+			// That counts as this tick, so the world doesn't get a second step right after.
+			this.clock.restartTick();
+		} else {
+			// Otherwise the world keeps moving in real time.
+			int ticks = this.clock.advance(secondsSinceLastUpdate);
+			for (int i = 0; i < ticks && !this.game.gameOver(); i++) {
+				this.game.step();
+				this.game.blowBubbles();
+			}
 		}
 	}
 
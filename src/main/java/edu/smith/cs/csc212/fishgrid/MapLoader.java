@@ -0,0 +1,284 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A MapLoader builds a World from a map file instead of putting things down at random, so a level (or a huge
+ * test ocean) can be drawn ahead of time.
+ *
+ * There are two kinds of map file:
+ * <ul>
+ * <li>A picture (PNG, GIF, ...): one pixel per cell. The colors are {@link #ROCK_RGB}, {@link #FALLING_ROCK_RGB},
+ * {@link #SNAIL_RGB}, {@link #HOME_RGB} and {@link #FISH_RGB}; anything else is water.</li>
+ * <li>A binary map: {@link #MAP_MAGIC}, the width and the height (ints), then one byte per cell, row by row
+ * ({@link #WATER}, {@link #ROCK}, ...). {@link #write} makes these. A binary map is read all at once, so it can't
+ * be bigger than 2 GB (a map about 46000 cells on a side).</li>
+ * </ul>
+ *
+ * To play on a map: {@code new FishGame(world, world.stream(FishHome.class).findFirst().orElse(null))}.
+ *
+ * Rows are read in parallel, and every row's objects are made on the same thread that read it. Then they're all
+ * registered at once with {@link World#registerAll}, which skips the hunt for free space.
+ *
+ * Run it with: {@code java edu.smith.cs.csc212.fishgrid.MapLoader [size] [file]} to make a random map and time loading it.
+ */
+public class MapLoader {
+	/**
+	 * The first thing in a binary map file ("FMAP").
+	 */
+	public static final int MAP_MAGIC = 0x464d4150;
+	/**
+	 * What a byte of a binary map means.
+	 */
+	public static final byte WATER = 0, ROCK = 1, FALLING_ROCK = 2, SNAIL = 3, HOME = 4, FISH = 5;
+	/**
+	 * Pixel colors (red, green, blue) in a map picture.
+	 */
+	public static final int ROCK_RGB = 0x808080, FALLING_ROCK_RGB = 0x404040, SNAIL_RGB = 0xff0000, HOME_RGB = 0x00ff00,
+			FISH_RGB = 0xffff00;
+
+	/**
+	 * Read a map file (a picture or a binary map; we look at the first bytes to tell).
+	 * @param file - the map.
+	 * @param rand - where the world gets random numbers.
+	 * @return a new, quiet World with everything from the map in it.
+	 * @throws IOException if the file can't be read or isn't a map.
+	 */
+	public static World load(Path file, Random rand) throws IOException {
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (in.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is " + in.size() + " bytes; a map can't be bigger than " + Integer.MAX_VALUE + ".");
+			}
+			if (in.size() >= 12) {
+				MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+				if (buf.getInt(0) == MAP_MAGIC) {
+					return loadBinary(file, buf, rand);
+				}
+			}
+		}
+		BufferedImage image = ImageIO.read(file.toFile());
+		if (image == null) {
+			throw new IOException(file + " isn't a map file or a picture we can read.");
+		}
+		return loadImage(image, rand);
+	}
+
+	/**
+	 * Build a world from a binary map that's already in memory.
+	 * @param file - the file (for error messages).
+	 * @param buf - the whole file.
+	 * @param rand - where the world gets random numbers.
+	 * @return the world.
+	 * @throws IOException if the file isn't the right length for its size.
+	 */
+	private static World loadBinary(Path file, MappedByteBuffer buf, Random rand) throws IOException {
+		int width = buf.getInt(4);
+		int height = buf.getInt(8);
+		if (width <= 0 || height <= 0 || buf.capacity() - 12L != (long) width * height) {
+			throw new IOException(file + " says it's " + width + "x" + height + " but it's the wrong length.");
+		}
+		World world = new World(width, height, rand);
+		world.setVerbose(false);
+		// Absolute gets don't move the buffer, so every thread can read its own rows from it.
+		List<List<WorldObject>> rows = parseRows(height, y -> {
+			List<WorldObject> row = new ArrayList<>();
+			// The file is under 2 GB, so this fits in an int once it's worked out (but y * width alone might not).
+			int start = (int) (12L + (long) y * width);
+			for (int x = 0; x < width; x++) {
+				byte cell = buf.get(start + x);
+				if (cell != WATER) {
+					add(world, cell, x, y, row);
+				}
+			}
+			return row;
+		});
+		registerRows(world, rows);
+		return world;
+	}
+
+	/**
+	 * Build a world from a picture.
+	 * @param image - one pixel per cell.
+	 * @param rand - where the world gets random numbers.
+	 * @return the world.
+	 */
+	public static World loadImage(BufferedImage image, Random rand) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		World world = new World(width, height, rand);
+		world.setVerbose(false);
+		List<List<WorldObject>> rows = parseRows(height, y -> {
+			List<WorldObject> row = new ArrayList<>();
+			int[] pixels = image.getRGB(0, y, width, 1, null, 0, width);
+			for (int x = 0; x < width; x++) {
+				byte cell = cellOf(pixels[x] & 0xffffff);
+				if (cell != WATER) {
+					add(world, cell, x, y, row);
+				}
+			}
+			return row;
+		});
+		registerRows(world, rows);
+		return world;
+	}
+
+	/**
+	 * What is a pixel of a map picture?
+	 * @param rgb - the color (no alpha).
+	 * @return WATER, ROCK, ...
+	 */
+	private static byte cellOf(int rgb) {
+		switch (rgb) {
+		case ROCK_RGB:
+			return ROCK;
+		case FALLING_ROCK_RGB:
+			return FALLING_ROCK;
+		case SNAIL_RGB:
+			return SNAIL;
+		case HOME_RGB:
+			return HOME;
+		case FISH_RGB:
+			return FISH;
+		default:
+			return WATER;
+		}
+	}
+
+	/**
+	 * Something that turns one row of a map into objects.
+	 */
+	private interface RowParser {
+		/**
+		 * @param y - which row.
+		 * @return the objects in it (not registered yet).
+		 */
+		List<WorldObject> parse(int y);
+	}
+
+	/**
+	 * Read every row, in parallel.
+	 * @param height - how many rows.
+	 * @param parser - reads one row.
+	 * @return the objects of every row, in row order.
+	 */
+	private static List<List<WorldObject>> parseRows(int height, RowParser parser) {
+		List<List<WorldObject>> rows = new ArrayList<>(height);
+		IntStream.range(0, height).parallel().mapToObj(parser::parse).forEachOrdered(rows::add);
+		return rows;
+	}
+
+	/**
+	 * Make the object for one cell of a map.
+	 * Rock colors, fish colors and which fish are fast come from the position, not the world's Random: this runs
+	 * on many threads at once, and the Random isn't ours to share (nor would the map come out the same each time).
+	 * @param world - the world it's for.
+	 * @param cell - ROCK, FALLING_ROCK, ...
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param output - where to put it.
+	 */
+	private static void add(World world, byte cell, int x, int y, List<WorldObject> output) {
+		int mix = (x * 0x9E3779B1 + y * 0x85EBCA77) >>> 1;
+		WorldObject item;
+		switch (cell) {
+		case ROCK:
+		case FALLING_ROCK:
+			int color = mix % Rock.ROCK_COLORS.length;
+			item = cell == ROCK ? new Rock(world, color) : new FallingRock(world, color);
+			break;
+		case SNAIL:
+			item = new Snail(world);
+			break;
+		case HOME:
+			item = new FishHome(world);
+			break;
+		case FISH:
+			// Every color but the player's; one fish in five is fast (like Fish(color, world) would pick).
+			item = new Fish(1 + mix % (Fish.COLORS.length - 1), (mix >>> 16) % 5 == 0, world);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown kind of map cell: " + cell + " at (" + x + "," + y + ")");
+		}
+		item.setPosition(x, y);
+		output.add(item);
+	}
+
+	/**
+	 * Register everything we read. FishHomes go last, so the distance-to-home field is worked out once, with every
+	 * Rock already in place, instead of being fixed up after every Rock.
+	 * @param world - the world.
+	 * @param rows - the objects of every row.
+	 */
+	private static void registerRows(World world, List<List<WorldObject>> rows) {
+		List<WorldObject> all = new ArrayList<>();
+		List<WorldObject> homes = new ArrayList<>();
+		for (List<WorldObject> row : rows) {
+			for (WorldObject item : row) {
+				(item instanceof FishHome ? homes : all).add(item);
+			}
+		}
+		all.addAll(homes);
+		world.registerAll(all);
+	}
+
+	/**
+	 * Write a binary map.
+	 * @param file - where to write it.
+	 * @param width - how many cells across.
+	 * @param height - how many cells down.
+	 * @param cells - width * height bytes, row by row (WATER, ROCK, ...).
+	 * @throws IOException if it can't be written.
+	 */
+	public static void write(Path file, int width, int height, byte[] cells) throws IOException {
+		if (cells.length != (long) width * height) {
+			throw new IllegalArgumentException("A " + width + "x" + height + " map needs " + (long) width * height + " cells, not " + cells.length);
+		}
+		try (OutputStream f = Files.newOutputStream(file);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(f, 1 << 16))) {
+			out.writeInt(MAP_MAGIC);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.write(cells);
+		}
+	}
+
+	/**
+	 * Make a random binary map (about one cell in fifty is a rock), load it, and say how long that took.
+	 * @param args - [size] [file], both optional.
+	 * @throws IOException if the map can't be written or read.
+	 */
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+		Path file = Paths.get(args.length > 1 ? args[1] : "random.fmap");
+
+		Random rand = new Random(1);
+		byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			int roll = rand.nextInt(1000);
+			cells[i] = roll < 10 ? ROCK : roll < 20 ? FALLING_ROCK : roll < 21 ? SNAIL : roll < 22 ? FISH : WATER;
+		}
+		cells[size / 2 * size + size / 2] = HOME;
+		write(file, size, size, cells);
+
+		long start = System.nanoTime();
+		World world = load(file, new Random(2));
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Loaded %d objects on a %dx%d map in %.2f seconds.%n", world.viewItems().size(), size, size, seconds);
+	}
+}
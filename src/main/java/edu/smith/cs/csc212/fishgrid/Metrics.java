@@ -0,0 +1,291 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics keeps track of where FishGame spends its time: a nanosecond timer for every phase of
+ * {@link FishGame#step()}, and counters for the busy parts of {@link World}.
+ *
+ * Everything is off by default. When it's off, every method returns right after checking one boolean,
+ * so it's safe to leave the calls in the game.
+ * Turn it on with {@link #setEnabled(boolean)} or by running Java with {@code -Dfishgrid.metrics=true}.
+ */
+public class Metrics {
+	/**
+	 * The parts of a FishGame step, in the order they happen.
+	 */
+	public enum Phase {
+		CHUNKS, PLAYER_INTERACTS, WANDER_FOLLOW, WANDER_MISSING, FOLLOW, HEARTS, STEP_ALL, AUTOSAVE, JOURNAL
+	}
+
+	/**
+	 * The things we count.
+	 */
+	public enum Counter {
+		FIND, CAN_SWIM_REJECTED, MOVE_RANDOMLY_RETRIES, REGISTER, REMOVE
+	}
+
+	/**
+	 * Where we ask about allocation (looking it up every time would itself make garbage).
+	 */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Are we measuring anything right now?
+	 */
+	private boolean enabled = Boolean.getBoolean("fishgrid.metrics");
+	/**
+	 * How many steps have we measured?
+	 */
+	private long ticks;
+	/**
+	 * Total nanoseconds in each phase (indexed by Phase.ordinal()).
+	 */
+	private final long[] phaseNanos = new long[Phase.values().length];
+	/**
+	 * Running totals (indexed by Counter.ordinal()). Players count things from their own threads
+	 * (see {@link World#movePlayer}), so these are atomic; a plain {@code ++} would lose some.
+	 */
+	private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+	/**
+	 * Bytes this thread had allocated when the current step started (or -1 if the JVM won't tell us).
+	 */
+	private long tickStartBytes = -1;
+	/**
+	 * Estimated bytes allocated during all measured steps.
+	 */
+	private long allocatedBytes;
+	/**
+	 * Where to write periodic dumps (null for nowhere).
+	 */
+	private PrintStream dumpTo;
+	/**
+	 * Write a dump every this many steps.
+	 */
+	private int dumpEvery;
+	/**
+	 * Write dumps as JSON (true) or CSV (false)?
+	 */
+	private boolean dumpJSON;
+	/**
+	 * Have we written the CSV header yet?
+	 */
+	private boolean wroteHeader;
+	/**
+	 * The world to take a {@link HeapCensus} of (null for none).
+	 */
+	private World censusOf;
+	/**
+	 * Where to write each census.
+	 */
+	private PrintStream censusTo;
+	/**
+	 * Take a census every this many steps.
+	 */
+	private int censusEvery;
+	/**
+	 * Write each census as JSON (true) or CSV (false)?
+	 */
+	private boolean censusJSON;
+	/**
+	 * Have we written the census CSV header yet?
+	 */
+	private boolean wroteCensusHeader;
+	/**
+	 * The totals as of the last census, so each one says how much was allocated since.
+	 */
+	private MetricsSnapshot lastCensus;
+
+	/**
+	 * Are we measuring anything right now?
+	 * @return true if metrics are on.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turn metrics on or off.
+	 * @param enabled - true to start measuring.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Start timing something.
+	 * @return a start time to hand to {@link #stop}, or 0 if we're off.
+	 */
+	public long start() {
+		if (!enabled) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Finish timing a phase.
+	 * @param phase - which part of the step this was.
+	 * @param startNanos - what {@link #start()} gave us.
+	 */
+	public void stop(Phase phase, long startNanos) {
+		if (!enabled) {
+			return;
+		}
+		phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Count one of something.
+	 * @param counter - what happened.
+	 */
+	public void count(Counter counter) {
+		if (enabled) {
+			counters.incrementAndGet(counter.ordinal());
+		}
+	}
+
+	/**
+	 * Called at the start of every FishGame step.
+	 */
+	public void beginTick() {
+		if (!enabled) {
+			return;
+		}
+		tickStartBytes = threadAllocatedBytes();
+	}
+
+	/**
+	 * Called at the end of every FishGame step; writes a dump if one is due.
+	 */
+	public void endTick() {
+		if (!enabled) {
+			return;
+		}
+		ticks++;
+		if (tickStartBytes >= 0) {
+			long now = threadAllocatedBytes();
+			if (now >= tickStartBytes) {
+				allocatedBytes += now - tickStartBytes;
+			}
+		}
+		if (dumpTo != null && ticks % dumpEvery == 0) {
+			dump();
+		}
+		if (censusOf != null && ticks % censusEvery == 0) {
+			census();
+		}
+	}
+
+	/**
+	 * Write a line to this stream every so often (e.g. System.err, or a file).
+	 * @param out - where to write, or null to stop dumping.
+	 * @param everyNTicks - how many steps between dumps.
+	 * @param asJSON - one JSON object per line if true, CSV rows otherwise.
+	 */
+	public void dumpPeriodically(PrintStream out, int everyNTicks, boolean asJSON) {
+		if (everyNTicks <= 0) {
+			throw new IllegalArgumentException("everyNTicks must be positive: " + everyNTicks);
+		}
+		this.dumpTo = out;
+		this.dumpEvery = everyNTicks;
+		this.dumpJSON = asJSON;
+		this.wroteHeader = false;
+	}
+
+	/**
+	 * Write one dump right now.
+	 */
+	private void dump() {
+		MetricsSnapshot snap = snapshot();
+		if (dumpJSON) {
+			dumpTo.println(snap.toJSON());
+		} else {
+			if (!wroteHeader) {
+				dumpTo.println(MetricsSnapshot.csvHeader());
+				wroteHeader = true;
+			}
+			dumpTo.println(snap.toCSV());
+		}
+		dumpTo.flush();
+	}
+
+	/**
+	 * Take a {@link HeapCensus} of a world every so often, and write it here (the "ticks" column lines it up with
+	 * the dumps from {@link #dumpPeriodically}).
+	 * @param world - the world to count, or null to stop.
+	 * @param out - where to write.
+	 * @param everyNTicks - how many steps between censuses.
+	 * @param asJSON - one JSON object per line if true, CSV rows (one per kind of object) otherwise.
+	 */
+	public void censusPeriodically(World world, PrintStream out, int everyNTicks, boolean asJSON) {
+		if (everyNTicks <= 0) {
+			throw new IllegalArgumentException("everyNTicks must be positive: " + everyNTicks);
+		}
+		this.censusOf = world;
+		this.censusTo = out;
+		this.censusEvery = everyNTicks;
+		this.censusJSON = asJSON;
+		this.wroteCensusHeader = false;
+		this.lastCensus = snapshot();
+	}
+
+	/**
+	 * Take and write one census right now.
+	 */
+	private void census() {
+		MetricsSnapshot now = snapshot();
+		HeapCensus census = HeapCensus.take(censusOf, lastCensus);
+		lastCensus = now;
+		if (censusJSON) {
+			censusTo.println(census.toJSON());
+		} else {
+			if (!wroteCensusHeader) {
+				censusTo.println(HeapCensus.csvHeader());
+				wroteCensusHeader = true;
+			}
+			censusTo.println(census.toCSV());
+		}
+		censusTo.flush();
+	}
+
+	/**
+	 * Copy the numbers so far into an object that won't change.
+	 * @return the current totals.
+	 */
+	public MetricsSnapshot snapshot() {
+		long[] totals = new long[counters.length()];
+		for (int i = 0; i < totals.length; i++) {
+			totals[i] = counters.get(i);
+		}
+		return new MetricsSnapshot(ticks, phaseNanos.clone(), totals, allocatedBytes);
+	}
+
+	/**
+	 * Forget everything measured so far.
+	 */
+	public void reset() {
+		ticks = 0;
+		allocatedBytes = 0;
+		Arrays.fill(phaseNanos, 0);
+		for (int i = 0; i < counters.length(); i++) {
+			counters.set(i, 0);
+		}
+		lastCensus = null;
+	}
+
+	/**
+	 * Ask the JVM how much this thread has allocated (only HotSpot-style JVMs know).
+	 * @return bytes allocated so far, or -1 if we can't tell.
+	 */
+	private static long threadAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
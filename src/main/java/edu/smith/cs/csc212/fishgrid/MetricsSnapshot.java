@@ -0,0 +1,137 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * A MetricsSnapshot is a copy of the {@link Metrics} totals at one moment. It never changes.
+ */
+public class MetricsSnapshot {
+	/**
+	 * How many steps were measured.
+	 */
+	private final long ticks;
+	/**
+	 * Total nanoseconds per phase (indexed by Metrics.Phase.ordinal()).
+	 */
+	private final long[] phaseNanos;
+	/**
+	 * Totals per counter (indexed by Metrics.Counter.ordinal()).
+	 */
+	private final long[] counters;
+	/**
+	 * Estimated bytes allocated during measured steps.
+	 */
+	private final long allocatedBytes;
+
+	/**
+	 * Metrics makes these; you probably want {@link Metrics#snapshot()}.
+	 * @param ticks - steps measured.
+	 * @param phaseNanos - nanoseconds per phase (we keep this array).
+	 * @param counters - totals per counter (we keep this array).
+	 * @param allocatedBytes - estimated bytes allocated.
+	 */
+	MetricsSnapshot(long ticks, long[] phaseNanos, long[] counters, long allocatedBytes) {
+		this.ticks = ticks;
+		this.phaseNanos = phaseNanos;
+		this.counters = counters;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @return how many steps were measured.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @param phase - which part of the step.
+	 * @return total nanoseconds spent in it.
+	 */
+	public long getNanos(Metrics.Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase - which part of the step.
+	 * @return average nanoseconds per step spent in it.
+	 */
+	public double getNanosPerTick(Metrics.Phase phase) {
+		return ticks == 0 ? 0 : (double) getNanos(phase) / ticks;
+	}
+
+	/**
+	 * @param counter - what we counted.
+	 * @return the total.
+	 */
+	public long getCount(Metrics.Counter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	/**
+	 * @return estimated bytes allocated during measured steps.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * The column names that go with {@link #toCSV()}.
+	 * @return a CSV header line.
+	 */
+	public static String csvHeader() {
+		StringBuilder sb = new StringBuilder("ticks");
+		for (Metrics.Phase p : Metrics.Phase.values()) {
+			sb.append(',').append(name(p)).append("_ns");
+		}
+		for (Metrics.Counter c : Metrics.Counter.values()) {
+			sb.append(',').append(name(c));
+		}
+		sb.append(",allocated_bytes");
+		return sb.toString();
+	}
+
+	/**
+	 * @return this snapshot as one CSV row.
+	 */
+	public String toCSV() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(ticks);
+		for (long n : phaseNanos) {
+			sb.append(',').append(n);
+		}
+		for (long c : counters) {
+			sb.append(',').append(c);
+		}
+		sb.append(',').append(allocatedBytes);
+		return sb.toString();
+	}
+
+	/**
+	 * @return this snapshot as one line of JSON.
+	 */
+	public String toJSON() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"ticks\":").append(ticks);
+		for (Metrics.Phase p : Metrics.Phase.values()) {
+			sb.append(",\"").append(name(p)).append("_ns\":").append(getNanos(p));
+		}
+		for (Metrics.Counter c : Metrics.Counter.values()) {
+			sb.append(",\"").append(name(c)).append("\":").append(getCount(c));
+		}
+		sb.append(",\"allocated_bytes\":").append(allocatedBytes).append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * Turn an enum constant into a column name.
+	 * @param e - a Phase or Counter.
+	 * @return e.g. "player_interacts".
+	 */
+	private static String name(Enum<?> e) {
+		return e.name().toLowerCase();
+	}
+
+	@Override
+	public String toString() {
+		return toJSON();
+	}
+}
@@ -0,0 +1,88 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * ObjectRecord squashes a simple WorldObject into four ints (kind, x, y, extra) and back again.
+ *
+ * ChunkManager uses it to put chunks away, and WorldShard uses it to send objects to its neighbors.
+ * Only the things that matter for the game are kept: the colors, whether a fish scares fast, which way a snail goes.
+ */
+final class ObjectRecord {
+	/**
+	 * The kinds of object a record can hold.
+	 */
+	static final int ROCK = 0, FALLING_ROCK = 1, SNAIL = 2, HEART = 3, FISH = 4;
+	/**
+	 * How many ints each record takes.
+	 */
+	static final int SIZE = 4;
+
+	private ObjectRecord() {
+		// Just static methods here.
+	}
+
+	/**
+	 * What kind of record would this object make?
+	 * @param item - the object.
+	 * @return ROCK, FALLING_ROCK, SNAIL, HEART or FISH; or -1 if we can't squash it (players, homes, followers).
+	 */
+	static int kindOf(WorldObject item) {
+		if (item.isFollowing() || item.isPlayer() || item instanceof FishHome) {
+			return -1;
+		} else if (item instanceof Rock) {
+			return item instanceof FallingRock ? FALLING_ROCK : ROCK;
+		} else if (item instanceof Snail) {
+			return SNAIL;
+		} else if (item instanceof Heart) {
+			return HEART;
+		} else if (item instanceof Fish) {
+			return FISH;
+		}
+		return -1;
+	}
+
+	/**
+	 * What goes in the extra int for this object?
+	 * @param item - the object.
+	 * @return for rocks, the color; for fish, the color (and bit 8 says fastScared); for snails, 1 if moving left.
+	 */
+	static int extraOf(WorldObject item) {
+		if (item instanceof Rock) {
+			return ((Rock) item).color;
+		} else if (item instanceof Snail) {
+			return ((Snail) item).movingLeft ? 1 : 0;
+		} else if (item instanceof Fish) {
+			Fish fish = (Fish) item;
+			return fish.color | (fish.fastScared ? 1 << 8 : 0);
+		}
+		return 0;
+	}
+
+	/**
+	 * Make an object from a record (not positioned or registered yet). Hearts come from the world's pool.
+	 * @param world - the world it will go in.
+	 * @param kind - ROCK, FALLING_ROCK, SNAIL, HEART or FISH.
+	 * @param extra - see {@link #extraOf}.
+	 * @return the new object.
+	 */
+	static WorldObject make(World world, int kind, int extra) {
+		switch (kind) {
+		case ROCK:
+		case FALLING_ROCK:
+			Rock rock = kind == ROCK ? new Rock(world) : new FallingRock(world);
+			rock.color = extra;
+			return rock;
+		case SNAIL:
+			Snail snail = new Snail(world);
+			snail.movingLeft = extra != 0;
+			return snail;
+		case HEART:
+			return world.poolFor(Heart.class).take();
+		case FISH:
+			Fish fish = new Fish(extra & 0xff, world);
+			fish.fastScared = (extra & (1 << 8)) != 0;
+			return fish;
+		default:
+			throw new IllegalArgumentException("Unknown kind of saved object: " + kind);
+		}
+	}
+}
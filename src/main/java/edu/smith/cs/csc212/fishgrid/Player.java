@@ -0,0 +1,52 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * A Player is one person (or bot) in a FishGame: their fish, the line of fish they've found, and their score.
+ */
+public class Player {
+	/**
+	 * The fish this player swims around as.
+	 */
+	final Fish fish;
+	/**
+	 * Fish this player found, lined up behind them.
+	 */
+	final FollowChain<Fish> found;
+	/**
+	 * This player's own score (the game's score is everybody's added up).
+	 */
+	int score;
+
+	/**
+	 * Make a player (their fish should already be in the world).
+	 * @param fish - the player's fish.
+	 */
+	Player(Fish fish) {
+		this.fish = fish;
+		this.found = new FollowChain<Fish>(fish);
+	}
+
+	/**
+	 * Which fish is this player?
+	 * @return the player's fish.
+	 */
+	public Fish getFish() {
+		return fish;
+	}
+
+	/**
+	 * How many fish are following this player?
+	 * @return the count.
+	 */
+	public int foundCount() {
+		return found.size();
+	}
+
+	/**
+	 * What's this player's score?
+	 * @return the points this player has earned.
+	 */
+	public int getScore() {
+		return score;
+	}
+}
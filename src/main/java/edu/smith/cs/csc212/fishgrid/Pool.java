@@ -0,0 +1,106 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A Pool keeps WorldObjects that aren't in use any more, so we can hand them out again instead of making new ones.
+ *
+ * Things like Hearts and Bubbles come and go all the time; making a new object (and its Trail) for every one
+ * gives the garbage collector a lot to do. With a Pool, after a while nothing new gets made at all.
+ *
+ * @param <T> the kind of WorldObject in the pool.
+ */
+public class Pool<T extends WorldObject> {
+	/**
+	 * The world new objects belong to.
+	 */
+	private final WorldHooks world;
+	/**
+	 * How to make a new one when the pool is empty (like Heart::new).
+	 */
+	private final Function<WorldBackend, T> factory;
+	/**
+	 * Objects waiting to be used again.
+	 */
+	private final List<T> free;
+	/**
+	 * Never keep more than this many waiting (the rest go to the garbage collector).
+	 */
+	private final int maxFree;
+	/**
+	 * How many objects has this pool ever made?
+	 */
+	private int created;
+
+	/**
+	 * Make an empty pool.
+	 * @param world - the world new objects belong to.
+	 * @param factory - how to make a new one (like Heart::new).
+	 * @param maxFree - the most objects to keep waiting.
+	 */
+	public Pool(WorldBackend world, Function<WorldBackend, T> factory, int maxFree) {
+		this.world = WorldHooks.of(world);
+		this.factory = factory;
+		this.free = new ArrayList<>();
+		this.maxFree = maxFree;
+	}
+
+	/**
+	 * Get an object: a used one if we have one, or a brand new one.
+	 * It's been {@link WorldObject#reset() reset}, but it has no position yet.
+	 * @return an object ready to use.
+	 */
+	public T take() {
+		T item;
+		if (free.isEmpty()) {
+			item = factory.apply(world);
+			created++;
+		} else {
+			item = free.remove(free.size() - 1);
+			item.world = world;
+			item.reset();
+		}
+		item.spawnCount++;
+		return item;
+	}
+
+	/**
+	 * Give back an object that's done (it should already be out of the world).
+	 * @param item - the object to keep for later.
+	 */
+	public void give(T item) {
+		if (free.size() < maxFree) {
+			free.add(item);
+		}
+	}
+
+	/**
+	 * Make objects ahead of time, so the next few {@link #take}s don't have to (for code that mustn't make garbage
+	 * while it runs, like {@link FishEnvs}).
+	 * @param count - how many objects should be waiting (at most the pool's limit).
+	 */
+	public void reserve(int count) {
+		while (free.size() < Math.min(count, maxFree)) {
+			free.add(factory.apply(world));
+			created++;
+		}
+	}
+
+	/**
+	 * How many objects are waiting to be used again?
+	 * @return the count.
+	 */
+	public int available() {
+		return free.size();
+	}
+
+	/**
+	 * How many objects has this pool ever made? (If this stops growing, we're not making garbage.)
+	 * @return the count.
+	 */
+	public int created() {
+		return created;
+	}
+}
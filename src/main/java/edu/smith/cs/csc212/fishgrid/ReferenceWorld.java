@@ -0,0 +1,429 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import me.jjfoley.gfx.IntPoint;
+
+/**
+ * A ReferenceWorld answers every question the slow, obvious way: by looking at every object in the world.
+ *
+ * This is how World worked before it had any indexes. There's no grid of cells, no distance-to-home field kept up
+ * to date, and no list of leaders; just one list of objects. It's too slow for big worlds, but it's easy to believe,
+ * so {@link LockstepVerifier} checks the fast World against it. (It has no chunks, journals or views: those are
+ * World features, not things a game needs from its backend.)
+ */
+public class ReferenceWorld implements WorldHooks {
+	/**
+	 * The size of the grid (x-tiles).
+	 */
+	private final int width;
+	/**
+	 * The size of the grid (y-tiles).
+	 */
+	private final int height;
+	/**
+	 * Where this world (and its objects) get random numbers.
+	 */
+	private final Random rand;
+	/**
+	 * Every object in the world, in the order they were registered.
+	 */
+	private final ArrayList<WorldObject> items = new ArrayList<>();
+	/**
+	 * Objects that moved into a new cell since the last {@link #drainArrivals}.
+	 */
+	private final ArrayList<WorldObject> arrivals = new ArrayList<>();
+	/**
+	 * Timers and counters (off unless somebody turns them on).
+	 */
+	private final Metrics metrics = new Metrics();
+	/**
+	 * Where {@link #spawnRandomly} gets objects from, by class.
+	 */
+	private final Map<Class<?>, Pool<?>> pools = new HashMap<>();
+
+	/**
+	 * Create a new world of a given width and height, with its own random numbers.
+	 * @param w - width of the world.
+	 * @param h - height of the world.
+	 * @param rand - where this world (and its objects) get random numbers.
+	 */
+	public ReferenceWorld(int w, int h, Random rand) {
+		this.width = w;
+		this.height = h;
+		this.rand = rand;
+		// The same pools as a World, so games on either backend hand out objects the same way.
+		pools.put(Heart.class, new Pool<Heart>(this, Heart::new, 256));
+		pools.put(Bubble.class, new Pool<Bubble>(this, Bubble::new, 1 << 16));
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public Random getRandom() {
+		return rand;
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public List<WorldObject> viewItems() {
+		return Collections.unmodifiableList(items);
+	}
+
+	@Override
+	public List<WorldObject> find(int x, int y) {
+		List<WorldObject> found = new ArrayList<>();
+		find(x, y, found);
+		return found;
+	}
+
+	@Override
+	public void find(int x, int y, List<WorldObject> output) {
+		// Check out every object in the world to find the ones at a particular point.
+		for (WorldObject w : items) {
+			// But only the ones that match are "found".
+			if (x == w.getX() && y == w.getY()) {
+				output.add(w);
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty(int x, int y) {
+		for (WorldObject w : items) {
+			if (x == w.getX() && y == w.getY()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public <T extends WorldObject> void findInRadius(int x, int y, int radius, Class<T> type, List<? super T> output) {
+		long r2 = (long) radius * radius;
+		// One pass per ring, closest first.
+		for (int ring = 0; ring <= radius; ring++) {
+			for (WorldObject w : items) {
+				long dx = w.getX() - x;
+				long dy = w.getY() - y;
+				if (Math.max(Math.abs(dx), Math.abs(dy)) == ring && dx * dx + dy * dy <= r2 && inBounds(w.getX(), w.getY())
+						&& type.isInstance(w)) {
+					output.add(type.cast(w));
+				}
+			}
+		}
+	}
+
+	@Override
+	public int removeInRect(int x0, int y0, int x1, int y1, Class<? extends WorldObject> type) {
+		List<WorldObject> doomed = new ArrayList<>();
+		for (WorldObject w : items) {
+			if (w.getX() >= x0 && w.getX() <= x1 && w.getY() >= y0 && w.getY() <= y1 && type.isInstance(w)
+					&& !w.isFollowing()) {
+				doomed.add(w);
+			}
+		}
+		for (WorldObject w : doomed) {
+			remove(w);
+			w.world = null;
+		}
+		return doomed.size();
+	}
+
+	@Override
+	public boolean canSwim(WorldObject whoIsAsking, int x, int y) {
+		return swimmable(whoIsAsking.isPlayer(), x, y);
+	}
+
+	@Override
+	public int rowWords() {
+		return (width + 63) >>> 6;
+	}
+
+	@Override
+	public void legalMoves(int y, int dx, int dy, boolean isPlayer, long[] out) {
+		Arrays.fill(out, 0, rowWords(), 0L);
+		for (int x = 0; x < width; x++) {
+			if (y >= 0 && y < height && swimmable(isPlayer, x + dx, y + dy)) {
+				out[x >>> 6] |= 1L << x;
+			}
+		}
+	}
+
+	/**
+	 * Is this point on the grid?
+	 * @param x - the x-tile.
+	 * @param y - the y-tile.
+	 * @return true if it's inside the world.
+	 */
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * Is there a Rock or a Snail here?
+	 * @param x - the x-tile.
+	 * @param y - the y-tile.
+	 * @return true if nobody can swim through.
+	 */
+	private boolean blocked(int x, int y) {
+		for (WorldObject it : items) {
+			if ((it instanceof Rock || it instanceof Snail) && it.getX() == x && it.getY() == y) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Could somebody swim to this point?
+	 * @param isPlayer - is it the player (who can swim onto fish)?
+	 * @param x - the x-tile.
+	 * @param y - the y-tile.
+	 * @return true if they can move there.
+	 */
+	private boolean swimmable(boolean isPlayer, int x, int y) {
+		if (!inBounds(x, y)) {
+			return false;
+		}
+
+		// We will need to look at who all is in the spot to determine if we can move there.
+		List<WorldObject> inSpot = this.find(x, y);
+
+		for (WorldObject it : inSpot) {
+			// Nobody can move over rocks or snails
+			if (it instanceof Rock || it instanceof Snail) {
+				return false;
+			}
+			// Only the player can step on fish
+			if (it instanceof Fish && !isPlayer) {
+				return false;
+			}
+		}
+
+		// If we didn't see an obstacle, we can move there!
+		return true;
+	}
+
+	@Override
+	public boolean movePlayer(WorldObject player, int dx, int dy) {
+		int x = player.getX() + dx;
+		int y = player.getY() + dy;
+		if (!inBounds(x, y) || blocked(x, y)) {
+			return false;
+		}
+		player.setPosition(x, y);
+		return true;
+	}
+
+	@Override
+	public int distanceToHome(int x, int y) {
+		if (!inBounds(x, y)) {
+			return HomeDistanceField.UNREACHABLE;
+		}
+		// A fresh breadth-first search from every home, every time.
+		boolean[] open = new boolean[width * height];
+		Arrays.fill(open, true);
+		for (WorldObject it : items) {
+			if ((it instanceof Rock || it instanceof Snail) && inBounds(it.getX(), it.getY())) {
+				open[it.getY() * width + it.getX()] = false;
+			}
+		}
+		int[] dist = new int[width * height];
+		Arrays.fill(dist, HomeDistanceField.UNREACHABLE);
+		ArrayDeque<Integer> frontier = new ArrayDeque<>();
+		for (WorldObject it : items) {
+			if (it instanceof FishHome && inBounds(it.getX(), it.getY())) {
+				int cell = it.getY() * width + it.getX();
+				if (open[cell] && dist[cell] != 0) {
+					dist[cell] = 0;
+					frontier.add(cell);
+				}
+			}
+		}
+		int[] dxs = { 1, -1, 0, 0 };
+		int[] dys = { 0, 0, 1, -1 };
+		while (!frontier.isEmpty()) {
+			int cell = frontier.poll();
+			int cx = cell % width;
+			int cy = cell / width;
+			for (int d = 0; d < 4; d++) {
+				int nx = cx + dxs[d];
+				int ny = cy + dys[d];
+				int next = ny * width + nx;
+				if (inBounds(nx, ny) && open[next] && dist[next] == HomeDistanceField.UNREACHABLE) {
+					dist[next] = dist[cell] + 1;
+					frontier.add(next);
+				}
+			}
+		}
+		return dist[y * width + x];
+	}
+
+	@Override
+	public IntPoint pickUnusedSpace() {
+		// Try some random spots first (every backend does, so the random numbers line up).
+		for (int attempt = 0; attempt < 64; attempt++) {
+			int x = rand.nextInt(width);
+			int y = rand.nextInt(height);
+			if (isEmpty(x, y)) {
+				return new IntPoint(x, y);
+			}
+		}
+
+		// Build a list of all available spaces:
+		List<IntPoint> unused = new ArrayList<>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (isEmpty(x, y)) {
+					unused.add(new IntPoint(x, y));
+				}
+			}
+		}
+
+		// If we get here, we have too much stuff.
+		// Let's crash our Java program!
+		if (unused.size() == 0) {
+			throw new IllegalStateException("The world is too small! Trying to pick an unused space but there's nothing left.");
+		}
+
+		// Return an unused space at random.
+		return unused.get(rand.nextInt(unused.size()));
+	}
+
+	@Override
+	public void register(WorldObject item) {
+		metrics.count(Metrics.Counter.REGISTER);
+		items.add(item);
+		item.registered = true;
+		if (!item.isFollowing()) {
+			arrived(item);
+		}
+	}
+
+	@Override
+	public void remove(WorldObject item) {
+		if (items.remove(item)) {
+			metrics.count(Metrics.Counter.REMOVE);
+			item.registered = false;
+		}
+	}
+
+	@Override
+	public void stepAll() {
+		for (int i = 0; i < items.size(); i++) {
+			items.get(i).step();
+		}
+	}
+
+	/**
+	 * Remember that this object is in a new cell (once until the next {@link #drainArrivals}).
+	 * @param item - the object that moved.
+	 */
+	private void arrived(WorldObject item) {
+		if (!item.arrived) {
+			item.arrived = true;
+			arrivals.add(item);
+		}
+	}
+
+	@Override
+	public void drainArrivals(List<WorldObject> output) {
+		for (WorldObject item : arrivals) {
+			item.arrived = false;
+			if (item.registered) {
+				output.add(item);
+			}
+		}
+		arrivals.clear();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends WorldObject> Pool<T> poolFor(Class<T> type) {
+		Pool<T> pool = (Pool<T>) pools.get(type);
+		if (pool == null) {
+			throw new IllegalArgumentException("No pool for " + type.getSimpleName() + ".");
+		}
+		return pool;
+	}
+
+	@Override
+	public <T extends WorldObject> T spawnRandomly(Class<T> type) {
+		IntPoint where = pickUnusedSpace();
+		T item = poolFor(type).take();
+		item.setPosition(where);
+		register(item);
+		return item;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void despawn(WorldObject item) {
+		if (item.world != this) {
+			return;
+		}
+		if (item.registered) {
+			remove(item);
+		}
+		item.world = null;
+		Pool<WorldObject> pool = (Pool<WorldObject>) pools.get(item.getClass());
+		if (pool != null) {
+			pool.give(item);
+		}
+	}
+
+	@Override
+	public void reserve(int count) {
+		items.ensureCapacity(items.size() + count);
+		arrivals.ensureCapacity(count);
+	}
+
+	@Override
+	public void objectMoved(WorldObject item, int oldX, int oldY) {
+		if (item.registered) {
+			arrived(item);
+		}
+	}
+
+	@Override
+	public void objectChanged(WorldObject item) {
+		// Nothing to keep up to date.
+	}
+
+	@Override
+	public void startedFollowing(WorldObject item) {
+		// Followers are found by their positions, like everybody else.
+	}
+
+	@Override
+	public void stoppedFollowing(WorldObject item) {
+		if (item.registered) {
+			arrived(item);
+		}
+	}
+
+	@Override
+	public void chainResized(WorldObject leader, int oldSize, int newSize) {
+		// Nothing to keep up to date.
+	}
+}
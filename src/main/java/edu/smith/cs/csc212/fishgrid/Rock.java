@@ -15,7 +15,7 @@ public class Rock extends WorldObject {
 	 * https://en.wikipedia.org/wiki/Shades_of_gray#Cool_grays
 	 * https://en.wikipedia.org/wiki/Shades_of_gray#Warm_grays
 	 */
-	private static Color[] ROCK_COLORS = new Color[] {
+	static Color[] ROCK_COLORS = new Color[] {
 			new Color(144,144,192),
 			new Color(145,163,176),
 			new Color(112,128,144),
@@ -35,10 +35,20 @@ public class Rock extends WorldObject {
 	 * Construct a Rock in our world.
 	 * @param world - the grid world.
 	 */
-	public Rock(World world) {
+	public Rock(WorldBackend world) {
 		super(world);
 		this.color = rand.nextInt(ROCK_COLORS.length);
 	}
+	
+	/**
+	 * Construct a Rock of a color we already picked (this doesn't use the world's random numbers).
+	 * @param world - the grid world.
+	 * @param color - an index into {@link #ROCK_COLORS}.
+	 */
+	public Rock(WorldBackend world, int color) {
+		super(world);
+		this.color = color;
+	}
 
 	/**
 	 * Draw a rock!
@@ -0,0 +1,149 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ShardLauncher runs a giant World as N {@link WorldShard} processes on this machine, then runs the same World in
+ * this one JVM, and prints how fast each was. Both runs have to end up the same, cell by cell; if they don't, it
+ * says where.
+ *
+ * Run it with: {@code java edu.smith.cs.csc212.fishgrid.ShardLauncher [shards] [width] [height] [ticks] [seed] [basePort]}
+ */
+public class ShardLauncher {
+	/**
+	 * Start the shards, wait for them, and compare with one JVM.
+	 * @param args - [shards] [width] [height] [ticks] [seed] [basePort], all optional.
+	 * @throws Exception if a shard fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int shards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int width = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int height = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+		int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+		int basePort = args.length > 5 ? Integer.parseInt(args[5]) : 47000;
+
+		if (shards > 1 && width < 2 * shards) {
+			throw new IllegalArgumentException("A " + width + "-wide world can't have " + shards + " strips at least 2 columns wide.");
+		}
+
+		// Sharded: one process per strip.
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> processes = new ArrayList<>();
+		for (int i = 0; i < shards; i++) {
+			ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					WorldShard.class.getName(), "" + i, "" + shards, "" + width, "" + height, "" + ticks, "" + seed,
+					"" + basePort);
+			pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+			processes.add(pb.start());
+		}
+		long atStart = 0, atEnd = 0, migrations = 0, slowest = 0;
+		List<String> sharded = new ArrayList<>();
+		for (int i = 0; i < shards; i++) {
+			Process p = processes.get(i);
+			try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+				String line;
+				while ((line = out.readLine()) != null) {
+					if (line.startsWith("SHARD ")) {
+						String[] parts = line.split(" ");
+						atStart += Long.parseLong(parts[2]);
+						atEnd += Long.parseLong(parts[3]);
+						migrations += Long.parseLong(parts[4]);
+						slowest = Math.max(slowest, Long.parseLong(parts[5]));
+					} else if (line.startsWith("CELL ")) {
+						sharded.add(line.substring(5));
+					}
+				}
+			}
+			if (p.waitFor() != 0) {
+				throw new IOException("Shard " + i + " failed.");
+			}
+		}
+		if (atStart != atEnd) {
+			throw new AssertionError("Objects got lost between shards: " + atStart + " became " + atEnd);
+		}
+		// Each shard counts a migrant once when it leaves and once when it arrives.
+		report(shards + " shards", atEnd, ticks, slowest);
+		System.out.println("  migrations: " + migrations / 2);
+
+		// One JVM: the same rules over the whole width.
+		WorldShard whole = new WorldShard(width, height, 0, width, seed);
+		long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			whole.tick();
+		}
+		report("1 JVM", whole.ownedCount(), ticks, (System.nanoTime() - start) / 1000000);
+
+		compare(sharded, whole.describeCells());
+		System.out.println("  every cell matches the 1 JVM run");
+	}
+
+	/**
+	 * Check that two runs ended with the same thing in every cell.
+	 * @param sharded - every shard's cells ({@link WorldShard#describeCells}).
+	 * @param whole - the one-JVM run's cells.
+	 * @throws AssertionError saying how many cells differ and where the first one is.
+	 */
+	private static void compare(List<String> sharded, List<String> whole) {
+		Map<String, String> shardedCells = byCell(sharded);
+		Map<String, String> wholeCells = byCell(whole);
+		Set<String> cells = new TreeSet<>(shardedCells.keySet());
+		cells.addAll(wholeCells.keySet());
+		int differ = 0;
+		String first = null;
+		for (String cell : cells) {
+			String s = shardedCells.get(cell);
+			String w = wholeCells.get(cell);
+			if (s == null || !s.equals(w)) {
+				if (differ++ == 0) {
+					first = "(" + cell.replace(' ', ',') + "): sharded=" + s + " 1 JVM=" + w;
+				}
+			}
+		}
+		if (differ > 0) {
+			throw new AssertionError(differ + " cells differ between the sharded and 1 JVM runs; the first is " + first);
+		}
+	}
+
+	/**
+	 * Group cell descriptions ("x y kind extra") by cell.
+	 * @param described - the descriptions.
+	 * @return "kind extra" of everything in each cell (sorted, if there's more than one), by "x y".
+	 */
+	private static Map<String, String> byCell(List<String> described) {
+		Map<String, List<String>> grouped = new HashMap<>();
+		for (String d : described) {
+			String[] parts = d.split(" ");
+			grouped.computeIfAbsent(parts[0] + " " + parts[1], k -> new ArrayList<>()).add(parts[2] + " " + parts[3]);
+		}
+		Map<String, String> cells = new HashMap<>();
+		for (Map.Entry<String, List<String>> e : grouped.entrySet()) {
+			Collections.sort(e.getValue());
+			cells.put(e.getKey(), String.join(" | ", e.getValue()));
+		}
+		return cells;
+	}
+
+	/**
+	 * Print how fast one run was.
+	 * @param name - which run.
+	 * @param objects - how many objects were stepped.
+	 * @param ticks - how many ticks.
+	 * @param millis - how long it took.
+	 */
+	private static void report(String name, long objects, int ticks, long millis) {
+		double seconds = Math.max(1, millis) / 1000.0;
+		System.out.printf("%s: %d objects, %d ticks in %.2f s (%.1f ticks/s, %.0f object-steps/s)%n", name, objects,
+				ticks, seconds, ticks / seconds, objects * (double) ticks / seconds);
+	}
+}
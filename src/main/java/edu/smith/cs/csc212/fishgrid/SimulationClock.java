@@ -0,0 +1,149 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * A SimulationClock turns "how much real time went by" into "how many game steps to run".
+ *
+ * Steps happen at a fixed rate no matter how fast we draw, so snails crawl and rocks fall in real time.
+ * If the computer falls behind, the {@link Policy} decides whether to catch up later or just skip ahead,
+ * and {@link #maxTicksPerUpdate} makes sure one slow frame can't turn into a pile of steps.
+ */
+public class SimulationClock {
+	/**
+	 * What to do when we owe more steps than we're allowed to run in one update.
+	 */
+	public enum Policy {
+		/**
+		 * Keep the extra steps (up to {@link SimulationClock#maxBacklog}) and run them over the next few updates.
+		 */
+		CATCH_UP,
+		/**
+		 * Forget the extra steps: the game just runs slower while the computer is busy.
+		 */
+		SKIP
+	}
+
+	/**
+	 * How many seconds one step represents.
+	 */
+	private double secondsPerTick;
+	/**
+	 * Never run more than this many steps in a single update.
+	 */
+	private int maxTicksPerUpdate;
+	/**
+	 * With CATCH_UP, never owe more than this many steps.
+	 */
+	private int maxBacklog;
+	/**
+	 * What to do when we fall behind.
+	 */
+	private Policy policy;
+	/**
+	 * If true, ignore real time and always run maxTicksPerUpdate steps (for batch runs).
+	 */
+	private boolean maxThroughput;
+	/**
+	 * Real time that has gone by but hasn't been turned into steps yet.
+	 */
+	private double accumulator;
+	/**
+	 * How many steps this clock has handed out.
+	 */
+	private long ticks;
+
+	/**
+	 * Make a clock.
+	 * @param ticksPerSecond - how many game steps per real second.
+	 * @param maxTicksPerUpdate - the most steps to run in one update.
+	 * @param policy - what to do when we fall behind.
+	 */
+	public SimulationClock(double ticksPerSecond, int maxTicksPerUpdate, Policy policy) {
+		setTicksPerSecond(ticksPerSecond);
+		if (maxTicksPerUpdate <= 0) {
+			throw new IllegalArgumentException("maxTicksPerUpdate must be positive: " + maxTicksPerUpdate);
+		}
+		this.maxTicksPerUpdate = maxTicksPerUpdate;
+		this.maxBacklog = maxTicksPerUpdate * 4;
+		this.policy = policy;
+	}
+
+	/**
+	 * Change the speed of the game.
+	 * @param ticksPerSecond - how many game steps per real second.
+	 */
+	public void setTicksPerSecond(double ticksPerSecond) {
+		if (!(ticksPerSecond > 0)) {
+			throw new IllegalArgumentException("ticksPerSecond must be positive: " + ticksPerSecond);
+		}
+		this.secondsPerTick = 1.0 / ticksPerSecond;
+	}
+
+	/**
+	 * With CATCH_UP, how many steps can we owe before we start forgetting them?
+	 * @param maxBacklog - the most steps to remember.
+	 */
+	public void setMaxBacklog(int maxBacklog) {
+		this.maxBacklog = Math.max(maxBacklog, maxTicksPerUpdate);
+	}
+
+	/**
+	 * Batch runs don't care about real time: just go as fast as possible.
+	 * @param maxThroughput - true to ignore the clock and always run maxTicksPerUpdate steps.
+	 */
+	public void setMaxThroughput(boolean maxThroughput) {
+		this.maxThroughput = maxThroughput;
+	}
+
+	/**
+	 * Some real time went by. How many steps should we run now?
+	 * @param secondsElapsed - time since the last call (GFX gives us this).
+	 * @return the number of steps to run (never more than maxTicksPerUpdate).
+	 */
+	public int advance(double secondsElapsed) {
+		if (maxThroughput) {
+			ticks += maxTicksPerUpdate;
+			return maxTicksPerUpdate;
+		}
+		if (secondsElapsed > 0) {
+			accumulator += secondsElapsed;
+		}
+		int owed = (int) Math.min(Integer.MAX_VALUE, Math.floor(accumulator / secondsPerTick));
+		int run = Math.min(owed, maxTicksPerUpdate);
+		accumulator -= run * secondsPerTick;
+
+		// Did we fall behind?
+		int stillOwed = owed - run;
+		if (stillOwed > 0) {
+			int keep = (policy == Policy.CATCH_UP) ? Math.min(stillOwed, maxBacklog) : 0;
+			accumulator -= (stillOwed - keep) * secondsPerTick;
+		}
+		ticks += run;
+		return run;
+	}
+
+	/**
+	 * Start the current step over, e.g. because the player just moved and the game stepped anyway.
+	 */
+	public void restartTick() {
+		accumulator = 0;
+	}
+
+	/**
+	 * How far are we between the last step and the next one? Renderers can use this to slide objects smoothly.
+	 * @return a number from 0 (just stepped) to 1 (about to step).
+	 */
+	public double getAlpha() {
+		if (maxThroughput) {
+			return 0;
+		}
+		return Math.min(1.0, accumulator / secondsPerTick);
+	}
+
+	/**
+	 * How many steps has this clock handed out?
+	 * @return the count.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+}
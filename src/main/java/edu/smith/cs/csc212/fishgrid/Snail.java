@@ -37,7 +37,7 @@ public class Snail extends WorldObject {
 	 * Create a new Snail in a part of this world.
 	 * @param world - the world where the snail moves/lives.
 	 */
-	public Snail(World world) {
+	public Snail(WorldBackend world) {
 		super(world);
 	}
 
@@ -106,10 +106,12 @@ public class Snail extends WorldObject {
 		if (movingLeft) {
 			if (!moveLeft()) {
 				movingLeft = false;
+				changed();
 			}
 		} else {
 			if (!moveRight()) {
 				movingLeft = true;
+				changed();
 			}
 		}
 	}
@@ -0,0 +1,487 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A TickJournal writes down every change to a World as it happens, so a crash doesn't lose a long game.
+ *
+ * Changes go into a memory-mapped file (so writing one is about as cheap as putting ints in an array), and every
+ * few steps we ask the operating system to really put the file on disk (a "group commit"). After a crash,
+ * {@link #recover} loads the last {@link Autosave} and replays everything committed after it.
+ *
+ * Once a save is on disk, the steps before it aren't needed any more, so the journal starts over with a new file
+ * that holds only the steps after the save (see {@link #roll}). If the journal can't grow (say, no Autosave and a
+ * very long game), it stops writing and says why in {@link #getFailure}; what it committed before that is still good.
+ *
+ * Objects are written as {@link ObjectRecord}s (kind, x, y, extra). Replaying finds "the rock at (3,4) with color 2",
+ * not a particular Rock object, which is fine: two objects with the same record are the same as far as the game knows.
+ */
+public class TickJournal {
+	/**
+	 * The first thing in a journal file, so we don't read some other file by mistake.
+	 */
+	private static final int JOURNAL_MAGIC = 0x46495354;
+	/**
+	 * Where the changes start (before that: magic, first step, committed length).
+	 */
+	private static final int HEADER_BYTES = 16;
+	/**
+	 * How big the file starts out (it doubles when it fills up).
+	 */
+	private static final int START_BYTES = 1 << 24;
+	/**
+	 * The biggest a file can be (one mapping can't hold more than an int's worth of bytes).
+	 */
+	private static final int MAX_BYTES = Integer.MAX_VALUE & ~7;
+
+	/**
+	 * The kinds of entries: an object showed up, left, moved, changed, or started or stopped following someone.
+	 * The end of a step is written with the game's score and counters.
+	 */
+	static final int REGISTER = 1, REMOVE = 2, MOVE = 3, CHANGE = 4, FOLLOW = 5, UNFOLLOW = 6, TICK = 7;
+
+	/**
+	 * Where the journal lives.
+	 */
+	private final Path file;
+	/**
+	 * The file.
+	 */
+	private FileChannel channel;
+	/**
+	 * The file, in memory.
+	 */
+	private MappedByteBuffer buffer;
+	/**
+	 * Commit every this many steps.
+	 */
+	private final int commitEvery;
+	/**
+	 * How many commits have we done?
+	 */
+	private int commits;
+	/**
+	 * How many times have we started over with a new file?
+	 */
+	private int rolls;
+	/**
+	 * The step of the save being written, and where that step ends in the journal ({@link #roll} keeps everything
+	 * after it). The step is -1 if there's no save to wait for.
+	 */
+	private int markStep = -1;
+	/**
+	 * Where {@link #markStep} ends in the file.
+	 */
+	private int markPosition;
+	/**
+	 * Why we stopped writing (or null if we haven't).
+	 */
+	private IOException failure;
+
+	/**
+	 * Start a new journal (an old one in the same file is thrown away).
+	 * @param file - where to write.
+	 * @param firstStep - the first step that will be written down.
+	 * @param commitEvery - how many steps between commits (1 is safest, bigger is faster).
+	 * @throws IOException if the file can't be made.
+	 */
+	public TickJournal(Path file, int firstStep, int commitEvery) throws IOException {
+		this.file = file;
+		this.commitEvery = commitEvery;
+		this.channel = open(file);
+		this.buffer = start(channel, START_BYTES, firstStep);
+		buffer.force();
+	}
+
+	/**
+	 * Open a journal file, throwing away what was in it.
+	 * @param file - the file.
+	 * @return the channel.
+	 * @throws IOException if it can't be opened.
+	 */
+	private static FileChannel open(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Map a new journal file and write its header (nothing committed yet).
+	 * @param channel - the file.
+	 * @param bytes - how big to make it.
+	 * @param firstStep - the first step that will be written down.
+	 * @return the buffer, ready for the first change.
+	 * @throws IOException if it can't be mapped.
+	 */
+	private static MappedByteBuffer start(FileChannel channel, int bytes, int firstStep) throws IOException {
+		MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		buf.putInt(0, JOURNAL_MAGIC);
+		buf.putInt(4, firstStep);
+		buf.putLong(8, HEADER_BYTES);
+		buf.position(HEADER_BYTES);
+		return buf;
+	}
+
+	/**
+	 * Make sure there's room for a few more ints.
+	 * @param ints - how many ints we're about to write.
+	 * @return false if we've stopped writing (now or before); see {@link #getFailure}.
+	 */
+	private boolean ensureRoom(int ints) {
+		if (failure != null) {
+			return false;
+		}
+		if (buffer.remaining() >= ints * 4) {
+			return true;
+		}
+		int position = buffer.position();
+		if (buffer.capacity() >= MAX_BYTES) {
+			stop(new IOException("The journal is full (" + MAX_BYTES + " bytes); an Autosave would let it start over."));
+			return false;
+		}
+		try {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min((long) buffer.capacity() * 2, MAX_BYTES));
+		} catch (IOException e) {
+			stop(e);
+			return false;
+		}
+		buffer.position(position);
+		return true;
+	}
+
+	/**
+	 * Stop writing down changes (the game goes on; what's committed can still be recovered).
+	 * @param why - what went wrong.
+	 */
+	private void stop(IOException why) {
+		failure = why;
+		System.err.println("Journal " + file + " stopped: " + why);
+	}
+
+	/**
+	 * Write down an object (if it's something we can write down: not players, homes or followers).
+	 * @param op - REGISTER, REMOVE, CHANGE, FOLLOW or UNFOLLOW.
+	 * @param item - the object.
+	 */
+	void record(int op, WorldObject item) {
+		int kind = ObjectRecord.kindOf(item);
+		if (op == FOLLOW || op == UNFOLLOW) {
+			// They're following (or just were), so kindOf says no; but they're fish.
+			kind = item instanceof Fish && !item.isPlayer() ? ObjectRecord.FISH : -1;
+		}
+		if (kind < 0 || !ensureRoom(5)) {
+			return;
+		}
+		buffer.putInt(op);
+		buffer.putInt(kind);
+		buffer.putInt(ObjectRecord.extraOf(item));
+		buffer.putInt(item.getX());
+		buffer.putInt(item.getY());
+	}
+
+	/**
+	 * Write down an object moving.
+	 * @param item - the object (already at its new position).
+	 * @param oldX - where it was (x).
+	 * @param oldY - where it was (y).
+	 */
+	void moved(WorldObject item, int oldX, int oldY) {
+		int kind = ObjectRecord.kindOf(item);
+		if (kind < 0 || !ensureRoom(7)) {
+			return;
+		}
+		buffer.putInt(MOVE);
+		buffer.putInt(kind);
+		buffer.putInt(ObjectRecord.extraOf(item));
+		buffer.putInt(oldX);
+		buffer.putInt(oldY);
+		buffer.putInt(item.getX());
+		buffer.putInt(item.getY());
+	}
+
+	/**
+	 * A step is over: write down the score and counters, and commit if it's time.
+	 * If the game's {@link Autosave} just finished a save, start over with a new file.
+	 * @param game - the game that just stepped.
+	 */
+	void endTick(FishGame game) {
+		if (!ensureRoom(5)) {
+			return;
+		}
+		buffer.putInt(TICK);
+		buffer.putInt(game.stepsTaken);
+		buffer.putInt(game.score);
+		buffer.putInt(game.fishLost);
+		buffer.putInt(game.safeCount);
+		if (game.stepsTaken % commitEvery == 0) {
+			commit();
+		}
+
+		Autosave autosave = game.autosave;
+		if (autosave == null) {
+			return;
+		}
+		if (markStep >= 0 && autosave.getSavedStep() >= markStep) {
+			roll();
+		}
+		// A save for this step just started: remember where the step ends.
+		if (autosave.getSavingStep() == game.stepsTaken) {
+			markStep = game.stepsTaken;
+			markPosition = buffer.position();
+		}
+	}
+
+	/**
+	 * The save for {@link #markStep} is on disk, so we only need the steps after it: copy them into a new file
+	 * and swap it in for the old one. The new file is written next to the old one and then moved over it, so
+	 * there's always a whole journal on disk, whenever we crash. (If this goes wrong, we keep the old file.)
+	 */
+	private void roll() {
+		commit();
+		int firstStep = markStep + 1;
+		int length = buffer.position() - markPosition;
+		markStep = -1;
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		FileChannel next = null;
+		try {
+			next = open(tmp);
+			// Leave about as much room again as what we copy (it's never more than the old file held).
+			long bytes = Math.min(Math.max(START_BYTES, HEADER_BYTES + 2L * length), MAX_BYTES);
+			MappedByteBuffer copy = start(next, (int) bytes, firstStep);
+			ByteBuffer tail = buffer.duplicate();
+			tail.position(markPosition);
+			tail.limit(markPosition + length);
+			copy.put(tail);
+			copy.force();
+			copy.putLong(8, copy.position());
+			copy.force();
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel.close();
+			channel = next;
+			buffer = copy;
+			rolls++;
+		} catch (IOException e) {
+			System.err.println("Journal " + file + " couldn't start over (it'll keep growing): " + e);
+			if (next != null) {
+				try {
+					next.close();
+				} catch (IOException ignored) {
+					// We already said what went wrong.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put everything written so far on disk. (The length is only updated after the changes are on disk, so a crash
+	 * in the middle never makes half-written changes look committed.)
+	 */
+	public void commit() {
+		if (failure != null) {
+			// The buffer may be full, but what's in it was committed (or not) before we stopped.
+			return;
+		}
+		buffer.force();
+		buffer.putLong(8, buffer.position());
+		buffer.force();
+		commits++;
+	}
+
+	/**
+	 * How many commits have there been?
+	 * @return the count.
+	 */
+	public int getCommits() {
+		return commits;
+	}
+
+	/**
+	 * How many times has the journal started over with a new file (once after every save)?
+	 * @return the count.
+	 */
+	public int getRolls() {
+		return rolls;
+	}
+
+	/**
+	 * Why did the journal stop writing?
+	 * @return the problem, or null if it's still going.
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Commit and close the file.
+	 * @throws IOException if it can't be closed.
+	 */
+	public void close() throws IOException {
+		commit();
+		channel.close();
+	}
+
+	/**
+	 * A game put back together by {@link TickJournal#recover}.
+	 */
+	public static class Recovered {
+		/**
+		 * The world (rocks, snails, hearts and missing fish).
+		 */
+		public final World world;
+		/**
+		 * The last committed step.
+		 */
+		public final int step;
+		/**
+		 * The score after that step.
+		 */
+		public final int score;
+		/**
+		 * How many found fish had wandered off by then.
+		 */
+		public final int fishLost;
+		/**
+		 * How many fish were safe by then.
+		 */
+		public final int safeCount;
+		/**
+		 * How many changes couldn't be replayed (the object wasn't where the journal said). Should be zero!
+		 */
+		public final int mismatches;
+
+		Recovered(World world, int step, int score, int fishLost, int safeCount, int mismatches) {
+			this.world = world;
+			this.step = step;
+			this.score = score;
+			this.fishLost = fishLost;
+			this.safeCount = safeCount;
+			this.mismatches = mismatches;
+		}
+	}
+
+	/**
+	 * Put a game back together after a crash: load the save, then replay every committed step after it.
+	 * If the file ends in the middle of a record (it was cut short, say), the step that record is part of is
+	 * left out, just like a step that was never committed.
+	 * @param save - a file written by {@link Autosave}.
+	 * @param journal - a journal that started no later than the step after the save.
+	 * @return the world, as of the last committed step.
+	 * @throws IOException if either file can't be read, or the journal starts too late for the save.
+	 */
+	public static Recovered recover(Path save, Path journal) throws IOException {
+		Autosave.Header header = Autosave.headerOf(save);
+		int savedStep = header.steps;
+		World world = Autosave.loadWorld(save);
+		try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != JOURNAL_MAGIC) {
+				throw new IOException(journal + " isn't a journal.");
+			}
+			int firstStep = buf.getInt(4);
+			if (firstStep > savedStep + 1) {
+				throw new IOException("The journal starts at step " + firstStep + ", after the save (step " + savedStep + ").");
+			}
+			// The length can be past the end of the file if the file lost its end.
+			long committed = Math.min(buf.getLong(8), buf.capacity());
+			buf.position(HEADER_BYTES);
+			buf.limit((int) committed);
+
+			// Until we replay a step, the game is just as it was saved.
+			int step = savedStep, score = header.score, fishLost = header.fishLost, safeCount = header.safeCount;
+			int mismatches = 0;
+			// Changes wait here until we see which step they belong to.
+			List<int[]> pending = new ArrayList<>();
+			while (buf.remaining() >= 4) {
+				int op = buf.getInt();
+				// Everything is 5 ints, but a MOVE is 7.
+				int rest = op == MOVE ? 6 : 4;
+				if (op < REGISTER || op > TICK || buf.remaining() < rest * 4) {
+					// A torn record: nothing after it can be trusted, and its step never finished.
+					break;
+				}
+				if (op == TICK) {
+					int tick = buf.getInt();
+					int tickScore = buf.getInt();
+					int tickLost = buf.getInt();
+					int tickSafe = buf.getInt();
+					if (tick > savedStep) {
+						for (int[] change : pending) {
+							if (!replay(world, change)) {
+								mismatches++;
+							}
+						}
+						step = tick;
+						score = tickScore;
+						fishLost = tickLost;
+						safeCount = tickSafe;
+					}
+					pending.clear();
+				} else {
+					int[] change = new int[op == MOVE ? 7 : 5];
+					change[0] = op;
+					for (int i = 1; i < change.length; i++) {
+						change[i] = buf.getInt();
+					}
+					pending.add(change);
+				}
+			}
+			return new Recovered(world, step, score, fishLost, safeCount, mismatches);
+		}
+	}
+
+	/**
+	 * Do one change over again.
+	 * @param world - the world being put back together.
+	 * @param change - op, kind, extra, then x, y (and for MOVE, the new x, y).
+	 * @return false if the object it talks about isn't there.
+	 */
+	private static boolean replay(World world, int[] change) {
+		int op = change[0], kind = change[1], extra = change[2], x = change[3], y = change[4];
+		if (op == REGISTER || op == UNFOLLOW) {
+			WorldObject item = ObjectRecord.make(world, kind, extra);
+			item.setPosition(x, y);
+			world.register(item);
+			return true;
+		}
+		// Everything else is about an object that's already there.
+		WorldObject match = null;
+		for (WorldObject it : world.find(x, y)) {
+			if (ObjectRecord.kindOf(it) != kind) {
+				continue;
+			}
+			// CHANGE has the new extra, so look for one that doesn't have it yet.
+			boolean same = ObjectRecord.extraOf(it) == extra;
+			if (op == CHANGE ? !same : same) {
+				match = it;
+				break;
+			}
+		}
+		if (match == null) {
+			return false;
+		}
+		switch (op) {
+		case MOVE:
+			match.setPosition(change[5], change[6]);
+			break;
+		case CHANGE:
+			world.remove(match);
+			WorldObject changed = ObjectRecord.make(world, kind, extra);
+			changed.setPosition(x, y);
+			world.register(changed);
+			break;
+		default:
+			// REMOVE or FOLLOW: either way it's gone from the grid.
+			world.remove(match);
+			break;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,230 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * A TimingWheel is a to-do list sorted by game step: "in 37 steps, do this".
+ *
+ * It works like the hands of a clock. The first wheel has 64 slots, one per step. Things further away sit in
+ * slower wheels (64 steps per slot, then 64*64, ...) and slide down to a faster wheel when their time gets close.
+ * Scheduling is O(1), and each step only looks at the things that are actually due.
+ *
+ * Every slot is a linked list of entries (first in, first out), and entries are used again once they're done,
+ * so a wheel that has warmed up makes no garbage.
+ */
+public class TimingWheel {
+	/**
+	 * Each wheel has 2^BITS slots.
+	 */
+	private static final int BITS = 6;
+	/**
+	 * Each wheel has this many slots.
+	 */
+	private static final int SLOTS = 1 << BITS;
+	/**
+	 * How many wheels (64^4 steps is about 16 million, further than that goes in the overflow list).
+	 */
+	private static final int LEVELS = 4;
+	/**
+	 * Where the overflow list lives in {@link #heads} and {@link #tails} (after every wheel's slots).
+	 */
+	private static final int OVERFLOW = LEVELS * SLOTS;
+
+	/**
+	 * Something to do at a particular step.
+	 */
+	private static class Entry {
+		/**
+		 * Which step to do it on.
+		 */
+		long due;
+		/**
+		 * What to do (null once it's done and the entry is waiting to be used again).
+		 */
+		Runnable task;
+		/**
+		 * The next entry in the same slot (or in the free list).
+		 */
+		Entry next;
+	}
+
+	/**
+	 * The first entry of every slot (slot s of wheel w is at w * SLOTS + s; the overflow list is last).
+	 */
+	private final Entry[] heads;
+	/**
+	 * The last entry of every slot, so new ones go on the end.
+	 */
+	private final Entry[] tails;
+	/**
+	 * Entries that are done, waiting to be used again.
+	 */
+	private Entry free;
+	/**
+	 * The step we're on now.
+	 */
+	private long current;
+	/**
+	 * How many entries are waiting?
+	 */
+	private int size;
+
+	/**
+	 * Make an empty TimingWheel.
+	 * @param startTick - the step we're on now.
+	 */
+	public TimingWheel(long startTick) {
+		this.current = startTick;
+		this.heads = new Entry[OVERFLOW + 1];
+		this.tails = new Entry[OVERFLOW + 1];
+	}
+
+	/**
+	 * What step are we on?
+	 * @return the current tick.
+	 */
+	public long getCurrentTick() {
+		return current;
+	}
+
+	/**
+	 * How many things are waiting to happen?
+	 * @return the number of scheduled tasks.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Do something on a future step.
+	 * @param dueTick - which step (if it's now or in the past, it happens next step).
+	 * @param task - what to do.
+	 */
+	public void schedule(long dueTick, Runnable task) {
+		size++;
+		Entry e = free;
+		if (e == null) {
+			e = new Entry();
+		} else {
+			free = e.next;
+		}
+		e.due = Math.max(dueTick, current + 1);
+		e.task = task;
+		place(e);
+	}
+
+	/**
+	 * Make entries ahead of time, so scheduling this many more things doesn't have to make any.
+	 * @param count - how many.
+	 */
+	public void reserve(int count) {
+		for (int i = 0; i < count; i++) {
+			Entry e = new Entry();
+			e.next = free;
+			free = e;
+		}
+	}
+
+	/**
+	 * Do something a number of steps from now.
+	 * @param delay - how many steps from now (at least 1).
+	 * @param task - what to do.
+	 */
+	public void scheduleIn(long delay, Runnable task) {
+		schedule(current + delay, task);
+	}
+
+	/**
+	 * Put an entry in the fastest wheel that can hold it.
+	 * @param e - the entry.
+	 */
+	private void place(Entry e) {
+		for (int level = 0; level < LEVELS; level++) {
+			int above = BITS * (level + 1);
+			// Same "hour" as now at this level? Then it belongs in this wheel.
+			if ((e.due >>> above) == (current >>> above)) {
+				int slot = (int) ((e.due >>> (BITS * level)) & (SLOTS - 1));
+				append(level * SLOTS + slot, e);
+				return;
+			}
+		}
+		append(OVERFLOW, e);
+	}
+
+	/**
+	 * Put an entry on the end of a slot's list.
+	 * @param slot - which list (see {@link #heads}).
+	 * @param e - the entry.
+	 */
+	private void append(int slot, Entry e) {
+		e.next = null;
+		if (heads[slot] == null) {
+			heads[slot] = e;
+		} else {
+			tails[slot].next = e;
+		}
+		tails[slot] = e;
+	}
+
+	/**
+	 * Empty a slot.
+	 * @param slot - which list (see {@link #heads}).
+	 * @return its first entry (the rest follow by next), or null if it was empty.
+	 */
+	private Entry takeSlot(int slot) {
+		Entry first = heads[slot];
+		heads[slot] = null;
+		tails[slot] = null;
+		return first;
+	}
+
+	/**
+	 * Move forward one step and run everything due on it.
+	 */
+	public void tick() {
+		current++;
+		// If a slower wheel just reached a new slot, slide its entries down (slowest first).
+		if ((current & ((1L << (BITS * LEVELS)) - 1)) == 0) {
+			replace(takeSlot(OVERFLOW));
+		}
+		for (int level = LEVELS - 1; level >= 1; level--) {
+			if ((current & ((1L << (BITS * level)) - 1)) == 0) {
+				int slot = (int) ((current >>> (BITS * level)) & (SLOTS - 1));
+				replace(takeSlot(level * SLOTS + slot));
+			}
+		}
+
+		// Run everything in this step's slot. Tasks may schedule more tasks (always for a later step).
+		Entry e = takeSlot((int) (current & (SLOTS - 1)));
+		while (e != null) {
+			Entry next = e.next;
+			Runnable task = e.task;
+			size--;
+			e.task = null;
+			e.next = free;
+			free = e;
+			task.run();
+			e = next;
+		}
+	}
+
+	/**
+	 * Put a list of entries back in the wheels, in order (each lands in a faster wheel than before).
+	 * @param e - the first entry, or null.
+	 */
+	private void replace(Entry e) {
+		while (e != null) {
+			Entry next = e.next;
+			place(e);
+			e = next;
+		}
+	}
+
+	/**
+	 * Move forward until we reach this step, running everything due on the way.
+	 * @param tick - the step to stop at.
+	 */
+	public void advanceTo(long tick) {
+		while (current < tick) {
+			tick();
+		}
+	}
+}
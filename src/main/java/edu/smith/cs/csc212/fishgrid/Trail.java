@@ -0,0 +1,183 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.jjfoley.gfx.IntPoint;
+
+/**
+ * A Trail is the list of places a WorldObject has recently been, newest first.
+ *
+ * It is a ring buffer of plain ints rather than a list of IntPoint objects, so remembering a step costs nothing.
+ * Followers don't copy it; they just remember "I'm 3 steps back" and read {@link #getX(int)} when they need to.
+ */
+public class Trail {
+	/**
+	 * The x-coordinates, in a circle.
+	 */
+	private int[] xs;
+	/**
+	 * The y-coordinates, in a circle.
+	 */
+	private int[] ys;
+	/**
+	 * Where the newest position lives in the circle.
+	 */
+	private int head;
+	/**
+	 * How many positions we're remembering right now.
+	 */
+	private int size;
+
+	/**
+	 * Make an empty Trail.
+	 * @param capacity - how many positions to remember (it can grow later).
+	 */
+	public Trail(int capacity) {
+		this.xs = new int[Math.max(1, capacity)];
+		this.ys = new int[xs.length];
+		this.head = -1;
+		this.size = 0;
+	}
+
+	/**
+	 * Remember a new position (at the front). If we're full, the oldest one is forgotten.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	public void push(int x, int y) {
+		head = (head + 1) % xs.length;
+		xs[head] = x;
+		ys[head] = y;
+		if (size < xs.length) {
+			size++;
+		}
+	}
+
+	/**
+	 * Forget every position (but keep the room for them, so it can be used again).
+	 */
+	public void clear() {
+		head = -1;
+		size = 0;
+	}
+
+	/**
+	 * Remember a position as the oldest one (at the back), if there's room.
+	 * FollowChain uses this so a new follower has a spot on the trail right where it is.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if there was room.
+	 */
+	public boolean appendOldest(int x, int y) {
+		if (size == xs.length) {
+			return false;
+		}
+		if (size == 0) {
+			push(x, y);
+			return true;
+		}
+		int i = head - size;
+		if (i < 0) {
+			i += xs.length;
+		}
+		xs[i] = x;
+		ys[i] = y;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Find the slot of the position that is this many steps back.
+	 * @param stepsBack - 0 is the newest position.
+	 * @return the index into xs/ys.
+	 */
+	private int slot(int stepsBack) {
+		if (stepsBack < 0 || stepsBack >= size) {
+			throw new IndexOutOfBoundsException("Trail only has " + size + " positions, not " + stepsBack);
+		}
+		int i = head - stepsBack;
+		if (i < 0) {
+			i += xs.length;
+		}
+		return i;
+	}
+
+	/**
+	 * Where were we?
+	 * @param stepsBack - 0 is the newest position.
+	 * @return the x-coordinate.
+	 */
+	public int getX(int stepsBack) {
+		return xs[slot(stepsBack)];
+	}
+
+	/**
+	 * Where were we?
+	 * @param stepsBack - 0 is the newest position.
+	 * @return the y-coordinate.
+	 */
+	public int getY(int stepsBack) {
+		return ys[slot(stepsBack)];
+	}
+
+	/**
+	 * Where were we? This makes a new IntPoint, so don't call it in a hot loop.
+	 * @param stepsBack - 0 is the newest position.
+	 * @return the position as an IntPoint.
+	 */
+	public IntPoint get(int stepsBack) {
+		int i = slot(stepsBack);
+		return new IntPoint(xs[i], ys[i]);
+	}
+
+	/**
+	 * How many positions do we know about?
+	 * @return the number of positions.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * How many positions could we know about?
+	 * @return the most positions this Trail will hold before forgetting.
+	 */
+	public int capacity() {
+		return xs.length;
+	}
+
+	/**
+	 * Make sure we can remember at least this many positions (for long lines of followers).
+	 * @param capacity - the number of positions we need.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= xs.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, xs.length * 2);
+		int[] newXs = new int[newCapacity];
+		int[] newYs = new int[newCapacity];
+		// Copy oldest-to-newest, so the newest ends up at size-1.
+		for (int i = 0; i < size; i++) {
+			int from = slot(size - 1 - i);
+			newXs[i] = xs[from];
+			newYs[i] = ys[from];
+		}
+		xs = newXs;
+		ys = newYs;
+		head = size - 1;
+	}
+
+	/**
+	 * Copy this trail into a list (newest first).
+	 * @return a new list of IntPoints.
+	 */
+	public List<IntPoint> toList() {
+		List<IntPoint> output = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			output.add(get(i));
+		}
+		return output;
+	}
+}
@@ -0,0 +1,266 @@
+package edu.smith.cs.csc212.fishgrid;
+
+/**
+ * A VisibilityField knows which cells one object (usually the player) can see: the ones within a radius
+ * that aren't hidden behind Rocks. (Rocks themselves can be seen; it's what's behind them that can't.)
+ *
+ * Working it out is "shadowcasting": we sweep out from the viewer, one octant at a time, and every Rock casts a
+ * shadow that the cells behind it fall into. That looks at every cell in the radius, so we don't do it every step.
+ * The World tells us when the viewer moves or a Rock near them shows up, moves or goes away, and only then do we
+ * work it out again (the next time somebody asks).
+ *
+ * Drawing (see {@link Main#FOG_RADIUS}) and bots can both ask {@link #isVisible}.
+ */
+public class VisibilityField {
+	/**
+	 * The eight octants, as (xx, xy, yx, yy): how to turn (column, row) in the octant into (dx, dy) in the world.
+	 */
+	private static final int[][] OCTANTS = {
+			{ 1, 0, 0, 1 }, { 0, 1, 1, 0 }, { 0, -1, 1, 0 }, { -1, 0, 0, 1 },
+			{ -1, 0, 0, -1 }, { 0, -1, -1, 0 }, { 0, 1, -1, 0 }, { 1, 0, 0, -1 } };
+
+	/**
+	 * The world we look at.
+	 */
+	private final World world;
+	/**
+	 * Who is looking.
+	 */
+	private final WorldObject viewer;
+	/**
+	 * How far they can see (in tiles, as the crow flies).
+	 */
+	private final int radius;
+	/**
+	 * How wide the square around the viewer is (2 * radius + 1).
+	 */
+	private final int side;
+	/**
+	 * One bit per cell of the square around the viewer: can they see it?
+	 */
+	private final long[] visible;
+	/**
+	 * Where the viewer was when we last worked it out (x).
+	 */
+	private int centerX;
+	/**
+	 * Where the viewer was when we last worked it out (y).
+	 */
+	private int centerY;
+	/**
+	 * Does it need working out again? (Players move from their own threads, see {@link World#movePlayer}.)
+	 */
+	private volatile boolean stale;
+	/**
+	 * How many times have we worked it out?
+	 */
+	private int recomputes;
+
+	/**
+	 * Start watching what an object can see. (Use {@link World#watch}, so the world keeps us up to date.)
+	 * @param world - the world.
+	 * @param viewer - who is looking.
+	 * @param radius - how far they can see.
+	 */
+	VisibilityField(World world, WorldObject viewer, int radius) {
+		this.world = world;
+		this.viewer = viewer;
+		this.radius = radius;
+		this.side = 2 * radius + 1;
+		this.visible = new long[(side * side + 63) / 64];
+		this.stale = true;
+	}
+
+	/**
+	 * Who is looking?
+	 * @return the viewer.
+	 */
+	public WorldObject getViewer() {
+		return viewer;
+	}
+
+	/**
+	 * How far can they see?
+	 * @return the radius, in tiles.
+	 */
+	public int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * How many times has this been worked out (not counting the times nothing had changed)?
+	 * @return the count.
+	 */
+	public int getRecomputes() {
+		return recomputes;
+	}
+
+	/**
+	 * Can the viewer see this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if it's in range and not behind a Rock.
+	 */
+	public synchronized boolean isVisible(int x, int y) {
+		if (stale) {
+			recompute();
+		}
+		int i = index(x, y);
+		return i >= 0 && (visible[i >> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * How many cells can the viewer see?
+	 * @return the count.
+	 */
+	public synchronized int countVisible() {
+		if (stale) {
+			recompute();
+		}
+		int count = 0;
+		for (long word : visible) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Where is this cell in {@link #visible}?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the bit, or -1 if it's outside the square around the viewer.
+	 */
+	private int index(int x, int y) {
+		int dx = x - centerX + radius;
+		int dy = y - centerY + radius;
+		if (dx < 0 || dx >= side || dy < 0 || dy >= side) {
+			return -1;
+		}
+		return dy * side + dx;
+	}
+
+	/**
+	 * Is this cell close enough to the viewer that a Rock there could matter?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if it's in the square around where the viewer was.
+	 */
+	private boolean inRange(int x, int y) {
+		return Math.abs(x - centerX) <= radius && Math.abs(y - centerY) <= radius;
+	}
+
+	/**
+	 * Something moved (World calls this).
+	 * @param item - what moved (already at its new position).
+	 * @param oldX - where it was (x).
+	 * @param oldY - where it was (y).
+	 */
+	void moved(WorldObject item, int oldX, int oldY) {
+		if (item == viewer || (item instanceof Rock && (inRange(oldX, oldY) || inRange(item.getX(), item.getY())))) {
+			stale = true;
+		}
+	}
+
+	/**
+	 * Something showed up or went away (World calls this).
+	 * @param item - the object.
+	 */
+	void changed(WorldObject item) {
+		if (item instanceof Rock && inRange(item.getX(), item.getY())) {
+			stale = true;
+		}
+	}
+
+	/**
+	 * A rectangle of the world was loaded or unloaded (World calls this).
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 */
+	void regionChanged(int x0, int y0, int x1, int y1) {
+		if (x1 >= centerX - radius && x0 <= centerX + radius && y1 >= centerY - radius && y0 <= centerY + radius) {
+			stale = true;
+		}
+	}
+
+	/**
+	 * Work out everything the viewer can see from where they are now.
+	 */
+	private void recompute() {
+		stale = false;
+		recomputes++;
+		centerX = viewer.getX();
+		centerY = viewer.getY();
+		for (int i = 0; i < visible.length; i++) {
+			visible[i] = 0;
+		}
+		mark(centerX, centerY);
+		for (int[] o : OCTANTS) {
+			castLight(1, 1.0, 0.0, o[0], o[1], o[2], o[3]);
+		}
+	}
+
+	/**
+	 * Remember that the viewer can see a cell.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 */
+	private void mark(int x, int y) {
+		int i = index(x, y);
+		visible[i >> 6] |= 1L << i;
+	}
+
+	/**
+	 * Light up one octant, row by row, between two slopes. A Rock splits the light: the part before it keeps
+	 * going (recursively), and the part after it starts again once we're past the Rock.
+	 * @param row - how far from the viewer this row is.
+	 * @param start - the slope where the light starts (1.0 is the diagonal).
+	 * @param end - the slope where it stops (0.0 is straight out).
+	 * @param xx - see {@link #OCTANTS}.
+	 * @param xy - see {@link #OCTANTS}.
+	 * @param yx - see {@link #OCTANTS}.
+	 * @param yy - see {@link #OCTANTS}.
+	 */
+	private void castLight(int row, double start, double end, int xx, int xy, int yx, int yy) {
+		if (start < end) {
+			return;
+		}
+		int r2 = radius * radius;
+		double newStart = 0.0;
+		for (int j = row; j <= radius; j++) {
+			boolean blocked = false;
+			int dy = -j;
+			for (int dx = -j; dx <= 0; dx++) {
+				int x = centerX + dx * xx + dy * xy;
+				int y = centerY + dx * yx + dy * yy;
+				double leftSlope = (dx - 0.5) / (dy + 0.5);
+				double rightSlope = (dx + 0.5) / (dy - 0.5);
+				if (start < rightSlope) {
+					continue;
+				} else if (end > leftSlope) {
+					break;
+				}
+				if (dx * dx + dy * dy <= r2) {
+					mark(x, y);
+				}
+				boolean opaque = world.isOpaque(x, y);
+				if (blocked) {
+					if (opaque) {
+						newStart = rightSlope;
+					} else {
+						blocked = false;
+						start = newStart;
+					}
+				} else if (opaque && j < radius) {
+					blocked = true;
+					castLight(j + 1, start, leftSlope, xx, xy, yx, yy);
+					newStart = rightSlope;
+				}
+			}
+			if (blocked) {
+				break;
+			}
+		}
+	}
+}
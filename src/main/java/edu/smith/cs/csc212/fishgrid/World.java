@@ -2,15 +2,21 @@ package edu.smith.cs.csc212.fishgrid;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import me.jjfoley.gfx.IntPoint;
 
 /**
  * A World is a 2d grid, represented as a width, a height, and a list of WorldObjects in that world.
+ * It keeps indexes of the grid up to date as things move, so questions about it are fast
+ * (see {@link ReferenceWorld} for the slow, obvious answers).
  * @author jfoley
  *
  */
-public class World {
+public class World implements WorldHooks {
 	/**
 	 * The size of the grid (x-tiles).
 	 */
@@ -22,11 +28,75 @@ public class World {
 	/**
 	 * A list of objects in the world (Fish, Snail, Rock, etc.).
 	 */
-	private List<WorldObject> items;
+	private ArrayList<WorldObject> items;
+	/**
+	 * The same objects in an array that never changes (null when items has changed since; see {@link #stream}).
+	 * Changes to items and making this array both lock items, so a snapshot is never half-made.
+	 */
+	private volatile WorldObject[] snapshot;
 	/**
 	 * A reference to a random object, so we can randomize placement of objects in this world.
 	 */
-	private Random rand = ThreadLocalRandom.current();
+	private Random rand;
+	/**
+	 * Should we print every register and remove? (Handy for debugging, too slow for thousands of games.)
+	 */
+	private boolean verbose = true;
+	/**
+	 * How far is every cell from home? Kept up to date as things move around.
+	 */
+	private HomeDistanceField homeField;
+	/**
+	 * Timers and counters (off unless somebody turns them on).
+	 */
+	private Metrics metrics = new Metrics();
+	/**
+	 * Which objects are in which cell? This makes find fast.
+	 */
+	private CellIndex cellIndex;
+	/**
+	 * Objects that moved into a new cell since the last {@link #drainArrivals}.
+	 * (Players add to this from their own threads in {@link #movePlayer}, so it's locked while we use it.)
+	 */
+	private ArrayList<WorldObject> arrivals;
+	/**
+	 * How many locks {@link #movePlayer} spreads the grid over (a power of two).
+	 */
+	private static final int STRIPES = 256;
+	/**
+	 * Locks for {@link #movePlayer}. Every cell in the same 64-wide row of a page shares one, because they share a
+	 * word of {@link CellIndex}'s occupied bits.
+	 */
+	private final ReentrantLock[] stripes;
+	/**
+	 * Room for the (up to three) locks one {@link #movePlayer} takes; every player's thread has its own, so moving
+	 * doesn't make garbage.
+	 */
+	private static final ThreadLocal<int[]> MOVE_LOCKS = ThreadLocal.withInitial(() -> new int[3]);
+	/**
+	 * How big (on a side) is a chunk? Only used once {@link #enableChunks} is called.
+	 */
+	private int chunkSize;
+	/**
+	 * Which chunks are loaded (by {@link #chunkKey})? Null means the whole world is, like always.
+	 */
+	private Set<Long> loadedChunks;
+	/**
+	 * The same chunks as {@link #loadedChunks}, in a list so we can pick one at random.
+	 */
+	private List<Long> loadedChunkList;
+	/**
+	 * Who is watching what they can see (see {@link #watch}); usually nobody.
+	 */
+	private List<VisibilityField> views;
+	/**
+	 * Where changes get written down (null unless {@link #setJournal} was called).
+	 */
+	private TickJournal journal;
+	/**
+	 * Where {@link #spawn} gets objects from, by class.
+	 */
+	private Map<Class<?>, Pool<?>> pools;
 
 	/**
 	 * Create a new world of a given width and height.
@@ -34,9 +104,33 @@ public class World {
 	 * @param h - height of the world.
 	 */
 	public World(int w, int h) {
+		this(w, h, ThreadLocalRandom.current());
+	}
+	
+	/**
+	 * Create a new world of a given width and height, with its own random numbers.
+	 * Give it a {@code new Random(seed)} and (if everything else uses {@link #getRandom()}) the same seed
+	 * plays out the same way every time.
+	 * @param w - width of the world.
+	 * @param h - height of the world.
+	 * @param rand - where this world (and its objects) get random numbers.
+	 */
+	public World(int w, int h, Random rand) {
+		this.rand = rand;
 		items = new ArrayList<>();
 		width = w;
 		height = h;
+		homeField = new HomeDistanceField(this);
+		cellIndex = new CellIndex(w, h);
+		views = new ArrayList<>();
+		arrivals = new ArrayList<>();
+		stripes = new ReentrantLock[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		pools = new HashMap<>();
+		usePool(Heart.class, Heart::new, 256);
+		usePool(Bubble.class, Bubble::new, 1 << 16);
 	}
 
 	/**
@@ -47,22 +141,224 @@ public class World {
 	 */
 	public List<WorldObject> find(int x, int y) {
 		List<WorldObject> found = new ArrayList<>();
-		
-		// Check out every object in the world to find the ones at a particular point.
-		for (WorldObject w : this.items) {
+		find(x, y, found);
+		// Give back the list, even if empty.
+		return found;
+	}
+	
+	/**
+	 * What is under this point? This fills in a list you already have, so a game can use the same one every step.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param output - where to put the objects (it isn't cleared first).
+	 */
+	public void find(int x, int y, List<WorldObject> output) {
+		metrics.count(Metrics.Counter.FIND);
+		collectAt(x, y, WorldObject.class, output);
+	}
+	
+	/**
+	 * Add the objects of a type at one point to a list.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param type - what kind of objects we want (WorldObject.class for all of them).
+	 * @param output - where to put them.
+	 * @param <T> the kind of objects we want.
+	 */
+	private <T extends WorldObject> void collectAt(int x, int y, Class<T> type, List<? super T> output) {
+		// Check out every object in that cell (off the grid they're lumped together, so check positions).
+		List<WorldObject> here = cellIndex.at(x, y);
+		for (int i = 0; i < here.size(); i++) {
+			WorldObject w = here.get(i);
 			// But only the ones that match are "found".
-			if (x == w.getX() && y == w.getY()) {
-				found.add(w);
+			if (x == w.getX() && y == w.getY() && type.isInstance(w)) {
+				output.add(type.cast(w));
 			}
 		}
 		
-		// Give back the list, even if empty.
-		return found;
+		// Followers aren't in the cells one by one; look along the trails of the leaders whose lines pass through.
+		List<WorldObject> passing = cellIndex.leadersAt(x, y);
+		for (int l = 0; l < passing.size(); l++) {
+			WorldObject leader = passing.get(l);
+			Trail trail = leader.recentPositions;
+			for (int i = 0; i < leader.chain.size(); i++) {
+				WorldObject w = leader.chain.get(i);
+				if (w.registered && trail.getX(i + 1) == x && trail.getY(i + 1) == y && type.isInstance(w)) {
+					output.add(type.cast(w));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * What is near this point? This only looks at the cells in the circle, not at every object.
+	 * @param x - the tile-x of the center.
+	 * @param y - the tile-y of the center.
+	 * @param radius - how far to look (straight-line distance, in tiles).
+	 * @param type - what kind of objects we want (WorldObject.class for all of them).
+	 * @param <T> the kind of objects we want.
+	 * @return a list of objects, closest rings first.
+	 */
+	public <T extends WorldObject> List<T> findInRadius(int x, int y, int radius, Class<T> type) {
+		List<T> output = new ArrayList<>();
+		findInRadius(x, y, radius, type, output);
+		return output;
+	}
+	
+	/**
+	 * What is near this point? Like {@link #findInRadius(int, int, int, Class)}, but it fills in a list you
+	 * already have.
+	 * @param x - the tile-x of the center.
+	 * @param y - the tile-y of the center.
+	 * @param radius - how far to look (straight-line distance, in tiles).
+	 * @param type - what kind of objects we want (WorldObject.class for all of them).
+	 * @param output - where to put them, closest rings first (it isn't cleared first).
+	 * @param <T> the kind of objects we want.
+	 */
+	public <T extends WorldObject> void findInRadius(int x, int y, int radius, Class<T> type, List<? super T> output) {
+		for (int ring = 0; ring <= radius; ring++) {
+			collectRing(x, y, ring, radius, type, output);
+		}
+	}
+	
+	/**
+	 * Find the closest object of a type (straight-line distance), looking outward ring by ring.
+	 * @param x - the tile-x to start from.
+	 * @param y - the tile-y to start from.
+	 * @param maxRadius - give up past this many tiles.
+	 * @param type - what kind of object we want.
+	 * @param <T> the kind of object we want.
+	 * @return the closest one, or null if there isn't one close enough.
+	 */
+	public <T extends WorldObject> T nearestOfType(int x, int y, int maxRadius, Class<T> type) {
+		List<T> ring = new ArrayList<>();
+		T best = null;
+		long bestDist = Long.MAX_VALUE;
+		for (int r = 0; r <= maxRadius; r++) {
+			// Everything in ring r is at least r tiles away; once that's worse than our best, stop.
+			if ((long) r * r > bestDist) {
+				break;
+			}
+			ring.clear();
+			collectRing(x, y, r, maxRadius, type, ring);
+			for (T it : ring) {
+				long dx = it.getX() - x;
+				long dy = it.getY() - y;
+				long d = dx * dx + dy * dy;
+				if (d < bestDist) {
+					bestDist = d;
+					best = it;
+				}
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * What is inside this rectangle? Only cells that have something in them are looked at.
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 * @param type - what kind of objects we want (WorldObject.class for all of them).
+	 * @param <T> the kind of objects we want.
+	 * @return a list of objects, row by row.
+	 */
+	public <T extends WorldObject> List<T> findInRect(int x0, int y0, int x1, int y1, Class<T> type) {
+		List<T> output = new ArrayList<>();
+		for (int y = Math.max(0, y0); y <= Math.min(height - 1, y1); y++) {
+			int x = cellIndex.nextOccupied(y, x0, x1);
+			while (x >= 0) {
+				collectAt(x, y, type, output);
+				x = cellIndex.nextOccupied(y, x + 1, x1);
+			}
+		}
+		return output;
+	}
+	
+	/**
+	 * Remove everything of a type inside this rectangle (like an eraser).
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 * @param type - what kind of objects to erase.
+	 * @return how many objects were removed.
+	 */
+	public int removeInRect(int x0, int y0, int x1, int y1, Class<? extends WorldObject> type) {
+		return removeAll(findInRect(x0, y0, x1, y1, type));
+	}
+	
+	/**
+	 * Remove a bunch of objects at once. This goes through our list of items once, not once per object.
+	 * Like {@link WorldObject#remove()}, the objects forget which World they were in.
+	 * Objects in a FollowChain are skipped; take them out of the chain first.
+	 * @param doomed - the objects to remove.
+	 * @return how many objects were removed.
+	 */
+	public int removeAll(Collection<? extends WorldObject> doomed) {
+		if (doomed.isEmpty()) {
+			return 0;
+		}
+		Set<WorldObject> gone = Collections.newSetFromMap(new IdentityHashMap<WorldObject, Boolean>());
+		for (WorldObject item : doomed) {
+			if (item.registered && item.world == this && !item.isFollowing()) {
+				gone.add(item);
+			}
+		}
+		if (verbose) {
+			System.out.println("remove: " + gone.size() + " objects");
+		}
+		synchronized (items) {
+			items.removeIf(gone::contains);
+			snapshot = null;
+		}
+		for (WorldObject item : gone) {
+			metrics.count(Metrics.Counter.REMOVE);
+			item.registered = false;
+			homeField.removed(item);
+			cellIndex.remove(item, item.getX(), item.getY());
+			for (int v = 0; v < views.size(); v++) {
+				views.get(v).changed(item);
+			}
+			if (journal != null) {
+				journal.record(TickJournal.REMOVE, item);
+			}
+			item.world = null;
+		}
+		return gone.size();
 	}
 	
+	/**
+	 * Collect objects on the square ring that is exactly {@code ring} tiles (left/right or up/down) from a point,
+	 * keeping only those within the circle of the given radius.
+	 * @param x - the tile-x of the center.
+	 * @param y - the tile-y of the center.
+	 * @param ring - which ring (0 is just the center).
+	 * @param radius - the circle to stay inside.
+	 * @param type - what kind of objects we want.
+	 * @param output - where to put them.
+	 * @param <T> the kind of objects we want.
+	 */
+	private <T extends WorldObject> void collectRing(int x, int y, int ring, int radius, Class<T> type, List<? super T> output) {
+		long r2 = (long) radius * radius;
+		for (int dx = -ring; dx <= ring; dx++) {
+			// The top and bottom rows have every x; the middle rows only the two ends.
+			int step = (dx == -ring || dx == ring) ? 1 : Math.max(1, 2 * ring);
+			for (int dy = -ring; dy <= ring; dy += step) {
+				int cx = x + dx;
+				int cy = y + dy;
+				if ((long) dx * dx + (long) dy * dy > r2 || cx < 0 || cx >= width || cy < 0 || cy >= height) {
+					continue;
+				}
+				collectAt(cx, cy, type, output);
+			}
+		}
+	}
 	
 	/**
 	 * This is used by PlayGame to draw all our items!
+	 * Don't look at it while the world is changing (use {@link #stream} for that).
 	 * @return the list of items.
 	 */
 	public List<WorldObject> viewItems() {
@@ -73,14 +369,142 @@ public class World {
 		return Collections.unmodifiableList(items);
 	}
 
+	/**
+	 * Every object in the world, as an array that never changes. It's only copied again after something is
+	 * registered or removed, so asking every frame is cheap.
+	 * @return the objects as of the last change (don't modify it!).
+	 */
+	WorldObject[] itemSnapshot() {
+		WorldObject[] copy = snapshot;
+		if (copy == null) {
+			synchronized (items) {
+				copy = snapshot;
+				if (copy == null) {
+					copy = items.toArray(new WorldObject[items.size()]);
+					snapshot = copy;
+				}
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Every object of one type, as a stream. Which objects are in it is fixed when you ask (registering or removing
+	 * things afterwards doesn't change it, so it's safe to use while the game steps). Their positions are not:
+	 * if you want those to hold still too, look between steps.
+	 * 
+	 * It splits evenly, so {@code world.stream(Fish.class).parallel()} gives every thread about the same amount of work.
+	 * 
+	 * @param type - e.g. Fish.class (or WorldObject.class for everything).
+	 * @param <T> - the type of object.
+	 * @return a sequential stream (call parallel() on it if you like).
+	 */
+	public <T extends WorldObject> Stream<T> stream(Class<T> type) {
+		WorldObject[] copy = itemSnapshot();
+		return StreamSupport.stream(new ItemSpliterator<>(copy, type, 0, copy.length), false);
+	}
+
+	/**
+	 * Every object of one type in a rectangle, as a stream (in the same order as {@link #findInRect}). Like
+	 * {@link #stream(Class)}, which objects are in it is fixed when you ask: we look at the grid once, right then,
+	 * so ask between steps; after that the stream is safe to use while the game steps. It knows how many objects
+	 * it has and splits evenly, so every thread of a parallel stream gets about the same amount of work.
+	 * 
+	 * @param type - e.g. Fish.class (or WorldObject.class for everything).
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 * @param <T> - the type of object.
+	 * @return a sequential stream (call parallel() on it if you like).
+	 */
+	public <T extends WorldObject> Stream<T> stream(Class<T> type, int x0, int y0, int x1, int y1) {
+		List<T> found = findInRect(x0, y0, x1, y1, type);
+		WorldObject[] copy = found.toArray(new WorldObject[found.size()]);
+		return StreamSupport.stream(new ItemSpliterator<>(copy, type, 0, copy.length, true), false);
+	}
+
 	/**
 	 * Add an item to this World.
 	 * @param item - the Fish, Rock, Snail, or other WorldObject.
 	 */
 	public void register(WorldObject item) {
 		// Print out what we've added, for our sanity.
-		System.out.println("register: "+item);
-		items.add(item);
+		if (verbose) {
+			System.out.println("register: "+item);
+		}
+		synchronized (items) {
+			items.add(item);
+			snapshot = null;
+		}
+		added(item, true);
+	}
+	
+	/**
+	 * Everything registering does after an item is in the item list: the counters, the field, the cells, the views
+	 * and the journal.
+	 * @param item - the item (already in {@link #items}).
+	 * @param updateField - should the distance-to-home field be told about it?
+	 */
+	private void added(WorldObject item, boolean updateField) {
+		metrics.count(Metrics.Counter.REGISTER);
+		item.registered = true;
+		if (updateField) {
+			homeField.added(item);
+		}
+		if (!item.isFollowing()) {
+			cellIndex.add(item, item.getX(), item.getY());
+			markArrived(item);
+		}
+		for (int v = 0; v < views.size(); v++) {
+			views.get(v).changed(item);
+		}
+		if (journal != null) {
+			journal.record(TickJournal.REGISTER, item);
+		}
+	}
+	
+	/**
+	 * Add a lot of items at once (say, from a {@link MapLoader}). It's the same as registering them one at a time,
+	 * but quieter: a verbose world prints one line for the whole batch instead of one per item, and the item list
+	 * only grows once.
+	 * Nobody checks for free space; the items go wherever their positions say.
+	 * @param batch - the items, already positioned.
+	 */
+	public void registerAll(List<? extends WorldObject> batch) {
+		registerBatch(batch, true);
+	}
+	
+	/**
+	 * Fill an empty world with a batch of items whose distance-to-home field is already worked out
+	 * (see {@link WorldTemplate}): the field is copied instead of being built one object at a time.
+	 * @param batch - the items, already positioned.
+	 * @param field - a field that already counts exactly these Rocks, Snails and homes.
+	 */
+	void registerAll(List<? extends WorldObject> batch, HomeDistanceField field) {
+		if (!items.isEmpty()) {
+			throw new IllegalStateException("Only an empty world can take a ready-made home field.");
+		}
+		registerBatch(batch, false);
+		homeField = field.copy(this);
+	}
+	
+	/**
+	 * Register a batch of items (see {@link #registerAll}).
+	 * @param batch - the items, already positioned.
+	 * @param updateField - should the distance-to-home field be told about them?
+	 */
+	private void registerBatch(List<? extends WorldObject> batch, boolean updateField) {
+		if (verbose) {
+			System.out.println("register: " + batch.size() + " objects");
+		}
+		synchronized (items) {
+			items.addAll(batch);
+			snapshot = null;
+		}
+		for (WorldObject item : batch) {
+			added(item, updateField);
+		}
 	}
 	
 	/**
@@ -89,8 +513,198 @@ public class World {
 	 */
 	public void remove(WorldObject item) {
 		// Print out what we've removed, for our sanity.
-		System.out.println("remove: "+item.getClass().getSimpleName());
-		items.remove(item);
+		if (verbose) {
+			System.out.println("remove: "+item.getClass().getSimpleName());
+		}
+		boolean removed;
+		synchronized (items) {
+			removed = items.remove(item);
+			snapshot = null;
+		}
+		if (removed) {
+			metrics.count(Metrics.Counter.REMOVE);
+			item.registered = false;
+			homeField.removed(item);
+			if (!item.isFollowing()) {
+				cellIndex.remove(item, item.getX(), item.getY());
+			}
+			for (int v = 0; v < views.size(); v++) {
+				views.get(v).changed(item);
+			}
+			if (journal != null) {
+				journal.record(TickJournal.REMOVE, item);
+			}
+		}
+	}
+	
+	/**
+	 * WorldObject calls this whenever it changes position, so we can keep our maps of the grid up to date.
+	 * @param item - the object that moved (it already knows its new position).
+	 * @param oldX - where it was (x).
+	 * @param oldY - where it was (y).
+	 */
+	public void objectMoved(WorldObject item, int oldX, int oldY) {
+		if (!item.registered) {
+			return;
+		}
+		homeField.moved(item, oldX, oldY);
+		cellIndex.move(item, oldX, oldY, item.getX(), item.getY());
+		markArrived(item);
+		for (int v = 0; v < views.size(); v++) {
+			views.get(v).moved(item, oldX, oldY);
+		}
+		if (journal != null) {
+			journal.moved(item, oldX, oldY);
+		}
+		
+		// If a line follows this object, everyone in it just took a step: the cell it left gets a follower,
+		// and the cell at the very end of the line loses one.
+		if (item.chain != null && item.chain.size() > 0) {
+			Trail trail = item.recentPositions;
+			int n = item.chain.size();
+			cellIndex.countFollower(item, trail.getX(1), trail.getY(1), +1);
+			cellIndex.countFollower(item, trail.getX(n + 1), trail.getY(n + 1), -1);
+		}
+	}
+	
+	/**
+	 * An object is joining a FollowChain; from now on its position comes from the leader's trail.
+	 * @param item - the new follower (still at its own position).
+	 */
+	public void startedFollowing(WorldObject item) {
+		if (item.registered) {
+			cellIndex.remove(item, item.getX(), item.getY());
+			if (journal != null) {
+				journal.record(TickJournal.FOLLOW, item);
+			}
+		}
+	}
+	
+	/**
+	 * An object left a FollowChain and stays where it is now.
+	 * @param item - the former follower.
+	 */
+	public void stoppedFollowing(WorldObject item) {
+		if (item.registered) {
+			cellIndex.add(item, item.getX(), item.getY());
+			markArrived(item);
+			if (journal != null) {
+				journal.record(TickJournal.UNFOLLOW, item);
+			}
+		}
+	}
+	
+	/**
+	 * A FollowChain got longer or shorter; update which cells its leader's line passes through.
+	 * @param leader - who the chain follows.
+	 * @param oldSize - how many followers there were.
+	 * @param newSize - how many followers there are now.
+	 */
+	public void chainResized(WorldObject leader, int oldSize, int newSize) {
+		Trail trail = leader.recentPositions;
+		for (int i = newSize + 1; i <= oldSize; i++) {
+			cellIndex.countFollower(leader, trail.getX(i), trail.getY(i), -1);
+		}
+		for (int i = oldSize + 1; i <= newSize; i++) {
+			cellIndex.countFollower(leader, trail.getX(i), trail.getY(i), +1);
+		}
+	}
+	
+	/**
+	 * Remember that this object is in a new cell, so whoever cares can check what it bumped into.
+	 * @param item - the object that moved.
+	 */
+	private void markArrived(WorldObject item) {
+		synchronized (arrivals) {
+			if (!item.arrived) {
+				item.arrived = true;
+				arrivals.add(item);
+			}
+		}
+	}
+	
+	/**
+	 * Which objects moved into a new cell (or showed up) since last time we asked?
+	 * This lets a game check for bumping into things only for the objects that actually moved.
+	 * @param output - where to put them (objects removed since are skipped).
+	 */
+	public void drainArrivals(List<WorldObject> output) {
+		synchronized (arrivals) {
+			for (int i = 0; i < arrivals.size(); i++) {
+				WorldObject item = arrivals.get(i);
+				item.arrived = false;
+				if (item.registered) {
+					output.add(item);
+				}
+			}
+			arrivals.clear();
+		}
+	}
+	
+	/**
+	 * How many steps would it take to swim home from here (ignoring other fish)?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the number of steps, or {@link HomeDistanceField#UNREACHABLE}.
+	 */
+	public int distanceToHome(int x, int y) {
+		return homeField.distance(x, y);
+	}
+	
+	/**
+	 * The distance-to-home field itself (for {@link WorldTemplate}, which copies it).
+	 * @return the field.
+	 */
+	HomeDistanceField homeField() {
+		return homeField;
+	}
+	
+	/**
+	 * Where does this world keep its timers and counters?
+	 * @return the Metrics for this world (and its FishGame).
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Where does this world get its random numbers?
+	 * @return the Random for this world (and everything in it).
+	 */
+	public Random getRandom() {
+		return rand;
+	}
+	
+	/**
+	 * Turn printing every register and remove on or off.
+	 * @param verbose - true to print (the default).
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+	
+	/**
+	 * Make room for this many more objects now (in the item list and the arrivals), so registering
+	 * them or moving them around doesn't have to grow anything.
+	 * @param count - how many.
+	 */
+	public void reserve(int count) {
+		synchronized (items) {
+			items.ensureCapacity(items.size() + count);
+		}
+		synchronized (arrivals) {
+			arrivals.ensureCapacity(count);
+		}
+	}
+	
+	/**
+	 * Make every cell's list now instead of the first time something swims in (see {@link CellIndex#prepareAll}),
+	 * and make the distance-to-home repairs big enough for the whole world.
+	 * For small worlds that get stepped a lot, so a step never has to allocate.
+	 */
+	public void prepareCells() {
+		cellIndex.prepareAll();
+		homeField.reserve(width * height);
 	}
 	
 	/**
@@ -108,100 +722,300 @@ public class World {
 		return height;
 	}
 	
+	/**
+	 * Split the world into square chunks that start out unloaded. Unloaded cells act like walls:
+	 * nobody can swim there, nothing gets put there, and the path home doesn't go through them.
+	 * Call this before registering anything (see {@link ChunkManager} for who loads them).
+	 * @param size - how many tiles on a side each chunk is.
+	 */
+	public void enableChunks(int size) {
+		chunkSize = size;
+		loadedChunks = new HashSet<>();
+		loadedChunkList = new ArrayList<>();
+	}
+	
+	/**
+	 * How big is a chunk?
+	 * @return the number of tiles on a side (0 if this world isn't split into chunks).
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * Pack a chunk's coordinates into one number.
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 * @return a key for the chunk.
+	 */
+	static long chunkKey(int cx, int cy) {
+		return ((long) cy << 32) | (cx & 0xffffffffL);
+	}
+	
+	/**
+	 * Is this cell part of the world right now?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true unless the world is split into chunks and this one isn't loaded.
+	 */
+	public boolean isLoaded(int x, int y) {
+		if (loadedChunks == null) {
+			return true;
+		}
+		return loadedChunks.contains(chunkKey(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize)));
+	}
+	
+	/**
+	 * Is this chunk loaded?
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 * @return true if its cells are part of the world right now.
+	 */
+	public boolean isChunkLoaded(int cx, int cy) {
+		return loadedChunks == null || loadedChunks.contains(chunkKey(cx, cy));
+	}
+	
+	/**
+	 * Open up a chunk, so things can swim (and be put) there.
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 */
+	public void loadChunk(int cx, int cy) {
+		if (loadedChunks.add(chunkKey(cx, cy))) {
+			loadedChunkList.add(chunkKey(cx, cy));
+			regionChanged(cx * chunkSize, cy * chunkSize, (cx + 1) * chunkSize - 1, (cy + 1) * chunkSize - 1);
+		}
+	}
+	
+	/**
+	 * Close a chunk again. Anything still in it stays (take it out first if you don't want that).
+	 * @param cx - the chunk-x.
+	 * @param cy - the chunk-y.
+	 */
+	public void unloadChunk(int cx, int cy) {
+		if (loadedChunks.remove(chunkKey(cx, cy))) {
+			loadedChunkList.remove(Long.valueOf(chunkKey(cx, cy)));
+			regionChanged(cx * chunkSize, cy * chunkSize, (cx + 1) * chunkSize - 1, (cy + 1) * chunkSize - 1);
+		}
+	}
+	
+	/**
+	 * A rectangle was loaded or unloaded; let everyone who cares about walls know.
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 */
+	private void regionChanged(int x0, int y0, int x1, int y1) {
+		homeField.regionChanged(x0, y0, x1, y1);
+		for (int v = 0; v < views.size(); v++) {
+			views.get(v).regionChanged(x0, y0, x1, y1);
+		}
+	}
+	
+	/**
+	 * Start keeping track of what an object (like the player) can see. The world keeps the answer up to date
+	 * as things change, so asking is cheap. Call this between steps, not while players are moving.
+	 * @param viewer - who is looking.
+	 * @param radius - how far they can see (in tiles).
+	 * @return the field to ask.
+	 */
+	public VisibilityField watch(WorldObject viewer, int radius) {
+		VisibilityField view = new VisibilityField(this, viewer, radius);
+		views.add(view);
+		return view;
+	}
+	
+	/**
+	 * Stop keeping a VisibilityField up to date.
+	 * @param view - from {@link #watch}.
+	 */
+	public void unwatch(VisibilityField view) {
+		views.remove(view);
+	}
+	
+	/**
+	 * Can you see through this cell? Not if there's a Rock in it, or it's off the grid (or not loaded).
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if it blocks the view.
+	 */
+	boolean isOpaque(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height || !isLoaded(x, y)) {
+			return true;
+		}
+		for (WorldObject it : cellIndex.at(x, y)) {
+			if (it instanceof Rock && it.getX() == x && it.getY() == y) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Is this cell completely empty (no objects, no followers passing through)?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if there's nothing here.
+	 */
+	public boolean isEmpty(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			// The occupied bits only cover the grid; off it, look for stragglers the slow way.
+			List<WorldObject> here = new ArrayList<>();
+			collectAt(x, y, WorldObject.class, here);
+			return here.isEmpty();
+		}
+		return cellIndex.nextOccupied(y, x, x) != x;
+	}
+	
 	/**
 	 * Try to find an unused part of the World for a new object!
+	 * 
+	 * Most of the world is usually empty, so we just try random spots first.
+	 * Only if that keeps failing do we look at every (loaded) cell.
+	 * 
 	 * @return a point (x,y) that has nothing else in the grid.
 	 */
 	public IntPoint pickUnusedSpace() {
-		// Build a set of all available spaces:
-		Set<IntPoint> available = new HashSet<>();
-		for (int x=0; x<getWidth(); x++) {
-			for (int y=0; y<getHeight(); y++) {
-				available.add(new IntPoint(x, y));
+		long cell = pickUnusedCell();
+		return new IntPoint((int) cell, (int) (cell >> 32));
+	}
+	
+	/**
+	 * Like {@link #pickUnusedSpace()}, but without making an IntPoint.
+	 * @return the point, packed like {@link #chunkKey} (x in the low half, y in the high half).
+	 */
+	private long pickUnusedCell() {
+		for (int attempt = 0; attempt < 64; attempt++) {
+			int x, y;
+			if (loadedChunks == null) {
+				x = rand.nextInt(width);
+				y = rand.nextInt(height);
+			} else {
+				if (loadedChunkList.isEmpty()) {
+					break;
+				}
+				long chunk = loadedChunkList.get(rand.nextInt(loadedChunkList.size()));
+				x = (int) chunk * chunkSize + rand.nextInt(chunkSize);
+				y = (int) (chunk >> 32) * chunkSize + rand.nextInt(chunkSize);
+			}
+			if (x >= 0 && x < width && y >= 0 && y < height && isEmpty(x, y)) {
+				return chunkKey(x, y);
 			}
 		}
-		// Remove any spaces that are in use:
-		for (WorldObject item : this.items) {
-			available.remove(item.getPosition());
+		
+		// Build a list of all available spaces:
+		List<IntPoint> unused = new ArrayList<>();
+		if (loadedChunks == null) {
+			addUnused(0, 0, width - 1, height - 1, unused);
+		} else {
+			for (long chunk : loadedChunkList) {
+				int x0 = (int) chunk * chunkSize;
+				int y0 = (int) (chunk >> 32) * chunkSize;
+				addUnused(x0, y0, x0 + chunkSize - 1, y0 + chunkSize - 1, unused);
+			}
 		}
 
 		// If we get here, we have too much stuff.
 		// Let's crash our Java program!
-		if (available.size() == 0) {
+		if (unused.size() == 0) {
 			throw new IllegalStateException("The world is too small! Trying to pick an unused space but there's nothing left.");
 		}
 
-		// Return an unused space at random: Need to copy to a list since sets do not have orders.
-		List<IntPoint> unused = new ArrayList<>(available);
-		int which = rand.nextInt(unused.size());
-		return unused.get(which);
+		// Return an unused space at random.
+		IntPoint which = unused.get(rand.nextInt(unused.size()));
+		return chunkKey(which.x, which.y);
 	}
 	
 	/**
-	 * Insert an item randomly into the grid.
-	 * @param item - the rock, fish, snail or other WorldObject.
+	 * Add every empty cell in a rectangle (clipped to the world) to a list.
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 * @param output - where to put them.
 	 */
-	public void insertRandomly(WorldObject item) {
-		item.setPosition(pickUnusedSpace());
-		this.register(item);
-		item.checkFindMyself();
+	private void addUnused(int x0, int y0, int x1, int y1, List<IntPoint> output) {
+		for (int y = Math.max(0, y0); y <= Math.min(height - 1, y1); y++) {
+			for (int x = Math.max(0, x0); x <= Math.min(width - 1, x1); x++) {
+				if (isEmpty(x, y)) {
+					output.add(new IntPoint(x, y));
+				}
+			}
+		}
 	}
 	
 	/**
-	 * Insert a new Rock into the world at random.
-	 * @return the Rock.
+	 * Let {@link #spawn} recycle objects of this type.
+	 * @param type - the class (like Heart.class).
+	 * @param factory - how to make a new one (like Heart::new).
+	 * @param maxFree - the most unused ones to keep around.
+	 * @param <T> the kind of object.
 	 */
-	public Rock insertRockRandomly() {
-		Rock r = new Rock(this);
-		insertRandomly(r);
-		return r;
+	public <T extends WorldObject> void usePool(Class<T> type, Function<WorldBackend, T> factory, int maxFree) {
+		pools.put(type, new Pool<T>(this, factory, maxFree));
 	}
 	
 	/**
-	 * Insert a new FallingRock into the world at random.
-	 * @return the FallingRock.
+	 * Where do recycled objects of this type come from?
+	 * @param type - the class (like Bubble.class).
+	 * @param <T> the kind of object.
+	 * @return the Pool.
 	 */
-	public FallingRock insertFallingRockRandomly() {
-		FallingRock r = new FallingRock(this);
-		insertRandomly(r);
-		return r;
+	@SuppressWarnings("unchecked")
+	public <T extends WorldObject> Pool<T> poolFor(Class<T> type) {
+		Pool<T> pool = (Pool<T>) pools.get(type);
+		if (pool == null) {
+			throw new IllegalArgumentException("No pool for " + type.getSimpleName() + "; call usePool first.");
+		}
+		return pool;
 	}
 	
 	/**
-	 * Insert a new Fish into the world at random of a specific color.
-	 * @param color - the color of the fish.
-	 * @return the new fish itself.
+	 * Put an object of this type into the world, reusing an old one if there is one.
+	 * When you're done with it, call {@link #despawn} (not remove) so it can be used again.
+	 * @param type - the class (it needs a pool; see {@link #usePool}).
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param <T> the kind of object.
+	 * @return the object, registered and in place.
 	 */
-	public Fish insertFishRandomly(int color) {
-		Fish f = new Fish(color, this);
-		insertRandomly(f);
-		return f;
-	}
-	
-	public FishHome insertFishHome() {
-		FishHome home = new FishHome(this);
-		insertRandomly(home);
-		return home;
+	public <T extends WorldObject> T spawn(Class<T> type, int x, int y) {
+		T item = poolFor(type).take();
+		item.setPosition(x, y);
+		register(item);
+		return item;
 	}
 	
 	/**
-	 * Insert a new Snail at random into the world.
-	 * @return the snail!
+	 * Spawn an object of this type in an unused spot.
+	 * @param type - the class (it needs a pool; see {@link #usePool}).
+	 * @param <T> the kind of object.
+	 * @return the object, registered and in place.
 	 */
-	public Snail insertSnailRandomly() {
-		Snail snail = new Snail(this);
-		insertRandomly(snail);
-		return snail;
+	public <T extends WorldObject> T spawnRandomly(Class<T> type) {
+		long cell = pickUnusedCell();
+		return spawn(type, (int) cell, (int) (cell >> 32));
 	}
 	
 	/**
-	 * Insert a new Heart at random into the world.
-	 * @return the heart!
+	 * Take a spawned object out of the world and give it back to its pool.
+	 * Don't hold on to it afterwards: it may come back as a brand new object (check {@link WorldObject#spawnCount}).
+	 * @param item - the object (doing this twice is harmless).
 	 */
-	public Heart insertHeartRandomly() {
-		Heart heart = new Heart(this);
-		insertRandomly(heart);
-		return heart;
+	@SuppressWarnings("unchecked")
+	public void despawn(WorldObject item) {
+		if (item.world != this) {
+			return;
+		}
+		if (item.registered) {
+			remove(item);
+		}
+		item.world = null;
+		Pool<WorldObject> pool = (Pool<WorldObject>) pools.get(item.getClass());
+		if (pool != null) {
+			pool.give(item);
+		}
 	}
 	
 	/**
@@ -213,37 +1027,256 @@ public class World {
 	 * @return true if they can move there.
 	 */
 	public boolean canSwim(WorldObject whoIsAsking, int x, int y) {
-		if (x < 0 || x >= width || y < 0 || y >= height) {
+		if (x < 0 || x >= width || y < 0 || y >= height || !isLoaded(x, y)) {
+			metrics.count(Metrics.Counter.CAN_SWIM_REJECTED);
 			return false;
 		}
 		
-		// Player CAN swim onto Fish; others can't
-		boolean isPlayer = whoIsAsking.isPlayer();
-		
-		// We will need to look at who all is in the spot to determine if we can move there.
-		List<WorldObject> inSpot = this.find(x, y);
+		// Nobody can move over rocks or snails, and only the player can step on fish.
+		// (The cell index keeps a bitboard of each, so this doesn't need to look at anybody.)
+		if (cellIndex.has(CellIndex.Layer.BLOCKER, x, y)
+				|| (!whoIsAsking.isPlayer() && cellIndex.has(CellIndex.Layer.FISH, x, y))) {
+			metrics.count(Metrics.Counter.CAN_SWIM_REJECTED);
+			return false;
+		}
 		
-		for (WorldObject it : inSpot) {
-			// Nobody can move over rocks or snails
-			if (it instanceof Rock || it instanceof Snail) {
-				return false;
+		// If we didn't see an obstacle, we can move there!
+		return true;
+	}
+	
+	/**
+	 * Work out {@link #canSwim} for a whole row at once: which cells (x, y) could move to (x + dx, y + dy)?
+	 * Bit i of out[w] is the cell (64 * w + i, y). Each word is a few shifts and ANDs of the bitboards
+	 * (see {@link CellIndex.Layer}), so this is much faster than asking cell by cell.
+	 * 
+	 * AND the answer with {@link #layerWord} to ask about just the cells with (say) fish in them.
+	 * 
+	 * @param y - the row the movers are in.
+	 * @param dx - -1, 0 or 1.
+	 * @param dy - -1, 0 or 1.
+	 * @param isPlayer - is the mover the player (who can swim onto fish)?
+	 * @param out - at least {@link #rowWords()} longs, one per 64 cells of the row.
+	 */
+	public void legalMoves(int y, int dx, int dy, boolean isPlayer, long[] out) {
+		if (dx < -1 || dx > 1 || dy < -1 || dy > 1) {
+			throw new IllegalArgumentException("Moves are one step: (" + dx + "," + dy + ")");
+		}
+		int words = rowWords();
+		int ty = y + dy;
+		if (y < 0 || y >= height || ty < 0 || ty >= height) {
+			Arrays.fill(out, 0, words, 0L);
+			return;
+		}
+		// Slide along the target row, keeping the free cells of the words before, at and after w.
+		long before = 0;
+		long here = freeWord(ty, 0, isPlayer);
+		for (int w = 0; w < words; w++) {
+			long after = freeWord(ty, w + 1, isPlayer);
+			long to;
+			if (dx == 0) {
+				to = here;
+			} else if (dx > 0) {
+				to = (here >>> 1) | (after << 63);
+			} else {
+				to = (here << 1) | (before >>> 63);
 			}
-			// Only the player can step on fish
-			if (it instanceof Fish && !isPlayer) {
-				return false;
+			out[w] = to & gridMask(w);
+			before = here;
+			here = after;
+		}
+	}
+	
+	/**
+	 * How many longs does it take to hold one row of the world (one bit per cell)?
+	 * @return (width + 63) / 64.
+	 */
+	public int rowWords() {
+		return (width + 63) >>> 6;
+	}
+	
+	/**
+	 * Get 64 cells of a bitboard at once.
+	 * @param layer - which kind of thing.
+	 * @param y - the row.
+	 * @param word - which 64 cells of the row (x / 64).
+	 * @return bit i is set if that kind of thing is at (64 * word + i, y).
+	 */
+	public long layerWord(CellIndex.Layer layer, int y, int word) {
+		return cellIndex.layerWord(layer, y, word);
+	}
+	
+	/**
+	 * Which of these 64 cells could somebody swim into?
+	 * @param y - the row.
+	 * @param word - which 64 cells of the row.
+	 * @param isPlayer - is it the player asking?
+	 * @return one bit per cell.
+	 */
+	private long freeWord(int y, int word, boolean isPlayer) {
+		long blocked = cellIndex.layerWord(CellIndex.Layer.BLOCKER, y, word);
+		if (!isPlayer) {
+			blocked |= cellIndex.layerWord(CellIndex.Layer.FISH, y, word);
+		}
+		return ~blocked & gridMask(word) & loadedMask(y, word);
+	}
+	
+	/**
+	 * Which of these 64 cells are on the grid?
+	 * @param word - which 64 cells of a row.
+	 * @return one bit per cell.
+	 */
+	private long gridMask(int word) {
+		if (word < 0 || word >= rowWords()) {
+			return 0;
+		}
+		if ((word + 1) << 6 <= width) {
+			return -1L;
+		}
+		return (1L << (width & 63)) - 1;
+	}
+	
+	/**
+	 * Which of these 64 cells are in loaded chunks (see {@link #isLoaded})?
+	 * @param y - the row.
+	 * @param word - which 64 cells of the row.
+	 * @return one bit per cell.
+	 */
+	private long loadedMask(int y, int word) {
+		if (loadedChunks == null) {
+			return -1L;
+		}
+		long mask = 0;
+		int cy = Math.floorDiv(y, chunkSize);
+		int last = Math.min((word << 6) + 63, width - 1);
+		// A chunk at a time, since they're all loaded or not.
+		for (int x = word << 6; x <= last;) {
+			int cx = Math.floorDiv(x, chunkSize);
+			int end = Math.min((cx + 1) * chunkSize - 1, last);
+			if (loadedChunks.contains(chunkKey(cx, cy))) {
+				mask |= (-1L >>> (63 - (end & 63))) & (-1L << (x & 63));
 			}
+			x = end + 1;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Write down every change from now on (or stop, with null).
+	 * @param journal - where to write them.
+	 */
+	public void setJournal(TickJournal journal) {
+		this.journal = journal;
+	}
+	
+	/**
+	 * How big (on a side) are the tiles {@link #drainChangedTiles} talks about?
+	 */
+	public static final int CHANGE_TILE_SIZE = 1 << CellIndex.TILE_BITS;
+	
+	/**
+	 * Start remembering which tiles of the grid change, for {@link #drainChangedTiles}.
+	 * (Every tile that has had something in it so far counts as changed.)
+	 */
+	public void trackChanges() {
+		cellIndex.trackChanges();
+	}
+	
+	/**
+	 * Which tiles had something show up, leave, move or change since last time we asked?
+	 * Only works after {@link #trackChanges}.
+	 * @param output - where to put the tile keys ({@link #chunkKey} of the tile, {@link #CHANGE_TILE_SIZE} cells on a side).
+	 */
+	public void drainChangedTiles(Collection<Long> output) {
+		cellIndex.drainChanged(output);
+	}
+	
+	/**
+	 * WorldObject calls this when it changes in a way that matters without moving (like a snail turning around).
+	 * @param item - the object that changed.
+	 */
+	public void objectChanged(WorldObject item) {
+		if (item.registered && !item.isFollowing()) {
+			cellIndex.touch(item.getX(), item.getY());
+			if (journal != null) {
+				journal.record(TickJournal.CHANGE, item);
+			}
+		}
+	}
+	
+	/**
+	 * Which lock covers this cell?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return an index into {@link #stripes}.
+	 */
+	private static int stripeOf(int x, int y) {
+		int h = (x >> 6) * 0x9E3779B1 + y * 0x85EBCA6B;
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+	
+	/**
+	 * Move a player one step, while other players do the same from other threads.
+	 * 
+	 * Only the cells that change get locked: where the player is, where they're going, and the end of the line of
+	 * fish behind them (it moves up a cell). Nothing else may change the world at the same time (FishGame holds
+	 * a read/write lock so that step() never overlaps this).
+	 * 
+	 * Players can swim on top of fish and each other, so only rocks and snails stop them.
+	 * 
+	 * @param player - the player (one thread per player, please).
+	 * @param dx - how far to move (x).
+	 * @param dy - how far to move (y).
+	 * @return true if they moved.
+	 */
+	public boolean movePlayer(WorldObject player, int dx, int dy) {
+		int x = player.getX() + dx;
+		int y = player.getY() + dy;
+		if (x < 0 || x >= width || y < 0 || y >= height || !isLoaded(x, y)) {
+			return false;
 		}
 		
-		// If we didn't see an obstacle, we can move there!
-		return true;
+		// Lock the cells in a fixed order (and each lock once) so two players can never wait on each other.
+		int[] locks = MOVE_LOCKS.get();
+		int n = 0;
+		locks[n++] = stripeOf(player.getX(), player.getY());
+		locks[n++] = stripeOf(x, y);
+		if (player.chain != null && player.chain.size() > 0) {
+			Trail trail = player.recentPositions;
+			int tail = player.chain.size();
+			locks[n++] = stripeOf(trail.getX(tail), trail.getY(tail));
+		}
+		Arrays.sort(locks, 0, n);
+		int held = 0;
+		for (int i = 0; i < n; i++) {
+			if (held == 0 || locks[held - 1] != locks[i]) {
+				locks[held++] = locks[i];
+			}
+		}
+		
+		for (int i = 0; i < held; i++) {
+			stripes[locks[i]].lock();
+		}
+		try {
+			for (WorldObject it : cellIndex.at(x, y)) {
+				if ((it instanceof Rock || it instanceof Snail) && it.getX() == x && it.getY() == y) {
+					return false;
+				}
+			}
+			player.setPosition(x, y);
+			return true;
+		} finally {
+			for (int i = held - 1; i >= 0; i--) {
+				stripes[locks[i]].unlock();
+			}
+		}
 	}
 	
 	/**
 	 * This is how objects may move. Only Snails do right now.
 	 */
 	public void stepAll() {
-		for (WorldObject it : this.items) {
-			it.step();
+		for (int i = 0; i < items.size(); i++) {
+			items.get(i).step();
 		}
 	}
 	
@@ -258,11 +1291,11 @@ public class World {
 		/**
 		 * recentPositions is an instance variable included in the data of all WorldObjects. It tracks
 		 * the WorldObject's most recent positions when the WorldObject updates its position. These
-		 * positions (of the type IntPoint) are stored in a Deque, which is a list where it's easy
-		 * to add to the front and remove from the back. This is helpful because recentPositions only
-		 * stores the n most recent positions (in this game, n = 64), so when the limit is reached,
-		 * old positions get removed from the back as new positions get added to front.
-		 * (See WorldObject.java)
+		 * positions (x and y ints) are stored in a Trail, which is a ring buffer where it's easy
+		 * to add to the front and forget from the back. This is helpful because recentPositions only
+		 * stores the n most recent positions (in this game, n = 64, or more for long follow chains),
+		 * so when the limit is reached, old positions get forgotten as new positions get added to front.
+		 * (See WorldObject.java and Trail.java)
 		 * 
 		 * We use recentPositions to place followers behind the target along the target's path.
 		 */
@@ -277,7 +1310,7 @@ public class World {
 		
 		// Q3. What is target?
 		/** 
-		 * Target is some WorldObject to make the followers follow. We use the target's Deque of 
+		 * Target is some WorldObject to make the followers follow. We use the target's Trail of 
 		 * recentPositions to place the followers behind the target.
 		 * 
 		 * We only ever use the player Fish as the target. We do this to make the found fish follow
@@ -287,7 +1320,7 @@ public class World {
 		
 		// Q4. Why is past = putWhere[i+1]? Why not putWhere[i]?
 		/**
-		 * The first IntPoint in the putWhere list is the target's current position. We want to start
+		 * The first position in the putWhere trail is the target's current position. We want to start
 		 * placing followers at the most recent *now unoccupied* target position. If we used i instead
 		 * of i+1, the first follower would get placed on top of the target.
 		 * 
@@ -296,7 +1329,12 @@ public class World {
 		 * i < followers.size() + 1 && i < putWhere.size()
 		 */
 		
-		List<IntPoint> putWhere = new ArrayList<>(target.recentPositions);
+		// A FollowChain already has every follower reading its position from the target's trail.
+		if (followers instanceof FollowChain && ((FollowChain<?>) followers).getLeader() == target) {
+			return;
+		}
+		
+		Trail putWhere = target.recentPositions;
 		for (int i=0; i < followers.size() && i+1 < putWhere.size(); i++) {
 			// Q5. What is the deal with the two conditions in this for-loop?
 			// Conditions are in the "while" part of this loop.
@@ -307,8 +1345,7 @@ public class World {
 			 * or the end of the positions list - whichever comes first.
 			 */
 			
-			IntPoint past = putWhere.get(i+1);
-			followers.get(i).setPosition(past.x, past.y);
+			followers.get(i).setPosition(putWhere.getX(i+1), putWhere.getY(i+1));
 		}
 	}
 }
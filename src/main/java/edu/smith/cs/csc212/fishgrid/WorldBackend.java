@@ -0,0 +1,246 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.List;
+import java.util.Random;
+
+import me.jjfoley.gfx.IntPoint;
+
+/**
+ * WorldBackend is everything a game needs from a world: what's where, who can swim where, how far it is to home,
+ * adding and removing objects, and stepping them. {@link FishGame} and every {@link WorldObject} only talk to their
+ * world through this, so a game plays the same on any backend.
+ *
+ * {@link World} is the fast one (it keeps indexes of the grid up to date), and {@link ReferenceWorld} answers the
+ * same questions the slow, obvious way, by looking at every object. {@link LockstepVerifier} plays the same game on
+ * both and stops at the first place they disagree, so a new trick in World can be checked before we trust it.
+ *
+ * Backends that get the same {@link Random} must use it the same way, or the games drift apart even when every
+ * answer is right. {@link #pickUnusedSpace()} says exactly how.
+ *
+ * How objects tell their world that something changed (and a few other things only this package needs) are in
+ * WorldHooks, which every backend also implements.
+ */
+public interface WorldBackend {
+	/**
+	 * How big is the world we model?
+	 * @return the width.
+	 */
+	int getWidth();
+
+	/**
+	 * How big is the world we model?
+	 * @return the height.
+	 */
+	int getHeight();
+
+	/**
+	 * Where does this world get its random numbers?
+	 * @return the Random for this world (and everything in it).
+	 */
+	Random getRandom();
+
+	/**
+	 * What is under this point (including fish following someone)? The order isn't promised.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return a new list of objects (maybe empty).
+	 */
+	List<WorldObject> find(int x, int y);
+
+	/**
+	 * Is this cell completely empty (no objects, no followers passing through)?
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return true if there's nothing here.
+	 */
+	boolean isEmpty(int x, int y);
+
+	/**
+	 * Can this object swim to this point? Nobody swims off the grid, onto rocks or onto snails;
+	 * only the player swims onto fish.
+	 * @param whoIsAsking - the object that wants to move.
+	 * @param x - the x-tile.
+	 * @param y - the y-tile.
+	 * @return true if they can move there.
+	 */
+	boolean canSwim(WorldObject whoIsAsking, int x, int y);
+
+	/**
+	 * Ask {@link #canSwim} about a whole row: bit i of out[w] says whether the cell (64 * w + i, y) could move to
+	 * (64 * w + i + dx, y + dy).
+	 * @param y - the row.
+	 * @param dx - -1, 0 or 1.
+	 * @param dy - -1, 0 or 1.
+	 * @param isPlayer - is the mover the player?
+	 * @param out - one long per 64 cells of the row.
+	 */
+	void legalMoves(int y, int dx, int dy, boolean isPlayer, long[] out);
+
+	/**
+	 * Add an item to this world.
+	 * @param item - the Fish, Rock, Snail, or other WorldObject.
+	 */
+	void register(WorldObject item);
+
+	/**
+	 * Take an item out of this world.
+	 * @param item - the item to remove.
+	 */
+	void remove(WorldObject item);
+
+	/**
+	 * Find a random empty cell: try up to 64 random cells ({@code nextInt(width)} then {@code nextInt(height)});
+	 * if none of those are empty, pick one of all the empty cells (listed row by row) with one more {@code nextInt}.
+	 * @return a point (x,y) that has nothing else in the grid.
+	 */
+	IntPoint pickUnusedSpace();
+
+	/**
+	 * Let every object take its turn, in the order they were registered.
+	 */
+	void stepAll();
+
+	/**
+	 * Every object in the world, in the order they were registered.
+	 * @return a list you can't change.
+	 */
+	List<WorldObject> viewItems();
+
+	/**
+	 * How many longs does one row of {@link #legalMoves} take?
+	 * @return the number of 64-cell words across the world.
+	 */
+	int rowWords();
+
+	/**
+	 * What is under this point? Like {@link #find(int, int)}, but it fills in a list you already have.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @param output - where to put them (it isn't cleared first).
+	 */
+	void find(int x, int y, List<WorldObject> output);
+
+	/**
+	 * What is near this point (straight-line distance)? Closer cells come first, a ring at a time
+	 * (a ring is every cell the same number of steps away left/right or up/down); the order inside a ring isn't
+	 * promised.
+	 * @param x - the tile-x of the center.
+	 * @param y - the tile-y of the center.
+	 * @param radius - how far to look (in tiles).
+	 * @param type - what kind of objects we want (WorldObject.class for all of them).
+	 * @param output - where to put them (it isn't cleared first).
+	 * @param <T> the kind of objects we want.
+	 */
+	<T extends WorldObject> void findInRadius(int x, int y, int radius, Class<T> type, List<? super T> output);
+
+	/**
+	 * Remove everything of a type inside this rectangle (like an eraser). The removed objects forget which world
+	 * they were in; followers are skipped.
+	 * @param x0 - the left edge (included).
+	 * @param y0 - the top edge (included).
+	 * @param x1 - the right edge (included).
+	 * @param y1 - the bottom edge (included).
+	 * @param type - what kind of objects to erase.
+	 * @return how many objects were removed.
+	 */
+	int removeInRect(int x0, int y0, int x1, int y1, Class<? extends WorldObject> type);
+
+	/**
+	 * How many steps would it take to swim home from here? Swimming goes up, down, left and right through cells
+	 * without a Rock or a Snail (other fish don't count); home is any cell with a FishHome.
+	 * @param x - the tile-x.
+	 * @param y - the tile-y.
+	 * @return the number of steps, or {@link HomeDistanceField#UNREACHABLE} (always, off the grid).
+	 */
+	int distanceToHome(int x, int y);
+
+	/**
+	 * Put an object from its pool into an unused spot (found the same way as {@link #pickUnusedSpace()}).
+	 * When you're done with it, call {@link #despawn} (not remove) so it can be used again.
+	 * @param type - the class (it needs a pool).
+	 * @param <T> the kind of object.
+	 * @return the object, registered and in place.
+	 */
+	<T extends WorldObject> T spawnRandomly(Class<T> type);
+
+	/**
+	 * Take a spawned object out of the world and give it back to its pool.
+	 * @param item - the object (doing this twice is harmless).
+	 */
+	void despawn(WorldObject item);
+
+	/**
+	 * Where does this world keep its timers and counters?
+	 * @return the Metrics for this world (and its FishGame).
+	 */
+	Metrics getMetrics();
+
+	/**
+	 * Insert an item randomly into the grid.
+	 * @param item - the rock, fish, snail or other WorldObject.
+	 */
+	default void insertRandomly(WorldObject item) {
+		item.setPosition(pickUnusedSpace());
+		register(item);
+		item.checkFindMyself();
+	}
+
+	/**
+	 * Insert a new Rock into the world at random.
+	 * @return the Rock.
+	 */
+	default Rock insertRockRandomly() {
+		Rock r = new Rock(this);
+		insertRandomly(r);
+		return r;
+	}
+
+	/**
+	 * Insert a new FallingRock into the world at random.
+	 * @return the FallingRock.
+	 */
+	default FallingRock insertFallingRockRandomly() {
+		FallingRock r = new FallingRock(this);
+		insertRandomly(r);
+		return r;
+	}
+
+	/**
+	 * Insert a new Fish into the world at random of a specific color.
+	 * @param color - the color of the fish.
+	 * @return the new fish itself.
+	 */
+	default Fish insertFishRandomly(int color) {
+		Fish f = new Fish(color, this);
+		insertRandomly(f);
+		return f;
+	}
+
+	/**
+	 * Insert a new FishHome into the world at random.
+	 * @return the home.
+	 */
+	default FishHome insertFishHome() {
+		FishHome home = new FishHome(this);
+		insertRandomly(home);
+		return home;
+	}
+
+	/**
+	 * Insert a new Snail at random into the world.
+	 * @return the snail!
+	 */
+	default Snail insertSnailRandomly() {
+		Snail snail = new Snail(this);
+		insertRandomly(snail);
+		return snail;
+	}
+
+	/**
+	 * Insert a new Heart at random into the world.
+	 * @return the heart!
+	 */
+	default Heart insertHeartRandomly() {
+		return spawnRandomly(Heart.class);
+	}
+}
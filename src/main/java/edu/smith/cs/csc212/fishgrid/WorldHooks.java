@@ -0,0 +1,89 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.List;
+
+/**
+ * WorldHooks is the part of a backend that only this package uses: players moving from their own threads, the
+ * arrivals FishGame drains every step, object pools, and how WorldObject and FollowChain tell their world that
+ * something changed. Games only see {@link WorldBackend}; every backend implements both.
+ */
+interface WorldHooks extends WorldBackend {
+	/**
+	 * Get at the hooks of a backend.
+	 * @param world - a World or ReferenceWorld (or null).
+	 * @return the same object, or null if it was null.
+	 * @throws IllegalArgumentException if it's some other kind of backend (they can't be made outside this package).
+	 */
+	static WorldHooks of(WorldBackend world) {
+		if (world == null || world instanceof WorldHooks) {
+			return (WorldHooks) world;
+		}
+		throw new IllegalArgumentException("Not a backend from this package: " + world.getClass().getName());
+	}
+
+	/**
+	 * Move a player one step. Players can swim on top of fish and each other, so only the edge of the world,
+	 * rocks and snails stop them. (On a World, many players may do this at once from their own threads.)
+	 * @param player - the player.
+	 * @param dx - how far to move (x).
+	 * @param dy - how far to move (y).
+	 * @return true if they moved.
+	 */
+	boolean movePlayer(WorldObject player, int dx, int dy);
+
+	/**
+	 * Which objects moved into a new cell (or showed up, or stopped following someone) since last time we asked?
+	 * They come out in the order that happened, each once, and objects removed since are skipped.
+	 * @param output - where to put them.
+	 */
+	void drainArrivals(List<WorldObject> output);
+
+	/**
+	 * Where do recycled objects of this type come from? Every backend has pools for Hearts and Bubbles.
+	 * @param type - the class (like Bubble.class).
+	 * @param <T> the kind of object.
+	 * @return the Pool.
+	 */
+	<T extends WorldObject> Pool<T> poolFor(Class<T> type);
+
+	/**
+	 * Make room for this many more objects now, so registering them or moving them around doesn't have to grow
+	 * anything.
+	 * @param count - how many.
+	 */
+	void reserve(int count);
+
+	/**
+	 * WorldObject calls this whenever it changes position.
+	 * @param item - the object that moved (it already knows its new position).
+	 * @param oldX - where it was (x).
+	 * @param oldY - where it was (y).
+	 */
+	void objectMoved(WorldObject item, int oldX, int oldY);
+
+	/**
+	 * WorldObject calls this when it changes in a way that matters without moving (like a snail turning around).
+	 * @param item - the object that changed.
+	 */
+	void objectChanged(WorldObject item);
+
+	/**
+	 * An object is joining a FollowChain; from now on its position comes from the leader's trail.
+	 * @param item - the new follower (still at its own position).
+	 */
+	void startedFollowing(WorldObject item);
+
+	/**
+	 * An object left a FollowChain and stays where it is now.
+	 * @param item - the former follower.
+	 */
+	void stoppedFollowing(WorldObject item);
+
+	/**
+	 * A FollowChain got longer or shorter.
+	 * @param leader - who the chain follows.
+	 * @param oldSize - how many followers there were.
+	 * @param newSize - how many followers there are now.
+	 */
+	void chainResized(WorldObject leader, int oldSize, int newSize);
+}
@@ -1,8 +1,6 @@
 package edu.smith.cs.csc212.fishgrid;
 
 import java.awt.Graphics2D;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
@@ -18,10 +16,15 @@ import me.jjfoley.gfx.IntPoint;
  * @author jfoley
  */
 public abstract class WorldObject {
+	/**
+	 * The four ways {@link #moveAwayFrom} and {@link #moveTowardHome} try (up, down, right, left), made once
+	 * instead of every call.
+	 */
+	private static final int[] AWAY_DX = { 0, 0, 1, -1 }, AWAY_DY = { -1, 1, 0, 0 };
 	/**
 	 * Random in case you want random numbers!
 	 */
-	Random rand = ThreadLocalRandom.current();
+	Random rand;
 	/**
 	 * Where am I? x-tile in the grid.
 	 */
@@ -33,29 +36,53 @@ public abstract class WorldObject {
 	/**
 	 * What world do I belong to?
 	 */
-	protected World world;
+	protected WorldHooks world;
 	/**
 	 * How many fish do we anticipate having? This is used to make them follow you.
 	 */
 	public static int NUM_RECENT_POSITIONS = 64;
 	/**
-	 * Here, we use a list that makes it easy to both:
+	 * Here, we use a ring buffer that makes it easy to both:
 	 *  - add to the front and
-	 *  - remove from the back.
-	 * Because we want keep up to NUM_RECENT_POSITIONS locations for every fish.
-	 *
-	 * https://docs.oracle.com/javase/7/docs/api/java/util/Deque.htmlP
+	 *  - forget from the back.
+	 * Because we want keep up to NUM_RECENT_POSITIONS locations for every fish (more if a long line follows us).
+	 */
+	public Trail recentPositions;
+	/**
+	 * If we're following somebody, whose trail do we read our position from? (null if we're on our own.)
+	 */
+	private WorldObject leader;
+	/**
+	 * If we're following somebody, how many steps back along their trail are we?
 	 */
-	public Deque<IntPoint> recentPositions;
+	private int stepsBehind;
+	/**
+	 * If a line of objects follows us, this is it (null otherwise).
+	 */
+	FollowChain<?> chain;
+	/**
+	 * Has the world already noted that we moved into a new cell? (World sets and clears this.)
+	 */
+	boolean arrived = false;
+	/**
+	 * Is this object currently registered in its world? (World sets this.)
+	 */
+	boolean registered = false;
+	/**
+	 * How many times has {@link World#spawn} handed out this object? Timers can check this to know
+	 * they're still looking at the same "life" of a pooled object.
+	 */
+	int spawnCount = 0;
 
 	/**
 	 * Create a new WorldObject -- this is the call to super(world) in Fish.
 	 * 
 	 * @param world the world filled with other objects.
 	 */
-	public WorldObject(World world) {
-		this.world = world;
-		this.recentPositions = new LinkedList<>();
+	public WorldObject(WorldBackend world) {
+		this.world = WorldHooks.of(world);
+		this.rand = world != null ? world.getRandom() : ThreadLocalRandom.current();
+		this.recentPositions = new Trail(NUM_RECENT_POSITIONS);
 	}
 	
 	/**
@@ -66,6 +93,27 @@ public abstract class WorldObject {
 		this.world = null;
 	}
 
+	/**
+	 * Tell the world this object changed in a way that matters, without moving (saves need to know).
+	 */
+	protected void changed() {
+		if (this.world != null) {
+			this.world.objectChanged(this);
+		}
+	}
+	
+	/**
+	 * Get ready for another life: forget where we've been and who we followed.
+	 * {@link World#spawn} calls this on objects coming out of a {@link Pool}; subclasses with more state
+	 * should reset that too (and call super.reset()).
+	 */
+	protected void reset() {
+		this.leader = null;
+		this.stepsBehind = 0;
+		this.chain = null;
+		this.recentPositions.clear();
+	}
+
 	/**
 	 * Move this object to a given position (ignoring rules).
 	 * 
@@ -73,9 +121,12 @@ public abstract class WorldObject {
 	 * @param y the y-coordinate.
 	 */
 	public void setPosition(int x, int y) {
+		checkNotFollowing();
+		int oldX = this.x;
+		int oldY = this.y;
 		this.x = x;
 		this.y = y;
-		this.updatePosition();
+		this.updatePosition(oldX, oldY);
 	}
 
 	/**
@@ -90,15 +141,78 @@ public abstract class WorldObject {
 	/**
 	 * Private method to keep track of this object's position history. Used to make
 	 * Fish follow the Player.
+	 * 
+	 * @param oldX where we were before (x).
+	 * @param oldY where we were before (y).
+	 */
+	private void updatePosition(int oldX, int oldY) {
+		// Add to front (the Trail forgets the back by itself).
+		this.recentPositions.push(this.x, this.y);
+		// Let the world know, so it can keep its maps up to date.
+		if (this.world != null) {
+			this.world.objectMoved(this, oldX, oldY);
+		}
+	}
+
+	/**
+	 * Follow a leader: from now on our position is wherever they were a few steps ago.
+	 * Nothing gets copied; {@link #getX()} and {@link #getY()} just look it up in their trail.
+	 * 
+	 * @param leader the object to follow.
+	 * @param stepsBehind how far back along their trail we are (1 is right behind them).
+	 */
+	void follow(WorldObject leader, int stepsBehind) {
+		if (this.leader == null && this.world != null) {
+			// Our position is about to belong to the leader's trail.
+			this.world.startedFollowing(this);
+		}
+		this.materialize();
+		this.leader = leader;
+		this.stepsBehind = stepsBehind;
+	}
+
+	/**
+	 * Stop following, and stay right where we are now.
 	 */
-	private void updatePosition() {
-		// Add to front.
-		this.recentPositions.offerFirst(new IntPoint(this.x, this.y));
-		if (this.recentPositions.size() > NUM_RECENT_POSITIONS) {
-			// Remove from back.
-			this.recentPositions.pollLast();
+	void unfollow() {
+		if (this.leader == null) {
+			return;
 		}
+		this.materialize();
+		if (this.world != null) {
+			this.world.stoppedFollowing(this);
+		}
+	}
 
+	/**
+	 * Is this object following a leader's trail?
+	 * 
+	 * @return true if its position comes from somebody else.
+	 */
+	public boolean isFollowing() {
+		return this.leader != null;
+	}
+
+	/**
+	 * Followers are moved by their leader, not by themselves.
+	 */
+	private void checkNotFollowing() {
+		if (this.leader != null) {
+			throw new IllegalStateException(this + " is following; take it out of its FollowChain before moving it.");
+		}
+	}
+
+	/**
+	 * If we're following, look up where we are and save it in x and y for real.
+	 */
+	private void materialize() {
+		if (this.leader != null) {
+			int fx = getX();
+			int fy = getY();
+			this.leader = null;
+			this.x = fx;
+			this.y = fy;
+		}
 	}
 
 	/**
@@ -107,9 +221,10 @@ public abstract class WorldObject {
 	 * @return true if it moved!
 	 */
 	public boolean moveUp() {
+		checkNotFollowing();
 		if (world.canSwim(this, x, y - 1)) {
 			this.y -= 1;
-			updatePosition();
+			updatePosition(x, y + 1);
 			return true;
 		}
 		return false;
@@ -139,9 +254,10 @@ public abstract class WorldObject {
 	 * @return true if it moved!
 	 */
 	public boolean moveDown() {
+		checkNotFollowing();
 		if (world.canSwim(this, x, y + 1)) {
 			this.y += 1;
-			updatePosition();
+			updatePosition(x, y - 1);
 			return true;
 		}
 		return false;
@@ -153,9 +269,10 @@ public abstract class WorldObject {
 	 * @return true if it moved!
 	 */
 	public boolean moveLeft() {
+		checkNotFollowing();
 		if (world.canSwim(this, x - 1, y)) {
 			this.x -= 1;
-			updatePosition();
+			updatePosition(x + 1, y);
 			return true;
 		}
 		return false;
@@ -167,9 +284,10 @@ public abstract class WorldObject {
 	 * @return true if it moved!
 	 */
 	public boolean moveRight() {
+		checkNotFollowing();
 		if (world.canSwim(this, x + 1, y)) {
 			this.x += 1;
-			updatePosition();
+			updatePosition(x - 1, y);
 			return true;
 		}
 		return false;
@@ -179,6 +297,7 @@ public abstract class WorldObject {
 	 * Move randomly! 
 	 */
 	public void moveRandomly() {
+		checkNotFollowing();
 		// Can we move right, left, down, or up?
 		boolean canMove = 
 				world.canSwim(this, x+1, y) ||
@@ -196,7 +315,7 @@ public abstract class WorldObject {
 		while (true) {
 			
 			// Choose a direction at random.
-			int direction = ThreadLocalRandom.current().nextInt(4);
+			int direction = rand.nextInt(4);
 			
 			boolean success = false;
 			if (direction == 0) {
@@ -215,7 +334,88 @@ public abstract class WorldObject {
 				break;
 			}
 			// Otherwise go pick another.
+			world.getMetrics().count(Metrics.Counter.MOVE_RANDOMLY_RETRIES);
+		}
+	}
+
+	/**
+	 * Take one step that gets us further from a point (straight-line distance), if one is open.
+	 * If every open direction is closer (we're cornered), move randomly instead.
+	 * 
+	 * @param fromX the x-coordinate to get away from.
+	 * @param fromY the y-coordinate to get away from.
+	 */
+	public void moveAwayFrom(int fromX, int fromY) {
+		checkNotFollowing();
+		long best = distanceSquared(x, y, fromX, fromY);
+		int dir = -1;
+		for (int d = 0; d < 4; d++) {
+			long there = distanceSquared(x + AWAY_DX[d], y + AWAY_DY[d], fromX, fromY);
+			if (there > best && world.canSwim(this, x + AWAY_DX[d], y + AWAY_DY[d])) {
+				best = there;
+				dir = d;
+			}
+		}
+		if (dir == 0) {
+			moveUp();
+		} else if (dir == 1) {
+			moveDown();
+		} else if (dir == 2) {
+			moveRight();
+		} else if (dir == 3) {
+			moveLeft();
+		} else {
+			moveRandomly();
+		}
+	}
+
+	/**
+	 * Straight-line distance (squared, so we don't need a square root) between two points.
+	 * 
+	 * @param x1 the first x-coordinate.
+	 * @param y1 the first y-coordinate.
+	 * @param x2 the second x-coordinate.
+	 * @param y2 the second y-coordinate.
+	 * @return (x1-x2)^2 + (y1-y2)^2.
+	 */
+	private static long distanceSquared(int x1, int y1, int x2, int y2) {
+		long dx = x1 - x2;
+		long dy = y1 - y2;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Take one step downhill on the world's distance-to-home map, if one is open.
+	 * 
+	 * This is O(1): the World already knows how far every cell is from home.
+	 * 
+	 * @return true if it moved!
+	 */
+	public boolean moveTowardHome() {
+		checkNotFollowing();
+		int here = world.distanceToHome(x, y);
+		int best = here;
+		int dir = -1;
+		for (int d = 0; d < 4; d++) {
+			int nx = x + AWAY_DX[d];
+			int ny = y + AWAY_DY[d];
+			int there = world.distanceToHome(nx, ny);
+			if (there < best && world.canSwim(this, nx, ny)) {
+				best = there;
+				dir = d;
+			}
+		}
+		if (dir == 0) {
+			return moveUp();
+		} else if (dir == 1) {
+			return moveDown();
+		} else if (dir == 2) {
+			return moveRight();
+		} else if (dir == 3) {
+			return moveLeft();
 		}
+		// Already home, boxed in, or no path.
+		return false;
 	}
 
 	/**
@@ -224,6 +424,9 @@ public abstract class WorldObject {
 	 * @return the x-coordinate.
 	 */
 	public int getX() {
+		if (this.leader != null && this.stepsBehind < this.leader.recentPositions.size()) {
+			return this.leader.recentPositions.getX(this.stepsBehind);
+		}
 		return this.x;
 	}
 
@@ -233,12 +436,15 @@ public abstract class WorldObject {
 	 * @return the y-coordinate.
 	 */
 	public int getY() {
+		if (this.leader != null && this.stepsBehind < this.leader.recentPositions.size()) {
+			return this.leader.recentPositions.getY(this.stepsBehind);
+		}
 		return this.y;
 	}
 
 
 	public IntPoint getPosition() {
-		return new IntPoint(this.x, this.y);
+		return new IntPoint(getX(), getY());
 	}
 
 	/**
@@ -256,7 +462,7 @@ public abstract class WorldObject {
 	 * @return a list of WorldObject.
 	 */
 	public List<WorldObject> findSameCell() {
-		return world.find(this.x, this.y);
+		return world.find(getX(), getY());
 	}
 
 	/**
@@ -266,7 +472,7 @@ public abstract class WorldObject {
 	 * @return true if their x and y coordinates are the same.
 	 */
 	public boolean inSameSpot(WorldObject other) {
-		return this.x == other.getX() && this.y == other.getY();
+		return getX() == other.getX() && getY() == other.getY();
 	}
 	
 	/**
@@ -274,7 +480,7 @@ public abstract class WorldObject {
 	 */
 	@Override
 	public String toString() {
-		return this.getClass().getSimpleName() + " @ (" + this.x + "," + this.y + ")";
+		return this.getClass().getSimpleName() + " @ (" + getX() + "," + getY() + ")";
 	}
 
 	/**
@@ -285,6 +491,14 @@ public abstract class WorldObject {
 	 * @param g Graphics2D API.
 	 */
 	public abstract void draw(Graphics2D g);
+	
+	/**
+	 * Move any animation along by one frame. This is called once per frame, before drawing,
+	 * so draw itself doesn't change anything (and can be called from more than one thread).
+	 */
+	public void animate() {
+		// Most objects don't animate.
+	}
 
 	/**
 	 * Step this WorldObject!
@@ -0,0 +1,683 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A WorldShard is one vertical strip of a giant World, run by its own process.
+ *
+ * Each shard owns the columns {@code [x0, x1)} of the whole world, and keeps a World with the real (global)
+ * coordinates; because {@link CellIndex} and {@link HomeDistanceField} only use memory where something is,
+ * the parts it doesn't own cost nothing. Every tick has two phases:
+ * <ol>
+ * <li>Propose: everything it owns decides where it wants to go (snails crawl, falling rocks fall, missing fish
+ * wander), looking at the world as it was when the tick started. Its neighbors' edge columns are there as
+ * "ghosts": copies that block the way (so nobody swims into a neighbor's rock) but never step themselves.</li>
+ * <li>Decide: the shard that owns a cell takes one of the moves into it and turns the rest down. Moves that
+ * cross into a neighbor's strip are sent there, and if the neighbor takes one, the object is the neighbor's now.
+ * Then each shard sends its new edge column, which replaces the ghosts on the other side.</li>
+ * </ol>
+ * Neighbors talk over sockets on localhost. Waiting for the neighbors' messages keeps everyone on the same tick.
+ *
+ * What's in a cell at the start and how an object chooses its move both come from the seed and the cell, never
+ * from which shard is asking, so any number of shards plays out exactly like one. A shard with no neighbors is
+ * just the ordinary one-JVM engine; {@link ShardLauncher} runs one to compare speeds and check every cell.
+ *
+ * There's no player here: a player's followers read their positions from the player's trail, and that trail
+ * would have to cross shards too.
+ */
+public class WorldShard {
+	/**
+	 * Chance of a rock in any cell (a fifth of them fall).
+	 */
+	public static final double ROCK_CHANCE = 0.05;
+	/**
+	 * Chance of a snail in any cell.
+	 */
+	public static final double SNAIL_CHANCE = 0.005;
+	/**
+	 * Chance of a missing fish in any cell.
+	 */
+	public static final double FISH_CHANCE = 0.04;
+	/**
+	 * Chance a fish wanders on any tick (like a not-fastScared fish in FishGame).
+	 */
+	public static final double WANDER_CHANCE = 0.3;
+
+	/**
+	 * The whole world, but we only fill in our strip (and the ghosts next to it).
+	 */
+	final World world;
+	/**
+	 * The first column we own.
+	 */
+	private final int x0;
+	/**
+	 * One past the last column we own.
+	 */
+	private final int x1;
+	/**
+	 * Random numbers for this shard (re-seeded for every cell and every move; see {@link #mix}).
+	 */
+	private final Random rand;
+	/**
+	 * What every cell's random numbers are made from (the same on every shard).
+	 */
+	private final long seed;
+	/**
+	 * How many ticks have we run?
+	 */
+	private long ticks;
+	/**
+	 * Everything we own (and step).
+	 */
+	private final List<WorldObject> owned;
+	/**
+	 * Copies of the left neighbor's edge column.
+	 */
+	private final List<WorldObject> leftGhosts;
+	/**
+	 * Copies of the right neighbor's edge column.
+	 */
+	private final List<WorldObject> rightGhosts;
+	/**
+	 * The socket to the left neighbor (null if we're the first strip).
+	 */
+	private Socket left;
+	/**
+	 * The socket to the right neighbor (null if we're the last strip).
+	 */
+	private Socket right;
+	/**
+	 * Reading from the neighbors (index 0 is left, 1 is right; null if there's no neighbor).
+	 * These last as long as the sockets, so no bytes get lost in a buffer we threw away.
+	 */
+	private final DataInputStream[] in = new DataInputStream[2];
+	/**
+	 * Writing to the neighbors (index 0 is left, 1 is right).
+	 */
+	private final DataOutputStream[] out = new DataOutputStream[2];
+	/**
+	 * Writes messages to the neighbors while we read theirs (so two big messages can't get stuck passing each other).
+	 */
+	private ExecutorService sender;
+	/**
+	 * How many objects have left (or joined) this shard?
+	 */
+	long migrations;
+
+	/**
+	 * Make a shard and fill in its strip.
+	 * @param width - the width of the whole world.
+	 * @param height - the height of the whole world.
+	 * @param x0 - the first column this shard owns.
+	 * @param x1 - one past the last column this shard owns.
+	 * @param seed - where the world's contents (and its random moves) come from; give every shard the same one.
+	 */
+	public WorldShard(int width, int height, int x0, int x1, long seed) {
+		this.seed = seed;
+		this.rand = new Random(seed);
+		this.world = new World(width, height, rand);
+		this.world.setVerbose(false);
+		this.x0 = x0;
+		this.x1 = x1;
+		this.owned = new ArrayList<>();
+		this.leftGhosts = new ArrayList<>();
+		this.rightGhosts = new ArrayList<>();
+		populate();
+	}
+
+	/**
+	 * Put rocks, snails and fish in our strip (what goes in a cell depends only on the seed and the cell).
+	 */
+	private void populate() {
+		for (int x = x0; x < x1; x++) {
+			for (int y = 0; y < world.getHeight(); y++) {
+				rand.setSeed(mix(mix(seed, x), y));
+				double roll = rand.nextDouble();
+				int kind;
+				if (roll < ROCK_CHANCE) {
+					kind = rand.nextInt(5) == 0 ? ObjectRecord.FALLING_ROCK : ObjectRecord.ROCK;
+				} else if (roll < ROCK_CHANCE + SNAIL_CHANCE) {
+					kind = ObjectRecord.SNAIL;
+				} else if (roll < ROCK_CHANCE + SNAIL_CHANCE + FISH_CHANCE) {
+					kind = ObjectRecord.FISH;
+				} else {
+					continue;
+				}
+				WorldObject item = ObjectRecord.make(world, kind, kind == ObjectRecord.FISH ? 1 + rand.nextInt(Fish.COLORS.length - 1) : 0);
+				item.setPosition(x, y);
+				world.register(item);
+				owned.add(item);
+			}
+		}
+	}
+
+	/**
+	 * How many objects does this shard own?
+	 * @return the count.
+	 */
+	public int ownedCount() {
+		return owned.size();
+	}
+
+	/**
+	 * Connect to the neighbors. Shard i listens on basePort + i for shard i-1, and connects to shard i+1.
+	 * A strip with neighbors must be at least two columns wide: a shard sends its left edge before it hears whether
+	 * its right neighbor took anything, so the same column can't be both edges.
+	 * @param index - which strip this is (0 is the leftmost).
+	 * @param shards - how many strips there are.
+	 * @param basePort - the first port number.
+	 * @throws IOException if we can't connect.
+	 * @throws InterruptedException if we're stopped while waiting for a neighbor to start.
+	 */
+	public void connect(int index, int shards, int basePort) throws IOException, InterruptedException {
+		if (shards > 1 && x1 - x0 < 2) {
+			throw new IllegalArgumentException("Strip " + index + " is " + (x1 - x0) + " columns wide; shards need at least 2.");
+		}
+		InetAddress localhost = InetAddress.getLoopbackAddress();
+		ServerSocket server = null;
+		if (index > 0) {
+			server = new ServerSocket(basePort + index, 1, localhost);
+		}
+		if (index < shards - 1) {
+			// The neighbor's process may not be listening yet; keep trying.
+			while (right == null) {
+				try {
+					right = new Socket(localhost, basePort + index + 1);
+				} catch (ConnectException notYet) {
+					Thread.sleep(50);
+				}
+			}
+			right.setTcpNoDelay(true);
+		}
+		if (server != null) {
+			left = server.accept();
+			left.setTcpNoDelay(true);
+			server.close();
+		}
+		Socket[] sockets = { left, right };
+		for (int side = 0; side < 2; side++) {
+			if (sockets[side] != null) {
+				in[side] = new DataInputStream(new BufferedInputStream(sockets[side].getInputStream()));
+				out[side] = new DataOutputStream(new BufferedOutputStream(sockets[side].getOutputStream()));
+			}
+		}
+		sender = Executors.newFixedThreadPool(2);
+		
+		// Get the neighbors' edges before anybody moves.
+		List<Move> none = new ArrayList<>();
+		exchange(none, none, none, none);
+	}
+
+	/**
+	 * Run one tick. First everything we own decides where it wants to go, all looking at the world as it was when
+	 * the tick started. Then the owner of every cell that somebody wants takes exactly one of them: moves into our
+	 * strip are decided here (ours and the neighbors'), and moves into a neighbor's strip are sent there to decide.
+	 * Because nobody moves until every move is decided, it doesn't matter which shard (or which object) goes
+	 * first, and the result is the same as one shard running the whole world.
+	 * @throws IOException if a neighbor goes away.
+	 */
+	public void tick() throws IOException {
+		ticks++;
+		List<Move> moves = propose();
+
+		// Who wants to go where?
+		List<Move> mine = new ArrayList<>();
+		List<Move> toLeft = new ArrayList<>();
+		List<Move> toRight = new ArrayList<>();
+		for (Move m : moves) {
+			if (m.toX < x0) {
+				toLeft.add(m);
+			} else if (m.toX >= x1) {
+				toRight.add(m);
+			} else {
+				mine.add(m);
+			}
+		}
+
+		// Ask the neighbors about the moves into their strips, and hear what they want from ours.
+		Future<?> sentLeft = send(out[0], packMoves(toLeft));
+		Future<?> sentRight = send(out[1], packMoves(toRight));
+		List<Move> fromLeft = receiveMoves(in[0]);
+		List<Move> fromRight = receiveMoves(in[1]);
+		finish(sentLeft);
+		finish(sentRight);
+
+		// Decide every move into our strip, all at once.
+		List<Move> wanted = new ArrayList<>(mine);
+		wanted.addAll(fromLeft);
+		wanted.addAll(fromRight);
+		decide(wanted);
+		for (Move m : mine) {
+			if (m.accepted) {
+				m.item.setPosition(m.toX, m.toY);
+			}
+		}
+		arrive(fromLeft);
+		arrive(fromRight);
+
+		exchange(fromLeft, fromRight, toLeft, toRight);
+	}
+
+	/**
+	 * Something that wants to move one cell this tick.
+	 */
+	private static class Move {
+		/**
+		 * The object (only on the shard that owns it; null for a neighbor's move).
+		 */
+		WorldObject item;
+		/**
+		 * What it is ({@link ObjectRecord#kindOf}) and its extra ({@link ObjectRecord#extraOf}), as it will be if it
+		 * moves.
+		 */
+		int kind, extra;
+		/**
+		 * Where it is.
+		 */
+		int fromX, fromY;
+		/**
+		 * Where it wants to go.
+		 */
+		int toX, toY;
+		/**
+		 * Did the owner of (toX, toY) say yes?
+		 */
+		boolean accepted;
+
+		/**
+		 * When two objects want the same cell, the one that comes first in reading order (top row first, then
+		 * left to right) gets it. Nothing can be in the same cell as another, so there's never a tie.
+		 * @param other - the other move into the same cell.
+		 * @return true if this one wins.
+		 */
+		boolean beats(Move other) {
+			return fromY < other.fromY || (fromY == other.fromY && fromX < other.fromX);
+		}
+	}
+
+	/**
+	 * Let everything we own take its turn (the same rules the single-JVM engine uses), but put each one back
+	 * where it was right away, so everybody sees the world as it was at the start of the tick.
+	 * Every object gets random numbers made from the tick and its cell, so it chooses the same way no matter
+	 * which shard it's on or what order we go in.
+	 * @return the objects that want to move, and where.
+	 */
+	private List<Move> propose() {
+		long tickSalt = mix(seed, ticks);
+		List<Move> moves = new ArrayList<>();
+		for (int i = 0; i < owned.size(); i++) {
+			WorldObject item = owned.get(i);
+			int x = item.getX();
+			int y = item.getY();
+			rand.setSeed(mix(mix(tickSalt, x), y));
+			if (item instanceof Fish) {
+				if (rand.nextDouble() < WANDER_CHANCE) {
+					item.moveRandomly();
+				}
+			} else {
+				item.step();
+			}
+			if (item.getX() != x || item.getY() != y) {
+				Move m = new Move();
+				m.item = item;
+				m.kind = ObjectRecord.kindOf(item);
+				m.extra = ObjectRecord.extraOf(item);
+				m.fromX = x;
+				m.fromY = y;
+				m.toX = item.getX();
+				m.toY = item.getY();
+				moves.add(m);
+				item.setPosition(x, y);
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Say yes to exactly one move into each wanted cell (see {@link Move#beats}). Every wanted cell was empty at
+	 * the start of the tick (nobody can swim onto anybody here), so the winner always fits.
+	 * @param wanted - every move into our strip.
+	 */
+	private void decide(List<Move> wanted) {
+		Map<Long, Move> winners = new HashMap<>();
+		for (Move m : wanted) {
+			long cell = (long) m.toY * world.getWidth() + m.toX;
+			Move best = winners.get(cell);
+			if (best == null || m.beats(best)) {
+				winners.put(cell, m);
+			}
+		}
+		for (Move m : wanted) {
+			m.accepted = winners.get((long) m.toY * world.getWidth() + m.toX) == m;
+		}
+	}
+
+	/**
+	 * Make the neighbor's objects whose moves into our strip we took (they're ours now).
+	 * @param fromNeighbor - the neighbor's moves, already decided.
+	 */
+	private void arrive(List<Move> fromNeighbor) {
+		for (Move m : fromNeighbor) {
+			if (m.accepted) {
+				WorldObject item = ObjectRecord.make(world, m.kind, m.extra);
+				item.setPosition(m.toX, m.toY);
+				world.register(item);
+				owned.add(item);
+				migrations++;
+			}
+		}
+	}
+
+	/**
+	 * Tell each neighbor which of its moves we took and what's on our edge now; hear the same from them. Our objects
+	 * the neighbors took are gone from here, and their edges become our ghosts.
+	 * @param fromLeft - the left neighbor's moves into our strip, decided.
+	 * @param fromRight - the right neighbor's moves into our strip, decided.
+	 * @param toLeft - our moves into the left neighbor's strip, waiting for its answer.
+	 * @param toRight - our moves into the right neighbor's strip, waiting for its answer.
+	 * @throws IOException if a neighbor goes away.
+	 */
+	private void exchange(List<Move> fromLeft, List<Move> fromRight, List<Move> toLeft, List<Move> toRight) throws IOException {
+		// Our edges, as they are after this tick's moves. Objects that asked to leave are still in them;
+		// the neighbor knows which ones it took and leaves those out.
+		List<WorldObject> leftEdge = world.findInRect(x0, 0, x0, world.getHeight() - 1, WorldObject.class);
+		List<WorldObject> rightEdge = world.findInRect(x1 - 1, 0, x1 - 1, world.getHeight() - 1, WorldObject.class);
+
+		Future<?> sentLeft = send(out[0], packAnswers(fromLeft, leftEdge));
+		Future<?> sentRight = send(out[1], packAnswers(fromRight, rightEdge));
+		receiveAnswers(in[0], toLeft, fromLeft, leftGhosts);
+		receiveAnswers(in[1], toRight, fromRight, rightGhosts);
+		finish(sentLeft);
+		finish(sentRight);
+
+		// Whoever the neighbors took belongs to them now.
+		Set<WorldObject> gone = Collections.newSetFromMap(new IdentityHashMap<WorldObject, Boolean>());
+		for (List<Move> sent : Arrays.asList(toLeft, toRight)) {
+			for (Move m : sent) {
+				if (m.accepted) {
+					gone.add(m.item);
+					migrations++;
+				}
+			}
+		}
+		if (!gone.isEmpty()) {
+			world.removeAll(gone);
+			owned.removeIf(gone::contains);
+		}
+	}
+
+	/**
+	 * Squash moves into a message: how many, then (kind, extra, fromX, fromY, toX, toY) for each.
+	 * @param moves - the moves.
+	 * @return the message.
+	 */
+	private static int[] packMoves(List<Move> moves) {
+		int[] words = new int[1 + moves.size() * 6];
+		int at = 0;
+		words[at++] = moves.size();
+		for (Move m : moves) {
+			words[at++] = m.kind;
+			words[at++] = m.extra;
+			words[at++] = m.fromX;
+			words[at++] = m.fromY;
+			words[at++] = m.toX;
+			words[at++] = m.toY;
+		}
+		return words;
+	}
+
+	/**
+	 * Read a neighbor's moves into our strip.
+	 * @param in - the stream from the neighbor, or null if there isn't one.
+	 * @return the moves (not decided yet).
+	 * @throws IOException if the socket is broken.
+	 */
+	private static List<Move> receiveMoves(DataInputStream in) throws IOException {
+		List<Move> moves = new ArrayList<>();
+		if (in == null) {
+			return moves;
+		}
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			Move m = new Move();
+			m.kind = in.readInt();
+			m.extra = in.readInt();
+			m.fromX = in.readInt();
+			m.fromY = in.readInt();
+			m.toX = in.readInt();
+			m.toY = in.readInt();
+			moves.add(m);
+		}
+		return moves;
+	}
+
+	/**
+	 * Squash our answers and our edge into a message: how many answers, then 1 (yes) or 0 (no) for each,
+	 * then how many edge objects, then a record ({@link ObjectRecord#SIZE} ints) for each.
+	 * @param decided - the neighbor's moves, in the order it sent them.
+	 * @param edge - our objects next to the neighbor.
+	 * @return the message.
+	 */
+	private static int[] packAnswers(List<Move> decided, List<WorldObject> edge) {
+		int[] words = new int[2 + decided.size() + edge.size() * ObjectRecord.SIZE];
+		int at = 0;
+		words[at++] = decided.size();
+		for (Move m : decided) {
+			words[at++] = m.accepted ? 1 : 0;
+		}
+		words[at++] = edge.size();
+		pack(edge, words, at);
+		return words;
+	}
+
+	/**
+	 * Hear a neighbor's answers about our moves, and replace its ghosts with its new edge.
+	 * @param in - the stream from the neighbor, or null if there isn't one.
+	 * @param asked - our moves into that neighbor's strip (their answers get filled in).
+	 * @param took - that neighbor's moves into our strip (the ones we took aren't on its edge any more).
+	 * @param ghosts - the ghosts of that neighbor's edge.
+	 * @throws IOException if the socket is broken, or the neighbor answered the wrong number of moves.
+	 */
+	private void receiveAnswers(DataInputStream in, List<Move> asked, List<Move> took, List<WorldObject> ghosts) throws IOException {
+		if (in == null) {
+			return;
+		}
+		int numAnswers = in.readInt();
+		if (numAnswers != asked.size()) {
+			throw new IOException("Asked a neighbor about " + asked.size() + " moves but got " + numAnswers + " answers.");
+		}
+		for (Move m : asked) {
+			m.accepted = in.readInt() != 0;
+		}
+		Set<Long> left = new HashSet<>();
+		for (Move m : took) {
+			if (m.accepted) {
+				left.add((long) m.fromY * world.getWidth() + m.fromX);
+			}
+		}
+		int numEdge = in.readInt();
+		world.removeAll(ghosts);
+		ghosts.clear();
+		for (int i = 0; i < numEdge; i++) {
+			int kind = in.readInt();
+			int x = in.readInt();
+			int y = in.readInt();
+			int extra = in.readInt();
+			if (left.contains((long) y * world.getWidth() + x)) {
+				continue;
+			}
+			WorldObject item = ObjectRecord.make(world, kind, extra);
+			item.setPosition(x, y);
+			world.register(item);
+			ghosts.add(item);
+		}
+	}
+
+	/**
+	 * Send a message to a neighbor (on the sender thread).
+	 * @param out - the stream to the neighbor, or null if there isn't one.
+	 * @param words - the message, already squashed into ints.
+	 * @return something to wait on (null if there's no neighbor).
+	 */
+	private Future<?> send(final DataOutputStream out, final int[] words) {
+		if (out == null) {
+			return null;
+		}
+		return sender.submit(() -> {
+			for (int w : words) {
+				out.writeInt(w);
+			}
+			out.flush();
+			return null;
+		});
+	}
+
+	/**
+	 * Squash objects into records.
+	 * @param items - the objects.
+	 * @param records - where to put them.
+	 * @param at - where to start.
+	 * @return how many records we wrote.
+	 */
+	private static int pack(List<WorldObject> items, int[] records, int at) {
+		int n = 0;
+		for (WorldObject item : items) {
+			records[at++] = ObjectRecord.kindOf(item);
+			records[at++] = item.getX();
+			records[at++] = item.getY();
+			records[at++] = ObjectRecord.extraOf(item);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Stir numbers together into a seed (the finishing step of SplittableRandom), so nearby cells and ticks get
+	 * very different random numbers.
+	 * @param a - a seed.
+	 * @param b - something to stir in.
+	 * @return a new seed.
+	 */
+	static long mix(long a, long b) {
+		long z = a + b * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Describe everything we own, one cell per string ("x y kind extra"), so two runs can be compared cell by cell.
+	 * @return the descriptions, in no particular order.
+	 */
+	List<String> describeCells() {
+		List<String> cells = new ArrayList<>(owned.size());
+		for (WorldObject item : owned) {
+			cells.add(item.getX() + " " + item.getY() + " " + ObjectRecord.kindOf(item) + " " + ObjectRecord.extraOf(item));
+		}
+		return cells;
+	}
+
+	/**
+	 * Wait for a message to finish sending.
+	 * @param sent - from {@link #send} (or null).
+	 * @throws IOException if sending failed.
+	 */
+	private static void finish(Future<?> sent) throws IOException {
+		if (sent == null) {
+			return;
+		}
+		try {
+			sent.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while sending.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Sending to a neighbor failed.", e.getCause());
+		}
+	}
+
+	/**
+	 * Hang up on the neighbors.
+	 * @throws IOException if closing fails.
+	 */
+	public void close() throws IOException {
+		if (sender != null) {
+			sender.shutdown();
+		}
+		if (left != null) {
+			left.close();
+		}
+		if (right != null) {
+			right.close();
+		}
+	}
+
+	/**
+	 * Which columns does shard i of n own?
+	 * @param width - the width of the whole world.
+	 * @param index - which shard.
+	 * @param shards - how many shards.
+	 * @return the first column it owns.
+	 */
+	static int stripStart(int width, int index, int shards) {
+		return (int) ((long) width * index / shards);
+	}
+
+	/**
+	 * Run one shard (this is what {@link ShardLauncher} starts in each process).
+	 * Prints one line at the end: {@code SHARD index ownedAtStart ownedAtEnd migrations millis}, then one
+	 * {@code CELL x y kind extra} line for every object it owns (see {@link #describeCells}).
+	 * @param args - index, shards, width, height, ticks, seed, basePort.
+	 * @throws Exception if anything goes wrong (the launcher will see the process fail).
+	 */
+	public static void main(String[] args) throws Exception {
+		int index = Integer.parseInt(args[0]);
+		int shards = Integer.parseInt(args[1]);
+		int width = Integer.parseInt(args[2]);
+		int height = Integer.parseInt(args[3]);
+		int ticks = Integer.parseInt(args[4]);
+		long seed = Long.parseLong(args[5]);
+		int basePort = Integer.parseInt(args[6]);
+
+		WorldShard shard = new WorldShard(width, height, stripStart(width, index, shards),
+				stripStart(width, index + 1, shards), seed);
+		int ownedAtStart = shard.ownedCount();
+		shard.connect(index, shards, basePort);
+		long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			shard.tick();
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		shard.close();
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+		out.println("SHARD " + index + " " + ownedAtStart + " " + shard.ownedCount() + " " + shard.migrations + " " + millis);
+		for (String cell : shard.describeCells()) {
+			out.println("CELL " + cell);
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,120 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A WorldTemplate is a new game, all set up (rocks, a snail, missing fish and a home), frozen so that it can be
+ * copied again and again. Setting up a game from scratch means hunting for free space for every object and working
+ * out the whole distance-to-home field; copying a template just makes the objects from an array of
+ * {@link ObjectRecord}s and shares the field's pages (a game only copies a page when something in it changes),
+ * so it takes about the same time for any size of world.
+ *
+ * Every copy gets its own Random, so games made from the same template start the same but play out differently.
+ * {@link GameTemplates} makes templates ahead of time on another thread.
+ */
+public class WorldTemplate {
+	/**
+	 * The size of the world (x-tiles).
+	 */
+	private final int width;
+	/**
+	 * The size of the world (y-tiles).
+	 */
+	private final int height;
+	/**
+	 * Every object but the home and the player ({@link ObjectRecord#SIZE} ints each), in the order they were added.
+	 */
+	private final int[] records;
+	/**
+	 * Where the home is (x).
+	 */
+	private final int homeX;
+	/**
+	 * Where the home is (y).
+	 */
+	private final int homeY;
+	/**
+	 * The distance-to-home field, already worked out (nobody changes it; it's only copied).
+	 */
+	private final HomeDistanceField field;
+
+	/**
+	 * Freeze a game that was just made (nobody may use it afterwards).
+	 * @param game - a brand-new game (not procedural; chunks aren't copied).
+	 */
+	WorldTemplate(FishGame game) {
+		World world = game.indexedWorld();
+		this.width = world.getWidth();
+		this.height = world.getHeight();
+		this.homeX = game.home.getX();
+		this.homeY = game.home.getY();
+		this.field = world.homeField();
+
+		List<WorldObject> items = world.viewItems();
+		int[] records = new int[items.size() * ObjectRecord.SIZE];
+		int n = 0;
+		for (WorldObject item : items) {
+			int kind = ObjectRecord.kindOf(item);
+			// The player and the home aren't records; they're made fresh.
+			if (kind < 0) {
+				continue;
+			}
+			records[n++] = kind;
+			records[n++] = item.getX();
+			records[n++] = item.getY();
+			records[n++] = ObjectRecord.extraOf(item);
+		}
+		this.records = Arrays.copyOf(records, n);
+	}
+
+	/**
+	 * Set up a new game from scratch and freeze it.
+	 * @param width - the size of the world (x-tiles).
+	 * @param height - the size of the world (y-tiles).
+	 * @param seed - which game to make.
+	 * @return the template.
+	 */
+	public static WorldTemplate build(int width, int height, long seed) {
+		World world = new World(width, height, new Random(seed));
+		world.setVerbose(false);
+		return new WorldTemplate(new FishGame(world));
+	}
+
+	/**
+	 * @return the size of the world (x-tiles).
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the size of the world (y-tiles).
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Make a new game that starts out like this template. (Safe to call from many threads at once.)
+	 * @param rand - the new game's random numbers (give every copy its own).
+	 * @return a new game.
+	 */
+	public FishGame newGame(Random rand) {
+		World world = new World(width, height, rand);
+		world.setVerbose(false);
+		List<WorldObject> batch = new ArrayList<>(records.length / ObjectRecord.SIZE + 1);
+		for (int i = 0; i < records.length; i += ObjectRecord.SIZE) {
+			WorldObject item = ObjectRecord.make(world, records[i], records[i + 3]);
+			item.setPosition(records[i + 1], records[i + 2]);
+			batch.add(item);
+		}
+		FishHome home = new FishHome(world);
+		home.setPosition(homeX, homeY);
+		batch.add(home);
+		world.registerAll(batch, field);
+		return new FishGame(world, home);
+	}
+}
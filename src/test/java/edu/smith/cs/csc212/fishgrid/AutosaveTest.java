@@ -0,0 +1,171 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class AutosaveTest {
+	// Several 16x16 tiles, so changes land in tiles the save is still writing.
+	private static final int W = 40, H = 36;
+
+	/**
+	 * What a save holds about a world: kind, position and extra of everything but players, homes and followers,
+	 * in order.
+	 */
+	private static List<String> cells(World world) {
+		List<String> out = new ArrayList<>();
+		for (WorldObject it : world.viewItems()) {
+			int kind = ObjectRecord.kindOf(it);
+			if (kind >= 0) {
+				out.add("(" + it.getX() + "," + it.getY() + ") kind " + kind + " extra " + ObjectRecord.extraOf(it));
+			}
+		}
+		Collections.sort(out);
+		return out;
+	}
+
+	/**
+	 * Change a few tiles by hand (click away a rock and drop in new ones), move the player, and step.
+	 */
+	private static void play(FishGame game, World world, Random rand) {
+		List<Rock> rocks = world.findInRect(0, 0, W - 1, H - 1, Rock.class);
+		if (!rocks.isEmpty()) {
+			rocks.get(rand.nextInt(rocks.size())).remove();
+		}
+		world.insertRockRandomly();
+		world.insertFallingRockRandomly();
+		switch (rand.nextInt(4)) {
+		case 0:
+			game.player.moveUp();
+			break;
+		case 1:
+			game.player.moveDown();
+			break;
+		case 2:
+			game.player.moveLeft();
+			break;
+		default:
+			game.player.moveRight();
+			break;
+		}
+		game.step();
+	}
+
+	@Test
+	public void aSaveIsTheWorldAsOfItsStep() throws Exception {
+		Path dir = Files.createTempDirectory("autosave");
+		Path save = dir.resolve("save");
+		try {
+			Random rand = new Random(1);
+			World world = new World(W, H, new Random(1));
+			world.setVerbose(false);
+			FishGame game = new FishGame(world);
+			// Hold the writer up until we say so, so the game gets well ahead of the save.
+			ExecutorService writer = Executors.newSingleThreadExecutor();
+			CountDownLatch go = new CountDownLatch(1);
+			writer.execute(() -> {
+				try {
+					go.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			Autosave autosave = new Autosave(game, save, 10, writer);
+			game.autosave = autosave;
+
+			for (int i = 0; i < 10; i++) {
+				play(game, world, rand);
+			}
+			assertTrue(autosave.isSaving());
+			assertEquals(10, autosave.getSavingStep());
+			List<String> atTen = cells(world);
+			int scoreAtTen = game.score;
+
+			for (int i = 10; i < 35; i++) {
+				play(game, world, rand);
+			}
+			assertTrue(autosave.isSaving());
+			assertFalse(atTen.equals(cells(world)));
+			// Steps 20 and 30 came up while step 10 was still being written.
+			assertEquals(2, autosave.getSkipped());
+
+			go.countDown();
+			autosave.close();
+			assertNull(autosave.getFailure());
+			assertEquals(1, autosave.getSaves());
+			assertEquals(10, autosave.getSavedStep());
+			assertEquals(10, Autosave.headerOf(save).steps);
+			assertEquals(scoreAtTen, Autosave.headerOf(save).score);
+			assertEquals(atTen, cells(Autosave.loadWorld(save)));
+		} finally {
+			Files.deleteIfExists(save);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void aFailedSaveKeepsTheOldFile() throws Exception {
+		Path dir = Files.createTempDirectory("autosave");
+		Path save = dir.resolve("save");
+		Path tmp = dir.resolve("save.tmp");
+		try {
+			Random rand = new Random(2);
+			World world = new World(W, H, new Random(2));
+			world.setVerbose(false);
+			FishGame game = new FishGame(world);
+			Autosave autosave = game.enableAutosave(save, 5);
+			for (int i = 0; i < 5; i++) {
+				play(game, world, rand);
+			}
+			while (autosave.isSaving()) {
+				Thread.sleep(1);
+			}
+			assertNull(autosave.getFailure());
+			byte[] good = Files.readAllBytes(save);
+			List<String> atFive = cells(world);
+
+			// Something in the way of the temp file: the next save can't be written.
+			Files.createDirectory(tmp);
+			for (int i = 5; i < 10; i++) {
+				play(game, world, rand);
+			}
+			while (autosave.isSaving()) {
+				Thread.sleep(1);
+			}
+			assertNotNull(autosave.getFailure());
+			assertEquals(5, autosave.getSavedStep());
+			assertArrayEquals(good, Files.readAllBytes(save));
+			assertEquals(atFive, cells(Autosave.loadWorld(save)));
+
+			// Out of the way again, the next one works.
+			Files.delete(tmp);
+			for (int i = 10; i < 15; i++) {
+				play(game, world, rand);
+			}
+			autosave.close();
+			assertNull(autosave.getFailure());
+			assertEquals(15, autosave.getSavedStep());
+			assertEquals(cells(world), cells(Autosave.loadWorld(save)));
+			assertFalse(Files.exists(tmp));
+		} finally {
+			Files.deleteIfExists(tmp);
+			Files.deleteIfExists(save);
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CellIndexTest {
+	// Not a multiple of 64, so the last word of a row and the last row of pages are only partly on the grid.
+	private static final int W = 150, H = 131;
+
+	/**
+	 * Which layer bit should a cell have, from what's really in it?
+	 */
+	private static boolean expected(CellIndex.Layer layer, List<WorldObject> items, int followers, int x, int y) {
+		for (WorldObject it : items) {
+			if (it.getX() != x || it.getY() != y) {
+				continue;
+			}
+			switch (layer) {
+			case BLOCKER:
+				if (it instanceof Rock || it instanceof Snail) {
+					return true;
+				}
+				break;
+			case FISH:
+				if (it instanceof Fish) {
+					return true;
+				}
+				break;
+			case HOME:
+				if (it instanceof FishHome) {
+					return true;
+				}
+				break;
+			case HEART:
+				if (it instanceof Heart) {
+					return true;
+				}
+				break;
+			}
+		}
+		return layer == CellIndex.Layer.FISH && followers > 0;
+	}
+
+	private static void assertMatches(CellIndex index, List<WorldObject> items, List<List<WorldObject>> leaders, String when) {
+		List<List<WorldObject>> byCell = new ArrayList<>();
+		for (int i = 0; i < W * H; i++) {
+			byCell.add(new ArrayList<WorldObject>());
+		}
+		for (WorldObject it : items) {
+			byCell.get(it.getY() * W + it.getX()).add(it);
+		}
+		int words = (W + 63) / 64;
+		for (int y = 0; y < H; y++) {
+			for (CellIndex.Layer layer : CellIndex.Layer.values()) {
+				for (int w = 0; w < words; w++) {
+					long bits = 0;
+					for (int x = w * 64; x < Math.min(W, w * 64 + 64); x++) {
+						if (expected(layer, byCell.get(y * W + x), leaders.get(y * W + x).size(), x, y)) {
+							bits |= 1L << x;
+						}
+					}
+					assertEquals(when + " " + layer + " row " + y + " word " + w, bits, index.layerWord(layer, y, w));
+				}
+			}
+			for (int x = 0; x < W; x++) {
+				String where = when + " at (" + x + "," + y + ")";
+				assertEquals(where, byCell.get(y * W + x).size(), index.at(x, y).size());
+				assertTrue(where, index.at(x, y).containsAll(byCell.get(y * W + x)));
+				List<WorldObject> passing = leaders.get(y * W + x);
+				assertEquals(where, passing.size(), index.followersAt(x, y));
+				// Each leader with followers here is listed once.
+				Set<WorldObject> lines = new HashSet<>(passing);
+				assertEquals(where, lines.size(), index.leadersAt(x, y).size());
+				assertEquals(where, lines, new HashSet<>(index.leadersAt(x, y)));
+			}
+		}
+	}
+
+	/**
+	 * nextOccupied has to agree with looking at every cell from fromX to toX.
+	 */
+	private static void assertNextOccupied(CellIndex index, List<WorldObject> items, List<List<WorldObject>> leaders, Random rand, String when) {
+		boolean[] full = new boolean[W * H];
+		for (WorldObject it : items) {
+			full[it.getY() * W + it.getX()] = true;
+		}
+		for (int c = 0; c < W * H; c++) {
+			full[c] |= !leaders.get(c).isEmpty();
+		}
+		for (int q = 0; q < 200; q++) {
+			int y = rand.nextInt(H);
+			int fromX = rand.nextInt(W + 20) - 10;
+			int toX = fromX + rand.nextInt(W);
+			int want = -1;
+			for (int x = Math.max(0, fromX); x <= Math.min(W - 1, toX); x++) {
+				if (full[y * W + x]) {
+					want = x;
+					break;
+				}
+			}
+			assertEquals(when + " row " + y + " from " + fromX + " to " + toX, want, index.nextOccupied(y, fromX, toX));
+		}
+	}
+
+	private static WorldObject make(Random rand) {
+		switch (rand.nextInt(5)) {
+		case 0:
+			return new Rock(null);
+		case 1:
+			return new Snail(null);
+		case 2:
+			return new Fish(1, null);
+		case 3:
+			return new FishHome(null);
+		default:
+			return new Heart(null);
+		}
+	}
+
+	@Test
+	public void bitboardsMatchTheCells() {
+		Random rand = new Random(3);
+		CellIndex index = new CellIndex(W, H);
+		List<WorldObject> items = new ArrayList<>();
+		// Whose line each follower in a cell belongs to.
+		List<List<WorldObject>> leaders = new ArrayList<>();
+		for (int i = 0; i < W * H; i++) {
+			leaders.add(new ArrayList<WorldObject>());
+		}
+		Fish[] lines = { new Fish(0, null), new Fish(0, null), new Fish(0, null) };
+		for (int round = 0; round < 40; round++) {
+			for (int op = 0; op < 200; op++) {
+				int roll = rand.nextInt(10);
+				if (roll < 4 || items.isEmpty()) {
+					WorldObject it = make(rand);
+					it.setPosition(rand.nextInt(W), rand.nextInt(H));
+					index.add(it, it.getX(), it.getY());
+					items.add(it);
+				} else if (roll < 6) {
+					WorldObject it = items.remove(rand.nextInt(items.size()));
+					index.remove(it, it.getX(), it.getY());
+				} else if (roll < 8) {
+					WorldObject it = items.get(rand.nextInt(items.size()));
+					int oldX = it.getX(), oldY = it.getY();
+					it.setPosition(rand.nextInt(W), rand.nextInt(H));
+					index.move(it, oldX, oldY, it.getX(), it.getY());
+				} else {
+					// Lines are long and bunch up, so stay in a corner (across pages) to get several in one cell.
+					int c = (64 + rand.nextInt(4) - 2) + W * (64 + rand.nextInt(4) - 2);
+					Fish leader = lines[rand.nextInt(lines.length)];
+					if (leaders.get(c).contains(leader) && rand.nextBoolean()) {
+						leaders.get(c).remove(leader);
+						index.countFollower(leader, c % W, c / W, -1);
+					} else {
+						leaders.get(c).add(leader);
+						index.countFollower(leader, c % W, c / W, +1);
+					}
+				}
+			}
+			assertMatches(index, items, leaders, "round " + round);
+			assertNextOccupied(index, items, leaders, rand, "round " + round);
+		}
+	}
+
+	@Test
+	public void offTheGridIsEmpty() {
+		CellIndex index = new CellIndex(W, H);
+		Rock rock = new Rock(null);
+		rock.setPosition(W - 1, H - 1);
+		index.add(rock, W - 1, H - 1);
+		assertTrue(index.has(CellIndex.Layer.BLOCKER, W - 1, H - 1));
+		assertEquals(0, index.layerWord(CellIndex.Layer.BLOCKER, H, 0));
+		assertEquals(0, index.layerWord(CellIndex.Layer.BLOCKER, -1, 0));
+		assertEquals(0, index.layerWord(CellIndex.Layer.BLOCKER, 0, (W + 63) / 64));
+		assertEquals(-1, index.nextOccupied(H - 1, W, W + 100));
+		assertEquals(W - 1, index.nextOccupied(H - 1, -5, W + 100));
+		assertEquals(0, index.followersAt(-1, 0));
+	}
+}
@@ -0,0 +1,77 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FishEnvsTest {
+	/**
+	 * How many rounds (one step of every game) to a window.
+	 */
+	private static final int WINDOW = 500;
+
+	/**
+	 * Step every game for a while, adding up what the steps allocated.
+	 * @return the bytes allocated by steps that didn't start a new game, and how many steps those were.
+	 */
+	private static long[] window(FishEnvs envs, Random rand, com.sun.management.ThreadMXBean bean, long me) {
+		long measured = 0;
+		long bytes = 0;
+		for (int s = 0; s < WINDOW; s++) {
+			for (int i = 0; i < envs.size(); i++) {
+				int action = rand.nextInt(20) == 0 ? FishEnvs.CLICK + rand.nextInt(envs.actionCount() - FishEnvs.CLICK) : rand.nextInt(FishEnvs.CLICK);
+				// Asking for the count can allocate too, so see what asking costs and take that off.
+				long asked = bean.getThreadAllocatedBytes(me);
+				long before = bean.getThreadAllocatedBytes(me);
+				envs.stepGame(i, action);
+				long after = bean.getThreadAllocatedBytes(me);
+				// A game that just ended was started over, and a new game is allowed to allocate.
+				if (!envs.getDones()[i]) {
+					measured++;
+					bytes += Math.max(0, (after - before) - (before - asked));
+				}
+			}
+		}
+		return new long[] { bytes, measured };
+	}
+
+	@Test
+	public void warmStepsMakeNoGarbage() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+		long me = Thread.currentThread().getId();
+
+		FishEnvs envs = new FishEnvs(8, 32, 5, 1, 1);
+		Random rand = new Random(2);
+		// The first rounds are for the JIT to settle down (compiling allocates too).
+		for (int w = 0; w < 6; w++) {
+			window(envs, rand, bean, me);
+		}
+
+		// Even after that, now and then the JVM allocates a few hundred bytes of its own in the middle of a step
+		// (after recompiling a method, or inside getThreadAllocatedBytes), once. So we keep measuring until two whole
+		// windows have gone by; garbage the game makes would show up in every one of them.
+		long[] seen = new long[12];
+		int clean = 0;
+		int w = 0;
+		for (; w < seen.length && clean < 2; w++) {
+			long[] measured = window(envs, rand, bean, me);
+			assertTrue(measured[1] > 1000);
+			seen[w] = measured[0];
+			if (seen[w] == 0) {
+				clean++;
+			}
+		}
+		envs.close();
+		assertEquals("bytes allocated per window: " + Arrays.toString(Arrays.copyOf(seen, w)), 2, clean);
+	}
+}
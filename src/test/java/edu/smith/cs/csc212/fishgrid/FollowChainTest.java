@@ -0,0 +1,210 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FollowChainTest {
+	private static final int W = 70, H = 12;
+
+	/**
+	 * Everything the World says about every cell (find, isEmpty and the fish bitboard) has to match
+	 * looking at where every object really is, followers included.
+	 */
+	private static void assertCellsMatch(World world, String when) {
+		int[] count = new int[W * H];
+		for (WorldObject it : world.viewItems()) {
+			if (it.getX() >= 0 && it.getX() < W && it.getY() >= 0 && it.getY() < H) {
+				count[it.getY() * W + it.getX()]++;
+			}
+		}
+		for (int y = 0; y < H; y++) {
+			for (int x = 0; x < W; x++) {
+				String where = when + " at (" + x + "," + y + ")";
+				List<WorldObject> found = world.find(x, y);
+				assertEquals(where, count[y * W + x], found.size());
+				for (WorldObject it : found) {
+					assertTrue(where, it.getX() == x && it.getY() == y);
+				}
+				assertEquals(where, count[y * W + x] == 0, world.isEmpty(x, y));
+				boolean fishHere = (world.layerWord(CellIndex.Layer.FISH, y, x >>> 6) & (1L << x)) != 0;
+				assertEquals(where, count[y * W + x] > 0, fishHere);
+			}
+		}
+	}
+
+	@Test
+	public void membersSitAlongTheTrail() {
+		World world = new World(W, H, new Random(1));
+		world.setVerbose(false);
+		Fish leader = new Fish(0, world);
+		leader.setPosition(0, 0);
+		world.register(leader);
+		FollowChain<Fish> chain = new FollowChain<>(leader);
+		for (int i = 1; i <= 5; i++) {
+			leader.setPosition(i, 0);
+		}
+		List<Fish> fish = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Fish f = new Fish(1, world);
+			f.setPosition(20 + i, 5);
+			world.register(f);
+			chain.add(f);
+			fish.add(f);
+		}
+		// Right behind the leader, one step apart.
+		assertEquals(4, chain.get(0).getX());
+		assertEquals(3, chain.get(1).getX());
+		assertEquals(2, chain.get(2).getX());
+
+		leader.setPosition(6, 0);
+		assertEquals(5, chain.get(0).getX());
+		assertEquals(3, chain.get(2).getX());
+
+		// Leaving the line means staying right where you are.
+		Fish middle = chain.remove(1);
+		assertFalse(middle.isFollowing());
+		assertEquals(4, middle.getX());
+		assertEquals(4, chain.get(1).getX());
+		assertCellsMatch(world, "after remove");
+	}
+
+	@Test
+	public void newcomersPastTheEndOfTheTrailStayPut() {
+		World world = new World(W, H, new Random(1));
+		world.setVerbose(false);
+		Fish leader = new Fish(0, world);
+		leader.setPosition(10, 10);
+		world.register(leader);
+		FollowChain<Fish> chain = new FollowChain<>(leader);
+		Fish f = new Fish(1, world);
+		f.setPosition(30, 3);
+		world.register(f);
+		chain.add(f);
+		assertTrue(f.isFollowing());
+		assertEquals(30, f.getX());
+		assertEquals(3, f.getY());
+		assertCellsMatch(world, "after add");
+	}
+
+	@Test
+	public void followerCountsStayRight() {
+		for (long seed = 0; seed < 3; seed++) {
+			Random rand = new Random(seed);
+			World world = new World(W, H, new Random(seed));
+			world.setVerbose(false);
+			Fish[] leaders = new Fish[2];
+			List<FollowChain<Fish>> chains = new ArrayList<>();
+			for (int l = 0; l < leaders.length; l++) {
+				leaders[l] = new Fish(0, world);
+				leaders[l].setPosition(rand.nextInt(W), rand.nextInt(H));
+				world.register(leaders[l]);
+				chains.add(new FollowChain<Fish>(leaders[l]));
+			}
+			List<Fish> loose = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				Fish f = new Fish(1 + rand.nextInt(5), world);
+				f.setPosition(rand.nextInt(W), rand.nextInt(H));
+				world.register(f);
+				loose.add(f);
+			}
+
+			for (int step = 0; step < 3000; step++) {
+				int l = rand.nextInt(leaders.length);
+				Fish leader = leaders[l];
+				FollowChain<Fish> chain = chains.get(l);
+				int op = rand.nextInt(20);
+				String what;
+				if (op < 10) {
+					// The leader swims a step (wrapping around), dragging the line along.
+					int d = rand.nextInt(4);
+					int x = Math.floorMod(leader.getX() + (d == 0 ? 1 : d == 1 ? -1 : 0), W);
+					int y = Math.floorMod(leader.getY() + (d == 2 ? 1 : d == 3 ? -1 : 0), H);
+					leader.setPosition(x, y);
+					what = "move";
+				} else if (op < 14 && !loose.isEmpty()) {
+					Fish f = loose.remove(rand.nextInt(loose.size()));
+					chain.add(rand.nextInt(chain.size() + 1), f);
+					what = "add";
+				} else if (op < 16 && !chain.isEmpty()) {
+					loose.add(chain.remove(rand.nextInt(chain.size())));
+					what = "remove";
+				} else if (op < 17 && chain.size() > 2) {
+					int from = rand.nextInt(chain.size() - 1);
+					int to = from + 1 + rand.nextInt(chain.size() - from - 1);
+					List<Fish> cut = new ArrayList<>(chain.subList(from, to));
+					chain.subList(from, to).clear();
+					loose.addAll(cut);
+					what = "removeRange";
+				} else if (op < 18 && !chain.isEmpty()) {
+					List<Fish> some = new ArrayList<>();
+					for (Fish f : chain) {
+						if (rand.nextBoolean()) {
+							some.add(f);
+						}
+					}
+					chain.removeAll(some);
+					loose.addAll(some);
+					what = "removeAll";
+				} else if (op < 19 && !chain.isEmpty() && !loose.isEmpty()) {
+					Fish f = loose.remove(rand.nextInt(loose.size()));
+					loose.add(chain.set(rand.nextInt(chain.size()), f));
+					what = "set";
+				} else {
+					loose.addAll(chain);
+					chain.clear();
+					what = "clear";
+				}
+
+				for (FollowChain<Fish> c : chains) {
+					Trail trail = c.getLeader().recentPositions;
+					for (int i = 0; i < c.size(); i++) {
+						assertTrue(c.get(i).isFollowing());
+						assertEquals(trail.getX(i + 1), c.get(i).getX());
+						assertEquals(trail.getY(i + 1), c.get(i).getY());
+					}
+				}
+				for (Fish f : loose) {
+					assertFalse(f.isFollowing());
+				}
+				assertCellsMatch(world, "step " + step + " (" + what + ")");
+			}
+		}
+	}
+
+	@Test
+	public void trailRemembersNewestFirstAndGrows() {
+		Trail trail = new Trail(3);
+		for (int i = 0; i < 5; i++) {
+			trail.push(i, -i);
+		}
+		assertEquals(3, trail.size());
+		assertEquals(4, trail.getX(0));
+		assertEquals(2, trail.getX(2));
+		assertEquals(-2, trail.getY(2));
+
+		trail.ensureCapacity(6);
+		assertEquals(3, trail.size());
+		assertEquals(4, trail.getX(0));
+		assertEquals(2, trail.getX(2));
+		assertTrue(trail.appendOldest(9, 9));
+		assertEquals(9, trail.getX(3));
+		trail.push(5, -5);
+		assertEquals(Arrays.asList(5, 4, 3, 2, 9), xs(trail));
+	}
+
+	private static List<Integer> xs(Trail trail) {
+		List<Integer> out = new ArrayList<>();
+		for (int i = 0; i < trail.size(); i++) {
+			out.add(trail.getX(i));
+		}
+		return out;
+	}
+}
@@ -0,0 +1,133 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HomeDistanceFieldTest {
+	private static final int W = 37, H = 29;
+
+	/**
+	 * Work the whole field out from nothing: a plain breadth-first search from every home.
+	 */
+	private static int[] freshBFS(List<WorldObject> items) {
+		boolean[] blocked = new boolean[W * H];
+		for (WorldObject it : items) {
+			if ((it instanceof Rock || it instanceof Snail) && inBounds(it.getX(), it.getY())) {
+				blocked[it.getY() * W + it.getX()] = true;
+			}
+		}
+		int[] dist = new int[W * H];
+		Arrays.fill(dist, HomeDistanceField.UNREACHABLE);
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (WorldObject it : items) {
+			if (it instanceof FishHome && inBounds(it.getX(), it.getY())) {
+				int cell = it.getY() * W + it.getX();
+				if (!blocked[cell] && dist[cell] != 0) {
+					dist[cell] = 0;
+					queue.add(cell);
+				}
+			}
+		}
+		int[] dx = { 1, -1, 0, 0 };
+		int[] dy = { 0, 0, 1, -1 };
+		while (!queue.isEmpty()) {
+			int cell = queue.poll();
+			for (int d = 0; d < 4; d++) {
+				int nx = cell % W + dx[d];
+				int ny = cell / W + dy[d];
+				if (inBounds(nx, ny) && !blocked[ny * W + nx] && dist[ny * W + nx] == HomeDistanceField.UNREACHABLE) {
+					dist[ny * W + nx] = dist[cell] + 1;
+					queue.add(ny * W + nx);
+				}
+			}
+		}
+		return dist;
+	}
+
+	private static boolean inBounds(int x, int y) {
+		return x >= 0 && x < W && y >= 0 && y < H;
+	}
+
+	private static void assertMatchesFreshBFS(World world, int step) {
+		int[] expected = freshBFS(world.viewItems());
+		for (int y = -1; y <= H; y++) {
+			for (int x = -1; x <= W; x++) {
+				int want = inBounds(x, y) ? expected[y * W + x] : HomeDistanceField.UNREACHABLE;
+				assertEquals("step " + step + " at (" + x + "," + y + ")", want, world.distanceToHome(x, y));
+			}
+		}
+	}
+
+	private static WorldObject make(World world, Random rand) {
+		int kind = rand.nextInt(10);
+		if (kind < 5) {
+			return new Rock(world);
+		} else if (kind < 7) {
+			return new Snail(world);
+		} else if (kind < 8) {
+			return new FishHome(world);
+		}
+		// Fish don't change the field, but they come and go too.
+		return new Fish(1, world);
+	}
+
+	@Test
+	public void repairsMatchAFreshSearch() {
+		for (long seed = 0; seed < 4; seed++) {
+			Random rand = new Random(seed);
+			World world = new World(W, H, new Random(seed));
+			world.setVerbose(false);
+			List<WorldObject> placed = new ArrayList<>();
+			for (int step = 0; step < 1500; step++) {
+				int op = rand.nextInt(10);
+				if (op < 4 || placed.isEmpty()) {
+					// Add something (sometimes on top of something else).
+					WorldObject item = make(world, rand);
+					item.setPosition(rand.nextInt(W), rand.nextInt(H));
+					world.register(item);
+					placed.add(item);
+				} else if (op < 6) {
+					WorldObject item = placed.remove(rand.nextInt(placed.size()));
+					world.remove(item);
+				} else if (op < 9) {
+					// A step to a neighbor, like a snail crawling (setPosition ignores the rules).
+					WorldObject item = placed.get(rand.nextInt(placed.size()));
+					int d = rand.nextInt(4);
+					item.setPosition(item.getX() + (d == 0 ? 1 : d == 1 ? -1 : 0), item.getY() + (d == 2 ? 1 : d == 3 ? -1 : 0));
+				} else {
+					// A jump anywhere, even just off the grid.
+					WorldObject item = placed.get(rand.nextInt(placed.size()));
+					item.setPosition(rand.nextInt(W + 2) - 1, rand.nextInt(H + 2) - 1);
+				}
+				assertMatchesFreshBFS(world, step);
+			}
+		}
+	}
+
+	@Test
+	public void blockingTheOnlyWayHomeMakesItUnreachable() {
+		World world = new World(5, 1, new Random(1));
+		world.setVerbose(false);
+		FishHome home = new FishHome(world);
+		home.setPosition(0, 0);
+		world.register(home);
+		assertEquals(4, world.distanceToHome(4, 0));
+
+		Rock rock = new Rock(world);
+		rock.setPosition(2, 0);
+		world.register(rock);
+		assertEquals(1, world.distanceToHome(1, 0));
+		assertEquals(HomeDistanceField.UNREACHABLE, world.distanceToHome(2, 0));
+		assertEquals(HomeDistanceField.UNREACHABLE, world.distanceToHome(4, 0));
+
+		world.remove(rock);
+		assertEquals(4, world.distanceToHome(4, 0));
+	}
+}
@@ -0,0 +1,48 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class IntGridTest {
+	@Test
+	public void aSharedGridCopiesAPageOnlyWhenItWrites() {
+		IntGrid base = new IntGrid(7);
+		base.set(1, 1, 1);
+		base.set(70, 1, 2);
+		IntGrid a = base.share();
+		IntGrid b = base.share();
+		assertEquals(0, a.pageCount());
+
+		// Reading a page and then writing it (the cached page is the base's) must copy it first.
+		assertEquals(1, a.get(1, 1));
+		a.set(2, 1, 5);
+		assertEquals(1, a.pageCount());
+		assertEquals(7, base.get(2, 1));
+		assertEquals(7, b.get(2, 1));
+		assertEquals(5, a.get(2, 1));
+
+		// Back and forth between pages: each one is copied once, and the copy is what we read afterwards.
+		assertEquals(2, a.add(70, 1, 0));
+		a.add(70, 1, 3);
+		a.set(3, 1, 9);
+		assertEquals(5, a.get(70, 1));
+		assertEquals(9, a.get(3, 1));
+		assertEquals(5, a.get(2, 1));
+		assertEquals(2, a.pageCount());
+		assertEquals(2, base.get(70, 1));
+		assertEquals(7, base.get(3, 1));
+
+		// Writing the default to a page nobody has doesn't make one.
+		a.set(500, 500, 7);
+		assertEquals(2, a.pageCount());
+		// Sharing a shared grid reads through both.
+		IntGrid c = a.share();
+		assertEquals(9, c.get(3, 1));
+		assertEquals(1, c.get(1, 1));
+		c.set(1, 1, 0);
+		assertEquals(1, a.get(1, 1));
+		assertEquals(1, base.get(1, 1));
+		assertEquals(0, c.get(1, 1));
+	}
+}
@@ -0,0 +1,111 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class ItemSpliteratorTest {
+	private static final int W = 120, H = 90;
+
+	private static World crowded(long seed) {
+		World world = new World(W, H, new Random(seed));
+		world.setVerbose(false);
+		Random rand = new Random(seed);
+		for (int i = 0; i < 4000; i++) {
+			WorldObject it = rand.nextBoolean() ? new Rock(world) : new Fish(rand.nextInt(8), world);
+			it.setPosition(rand.nextInt(W), rand.nextInt(H));
+			world.register(it);
+		}
+		return world;
+	}
+
+	/**
+	 * Split all the way down, checking that the pieces add up and that no piece is split when it's too small.
+	 */
+	private static <T> long splitAll(Spliterator<T> s, List<Spliterator<T>> leaves) {
+		long size = s.estimateSize();
+		Spliterator<T> front = s.trySplit();
+		if (front == null) {
+			leaves.add(s);
+			return size;
+		}
+		assertTrue(front.estimateSize() > 0 && s.estimateSize() > 0);
+		// Halves: the back is never more than one bigger than the front.
+		assertTrue(s.estimateSize() - front.estimateSize() <= 1);
+		long total = splitAll(front, leaves) + splitAll(s, leaves);
+		assertEquals(size, total);
+		return total;
+	}
+
+	@Test
+	public void splitsInHalvesAndKnowsItsSize() {
+		WorldObject[] items = new WorldObject[3001];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = i % 3 == 0 ? new Fish(0, null) : new Rock(null);
+		}
+		ItemSpliterator<WorldObject> all = new ItemSpliterator<>(items, WorldObject.class, 0, items.length);
+		assertTrue(all.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+		assertEquals(items.length, all.getExactSizeIfKnown());
+		List<Spliterator<WorldObject>> leaves = new ArrayList<>();
+		assertEquals(items.length, splitAll(all, leaves));
+		// 3001 -> 1500/1501 -> 750/750/750/751 -> 375..., and 375 is too small to split again.
+		assertEquals(8, leaves.size());
+		for (Spliterator<WorldObject> leaf : leaves) {
+			assertTrue(leaf.estimateSize() >= 256);
+			assertNull(leaf.trySplit());
+		}
+
+		// Handing out only fish, the size is the most there could be, not exact.
+		ItemSpliterator<Fish> fish = new ItemSpliterator<>(items, Fish.class, 0, items.length);
+		assertEquals(-1, fish.getExactSizeIfKnown());
+		assertEquals(items.length, fish.estimateSize());
+		int[] count = { 0 };
+		fish.forEachRemaining(f -> count[0]++);
+		assertEquals(1001, count[0]);
+	}
+
+	@Test
+	public void aRectangleStreamIsSizedAndSplitsEvenly() {
+		World world = crowded(1);
+		List<Fish> expected = world.findInRect(10, 5, 100, 80, Fish.class);
+		Spliterator<Fish> s = world.stream(Fish.class, 10, 5, 100, 80).spliterator();
+		assertTrue(s.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+		assertEquals(expected.size(), s.getExactSizeIfKnown());
+		List<Spliterator<Fish>> leaves = new ArrayList<>();
+		assertEquals(expected.size(), splitAll(s, leaves));
+		assertTrue(leaves.size() >= 4);
+		// Every leaf is exact, and together they hand out what findInRect finds, in order.
+		List<Fish> walked = new ArrayList<>();
+		for (Spliterator<Fish> leaf : leaves) {
+			long size = leaf.getExactSizeIfKnown();
+			int before = walked.size();
+			leaf.forEachRemaining(walked::add);
+			assertEquals(size, walked.size() - before);
+		}
+		assertEquals(expected, walked);
+	}
+
+	@Test
+	public void parallelIsTheSameAsSequential() {
+		World world = crowded(2);
+		for (int[] r : new int[][] { { 0, 0, W - 1, H - 1 }, { 7, 3, 64, 70 }, { -5, -5, 200, 200 }, { 50, 50, 40, 40 } }) {
+			List<Rock> sequential = world.stream(Rock.class, r[0], r[1], r[2], r[3]).collect(Collectors.toList());
+			List<Rock> parallel = world.stream(Rock.class, r[0], r[1], r[2], r[3]).parallel().collect(Collectors.toList());
+			assertEquals(world.findInRect(r[0], r[1], r[2], r[3], Rock.class), sequential);
+			assertEquals(sequential, parallel);
+			assertEquals(sequential.size(), world.stream(Rock.class, r[0], r[1], r[2], r[3]).parallel().count());
+		}
+		List<Fish> sequential = world.stream(Fish.class).collect(Collectors.toList());
+		List<Fish> parallel = world.stream(Fish.class).parallel().collect(Collectors.toList());
+		assertEquals(sequential, parallel);
+		assertEquals(world.findInRect(0, 0, W - 1, H - 1, Fish.class).size(), sequential.size());
+	}
+}
@@ -0,0 +1,149 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class MapLoaderTest {
+	private static final int W = 9, H = 6;
+
+	/**
+	 * A small map with one of everything (and some of it twice), row by row.
+	 */
+	private static byte[] cells() {
+		byte[] cells = new byte[W * H];
+		cells[0] = MapLoader.ROCK;
+		cells[W - 1] = MapLoader.FALLING_ROCK;
+		cells[2 * W + 3] = MapLoader.SNAIL;
+		cells[3 * W + 4] = MapLoader.HOME;
+		cells[3 * W + 5] = MapLoader.FISH;
+		cells[4 * W + 1] = MapLoader.FISH;
+		cells[5 * W + 8] = MapLoader.ROCK;
+		cells[5 * W] = MapLoader.FALLING_ROCK;
+		return cells;
+	}
+
+	private static String kindOf(byte cell) {
+		switch (cell) {
+		case MapLoader.ROCK:
+			return "Rock";
+		case MapLoader.FALLING_ROCK:
+			return "FallingRock";
+		case MapLoader.SNAIL:
+			return "Snail";
+		case MapLoader.HOME:
+			return "FishHome";
+		default:
+			return "Fish";
+		}
+	}
+
+	/**
+	 * Every object's kind and position must be what the map said, and nothing else may be there.
+	 */
+	private static void assertMatches(byte[] cells, World world) {
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != MapLoader.WATER) {
+				expected.add(kindOf(cells[i]) + " at (" + i % W + "," + i / W + ")");
+			}
+		}
+		List<String> actual = new ArrayList<>();
+		for (WorldObject it : world.viewItems()) {
+			actual.add(it.getClass().getSimpleName() + " at (" + it.getX() + "," + it.getY() + ")");
+		}
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+		assertEquals(W, world.getWidth());
+		assertEquals(H, world.getHeight());
+	}
+
+	private static void writeRaw(Path file, int width, int height, int bytes) throws IOException {
+		try (OutputStream f = Files.newOutputStream(file); DataOutputStream out = new DataOutputStream(f)) {
+			out.writeInt(MapLoader.MAP_MAGIC);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.write(new byte[bytes]);
+		}
+	}
+
+	private static void assertWontLoad(Path file) {
+		try {
+			MapLoader.load(file, new Random(1));
+			fail(file + " shouldn't load.");
+		} catch (IOException expected) {
+			// Good.
+		}
+	}
+
+	@Test
+	public void aBinaryMapHasEverythingWhereItSaid() throws IOException {
+		Path file = Files.createTempFile("map", ".fmap");
+		try {
+			byte[] cells = cells();
+			MapLoader.write(file, W, H, cells);
+			World world = MapLoader.load(file, new Random(1));
+			assertMatches(cells, world);
+			// The home counts: the cell next to it is one step away.
+			assertEquals(0, world.distanceToHome(4, 3));
+			assertEquals(1, world.distanceToHome(4, 2));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void aPictureHasEverythingWhereItSaid() throws IOException {
+		byte[] cells = cells();
+		int[] colors = { 0x3366cc, MapLoader.ROCK_RGB, MapLoader.FALLING_ROCK_RGB, MapLoader.SNAIL_RGB, MapLoader.HOME_RGB, MapLoader.FISH_RGB };
+		BufferedImage image = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+		for (int i = 0; i < cells.length; i++) {
+			image.setRGB(i % W, i / W, colors[cells[i]]);
+		}
+		assertMatches(cells, MapLoader.loadImage(image, new Random(1)));
+
+		Path file = Files.createTempFile("map", ".png");
+		try {
+			ImageIO.write(image, "png", file.toFile());
+			assertMatches(cells, MapLoader.load(file, new Random(1)));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void theWrongLengthWontLoad() throws IOException {
+		Path file = Files.createTempFile("map", ".fmap");
+		try {
+			writeRaw(file, W, H, W * H - 1);
+			assertWontLoad(file);
+			writeRaw(file, W, H, W * H + 1);
+			assertWontLoad(file);
+			writeRaw(file, 0, H, 0);
+			assertWontLoad(file);
+			// Only a long can tell this is too big (as ints, 65536 * 65536 is 0).
+			writeRaw(file, 65536, 65536, 0);
+			assertWontLoad(file);
+			// Too short to be a binary map, and not a picture either.
+			Files.write(file, new byte[] { 1, 2, 3 });
+			assertWontLoad(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
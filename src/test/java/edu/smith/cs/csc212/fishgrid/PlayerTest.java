@@ -0,0 +1,129 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PlayerTest {
+	private static final int W = 48, H = 40, PLAYERS = 6, MOVES = 20000;
+
+	/**
+	 * Every object has to be found in its own cell (and nowhere else), and no player may be on a rock.
+	 */
+	private static void assertConsistent(World world, String when) {
+		List<WorldObject> items = world.viewItems();
+		int total = 0;
+		for (int y = 0; y < H; y++) {
+			for (int x = 0; x < W; x++) {
+				List<WorldObject> here = world.find(x, y);
+				total += here.size();
+				boolean player = false, rock = false;
+				for (WorldObject it : here) {
+					assertEquals(when + ": " + it + " found at (" + x + "," + y + ")", x, it.getX());
+					assertEquals(when + ": " + it + " found at (" + x + "," + y + ")", y, it.getY());
+					player |= it.isPlayer();
+					rock |= it instanceof Rock;
+				}
+				assertFalse(when + ": a player is on a rock at (" + x + "," + y + ")", player && rock);
+			}
+		}
+		assertEquals(when, items.size(), total);
+		for (WorldObject it : items) {
+			assertTrue(when + ": " + it + " is missing from its cell", world.find(it.getX(), it.getY()).contains(it));
+		}
+	}
+
+	@Test
+	public void manyPlayersMovingAtOnceKeepTheCellsRight() throws Exception {
+		for (long seed = 0; seed < 3; seed++) {
+			World world = new World(W, H, new Random(seed));
+			world.setVerbose(false);
+			FishGame game = new FishGame(world);
+			// Plain rocks only: a falling rock may land on someone, but moving must never put a player on a rock.
+			world.removeInRect(0, 0, W - 1, H - 1, FallingRock.class);
+			for (int i = 0; i < 150; i++) {
+				world.insertRockRandomly();
+			}
+			List<Player> players = new ArrayList<>();
+			players.add(game.players.get(0));
+			while (players.size() < PLAYERS) {
+				players.add(game.addPlayer());
+			}
+			world.getMetrics().setEnabled(true);
+
+			CyclicBarrier start = new CyclicBarrier(PLAYERS + 1);
+			AtomicReference<Throwable> failure = new AtomicReference<>();
+			List<Thread> threads = new ArrayList<>();
+			for (int p = 0; p < PLAYERS; p++) {
+				Player who = players.get(p);
+				Random rand = new Random(seed * 100 + p);
+				Thread t = new Thread(() -> {
+					try {
+						start.await();
+						for (int i = 0; i < MOVES; i++) {
+							int d = rand.nextInt(4);
+							game.move(who, d == 0 ? 1 : d == 1 ? -1 : 0, d == 2 ? 1 : d == 3 ? -1 : 0);
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				});
+				t.start();
+				threads.add(t);
+			}
+			// Steps happen in between moves (players find fish, so lines form behind them and move with them).
+			start.await();
+			int steps = 0;
+			for (Thread t : threads) {
+				while (t.isAlive()) {
+					game.step();
+					steps++;
+					t.join(1);
+				}
+			}
+			if (failure.get() != null) {
+				throw new AssertionError("seed " + seed, failure.get());
+			}
+			assertTrue(steps > 0);
+			assertConsistent(world, "seed " + seed);
+			// Once everyone stops, a step still finds everything where it should be.
+			game.step();
+			assertConsistent(world, "seed " + seed + " after a step");
+		}
+	}
+
+	@Test
+	public void countersDontLoseUpdatesFromManyThreads() throws Exception {
+		Metrics metrics = new Metrics();
+		metrics.setEnabled(true);
+		int each = 10 * MOVES;
+		CyclicBarrier start = new CyclicBarrier(PLAYERS);
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < PLAYERS; p++) {
+			Thread t = new Thread(() -> {
+				try {
+					start.await();
+				} catch (Exception e) {
+					return;
+				}
+				for (int i = 0; i < each; i++) {
+					metrics.count(Metrics.Counter.FIND);
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals((long) PLAYERS * each, metrics.snapshot().getCount(Metrics.Counter.FIND));
+	}
+}
@@ -0,0 +1,236 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class TickJournalTest {
+	private static final int W = 20, H = 14;
+
+	/**
+	 * What a save and journal can hold about a world: kind, position and extra of everything but players,
+	 * homes and followers, in order.
+	 */
+	private static List<String> cells(World world) {
+		List<String> out = new ArrayList<>();
+		for (WorldObject it : world.viewItems()) {
+			int kind = ObjectRecord.kindOf(it);
+			if (kind >= 0) {
+				out.add("(" + it.getX() + "," + it.getY() + ") kind " + kind + " extra " + ObjectRecord.extraOf(it));
+			}
+		}
+		Collections.sort(out);
+		return out;
+	}
+
+	/**
+	 * Everything {@link TickJournal#recover} should get back, as of the step the game is on now.
+	 */
+	private static String snapshot(FishGame game, World world) {
+		return "step " + game.stepsTaken + " score " + game.score + " lost " + game.fishLost + " safe " + game.safeCount
+				+ " " + cells(world);
+	}
+
+	private static String snapshot(TickJournal.Recovered back) {
+		return "step " + back.step + " score " + back.score + " lost " + back.fishLost + " safe " + back.safeCount
+				+ " " + cells(back.world);
+	}
+
+	/**
+	 * Move the player somewhere and step; then wait for a save that started to land, so rolls happen on time.
+	 */
+	private static void step(FishGame game, Autosave autosave, Random rand) throws InterruptedException {
+		switch (rand.nextInt(5)) {
+		case 0:
+			game.player.moveUp();
+			break;
+		case 1:
+			game.player.moveDown();
+			break;
+		case 2:
+			game.player.moveLeft();
+			break;
+		case 3:
+			game.player.moveRight();
+			break;
+		default:
+			break;
+		}
+		game.step();
+		while (autosave.isSaving()) {
+			Thread.sleep(1);
+		}
+	}
+
+	private static void deleteAll(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path f : (Iterable<Path>) files::iterator) {
+				Files.delete(f);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	private static int firstStepOf(Path journal) throws IOException {
+		try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(16);
+			in.read(header, 0);
+			return header.getInt(4);
+		}
+	}
+
+	private static long committedOf(Path journal) throws IOException {
+		try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(16);
+			in.read(header, 0);
+			return header.getLong(8);
+		}
+	}
+
+	@Test
+	public void recoverMatchesTheLiveGame() throws Exception {
+		Path dir = Files.createTempDirectory("journal");
+		try {
+			for (long seed = 0; seed < 3; seed++) {
+				Random rand = new Random(seed);
+				World world = new World(W, H, new Random(seed));
+				world.setVerbose(false);
+				FishGame game = new FishGame(world);
+				Path save = dir.resolve("save" + seed);
+				Path journal = dir.resolve("journal" + seed);
+				Autosave autosave = game.enableAutosave(save, 25);
+				TickJournal log = game.enableJournal(journal, 1);
+				for (int i = 0; i < 40; i++) {
+					step(game, autosave, rand);
+				}
+				assertEquals(1, autosave.getSaves());
+				String expected = snapshot(game, world);
+				autosave.close();
+				log.close();
+				// That's all we keep of the game.
+				game = null;
+				world = null;
+
+				TickJournal.Recovered back = TickJournal.recover(save, journal);
+				assertEquals("seed " + seed, 0, back.mismatches);
+				assertEquals("seed " + seed, expected, snapshot(back));
+			}
+		} finally {
+			deleteAll(dir);
+		}
+	}
+
+	@Test
+	public void afterARollReplayStartsAtTheNewSave() throws Exception {
+		Path dir = Files.createTempDirectory("journal");
+		try {
+			Random rand = new Random(4);
+			World world = new World(W, H, new Random(4));
+			world.setVerbose(false);
+			FishGame game = new FishGame(world);
+			Path save = dir.resolve("save");
+			Path oldSave = dir.resolve("old-save");
+			Path journal = dir.resolve("journal");
+			Autosave autosave = game.enableAutosave(save, 25);
+			TickJournal log = game.enableJournal(journal, 1);
+			for (int i = 0; i < 25; i++) {
+				step(game, autosave, rand);
+			}
+			assertEquals(25, autosave.getSavedStep());
+			Files.copy(save, oldSave);
+			for (int i = 25; i < 60; i++) {
+				step(game, autosave, rand);
+			}
+			assertEquals(50, autosave.getSavedStep());
+			// Once after each save: the step after the save is the first one the new file needs.
+			assertEquals(2, log.getRolls());
+			assertEquals(51, firstStepOf(journal));
+			String expected = snapshot(game, world);
+			autosave.close();
+			log.close();
+
+			TickJournal.Recovered back = TickJournal.recover(save, journal);
+			assertEquals(0, back.mismatches);
+			assertEquals(expected, snapshot(back));
+			assertTrue(Files.notExists(journal.resolveSibling(journal.getFileName() + ".tmp")));
+
+			// The steps between the old save and the new one are gone, so the old save can't be used any more.
+			try {
+				TickJournal.recover(oldSave, journal);
+				fail("The journal starts after the old save.");
+			} catch (IOException expectedFailure) {
+				// Good.
+			}
+		} finally {
+			deleteAll(dir);
+		}
+	}
+
+	@Test
+	public void aTornLastRecordLeavesOutItsStep() throws Exception {
+		Path dir = Files.createTempDirectory("journal");
+		try {
+			Random rand = new Random(5);
+			World world = new World(W, H, new Random(5));
+			world.setVerbose(false);
+			FishGame game = new FishGame(world);
+			Path save = dir.resolve("save");
+			Path journal = dir.resolve("journal");
+			Autosave autosave = game.enableAutosave(save, 10);
+			TickJournal log = game.enableJournal(journal, 1);
+			List<String> snapshots = new ArrayList<>();
+			snapshots.add(snapshot(game, world));
+			for (int i = 0; i < 25; i++) {
+				step(game, autosave, rand);
+				snapshots.add(snapshot(game, world));
+			}
+			autosave.close();
+			log.close();
+			long committed = committedOf(journal);
+
+			// Junk after the committed part (a step that was being written when we crashed) is ignored.
+			Path junk = dir.resolve("junk");
+			Files.copy(journal, junk);
+			try (FileChannel out = FileChannel.open(junk, StandardOpenOption.WRITE)) {
+				ByteBuffer bytes = ByteBuffer.allocate(12);
+				bytes.putInt(TickJournal.MOVE).putInt(ObjectRecord.ROCK).putInt(3).flip();
+				out.write(bytes, committed);
+			}
+			assertEquals(snapshots.get(25), snapshot(TickJournal.recover(save, junk)));
+
+			// Cut off in the middle of the last step's TICK: that step never finished, so we get the one before.
+			Path torn = dir.resolve("torn");
+			Files.copy(journal, torn);
+			try (FileChannel out = FileChannel.open(torn, StandardOpenOption.WRITE)) {
+				out.truncate(committed - 6);
+			}
+			TickJournal.Recovered back = TickJournal.recover(save, torn);
+			assertEquals(0, back.mismatches);
+			assertEquals(snapshots.get(24), snapshot(back));
+
+			// Cut off in the middle of an int is the same.
+			try (FileChannel out = FileChannel.open(torn, StandardOpenOption.WRITE)) {
+				out.truncate(committed - 13);
+			}
+			back = TickJournal.recover(save, torn);
+			assertEquals(0, back.mismatches);
+			assertEquals(snapshots.get(24), snapshot(back));
+		} finally {
+			deleteAll(dir);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+	@Test
+	public void everyTaskRunsOnItsStepInOrder() {
+		Random rand = new Random(7);
+		TimingWheel wheel = new TimingWheel(0);
+		List<long[]> ran = new ArrayList<>();
+		long[] dues = new long[5000];
+		for (int i = 0; i < dues.length; i++) {
+			// Mostly soon, some in the slower wheels, a few past all of them.
+			int roll = rand.nextInt(100);
+			long delay = roll < 60 ? 1 + rand.nextInt(64) : roll < 90 ? 1 + rand.nextInt(64 * 64 * 64) : roll < 99 ? 1 + rand.nextInt(1 << 24) : (1 << 24) + rand.nextInt(1 << 20);
+			dues[i] = delay;
+			final int id = i;
+			wheel.scheduleIn(delay, () -> ran.add(new long[] { wheel.getCurrentTick(), id }));
+		}
+		assertEquals(dues.length, wheel.size());
+
+		long last = (1 << 24) + (1 << 20);
+		wheel.advanceTo(last);
+		assertEquals(dues.length, ran.size());
+		assertEquals(0, wheel.size());
+		for (int i = 0; i < ran.size(); i++) {
+			long[] r = ran.get(i);
+			assertEquals("task " + r[1], dues[(int) r[1]], r[0]);
+			if (i > 0) {
+				long[] before = ran.get(i - 1);
+				// Steps never go backwards, and tasks due on the same step run first-in, first-out.
+				assertTrue(before[0] < r[0] || (before[0] == r[0] && before[1] < r[1]));
+			}
+		}
+	}
+
+	@Test
+	public void pastAndPresentRunNextStep() {
+		TimingWheel wheel = new TimingWheel(100);
+		List<Long> ran = new ArrayList<>();
+		wheel.schedule(3, () -> ran.add(wheel.getCurrentTick()));
+		wheel.schedule(100, () -> ran.add(wheel.getCurrentTick()));
+		wheel.tick();
+		assertEquals(2, ran.size());
+		assertEquals(Long.valueOf(101), ran.get(0));
+		assertEquals(Long.valueOf(101), ran.get(1));
+	}
+
+	@Test
+	public void tasksCanScheduleMoreTasks() {
+		TimingWheel wheel = new TimingWheel(0);
+		List<Long> ran = new ArrayList<>();
+		Runnable[] again = new Runnable[1];
+		again[0] = () -> {
+			ran.add(wheel.getCurrentTick());
+			if (ran.size() < 50) {
+				// Even "now" means next step, so a task can't run twice in one tick.
+				wheel.scheduleIn(ran.size() % 3 == 0 ? 0 : 70, again[0]);
+			}
+		};
+		wheel.scheduleIn(5, again[0]);
+		wheel.advanceTo(100000);
+		assertEquals(50, ran.size());
+		for (int i = 1; i < ran.size(); i++) {
+			long gap = ran.get(i) - ran.get(i - 1);
+			assertEquals(i % 3 == 0 ? 1 : 70, gap);
+		}
+	}
+
+	@Test
+	public void crossingEveryWheelBoundary() {
+		// Start just before the slow wheels roll over, so entries have to slide down through all of them.
+		long start = (1L << 24) - 3;
+		TimingWheel wheel = new TimingWheel(start);
+		List<Long> ran = new ArrayList<>();
+		long[] delays = { 1, 2, 3, 4, 5, 64, 65, 4096, 4097, 262144, 262145, 1 << 24, (1 << 24) + 1 };
+		for (long d : delays) {
+			final long due = start + d;
+			wheel.scheduleIn(d, () -> {
+				assertEquals(due, wheel.getCurrentTick());
+				ran.add(due);
+			});
+		}
+		wheel.advanceTo(start + (1 << 24) + 1);
+		assertEquals(delays.length, ran.size());
+	}
+}
@@ -0,0 +1,141 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class VisibilityFieldTest {
+	private static final int W = 24, H = 18, RADIUS = 6;
+
+	/**
+	 * The field we kept up to date has to say the same thing as one worked out from nothing, right now.
+	 */
+	private static void assertMatchesFresh(World world, VisibilityField view, String when) {
+		VisibilityField fresh = world.watch(view.getViewer(), view.getRadius());
+		int cx = view.getViewer().getX();
+		int cy = view.getViewer().getY();
+		int r = view.getRadius();
+		for (int y = cy - r - 2; y <= cy + r + 2; y++) {
+			for (int x = cx - r - 2; x <= cx + r + 2; x++) {
+				assertEquals(when + " at (" + x + "," + y + ")", fresh.isVisible(x, y), view.isVisible(x, y));
+			}
+		}
+		assertEquals(when, fresh.countVisible(), view.countVisible());
+		world.unwatch(fresh);
+	}
+
+	/**
+	 * Like {@link FishGame#click}, without the printing.
+	 */
+	private static void click(World world, int x, int y) {
+		List<WorldObject> atPoint = world.find(x, y);
+		for (WorldObject it : atPoint) {
+			if (it instanceof Rock) {
+				it.remove();
+			}
+		}
+	}
+
+	@Test
+	public void keptUpToDateThroughMovesFallsAndClicks() {
+		for (long seed = 0; seed < 4; seed++) {
+			Random rand = new Random(seed);
+			World world = new World(W, H, new Random(seed));
+			world.setVerbose(false);
+			FishGame game = new FishGame(world);
+			for (int i = 0; i < 40; i++) {
+				if (rand.nextBoolean()) {
+					world.insertFallingRockRandomly();
+				} else {
+					world.insertRockRandomly();
+				}
+			}
+			Fish player = game.player;
+			VisibilityField view = world.watch(player, RADIUS);
+
+			for (int step = 0; step < 400; step++) {
+				int op = rand.nextInt(10);
+				String what;
+				if (op < 4) {
+					switch (rand.nextInt(4)) {
+					case 0:
+						player.moveUp();
+						break;
+					case 1:
+						player.moveDown();
+						break;
+					case 2:
+						player.moveLeft();
+						break;
+					default:
+						player.moveRight();
+						break;
+					}
+					what = "move";
+				} else if (op < 7) {
+					// Falling rocks fall, fish swim, hearts come and go.
+					game.step();
+					what = "step";
+				} else if (op < 8) {
+					click(world, player.getX() + rand.nextInt(2 * RADIUS + 1) - RADIUS, player.getY() + rand.nextInt(2 * RADIUS + 1) - RADIUS);
+					what = "click";
+				} else if (op < 9) {
+					int x = player.getX() + rand.nextInt(2 * RADIUS + 1) - RADIUS;
+					int y = player.getY() + rand.nextInt(2 * RADIUS + 1) - RADIUS;
+					world.removeInRect(x - 1, y - 1, x + 1, y + 1, Rock.class);
+					what = "clickArea";
+				} else {
+					if (rand.nextBoolean()) {
+						world.insertFallingRockRandomly();
+					} else {
+						world.insertRockRandomly();
+					}
+					what = "new rock";
+				}
+				assertMatchesFresh(world, view, "seed " + seed + " step " + step + " (" + what + ")");
+			}
+		}
+	}
+
+	@Test
+	public void onlyChangesInRangeMeanWorkingItOutAgain() {
+		World world = new World(40, 5, new Random(1));
+		world.setVerbose(false);
+		Fish viewer = new Fish(0, world);
+		viewer.setPosition(2, 2);
+		world.register(viewer);
+		Rock near = new Rock(world);
+		near.setPosition(4, 2);
+		world.register(near);
+		VisibilityField view = world.watch(viewer, 3);
+
+		assertFalse(view.isVisible(5, 2));
+		assertEquals(1, view.getRecomputes());
+		view.countVisible();
+		assertEquals(1, view.getRecomputes());
+
+		// A rock far away can't change what we see.
+		Rock far = new Rock(world);
+		far.setPosition(30, 2);
+		world.register(far);
+		far.setPosition(31, 2);
+		far.remove();
+		view.countVisible();
+		assertEquals(1, view.getRecomputes());
+
+		// Clicking away the near one lets us see past it.
+		near.remove();
+		assertTrue(view.isVisible(5, 2));
+		assertEquals(2, view.getRecomputes());
+		assertMatchesFresh(world, view, "after remove");
+
+		viewer.setPosition(3, 2);
+		assertTrue(view.isVisible(6, 2));
+		assertEquals(3, view.getRecomputes());
+	}
+}
@@ -0,0 +1,120 @@
+package edu.smith.cs.csc212.fishgrid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class WorldTemplateTest {
+	// More than one 64x64 page each way, so clones copy some pages and keep reading others from the template.
+	private static final int W = 150, H = 100;
+
+	/**
+	 * Work the distance-to-home field out from nothing: a plain breadth-first search from every home.
+	 */
+	private static int[] freshBFS(World world) {
+		boolean[] blocked = new boolean[W * H];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		int[] dist = new int[W * H];
+		Arrays.fill(dist, HomeDistanceField.UNREACHABLE);
+		for (WorldObject it : world.viewItems()) {
+			if (it instanceof Rock || it instanceof Snail) {
+				blocked[it.getY() * W + it.getX()] = true;
+			}
+		}
+		for (WorldObject it : world.viewItems()) {
+			int cell = it.getY() * W + it.getX();
+			if (it instanceof FishHome && !blocked[cell] && dist[cell] != 0) {
+				dist[cell] = 0;
+				queue.add(cell);
+			}
+		}
+		int[] dx = { 1, -1, 0, 0 };
+		int[] dy = { 0, 0, 1, -1 };
+		while (!queue.isEmpty()) {
+			int cell = queue.poll();
+			for (int d = 0; d < 4; d++) {
+				int nx = cell % W + dx[d];
+				int ny = cell / W + dy[d];
+				if (nx >= 0 && nx < W && ny >= 0 && ny < H && !blocked[ny * W + nx] && dist[ny * W + nx] == HomeDistanceField.UNREACHABLE) {
+					dist[ny * W + nx] = dist[cell] + 1;
+					queue.add(ny * W + nx);
+				}
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * What the world's own (kept up to date) field says, cell by cell.
+	 */
+	private static int[] field(FishGame game) {
+		World world = game.indexedWorld();
+		int[] dist = new int[W * H];
+		for (int y = 0; y < H; y++) {
+			for (int x = 0; x < W; x++) {
+				dist[y * W + x] = world.distanceToHome(x, y);
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Move, click away or drop in a rock somewhere in this game.
+	 */
+	private static void changeRocks(FishGame game, Random rand) {
+		World world = game.indexedWorld();
+		List<Rock> rocks = world.findInRect(0, 0, W - 1, H - 1, Rock.class);
+		int roll = rand.nextInt(3);
+		if (roll == 0 || rocks.isEmpty()) {
+			world.insertRockRandomly();
+		} else {
+			Rock rock = rocks.get(rand.nextInt(rocks.size()));
+			if (roll == 1) {
+				rock.remove();
+			} else {
+				rock.setPosition(Math.max(0, Math.min(W - 1, rock.getX() + rand.nextInt(41) - 20)),
+						Math.max(0, Math.min(H - 1, rock.getY() + rand.nextInt(41) - 20)));
+			}
+		}
+	}
+
+	@Test
+	public void changingOneCloneLeavesTheTemplateAndTheOtherAlone() {
+		WorldTemplate template = WorldTemplate.build(W, H, 3);
+		// The template's field is only ever read through its clones: a new clone hasn't copied any pages yet.
+		int[] original = field(template.newGame(new Random(0)));
+		FishGame first = template.newGame(new Random(1));
+		FishGame second = template.newGame(new Random(2));
+		assertArrayEquals(original, freshBFS(first.indexedWorld()));
+		assertArrayEquals(original, field(second));
+
+		Random rand = new Random(4);
+		for (int round = 0; round < 60; round++) {
+			for (int i = 0; i < 5; i++) {
+				changeRocks(first, rand);
+			}
+			// Read the other clone and the template in between, so each grid's last-page cache points somewhere else.
+			second.indexedWorld().distanceToHome(rand.nextInt(W), rand.nextInt(H));
+			assertArrayEquals("round " + round, freshBFS(first.indexedWorld()), field(first));
+			assertArrayEquals("round " + round, original, field(second));
+			assertArrayEquals("round " + round, original, field(template.newGame(new Random(round))));
+		}
+		assertFalse(Arrays.equals(original, field(first)));
+
+		// Now the other way around: the second clone copies the pages the first one already did.
+		int[] firstNow = field(first);
+		for (int round = 0; round < 30; round++) {
+			changeRocks(second, rand);
+			second.step();
+			assertArrayEquals("round " + round, freshBFS(second.indexedWorld()), field(second));
+			assertArrayEquals("round " + round, firstNow, field(first));
+		}
+		assertArrayEquals(original, field(template.newGame(new Random(5))));
+	}
+}